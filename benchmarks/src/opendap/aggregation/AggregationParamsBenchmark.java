@@ -0,0 +1,104 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.aggregation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating an aggregation request and building the constraint for each of
+ * its files, once with a single shared var/bbox and once with one per file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationParamsBenchmark {
+
+    @Param({"100"})
+    public int files;
+
+    private Map<String, String[]> shared;
+    private Map<String, String[]> perFile;
+
+    @Setup
+    public void setup() {
+        String[] file = new String[files];
+        String[] var = new String[files];
+        String[] bbox = new String[files];
+        for (int i = 0; i < files; i++) {
+            file[i] = String.format("/data/granules/granule_%06d.h5", i);
+            var[i] = "lat" + i + ",lon" + i + ",time" + i;
+            bbox[i] = "[" + i + ",lat" + i + "," + (i + 10) + "][" + (-i) + ",lon" + i + "," + (i + 5) + "]";
+        }
+
+        shared = new HashMap<>();
+        shared.put("file", file);
+        shared.put("var", new String[]{"lat,lon,time"});
+        shared.put("bbox", new String[]{"[10,lat,20][5,lon,7]"});
+
+        perFile = new HashMap<>();
+        perFile.put("file", file);
+        perFile.put("var", var);
+        perFile.put("bbox", bbox);
+    }
+
+    private static void parse(Map<String, String[]> params, Blackhole bh) throws Exception {
+        AggregationParams ap = new AggregationParams(params);
+        for (int i = 0; i < ap.getNumberOfFiles(); i++) {
+            bh.consume(ap.getFilename(i));
+            bh.consume(ap.getArrayCE(i));
+            bh.consume(ap.getTableCE(i));
+        }
+    }
+
+    @Benchmark
+    public void sharedConstraint(Blackhole bh) throws Exception {
+        parse(shared, bh);
+    }
+
+    @Benchmark
+    public void perFileConstraint(Blackhole bh) throws Exception {
+        parse(perFile, bh);
+    }
+}
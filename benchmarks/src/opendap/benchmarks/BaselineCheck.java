@@ -0,0 +1,148 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file with the recorded baseline and reports the
+ * change in each score. A benchmark regresses when its score moves in the
+ * wrong direction (down for throughput, up for time per operation) by more
+ * than the threshold and by more than the combined error of both runs.
+ * <p>
+ * Usage: BaselineCheck baseline.json results.json [thresholdPercent]
+ * <p>
+ * Exits with status 1 if anything regressed.
+ */
+public class BaselineCheck {
+
+    static class Score {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Score(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = Double.isNaN(error) ? 0 : error;
+            this.unit = unit;
+        }
+
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    static Map<String, Score> read(String fileName) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        try (Reader r = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            JsonArray runs = new JsonParser().parse(r).getAsJsonArray();
+            for (JsonElement e : runs) {
+                JsonObject run = e.getAsJsonObject();
+                StringBuilder key = new StringBuilder(run.get("benchmark").getAsString());
+                if (run.has("params")) {
+                    Map<String, String> params = new TreeMap<>();
+                    for (Map.Entry<String, JsonElement> p : run.getAsJsonObject("params").entrySet())
+                        params.put(p.getKey(), p.getValue().getAsString());
+                    key.append(params);
+                }
+                JsonObject metric = run.getAsJsonObject("primaryMetric");
+                JsonElement error = metric.get("scoreError");
+                scores.put(key.toString(), new Score(
+                        run.get("mode").getAsString(),
+                        metric.get("score").getAsDouble(),
+                        error == null || !error.isJsonPrimitive() ? 0 : parse(error.getAsString()),
+                        metric.get("scoreUnit").getAsString()));
+            }
+        }
+        return scores;
+    }
+
+    private static double parse(String s) {
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            // JMH writes "NaN" when there were too few iterations.
+            return 0;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCheck baseline.json results.json [thresholdPercent]");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(args[0]);
+        Map<String, Score> results = read(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 15.0;
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> e : results.entrySet()) {
+            Score now = e.getValue();
+            Score then = baseline.get(e.getKey());
+            if (then == null) {
+                System.out.printf("%-9s %s  %.3f %s (no baseline)%n", "NEW", e.getKey(), now.score, now.unit);
+                continue;
+            }
+            double change = (now.score - then.score) / then.score * 100.0;
+            double worse = now.higherIsBetter() ? -change : change;
+            boolean outsideError = Math.abs(now.score - then.score) > now.error + then.error;
+            String verdict = "ok";
+            if (worse > threshold && outsideError) {
+                verdict = "REGRESSED";
+                regressions++;
+            }
+            else if (-worse > threshold && outsideError) {
+                verdict = "improved";
+            }
+            System.out.printf("%-9s %s  %.3f -> %.3f %s (%+.1f%%)%n",
+                    verdict, e.getKey(), then.score, now.score, now.unit, change);
+        }
+        for (String key : baseline.keySet()) {
+            if (!results.containsKey(key))
+                System.out.printf("%-9s %s%n", "NOT RUN", key);
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.bes;
+
+import opendap.loadtest.FakeBes;
+import opendap.ppt.OPeNDAPClient;
+import org.jdom.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of checking a client out of, and back into, the BES connection pool,
+ * with one thread and with more threads than pooled clients. The clients
+ * connect to an in-process FakeBes, but their isOk() is stubbed so that
+ * checking a client back in does not make a showStatus round trip. The
+ * score is the pool's own cost, not the loopback latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BesClientPoolBenchmark {
+
+    @Param({"4", "16"})
+    public int maxClients;
+
+    private FakeBes fakeBes;
+    private BES bes;
+
+    @Setup
+    public void setup() throws Exception {
+        fakeBes = new FakeBes(0);
+        fakeBes.start();
+
+        Element config = new Element("BES");
+        config.addContent(new Element("prefix").setText("/"));
+        config.addContent(new Element("host").setText("localhost"));
+        config.addContent(new Element("port").setText(Integer.toString(fakeBes.getPort())));
+        config.addContent(new Element("ClientPool").setAttribute("maximum", Integer.toString(maxClients)));
+        bes = new BES(new BESConfig(config)) {
+            @Override
+            OPeNDAPClient newClient() {
+                return new OPeNDAPClient() {
+                    @Override
+                    public boolean isOk() {
+                        return true;
+                    }
+                };
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        bes.destroy();
+        fakeBes.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public OPeNDAPClient uncontended() throws Exception {
+        OPeNDAPClient client = bes.getClient();
+        bes.returnClient(client, false);
+        return client;
+    }
+
+    @Benchmark
+    @Threads(16)
+    public OPeNDAPClient contended() throws Exception {
+        OPeNDAPClient client = bes.getClient();
+        bes.returnClient(client, false);
+        return client;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.bes.caching;
+
+import opendap.bes.BesApi;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BesNodeCache.getNode() when every key is already cached. The BesApi used
+ * to fill the cache answers showNode from memory, so no BES is involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BesNodeCacheBenchmark {
+
+    private static final Namespace BES_NS = opendap.namespaces.BES.BES_NS;
+
+    @Param({"1000"})
+    public int keys;
+
+    private String[] keyNames;
+    private BesApi besApi;
+
+    /**
+     * Builds a showNode response for a single granule without asking a BES.
+     */
+    static class CannedBesApi extends BesApi {
+        @Override
+        public void getBesNodeNoCache(String dataSource, Document response) {
+            Element item = new Element("item", BES_NS);
+            item.setAttribute("name", dataSource);
+            item.setAttribute("type", "leaf");
+            item.setAttribute("isData", "true");
+            item.setAttribute("size", "1048576");
+            item.setAttribute("lastModified", "2026-01-01T00:00:00");
+            Element showNode = new Element("showNode", BES_NS);
+            showNode.addContent(item);
+            Element root = new Element("response", BES_NS);
+            root.addContent(showNode);
+            response.setRootElement(root);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BesNodeCache.init(keys * 2, 3600);
+        besApi = new CannedBesApi();
+        keyNames = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            keyNames[i] = String.format("/data/collection_%03d/granule_%06d.nc", i % 10, i);
+            BesNodeCache.getNode(besApi, keyNames[i], new Document());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BesNodeCache.destroy();
+    }
+
+    private Document hit() throws Exception {
+        Document response = new Document();
+        BesNodeCache.getNode(besApi, keyNames[ThreadLocalRandom.current().nextInt(keys)], response);
+        return response;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Document hitUncontended() throws Exception {
+        return hit();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Document hitContended() throws Exception {
+        return hit();
+    }
+}
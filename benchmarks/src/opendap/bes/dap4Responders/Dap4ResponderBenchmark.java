@@ -0,0 +1,106 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.bes.dap4Responders;
+
+import opendap.bes.BesApi;
+import opendap.bes.dap4Responders.DataResponse.NormativeDR;
+import opendap.bes.dap4Responders.DatasetMetadata.NormativeDMR;
+import opendap.bes.dap4Responders.Iso19115.IsoDMR;
+import opendap.coreServlet.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request suffix matching across the DAP4 responders, the way the
+ * dispatcher walks its responder list looking for the first responder that
+ * claims a request. The relativeUrl parameter covers a match on the first
+ * responder, a match on an alternate representation of a later responder and
+ * a request that no responder claims.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Dap4ResponderBenchmark {
+
+    @Param({
+            "/data/nc/fnoc1.nc.dap",
+            "/data/nc/fnoc1.nc.dmr.html",
+            "/data/nc/fnoc1.nc.unknown"
+    })
+    public String relativeUrl;
+
+    private Dap4Responder[] responders;
+
+    @Setup
+    public void setup() {
+        BesApi besApi = new BesApi();
+        responders = new Dap4Responder[]{
+                new NormativeDR("", besApi, false),
+                new NormativeDMR("", besApi, false, false),
+                new IsoDMR("", besApi)
+        };
+    }
+
+    /**
+     * What the dispatcher does: matches() builds the resource id, compiling
+     * the combined suffix regex on each call.
+     */
+    @Benchmark
+    public Dap4Responder matches() {
+        for (Dap4Responder r : responders) {
+            if (r.matches(relativeUrl, false))
+                return r;
+        }
+        return null;
+    }
+
+    /**
+     * The same walk using each responder's precompiled suffix pattern.
+     */
+    @Benchmark
+    public Dap4Responder matchesSuffixPattern() {
+        for (Dap4Responder r : responders) {
+            if (Util.matchesSuffixPattern(relativeUrl, r.getRequestSuffixMatchPattern()))
+                return r;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.coreServlet;
+
+import opendap.bes.BesApi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request path parsing done for every request: the local URL (which strips
+ * path based server functions) and the BES data source id derived from it,
+ * both by ReqInfo and by BesApi.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReqInfoBenchmark {
+
+    @Param({
+            "/data/nc/fnoc1.nc.dmr.html",
+            "/data/hdf5/collection/granule_000001.h5.dap",
+            "/data/nc/"
+    })
+    public String pathInfo;
+
+    private HttpServletRequest request;
+    private BesApi besApi;
+
+    @Setup
+    public void setup() {
+        final String path = pathInfo;
+        // Only getPathInfo() is used by the methods under test.
+        request = (HttpServletRequest) Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class},
+                (proxy, method, args) -> method.getName().equals("getPathInfo") ? path : null);
+        besApi = new BesApi();
+    }
+
+    @Benchmark
+    public String getLocalUrl() {
+        return ReqInfo.getLocalUrl(request);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Benchmark
+    public String getBesDataSourceID() {
+        return ReqInfo.getBesDataSourceID(request);
+    }
+
+    @Benchmark
+    public String besApiGetBesDataSourceID() {
+        return besApi.getBesDataSourceID(ReqInfo.getLocalUrl(request), false);
+    }
+}
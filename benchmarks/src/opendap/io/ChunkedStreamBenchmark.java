@@ -0,0 +1,113 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Framing throughput of the PPT chunked streams. Each operation moves one
+ * message of messageSize bytes, written in writeSize pieces, so the score
+ * times messageSize is the byte rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkedStreamBenchmark {
+
+    @Param({"1048576"})
+    public int messageSize;
+
+    @Param({"512", "65536"})
+    public int writeSize;
+
+    private byte[] payload;
+    private byte[] framed;
+    private CountingOutputStream sink;
+
+    /**
+     * Discards what it is given, keeping only a count so that the JIT
+     * cannot drop the writes.
+     */
+    static class CountingOutputStream extends OutputStream {
+        long count = 0;
+        @Override public void write(int b) { count++; }
+        @Override public void write(byte[] b, int off, int len) { count += len; }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        payload = new byte[messageSize];
+        for (int i = 0; i < payload.length; i++)
+            payload[i] = (byte) i;
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(messageSize + messageSize / 64);
+        ChunkedOutputStream cos = new ChunkedOutputStream(baos);
+        write(cos);
+        framed = baos.toByteArray();
+        sink = new CountingOutputStream();
+    }
+
+    private void write(ChunkedOutputStream cos) throws IOException {
+        for (int off = 0; off < payload.length; off += writeSize)
+            cos.write(payload, off, Math.min(writeSize, payload.length - off));
+        cos.finish();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        sink.count = 0;
+        write(new ChunkedOutputStream(sink));
+        return sink.count;
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        sink.count = 0;
+        ChunkedInputStream cis = new ChunkedInputStream(new ByteArrayInputStream(framed));
+        cis.readChunkedMessage(sink, sink);
+        return sink.count;
+    }
+}
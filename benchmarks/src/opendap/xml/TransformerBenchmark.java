@@ -0,0 +1,101 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.xml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiling the DAP4 Data Request Form stylesheet versus running an already
+ * compiled one over a DMR, which shows what is saved by holding on to a
+ * Transformer. The stylesheet is read from resources/hyrax/xsl, so the
+ * benchmark must be run from the top of the source tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformerBenchmark {
+
+    static final String XSLT = "resources/hyrax/xsl/dap4_ifh.xsl";
+
+    @Param({"10", "200"})
+    public int variables;
+
+    private byte[] dmr;
+    private Transformer transformer;
+
+    private static final OutputStream NULL = new OutputStream() {
+        @Override public void write(int b) { }
+        @Override public void write(byte[] b, int off, int len) { }
+    };
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<Dataset xmlns=\"http://xml.opendap.org/ns/DAP/4.0#\" dapVersion=\"4.0\" dmrVersion=\"1.0\" name=\"bench.nc\">\n");
+        sb.append("  <Dimension name=\"time\" size=\"1024\"/>\n");
+        for (int i = 0; i < variables; i++) {
+            sb.append("  <Float32 name=\"var").append(i).append("\">\n");
+            sb.append("    <Dim name=\"/time\"/>\n");
+            sb.append("    <Attribute name=\"units\" type=\"String\"><Value>K</Value></Attribute>\n");
+            sb.append("    <Attribute name=\"long_name\" type=\"String\"><Value>Variable ").append(i).append("</Value></Attribute>\n");
+            sb.append("  </Float32>\n");
+        }
+        sb.append("</Dataset>\n");
+        dmr = sb.toString().getBytes(StandardCharsets.UTF_8);
+        transformer = new Transformer(XSLT);
+    }
+
+    @Benchmark
+    public Transformer compile() throws Exception {
+        return new Transformer(XSLT);
+    }
+
+    @Benchmark
+    public void transform() throws Exception {
+        transformer.transform(new StreamSource(new ByteArrayInputStream(dmr)), NULL);
+    }
+}
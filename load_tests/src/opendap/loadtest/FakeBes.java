@@ -0,0 +1,675 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.loadtest;
+
+import opendap.bes.BESError;
+import opendap.bes.BESResource;
+import opendap.bes.BesApi;
+import opendap.io.Chunk;
+import opendap.io.ChunkedInputStream;
+import opendap.io.HyraxStringEncoding;
+import opendap.ppt.PPTSessionProtocol;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.Namespace;
+import org.jdom.input.SAXBuilder;
+import org.jdom.output.XMLOutputter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in for the BES that speaks just enough of the PPT protocol to let
+ * the OLFS run against it. FakeBes performs the PPTSessionProtocol handshake,
+ * reads chunked request documents and answers them with canned showNode,
+ * showBesKey, showVersion, showStatus, DMR/DDS/DAS and data responses.
+ * <p>
+ * The size and latency of the responses are configurable and faults can be
+ * injected at a fixed rate: BES errors, stalled responses and connections
+ * that are dropped part way through a response. Dataset names that contain
+ * "notfound" or "forbidden" always produce the corresponding BES error so
+ * that load scripts can mix error paths in deterministically.
+ * <p>
+ * FakeBes can be run in-process (see {@link #start()}) or from the command
+ * line via {@link #main(String[])}.
+ */
+public class FakeBes implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(FakeBes.class);
+
+    private static final Namespace BES_NS = opendap.namespaces.BES.BES_NS;
+    private static final String DAP4_NAMESPACE_STRING = "http://xml.opendap.org/ns/DAP/4.0#";
+
+    public static final int DEFAULT_PORT = 10022;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private Thread acceptThread;
+    private volatile boolean running;
+
+    private final String lastModified;
+    private final byte[] fill;
+
+    private volatile long latency;
+    private volatile long latencyJitter;
+    private volatile long dataSize;
+    private volatile int variableCount;
+    private volatile int catalogSize;
+    private volatile double errorRate;
+    private volatile double dropRate;
+    private volatile double stallRate;
+    private volatile long stallTime;
+
+    private final AtomicInteger openConnections;
+    private final AtomicLong connections;
+    private final AtomicLong requests;
+    private final AtomicLong errors;
+    private final AtomicLong drops;
+    private final AtomicLong stalls;
+    private final AtomicLong bytesSent;
+
+
+    /**
+     * @param port The port on which to listen. A value of 0 selects a free
+     *             ephemeral port, see {@link #getPort()}.
+     * @throws IOException When the server socket cannot be bound.
+     */
+    public FakeBes(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 256);
+        workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "FakeBes-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        running = false;
+
+        // A fixed modification time keeps the OLFS caches and conditional
+        // GET handling stable for the life of the server.
+        lastModified = new SimpleDateFormat(BESResource.BESDateFormat).format(new Date());
+        fill = new byte[Chunk.DEFAULT_SIZE];
+        for (int i = 0; i < fill.length; i++)
+            fill[i] = (byte) i;
+
+        latency = 0;
+        latencyJitter = 0;
+        dataSize = 1024 * 1024;
+        variableCount = 10;
+        catalogSize = 100;
+        errorRate = 0.0;
+        dropRate = 0.0;
+        stallRate = 0.0;
+        stallTime = 30000;
+
+        openConnections = new AtomicInteger(0);
+        connections = new AtomicLong(0);
+        requests = new AtomicLong(0);
+        errors = new AtomicLong(0);
+        drops = new AtomicLong(0);
+        stalls = new AtomicLong(0);
+        bytesSent = new AtomicLong(0);
+    }
+
+    public int getPort() { return serverSocket.getLocalPort(); }
+
+    /** @param ms Fixed delay added before each response is sent. */
+    public void setLatency(long ms) { latency = Math.max(0, ms); }
+
+    /** @param ms Upper bound of a uniformly distributed delay added to the fixed latency. */
+    public void setLatencyJitter(long ms) { latencyJitter = Math.max(0, ms); }
+
+    /** @param bytes Size of data responses and of the dataset size reported by showNode. */
+    public void setDataSize(long bytes) { dataSize = Math.max(0, bytes); }
+
+    /** @param count Number of variables in the DMR, DDS and DAS responses. */
+    public void setVariableCount(int count) { variableCount = Math.max(0, count); }
+
+    /** @param count Number of items listed in a showNode response for a collection. */
+    public void setCatalogSize(int count) { catalogSize = Math.max(0, count); }
+
+    /** @param rate Fraction (0 to 1) of requests answered with a BES internal error. */
+    public void setErrorRate(double rate) { errorRate = rate; }
+
+    /** @param rate Fraction (0 to 1) of requests whose connection is dropped mid-response. */
+    public void setDropRate(double rate) { dropRate = rate; }
+
+    /**
+     * @param rate Fraction (0 to 1) of requests that stall before responding.
+     * @param ms How long a stalled request waits.
+     */
+    public void setStall(double rate, long ms) {
+        stallRate = rate;
+        stallTime = Math.max(0, ms);
+    }
+
+
+    public void start() {
+        running = true;
+        acceptThread = new Thread(this, "FakeBes-accept-" + getPort());
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log.info("FakeBes listening on port {}", getPort());
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.error("Failed to close server socket. Message: {}", e.getMessage());
+        }
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS))
+                log.warn("Some FakeBes connections did not shut down in time.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("FakeBes stopped. {}", getStatus());
+    }
+
+    public String getStatus() {
+        return "connections: " + connections.get() +
+                " open: " + openConnections.get() +
+                " requests: " + requests.get() +
+                " errors: " + errors.get() +
+                " drops: " + drops.get() +
+                " stalls: " + stalls.get() +
+                " bytesSent: " + bytesSent.get();
+    }
+
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                workers.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running)
+                    log.error("Failed to accept connection. Message: {}", e.getMessage());
+            }
+        }
+    }
+
+
+    private void serve(Socket socket) {
+        openConnections.incrementAndGet();
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream rawIn = new BufferedInputStream(socket.getInputStream());
+            OutputStream rawOut = new BufferedOutputStream(socket.getOutputStream(), Chunk.DEFAULT_SIZE);
+
+            if (!handshake(rawIn, rawOut))
+                return;
+
+            ChunkedInputStream cis = new ChunkedInputStream(rawIn);
+            boolean open = true;
+            while (open && running) {
+                ByteArrayOutputStream request = new ByteArrayOutputStream();
+                cis.readChunkedMessage(request, request);
+                if (request.size() == 0) {
+                    // The client sent the PPT exit extension.
+                    break;
+                }
+                open = respond(request.toByteArray(), rawOut);
+            }
+        }
+        catch (SocketException e) {
+            log.debug("Connection closed by client. Message: {}", e.getMessage());
+        }
+        catch (IOException e) {
+            log.debug("Connection ended. Message: {}", e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            openConnections.decrementAndGet();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Failed to close socket. Message: {}", e.getMessage());
+            }
+        }
+    }
+
+
+    private boolean handshake(InputStream in, OutputStream out) throws IOException {
+        byte[] expected = PPTSessionProtocol.PPT_CLIENT_TESTING_CONNECTION.getBytes(HyraxStringEncoding.getCharset());
+        byte[] received = new byte[expected.length];
+        int total = 0;
+        while (total < received.length) {
+            int n = in.read(received, total, received.length - total);
+            if (n < 0)
+                return false;
+            total += n;
+        }
+        boolean ok = Arrays.equals(expected, received);
+        String reply = ok ? PPTSessionProtocol.PPT_SERVER_CONNECTION_OK : PPTSessionProtocol.PPT_PROTOCOL_UNDEFINED;
+        out.write(reply.getBytes(HyraxStringEncoding.getCharset()));
+        out.flush();
+        if (!ok)
+            log.error("Client sent an unrecognized handshake: '{}'", new String(received, HyraxStringEncoding.getCharset()));
+        return ok;
+    }
+
+
+    /**
+     * Answers a single request document.
+     *
+     * @return False if the connection should be dropped.
+     */
+    private boolean respond(byte[] requestBytes, OutputStream out) throws IOException, InterruptedException {
+        requests.incrementAndGet();
+
+        Element request;
+        try {
+            Document doc = new SAXBuilder().build(new ByteArrayInputStream(requestBytes));
+            request = doc.getRootElement();
+        } catch (JDOMException e) {
+            sendError(out, null, BESError.USER_SYNTAX_ERROR, "Unable to parse request document. " + e.getMessage());
+            return true;
+        }
+        String reqID = request.getAttributeValue("reqID");
+
+        Element command = null;
+        String dataset = null;
+        for (Object o : request.getChildren()) {
+            Element e = (Element) o;
+            String name = e.getName();
+            if (name.equals("setContainer")) {
+                dataset = e.getTextTrim();
+            }
+            else if (!name.equals("setContext") && !name.equals("define")) {
+                command = e;
+            }
+        }
+        if (command == null) {
+            sendError(out, reqID, BESError.USER_SYNTAX_ERROR, "Request contained no command.");
+            return true;
+        }
+        if (command.getAttributeValue("node") != null)
+            dataset = command.getAttributeValue("node");
+
+        long delay = latency;
+        if (latencyJitter > 0)
+            delay += ThreadLocalRandom.current().nextLong(latencyJitter + 1);
+        if (delay > 0)
+            Thread.sleep(delay);
+
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < dropRate) {
+            drops.incrementAndGet();
+            // Start a chunk and then walk away from it.
+            Chunk.writeChunkHeader(out, fill.length, Chunk.DATA);
+            out.write(fill, 0, fill.length / 2);
+            out.flush();
+            return false;
+        }
+        roll -= dropRate;
+        if (roll < errorRate) {
+            sendError(out, reqID, BESError.INTERNAL_ERROR, "FakeBes injected an internal error.");
+            return true;
+        }
+        roll -= errorRate;
+        if (roll < stallRate) {
+            stalls.incrementAndGet();
+            Thread.sleep(stallTime);
+        }
+
+        if (dataset != null) {
+            if (dataset.contains("notfound")) {
+                sendError(out, reqID, BESError.NOT_FOUND_ERROR, "Failed to locate resource: " + dataset);
+                return true;
+            }
+            if (dataset.contains("forbidden")) {
+                sendError(out, reqID, BESError.FORBIDDEN_ERROR, "Access to " + dataset + " is forbidden.");
+                return true;
+            }
+        }
+
+        switch (command.getName()) {
+            case "showNode":
+                sendXml(out, reqID, showNode(dataset == null ? "/" : dataset));
+                break;
+            case BesApi.SHOW_BES_KEY:
+                sendXml(out, reqID, showBesKey(command.getAttributeValue("key")));
+                break;
+            case "showVersion":
+                sendXml(out, reqID, showVersion());
+                break;
+            case "showStatus":
+                sendXml(out, reqID, showStatus());
+                break;
+            case "get":
+                sendGet(out, command.getAttributeValue("type"), dataset);
+                break;
+            default:
+                sendError(out, reqID, BESError.USER_SYNTAX_ERROR, "FakeBes does not implement the command '" + command.getName() + "'");
+                break;
+        }
+        return true;
+    }
+
+
+    private Element showNode(String node) {
+        Element showNode = new Element("showNode", BES_NS);
+        String name = node.substring(node.lastIndexOf('/') + 1);
+        boolean isCollection = node.endsWith("/") || !name.contains(".");
+
+        if (isCollection) {
+            Element n = new Element("node", BES_NS);
+            n.setAttribute("name", node);
+            n.setAttribute("lastModified", lastModified);
+            n.setAttribute("count", Integer.toString(catalogSize));
+            for (int i = 0; i < catalogSize; i++) {
+                Element item = new Element("item", BES_NS);
+                item.setAttribute("name", String.format("granule_%06d.nc", i));
+                item.setAttribute("type", "leaf");
+                item.setAttribute("isData", "true");
+                item.setAttribute("size", Long.toString(dataSize));
+                item.setAttribute("lastModified", lastModified);
+                n.addContent(item);
+            }
+            showNode.addContent(n);
+        }
+        else {
+            Element item = new Element("item", BES_NS);
+            item.setAttribute("name", node);
+            item.setAttribute("type", "leaf");
+            item.setAttribute("isData", Boolean.toString(!name.endsWith(".txt")));
+            item.setAttribute("size", Long.toString(dataSize));
+            item.setAttribute("lastModified", lastModified);
+            showNode.addContent(item);
+        }
+        return showNode;
+    }
+
+    private Element showBesKey(String key) {
+        Element showBesKey = new Element(BesApi.SHOW_BES_KEY, BES_NS);
+        Element k = new Element("key", BES_NS);
+        k.setText(key);
+        showBesKey.addContent(k);
+
+        String[] values;
+        if (BesApi.DEFAULT_BES_CATALOG_TYPE_MATCH_KEY.equals(key)) {
+            values = new String[]{"nc:.*\\.nc(\\.bz2|\\.gz|\\.Z)?$;", "h5:.*\\.(h5|he5|HDF5)(\\.bz2|\\.gz|\\.Z)?$;"};
+        }
+        else if (BesApi.BES_SERVER_ADMINISTRATOR_KEY.equals(key)) {
+            values = new String[]{"organization:OPeNDAP Load Test", "email:support@localhost"};
+        }
+        else if (BesApi.BES_SUPPORT_EMAIL_KEY.equals(key)) {
+            values = new String[]{"support@localhost"};
+        }
+        else {
+            values = new String[0];
+        }
+        for (String v : values) {
+            Element value = new Element(BesApi.VALUE, BES_NS);
+            value.setText(v);
+            showBesKey.addContent(value);
+        }
+        return showBesKey;
+    }
+
+    private Element showVersion() {
+        Element showVersion = new Element("showVersion", BES_NS);
+        Element bes = new Element("library", BES_NS);
+        bes.setAttribute("name", "bes");
+        bes.setText("fake");
+        showVersion.addContent(bes);
+        Element module = new Element("module", BES_NS);
+        module.setAttribute("name", "dap-server");
+        module.setText("fake");
+        showVersion.addContent(module);
+        return showVersion;
+    }
+
+
+    private Element showStatus() {
+        Element showStatus = new Element("showStatus", BES_NS);
+        Element status = new Element("status", BES_NS);
+        status.setText("running");
+        showStatus.addContent(status);
+        return showStatus;
+    }
+
+
+    private void sendGet(OutputStream out, String type, String dataset) throws IOException {
+        String name = dataset == null ? "dataset" : dataset.substring(dataset.lastIndexOf('/') + 1);
+        if (type == null)
+            type = "";
+        switch (type) {
+            case "dmr":
+            case "ddx":
+                sendText(out, dmr(name));
+                break;
+            case "dds":
+                sendText(out, dds(name));
+                break;
+            case "das":
+                sendText(out, das());
+                break;
+            default:
+                // dap, dods, stream, netcdf and the other data responses
+                // are all opaque to the OLFS, so filler bytes will do.
+                sendData(out, dataSize);
+                break;
+        }
+    }
+
+    private long dimensionSize(){
+        return variableCount > 0 ? Math.max(1, dataSize / 4 / variableCount) : 1;
+    }
+
+    private String dmr(String name) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n");
+        sb.append("<Dataset xmlns=\"").append(DAP4_NAMESPACE_STRING).append("\" dapVersion=\"4.0\" dmrVersion=\"1.0\" name=\"")
+                .append(name).append("\">\n");
+        sb.append("    <Dimension name=\"dim0\" size=\"").append(dimensionSize()).append("\"/>\n");
+        for (int i = 0; i < variableCount; i++) {
+            sb.append("    <Float32 name=\"var").append(i).append("\">\n");
+            sb.append("        <Dim name=\"/dim0\"/>\n");
+            sb.append("        <Attribute name=\"long_name\" type=\"String\"><Value>Variable ").append(i).append("</Value></Attribute>\n");
+            sb.append("    </Float32>\n");
+        }
+        sb.append("</Dataset>\n");
+        return sb.toString();
+    }
+
+    private String dds(String name) {
+        StringBuilder sb = new StringBuilder("Dataset {\n");
+        for (int i = 0; i < variableCount; i++) {
+            sb.append("    Float32 var").append(i).append("[dim0 = ").append(dimensionSize()).append("];\n");
+        }
+        sb.append("} ").append(name).append(";\n");
+        return sb.toString();
+    }
+
+    private String das() {
+        StringBuilder sb = new StringBuilder("Attributes {\n");
+        for (int i = 0; i < variableCount; i++) {
+            sb.append("    var").append(i).append(" {\n");
+            sb.append("        String long_name \"Variable ").append(i).append("\";\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+
+    private void sendXml(OutputStream out, String reqID, Element content) throws IOException {
+        Element response = new Element("response", BES_NS);
+        if (reqID != null)
+            response.setAttribute("reqID", reqID);
+        response.addContent(content);
+        sendText(out, new XMLOutputter().outputString(new Document(response)));
+    }
+
+    private void sendError(OutputStream out, String reqID, int type, String message) throws IOException {
+        errors.incrementAndGet();
+
+        Element besError = new Element(BESError.BES_ERROR, BES_NS);
+        Element t = new Element("Type", BES_NS);
+        t.setText(Integer.toString(type));
+        besError.addContent(t);
+        Element m = new Element("Message", BES_NS);
+        m.setText(message);
+        besError.addContent(m);
+        Element a = new Element("Administrator", BES_NS);
+        a.setText("support@localhost");
+        besError.addContent(a);
+
+        Element response = new Element("response", BES_NS);
+        if (reqID != null)
+            response.setAttribute("reqID", reqID);
+        response.addContent(besError);
+
+        byte[] status = (Chunk.STATUS_EXTENSION + Chunk.ERROR_STATUS + ";").getBytes(HyraxStringEncoding.getCharset());
+        Chunk.writeChunkHeader(out, status.length, Chunk.EXTENSION);
+        out.write(status);
+        byte[] body = new XMLOutputter().outputString(new Document(response)).getBytes(HyraxStringEncoding.getCharset());
+        writeData(out, body, body.length);
+        Chunk.writeClosingChunkHeader(out);
+        bytesSent.addAndGet(status.length + body.length);
+    }
+
+    private void sendText(OutputStream out, String text) throws IOException {
+        byte[] body = text.getBytes(HyraxStringEncoding.getCharset());
+        writeData(out, body, body.length);
+        Chunk.writeClosingChunkHeader(out);
+        bytesSent.addAndGet(body.length);
+    }
+
+    private void sendData(OutputStream out, long size) throws IOException {
+        long remaining = size;
+        while (remaining > 0) {
+            int len = (int) Math.min(fill.length, remaining);
+            Chunk.writeChunkHeader(out, len, Chunk.DATA);
+            out.write(fill, 0, len);
+            remaining -= len;
+        }
+        Chunk.writeClosingChunkHeader(out);
+        bytesSent.addAndGet(size);
+    }
+
+    private static void writeData(OutputStream out, byte[] body, int length) throws IOException {
+        int off = 0;
+        while (off < length) {
+            int len = Math.min(Chunk.DEFAULT_SIZE, length - off);
+            Chunk.writeChunkHeader(out, len, Chunk.DATA);
+            out.write(body, off, len);
+            off += len;
+        }
+    }
+
+
+
+    private static Options createCmdLineOptions(){
+
+        Options options = new Options();
+
+        options.addOption("p", "port",        true, "Port to listen on. default: " + DEFAULT_PORT);
+        options.addOption("l", "latency",     true, "Fixed response latency in ms. default: 0");
+        options.addOption("j", "jitter",      true, "Maximum random latency added to each response in ms. default: 0");
+        options.addOption("s", "dataSize",    true, "Size of data responses in bytes. default: 1048576");
+        options.addOption("v", "variables",   true, "Number of variables in metadata responses. default: 10");
+        options.addOption("c", "catalogSize", true, "Number of items in a collection's showNode response. default: 100");
+        options.addOption("e", "errorRate",   true, "Fraction of requests answered with a BES error. default: 0");
+        options.addOption("d", "dropRate",    true, "Fraction of requests whose connection is dropped mid-response. default: 0");
+        options.addOption("S", "stallRate",   true, "Fraction of requests that stall before responding. default: 0");
+        options.addOption("T", "stallTime",   true, "How long a stalled request waits in ms. default: 30000");
+        options.addOption("h", "help",        false, "Print this usage statement.");
+
+        return options;
+    }
+
+
+    /**
+     * Runs FakeBes until the process is terminated.
+     *
+     * @param args Command line arguments as defined by createCmdLineOptions()
+     */
+    public static void main(String[] args) throws Exception {
+
+        Options options = createCmdLineOptions();
+        CommandLineParser parser = new PosixParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption("h")) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.setWidth(120);
+            formatter.printHelp("FakeBes", options);
+            return;
+        }
+
+        final FakeBes bes = new FakeBes(Integer.parseInt(cmd.getOptionValue("p", Integer.toString(DEFAULT_PORT))));
+        bes.setLatency(Long.parseLong(cmd.getOptionValue("l", "0")));
+        bes.setLatencyJitter(Long.parseLong(cmd.getOptionValue("j", "0")));
+        bes.setDataSize(Long.parseLong(cmd.getOptionValue("s", "1048576")));
+        bes.setVariableCount(Integer.parseInt(cmd.getOptionValue("v", "10")));
+        bes.setCatalogSize(Integer.parseInt(cmd.getOptionValue("c", "100")));
+        bes.setErrorRate(Double.parseDouble(cmd.getOptionValue("e", "0")));
+        bes.setDropRate(Double.parseDouble(cmd.getOptionValue("d", "0")));
+        bes.setStall(Double.parseDouble(cmd.getOptionValue("S", "0")), Long.parseLong(cmd.getOptionValue("T", "30000")));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(bes::stop));
+        bes.start();
+
+        while (true) {
+            Thread.sleep(10000);
+            log.info(bes.getStatus());
+        }
+    }
+}
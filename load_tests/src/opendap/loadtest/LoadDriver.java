@@ -0,0 +1,387 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.loadtest;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives a weighted mix of HTTP requests at an OLFS and reports throughput
+ * and latency percentiles, overall and for each entry in the mix.
+ * <p>
+ * The mix is read from a script file with one entry per line:
+ * <pre>
+ *     # weight  path                                   [label]
+ *     50        /opendap/data/granule_{rand:100}.nc.dmr  dmr
+ *     10        /opendap/data/granule_000001.nc.dap     data
+ * </pre>
+ * Paths are resolved against the base URL. A <code>{rand:N}</code> token is
+ * replaced on each request by a random integer in [0,N), which makes it easy
+ * to control how often requests hit the OLFS caches.
+ * <p>
+ * Each worker thread issues requests back to back (a closed loop), so the
+ * offered load is set by the number of workers. Samples taken during the
+ * warm up period are discarded.
+ */
+public class LoadDriver {
+
+    private static final Pattern RAND_TOKEN = Pattern.compile("\\{rand:(\\d+)}");
+
+    /**
+     * One line of the request mix.
+     */
+    static class Entry {
+        final int weight;
+        final String path;
+        final String label;
+
+        Entry(int weight, String path, String label) {
+            this.weight = weight;
+            this.path = path;
+            this.label = label;
+        }
+
+        String resolve(ThreadLocalRandom random) {
+            Matcher m = RAND_TOKEN.matcher(path);
+            if (!m.find())
+                return path;
+            StringBuffer sb = new StringBuffer();
+            do {
+                int bound = Math.max(1, Integer.parseInt(m.group(1)));
+                m.appendReplacement(sb, String.format("%06d", random.nextInt(bound)));
+            } while (m.find());
+            m.appendTail(sb);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Samples collected by a single worker for a single entry. Workers never
+     * share a Stats instance, the results are merged after the run.
+     */
+    static class Stats {
+        long[] latencies = new long[1024];
+        int count = 0;
+        long failures = 0;
+        long bytes = 0;
+        final Map<Integer, Long> statusCounts = new TreeMap<>();
+
+        void record(long nanos, int status, long bodyBytes) {
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+            bytes += bodyBytes;
+            statusCounts.merge(status, 1L, Long::sum);
+            if (status < 200 || status >= 400)
+                failures++;
+        }
+
+        void merge(Stats other) {
+            if (count + other.count > latencies.length)
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            failures += other.failures;
+            bytes += other.bytes;
+            for (Map.Entry<Integer, Long> e : other.statusCounts.entrySet())
+                statusCounts.merge(e.getKey(), e.getValue(), Long::sum);
+        }
+    }
+
+
+    private final String baseUrl;
+    private final List<Entry> mix;
+    private final int totalWeight;
+    private int workers;
+    private long duration;
+    private long warmup;
+    private long maxRequests;
+    private int timeout;
+
+    private final AtomicLong issued;
+
+
+    public LoadDriver(String baseUrl, List<Entry> mix) {
+        if (mix.isEmpty())
+            throw new IllegalArgumentException("The request mix is empty.");
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.mix = mix;
+        int w = 0;
+        for (Entry e : mix)
+            w += e.weight;
+        totalWeight = w;
+        workers = 8;
+        duration = 30000;
+        warmup = 5000;
+        maxRequests = 0;
+        timeout = 60000;
+        issued = new AtomicLong(0);
+    }
+
+    public void setWorkers(int count) { workers = Math.max(1, count); }
+    public void setDuration(long ms) { duration = Math.max(0, ms); }
+    public void setWarmup(long ms) { warmup = Math.max(0, ms); }
+    public void setMaxRequests(long count) { maxRequests = Math.max(0, count); }
+    public void setTimeout(int ms) { timeout = Math.max(0, ms); }
+
+
+    /**
+     * Reads a request mix from the passed file.
+     *
+     * @param fileName The script file.
+     * @return The entries of the mix, in file order.
+     * @throws IOException When the file cannot be read or a line is malformed.
+     */
+    public static List<Entry> readScript(String fileName) throws IOException {
+        List<Entry> mix = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split("\\s+");
+            if (fields.length < 2)
+                throw new IOException(fileName + ":" + lineNumber + " Expected '<weight> <path> [label]'");
+            int weight;
+            try {
+                weight = Integer.parseInt(fields[0]);
+            } catch (NumberFormatException e) {
+                throw new IOException(fileName + ":" + lineNumber + " Weight '" + fields[0] + "' is not an integer.");
+            }
+            if (weight > 0)
+                mix.add(new Entry(weight, fields[1], fields.length > 2 ? fields[2] : fields[1]));
+        }
+        return mix;
+    }
+
+
+    private int pick(ThreadLocalRandom random) {
+        int r = random.nextInt(totalWeight);
+        for (int i = 0; i < mix.size(); i++) {
+            r -= mix.get(i).weight;
+            if (r < 0)
+                return i;
+        }
+        return mix.size() - 1;
+    }
+
+
+    /**
+     * Runs the load and prints a report.
+     *
+     * @param report Where to write the report.
+     * @throws InterruptedException When interrupted while waiting for the workers.
+     */
+    public void run(PrintStream report) throws InterruptedException {
+
+        final long start = System.nanoTime();
+        final long measureFrom = start + warmup * 1000000L;
+        final long end = measureFrom + duration * 1000000L;
+        final Stats[][] results = new Stats[workers][];
+
+        Thread[] threads = new Thread[workers];
+        for (int w = 0; w < workers; w++) {
+            final Stats[] stats = new Stats[mix.size()];
+            for (int i = 0; i < stats.length; i++)
+                stats[i] = new Stats();
+            results[w] = stats;
+            threads[w] = new Thread(() -> work(stats, measureFrom, end), "LoadDriver-" + w);
+            threads[w].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        double seconds = (Math.min(System.nanoTime(), end) - measureFrom) / 1e9;
+        if (seconds <= 0)
+            seconds = (System.nanoTime() - start) / 1e9;
+
+        Stats total = new Stats();
+        report.println(String.format("%-24s %9s %7s %10s %9s %9s %9s %9s %9s %9s",
+                "label", "requests", "fail", "req/s", "MB/s", "mean_ms", "p50_ms", "p90_ms", "p99_ms", "max_ms"));
+        for (int i = 0; i < mix.size(); i++) {
+            Stats s = new Stats();
+            for (Stats[] r : results)
+                s.merge(r[i]);
+            report.println(line(mix.get(i).label, s, seconds));
+            total.merge(s);
+        }
+        report.println(line("TOTAL", total, seconds));
+        report.println("HTTP status counts: " + total.statusCounts + " (status 0 is a transport failure)");
+        report.println(String.format("workers: %d  measured: %.1f s  warmup: %.1f s", workers, seconds, warmup / 1e3));
+    }
+
+    private static String line(String label, Stats s, double seconds) {
+        long[] sorted = Arrays.copyOf(s.latencies, s.count);
+        Arrays.sort(sorted);
+        double mean = 0;
+        for (long l : sorted)
+            mean += l;
+        mean = sorted.length > 0 ? mean / sorted.length : 0;
+        return String.format("%-24s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                label.length() > 24 ? label.substring(0, 24) : label,
+                s.count, s.failures,
+                s.count / seconds,
+                s.bytes / seconds / (1024 * 1024),
+                mean / 1e6,
+                percentile(sorted, 0.50) / 1e6,
+                percentile(sorted, 0.90) / 1e6,
+                percentile(sorted, 0.99) / 1e6,
+                (sorted.length > 0 ? sorted[sorted.length - 1] : 0) / 1e6);
+    }
+
+    /**
+     * Nearest-rank percentile of a sorted array.
+     */
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+    }
+
+
+    private void work(Stats[] stats, long measureFrom, long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        byte[] buffer = new byte[64 * 1024];
+
+        while (System.nanoTime() < end) {
+            if (maxRequests > 0 && issued.incrementAndGet() > maxRequests)
+                break;
+
+            int index = pick(random);
+            String url = baseUrl + mix.get(index).resolve(random);
+
+            long t0 = System.nanoTime();
+            int status = 0;
+            long bodyBytes = 0;
+            HttpURLConnection connection = null;
+            try {
+                connection = (HttpURLConnection) new URL(url).openConnection();
+                connection.setConnectTimeout(timeout);
+                connection.setReadTimeout(timeout);
+                status = connection.getResponseCode();
+                InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (is != null) {
+                    try {
+                        int n;
+                        while ((n = is.read(buffer)) >= 0)
+                            bodyBytes += n;
+                    } finally {
+                        is.close();
+                    }
+                }
+            } catch (IOException e) {
+                // Counted as status 0. Drop the connection rather than
+                // returning it to the keep-alive cache.
+                status = 0;
+                if (connection != null)
+                    connection.disconnect();
+            }
+            long t1 = System.nanoTime();
+
+            if (t0 >= measureFrom && t1 <= end)
+                stats[index].record(t1 - t0, status, bodyBytes);
+        }
+    }
+
+
+
+    private static Options createCmdLineOptions(){
+
+        Options options = new Options();
+
+        options.addOption("u", "url",      true, "Base URL of the OLFS. default: http://localhost:8080");
+        options.addOption("s", "script",   true, "Request mix script. Without one, the paths given as arguments are used with equal weight.");
+        options.addOption("c", "workers",  true, "Number of concurrent workers. default: 8");
+        options.addOption("d", "duration", true, "Measured duration in seconds. default: 30");
+        options.addOption("w", "warmup",   true, "Warm up period in seconds, not measured. default: 5");
+        options.addOption("n", "requests", true, "Stop after this many requests, 0 for no limit. default: 0");
+        options.addOption("t", "timeOut",  true, "Connect and read timeout in seconds. default: 60");
+        options.addOption("h", "help",     false, "Print this usage statement.");
+
+        return options;
+    }
+
+
+    /**
+     * @param args Command line arguments as defined by createCmdLineOptions()
+     */
+    public static void main(String[] args) throws Exception {
+
+        Options options = createCmdLineOptions();
+        CommandLineParser parser = new PosixParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption("h")) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.setWidth(120);
+            formatter.printHelp("LoadDriver [options] [path ...]", options);
+            return;
+        }
+
+        List<Entry> mix;
+        if (cmd.hasOption("s")) {
+            mix = readScript(cmd.getOptionValue("s"));
+        }
+        else {
+            mix = new ArrayList<>();
+            for (String path : cmd.getArgs())
+                mix.add(new Entry(1, path, path));
+        }
+
+        LoadDriver driver = new LoadDriver(cmd.getOptionValue("u", "http://localhost:8080"), mix);
+        driver.setWorkers(Integer.parseInt(cmd.getOptionValue("c", "8")));
+        driver.setDuration(Long.parseLong(cmd.getOptionValue("d", "30")) * 1000);
+        driver.setWarmup(Long.parseLong(cmd.getOptionValue("w", "5")) * 1000);
+        driver.setMaxRequests(Long.parseLong(cmd.getOptionValue("n", "0")));
+        driver.setTimeout(Integer.parseInt(cmd.getOptionValue("t", "60")) * 1000);
+
+        driver.run(System.out);
+    }
+}
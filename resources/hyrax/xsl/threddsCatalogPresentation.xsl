@@ -43,6 +43,7 @@
     <xsl:param name="remoteHost" />
     <xsl:param name="remoteRelativeURL" />
     <xsl:param name="remoteCatalog" />
+    <xsl:param name="page" />
     <xsl:param name="userId" />
     <xsl:param name="loginLink" />
     <xsl:param name="logoutLink" />
@@ -319,6 +320,11 @@
                         </xsl:when>
                         <!-- -->
 
+                        <!-- Is it another page of a catalog ('catalog.xml?page=n')? -->
+                        <xsl:when test="contains(@xlink:href,'.xml?')">
+                            <a href="{concat(substring-before(./@xlink:href,'.xml?'),'.html?',substring-after(./@xlink:href,'.xml?'))}" ><xsl:value-of select="./@name"/> /</a>
+                        </xsl:when>
+
                         <!-- Does it end in '.xml'? --> <!--Then replace that with '.html'   -->
                         <xsl:when test="substring(./@xlink:href,string-length(./@xlink:href) - 3)='.xml'">
                             <!--Then replace that with '.html'   -->
@@ -538,7 +544,7 @@
                                 <xsl:attribute name="href">?browseDataset=<xsl:value-of select="$datasetPositionInDocument"/>&amp;<xsl:value-of select="$remoteCatalog"/></xsl:attribute>
                             </xsl:if>
                             <xsl:if test="not($remoteCatalog)">
-                                <xsl:attribute name="href">?dataset=<xsl:value-of select="$datasetPositionInDocument"/></xsl:attribute>
+                                <xsl:attribute name="href">?<xsl:if test="$page">page=<xsl:value-of select="$page"/>&amp;</xsl:if>dataset=<xsl:value-of select="$datasetPositionInDocument"/></xsl:attribute>
                             </xsl:if>
 
                             <xsl:choose>
@@ -575,7 +581,7 @@
                             </xsl:if>
                             <xsl:if test="not($remoteCatalog)">
                                 <xsl:attribute name="href">
-                                    ?dataset=<xsl:value-of select="$datasetPositionInDocument"/>
+                                    ?<xsl:if test="$page">page=<xsl:value-of select="$page"/>&amp;</xsl:if>dataset=<xsl:value-of select="$datasetPositionInDocument"/>
                                 </xsl:attribute>
                             </xsl:if>
 
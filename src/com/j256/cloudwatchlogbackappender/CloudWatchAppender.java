@@ -4,9 +4,11 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.regex.Pattern;
 
 import com.amazonaws.AmazonServiceException;
@@ -51,7 +53,13 @@ import org.slf4j.Marker;
 
 /**
  * CloudWatch log appender for logback.
- * 
+ *
+ * Logging threads never wait in {@link #append(ILoggingEvent)}. Each event goes into a lock-free ring buffer owned by
+ * one of the writer threads (see {@link #setWriterThreads(int)}), each of which writes its own log stream. When a
+ * buffer is full the event is dropped, or handed to the emergency appender if the overflow policy is "emergency". Low
+ * level events can also be sampled once a buffer passes {@link #setSampleThresholdPercent(int)} so that warnings and
+ * errors still have room. Batches are limited by both event count and bytes to stay within the PutLogEvents limits.
+ *
  * @author graywatson
  */
 public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
@@ -59,14 +67,26 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 
 	/** size of batch to write to cloudwatch api */
 	private static final int DEFAULT_MAX_BATCH_SIZE = 128;
+	/** most events that cloudwatch accepts in one put request */
+	private static final int MAX_BATCH_SIZE_LIMIT = 10000;
+	/** most bytes that cloudwatch accepts in one put request */
+	private static final int DEFAULT_MAX_BATCH_BYTES = 1048576;
+	/** bytes that cloudwatch adds to the size of each event's message when summing the batch size */
+	private static final int EVENT_OVERHEAD_BYTES = 26;
 	/** time in millis to wait until we have a bunch of events to write */
 	private static final long DEFAULT_MAX_BATCH_TIME_MILLIS = 5000;
-	/** internal event queue size before we drop log requests on the floor */
+	/** longest a writer sleeps before looking at its buffer again */
+	private static final long WRITER_IDLE_MILLIS = 50;
+	/** internal event buffer size, per writer, before we drop log requests on the floor */
 	private static final int DEFAULT_INTERNAL_QUEUE_SIZE = 8192;
+	/** number of writer threads, and log streams */
+	private static final int DEFAULT_WRITER_THREADS = 1;
+	/** buffer fill percentage at which events below WARN are sampled, 100 turns sampling off */
+	private static final int DEFAULT_SAMPLE_THRESHOLD_PERCENT = 100;
+	/** keep one in this many of the sampled events */
+	private static final int DEFAULT_SAMPLE_ONE_IN = 10;
 	/** create log destination group and stream when we startup */
 	private static final boolean DEFAULT_CREATE_LOG_DESTS = true;
-	/** max time to wait in millis before dropping a log event on the floor */
-	private static final long DEFAULT_MAX_QUEUE_WAIT_TIME_MILLIS = 100;
 	/** time to wait to initialize which helps when application is starting up */
 	private static final long DEFAULT_INITIAL_WAIT_TIME_MILLIS = 0;
 	/** how many times to retry a cloudwatch request */
@@ -81,6 +101,16 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 	public static final boolean DEFAULT_PRINT_REJECTED_EVENTS = false;
 	public static final Pattern LOG_GROUP_PATTERN = Pattern.compile("[\\.\\-_/#A-Za-z0-9]+");
 
+	/**
+	 * What to do with an event when the writer's buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/** count the event and drop it */
+		DROP,
+		/** count the event and write it to the emergency appender on the logging thread */
+		EMERGENCY,
+	}
+
 	private String accessKeyId;
 	private String secretKey;
 	private String region;
@@ -89,9 +119,13 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 	private Layout<ILoggingEvent> layout;
 	private Appender<ILoggingEvent> emergencyAppender;
 	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+	private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
 	private long maxBatchTimeMillis = DEFAULT_MAX_BATCH_TIME_MILLIS;
-	private long maxQueueWaitTimeMillis = DEFAULT_MAX_QUEUE_WAIT_TIME_MILLIS;
 	private int internalQueueSize = DEFAULT_INTERNAL_QUEUE_SIZE;
+	private int writerThreads = DEFAULT_WRITER_THREADS;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+	private int sampleThresholdPercent = DEFAULT_SAMPLE_THRESHOLD_PERCENT;
+	private int sampleOneIn = DEFAULT_SAMPLE_ONE_IN;
 	private boolean createLogDests = DEFAULT_CREATE_LOG_DESTS;
 	private long initialWaitTimeMillis = DEFAULT_INITIAL_WAIT_TIME_MILLIS;
 	private int maxEventMessageSize = DEFAULT_MAX_EVENT_MESSAGE_SIZE;
@@ -99,16 +133,27 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 	private boolean copyEvents = DEFAULT_COPY_EVENTS;
 	private boolean printRejectedEvents = DEFAULT_PRINT_REJECTED_EVENTS;
 
-	private AWSLogs awsLogsClient;
+	private volatile AWSLogs awsLogsClient;
 	private AWSLogs testAwsLogsClient;
 	private AmazonEC2 testAmazonEc2Client;
-	private volatile long eventsWrittenCount;
-
-	private BlockingQueue<ILoggingEvent> loggingEventQueue;
-	private Thread cloudWatchWriterThread;
+	private final Object logsClientLock = new Object();
+	private boolean logsClientInitialized;
+	private volatile boolean verifyLogStreams;
+
+	private final AtomicLong eventsWrittenCount = new AtomicLong();
+	private final LongAdder eventsDroppedCount = new LongAdder();
+	private final LongAdder eventsSampledCount = new LongAdder();
+	private final AtomicLong putCount = new AtomicLong();
+	private final AtomicLong putMillisTotal = new AtomicLong();
+	private final AtomicLong putMillisMax = new AtomicLong();
+	private final AtomicLong eventLagMillisMax = new AtomicLong();
+
+	private CloudWatchWriter[] writers;
+	private Thread[] cloudWatchWriterThreads;
+	private int sampleThresholdSize;
 	private final ThreadLocal<Boolean> stopMessagesThreadLocal = new ThreadLocal<Boolean>();
 	private volatile boolean warningMessagePrinted;
-	private final InputLogEventComparator inputLogEventComparator = new InputLogEventComparator();
+	private final EventTimeStampComparator eventTimeStampComparator = new EventTimeStampComparator();
 
 	public CloudWatchAppender() {
 		// for spring
@@ -143,12 +188,33 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			throw new IllegalStateException("Layout was not set for appender");
 		}
 
-		loggingEventQueue = new ArrayBlockingQueue<ILoggingEvent>(internalQueueSize);
-
-		// create our writer thread in the background
-		cloudWatchWriterThread = new Thread(new CloudWatchWriter(), getClass().getSimpleName());
-		cloudWatchWriterThread.setDaemon(true);
-		cloudWatchWriterThread.start();
+		if (writerThreads < 1) {
+			throw new IllegalStateException("Writer threads must be at least 1: " + writerThreads);
+		}
+		if (sampleOneIn < 1) {
+			throw new IllegalStateException("Sample one-in must be at least 1: " + sampleOneIn);
+		}
+		maxBatchSize = Math.max(1, Math.min(maxBatchSize, MAX_BATCH_SIZE_LIMIT));
+		maxBatchBytes = Math.min(maxBatchBytes, DEFAULT_MAX_BATCH_BYTES);
+
+		// create our writer threads in the background, each with its own buffer and log stream
+		writers = new CloudWatchWriter[writerThreads];
+		cloudWatchWriterThreads = new Thread[writerThreads];
+		for (int i = 0; i < writerThreads; i++) {
+			writers[i] = new CloudWatchWriter(i, new EventRingBuffer<ILoggingEvent>(internalQueueSize));
+		}
+		int capacity = writers[0].buffer.capacity();
+		sampleThresholdSize = (int) ((long) capacity * Math.min(sampleThresholdPercent, 100) / 100);
+		if (sampleThresholdPercent >= 100) {
+			// never reached
+			sampleThresholdSize = capacity + 1;
+		}
+		for (int i = 0; i < writerThreads; i++) {
+			String threadName = getClass().getSimpleName() + (writerThreads == 1 ? "" : "-" + i);
+			cloudWatchWriterThreads[i] = new Thread(writers[i], threadName);
+			cloudWatchWriterThreads[i].setDaemon(true);
+			cloudWatchWriterThreads[i].start();
+		}
 
 		if (emergencyAppender != null && !emergencyAppender.isStarted()) {
 			emergencyAppender.start();
@@ -162,9 +228,13 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			return;
 		}
 
-		cloudWatchWriterThread.interrupt();
+		for (Thread thread : cloudWatchWriterThreads) {
+			thread.interrupt();
+		}
 		try {
-			cloudWatchWriterThread.join(1000);
+			for (Thread thread : cloudWatchWriterThreads) {
+				thread.join(1000);
+			}
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 		}
@@ -180,7 +250,8 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 	protected void append(ILoggingEvent loggingEvent) {
 
 		// check wiring
-		if (loggingEventQueue == null) {
+		CloudWatchWriter[] writers = this.writers;
+		if (writers == null) {
 			if (!warningMessagePrinted) {
 				System.err.println(getClass().getSimpleName() + " not started correctly, ignoring all log messages");
 				warningMessagePrinted = true;
@@ -194,6 +265,24 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			return;
 		}
 
+		// the same thread always uses the same writer so its events stay in order within a log stream
+		CloudWatchWriter writer;
+		if (writers.length == 1) {
+			writer = writers[0];
+		} else {
+			writer = writers[(int) (Thread.currentThread().getId() % writers.length)];
+		}
+
+		// decide about sampling before we spend any time copying the event
+		if (writer.buffer.size() >= sampleThresholdSize) {
+			Level level = loggingEvent.getLevel();
+			if ((level == null || !level.isGreaterOrEqual(Level.WARN))
+					&& ThreadLocalRandom.current().nextInt(sampleOneIn) != 0) {
+				eventsSampledCount.increment();
+				return;
+			}
+		}
+
 		String message = loggingEvent.getMessage();
 		boolean copied = false;
 		if (message != null && message.length() > maxEventMessageSize) {
@@ -218,13 +307,11 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			}
 		}
 
-		try {
-			if (!loggingEventQueue.offer(loggingEvent, maxQueueWaitTimeMillis, TimeUnit.MILLISECONDS)) {
+		if (!writer.buffer.offer(loggingEvent)) {
+			eventsDroppedCount.increment();
+			if (overflowPolicy == OverflowPolicy.EMERGENCY) {
 				appendToEmergencyAppender(loggingEvent);
 			}
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			appendToEmergencyAppender(loggingEvent);
 		}
 	}
 
@@ -268,16 +355,48 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 		this.maxBatchTimeMillis = maxBatchTimeMillis;
 	}
 
-	// not-required, default is DEFAULT_MAX_QUEUE_WAIT_TIME_MILLIS
+	// not-required, default is DEFAULT_MAX_BATCH_BYTES which is also the most allowed
+	public void setMaxBatchBytes(int maxBatchBytes) {
+		this.maxBatchBytes = maxBatchBytes;
+	}
+
+	/**
+	 * @deprecated append() no longer waits for room in the buffer, see {@link #setOverflowPolicy(String)}. This is
+	 *             kept so that existing configurations still load.
+	 */
+	@Deprecated
 	public void setMaxQueueWaitTimeMillis(long maxQueueWaitTimeMillis) {
-		this.maxQueueWaitTimeMillis = maxQueueWaitTimeMillis;
+		// ignored
 	}
 
-	// not-required, default is DEFAULT_INTERNAL_QUEUE_SIZE
+	// not-required, default is DEFAULT_INTERNAL_QUEUE_SIZE, this is per writer thread
 	public void setInternalQueueSize(int internalQueueSize) {
 		this.internalQueueSize = internalQueueSize;
 	}
 
+	/**
+	 * Not-required, default is DEFAULT_WRITER_THREADS. With more than one writer, each writes its own log stream named
+	 * by adding "-N" to the log stream name.
+	 */
+	public void setWriterThreads(int writerThreads) {
+		this.writerThreads = writerThreads;
+	}
+
+	// not-required, "drop" (the default) or "emergency"
+	public void setOverflowPolicy(String overflowPolicy) {
+		this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase());
+	}
+
+	// not-required, default is DEFAULT_SAMPLE_THRESHOLD_PERCENT which means no sampling
+	public void setSampleThresholdPercent(int sampleThresholdPercent) {
+		this.sampleThresholdPercent = sampleThresholdPercent;
+	}
+
+	// not-required, default is DEFAULT_SAMPLE_ONE_IN
+	public void setSampleOneIn(int sampleOneIn) {
+		this.sampleOneIn = sampleOneIn;
+	}
+
 	// not-required, default is DEFAULT_CREATE_LOG_DESTS
 	public void setCreateLogDests(boolean createLogDests) {
 		this.createLogDests = createLogDests;
@@ -335,9 +454,53 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 		Ec2InstanceNameConverter.setInstanceName(testInstanceName);
 	}
 
-	// for testing purposes
-	long getEventsWrittenCount() {
-		return eventsWrittenCount;
+	/**
+	 * Number of events that were written to cloudwatch.
+	 */
+	public long getEventsWrittenCount() {
+		return eventsWrittenCount.get();
+	}
+
+	/**
+	 * Number of events that were not queued for cloudwatch because the writer's buffer was full.
+	 */
+	public long getEventsDroppedCount() {
+		return eventsDroppedCount.sum();
+	}
+
+	/**
+	 * Number of events that were left out by sampling.
+	 */
+	public long getEventsSampledCount() {
+		return eventsSampledCount.sum();
+	}
+
+	/**
+	 * Number of put-log-events requests made, successful or not.
+	 */
+	public long getPutCount() {
+		return putCount.get();
+	}
+
+	/**
+	 * Total time in millis spent in put-log-events requests, divide by {@link #getPutCount()} for the mean.
+	 */
+	public long getPutMillisTotal() {
+		return putMillisTotal.get();
+	}
+
+	/**
+	 * Longest put-log-events request in millis.
+	 */
+	public long getPutMillisMax() {
+		return putMillisMax.get();
+	}
+
+	/**
+	 * Longest time in millis from an event being logged to it being sent to cloudwatch.
+	 */
+	public long getEventLagMillisMax() {
+		return eventLagMillisMax.get();
 	}
 
 	// for testing purposes
@@ -465,9 +628,19 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 	 */
 	private class CloudWatchWriter implements Runnable {
 
+		private final int index;
+		private final EventRingBuffer<ILoggingEvent> buffer;
 		private String sequenceToken;
 		private String logStreamName;
+		private AWSLogs client;
 		private boolean initialized;
+		private long droppedReported;
+		private long sampledReported;
+
+		public CloudWatchWriter(int index, EventRingBuffer<ILoggingEvent> buffer) {
+			this.index = index;
+			this.buffer = buffer;
+		}
 
 		@Override
 		public void run() {
@@ -475,36 +648,28 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			try {
 				Thread.sleep(initialWaitTimeMillis);
 			} catch (InterruptedException e) {
+				// stopped already, fall through and write what has been buffered
 				Thread.currentThread().interrupt();
-				return;
 			}
 
 			List<ILoggingEvent> events = new ArrayList<ILoggingEvent>(maxBatchSize);
 			Thread thread = Thread.currentThread();
 			while (!thread.isInterrupted()) {
 				long batchTimeout = System.currentTimeMillis() + maxBatchTimeMillis;
-				while (!thread.isInterrupted()) {
-					long timeoutMillis = batchTimeout - System.currentTimeMillis();
-					if (timeoutMillis < 0) {
-						break;
-					}
-					ILoggingEvent loggingEvent;
-					try {
-						loggingEvent = loggingEventQueue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
-					} catch (InterruptedException ex) {
-						Thread.currentThread().interrupt();
-						break;
-					}
-					if (loggingEvent == null) {
-						// wait timed out
-						break;
-					}
-					events.add(loggingEvent);
+				while (true) {
+					buffer.drainTo(events, maxBatchSize - events.size());
 					if (events.size() >= maxBatchSize) {
 						// batch size exceeded
 						break;
 					}
+					long timeoutMillis = batchTimeout - System.currentTimeMillis();
+					if (timeoutMillis <= 0 || thread.isInterrupted()) {
+						break;
+					}
+					// producers never signal us so that append() stays cheap, we look again shortly
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.min(timeoutMillis, WRITER_IDLE_MILLIS)));
 				}
+				addLossReport(events);
 				if (!events.isEmpty()) {
 					writeEvents(events);
 					events.clear();
@@ -516,18 +681,11 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			 */
 
 			events.clear();
-			while (true) {
-				ILoggingEvent event = loggingEventQueue.poll();
-				if (event == null) {
-					// nothing else waiting
-					break;
-				}
-				events.add(event);
-				if (events.size() >= maxBatchSize) {
-					writeEvents(events);
-					events.clear();
-				}
+			while (buffer.drainTo(events, maxBatchSize) > 0) {
+				writeEvents(events);
+				events.clear();
 			}
+			addLossReport(events);
 			if (!events.isEmpty()) {
 				writeEvents(events);
 				events.clear();
@@ -535,6 +693,26 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			// thread quits here
 		}
 
+		/**
+		 * The first writer adds a warning to the batch when events have been dropped or sampled since the last report
+		 * so the gap shows up in cloudwatch itself.
+		 */
+		private void addLossReport(List<ILoggingEvent> events) {
+			if (index != 0) {
+				return;
+			}
+			long dropped = eventsDroppedCount.sum();
+			long sampled = eventsSampledCount.sum();
+			if (dropped == droppedReported && sampled == sampledReported) {
+				return;
+			}
+			events.add(makeEvent(Level.WARN, "Dropped " + (dropped - droppedReported)
+					+ " log events because the buffer was full and sampled out " + (sampled - sampledReported)
+					+ " since the last report", null));
+			droppedReported = dropped;
+			sampledReported = sampled;
+		}
+
 		private void writeEvents(List<ILoggingEvent> events) {
 			String prolog = "CloudWatchWriter.writeEvents() - ";
 
@@ -543,14 +721,15 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 				Exception exception = null;
 				try {
 					stopMessagesThreadLocal.set(true);
-					if (awsLogsClient == null) {
-						createLogsClient();
-					} else {
-						// mostly here for testing
-						logStreamName = buildLogStreamName();
+					client = initLogsClient();
+					logStreamName = buildLogStreamName();
+					System.err.println(prolog + "CloudWatchAppender is using logStream: " + logStreamName);
+					if (client != null && verifyLogStreams) {
+						verifyLogStreamExists(client);
 					}
 				} catch (Exception e) {
 					exception = e;
+					client = null;
 				} finally {
 					stopMessagesThreadLocal.set(false);
 				}
@@ -575,7 +754,7 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 
 			// If we didn't get an aws logs-client then just write to the
 			// emergency appender (if any)
-			if (awsLogsClient == null) {
+			if (client == null) {
 				appendToEmergencyAppender(events);
 				return;
 			}
@@ -583,28 +762,72 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			// We need this in case our RPC calls create log output which we
 			// don't want to then log again
 			stopMessagesThreadLocal.set(true);
-			Exception exception = null;
 			try {
+				// events must be in sorted order according to AWS otherwise an exception is thrown
+				Collections.sort(events, eventTimeStampComparator);
+
+				// split the events into requests that stay under both the count and the bytes limits
 				List<InputLogEvent> logEvents = new ArrayList<InputLogEvent>(events.size());
+				List<ILoggingEvent> batchEvents = new ArrayList<ILoggingEvent>(events.size());
+				int batchBytes = 0;
 				for (ILoggingEvent event : events) {
 					String message = layout.doLayout(event);
-					InputLogEvent logEvent =
-							new InputLogEvent().withTimestamp(event.getTimeStamp()).withMessage(message);
-					logEvents.add(logEvent);
+					int eventBytes = utf8Length(message) + EVENT_OVERHEAD_BYTES;
+					if (eventBytes > maxBatchBytes) {
+						// can never be sent so don't hold up the others
+						appendToEmergencyAppender(event);
+						continue;
+					}
+					if (!logEvents.isEmpty() && batchBytes + eventBytes > maxBatchBytes) {
+						putEvents(logEvents, batchEvents);
+						logEvents.clear();
+						batchEvents.clear();
+						batchBytes = 0;
+					}
+					logEvents.add(new InputLogEvent().withTimestamp(event.getTimeStamp()).withMessage(message));
+					batchEvents.add(event);
+					batchBytes += eventBytes;
 				}
-				// events must be in sorted order according to AWS otherwise an exception is thrown
-				Collections.sort(logEvents, inputLogEventComparator);
+				if (!logEvents.isEmpty()) {
+					putEvents(logEvents, batchEvents);
+				}
+			} catch (Exception e) {
+				// catch everything else to make sure we don't quit the thread
+				List<ILoggingEvent> failed = new ArrayList<ILoggingEvent>(events);
+				failed.add(makeEvent(Level.ERROR, "Exception thrown when laying out " + events.size() + " events", e));
+				appendToEmergencyAppender(failed);
+			} finally {
+				stopMessagesThreadLocal.set(false);
+			}
+		}
 
+		/**
+		 * Write one request's worth of events, handing the source events to the emergency appender if that fails.
+		 */
+		private void putEvents(List<InputLogEvent> logEvents, List<ILoggingEvent> events) {
+			Exception exception = null;
+			long now = System.currentTimeMillis();
+			updateMax(eventLagMillisMax, now - logEvents.get(0).getTimestamp());
+			try {
 				for (int i = 0; i < PUT_REQUEST_RETRY_COUNT; i++) {
 					try {
 						PutLogEventsRequest request = new PutLogEventsRequest(logGroupName, logStreamName, logEvents);
 						if (sequenceToken != null) {
 							request.withSequenceToken(sequenceToken);
 						}
-						PutLogEventsResult result = awsLogsClient.putLogEvents(request);
+						long start = System.currentTimeMillis();
+						PutLogEventsResult result;
+						try {
+							result = client.putLogEvents(request);
+						} finally {
+							long millis = System.currentTimeMillis() - start;
+							putCount.incrementAndGet();
+							putMillisTotal.addAndGet(millis);
+							updateMax(putMillisMax, millis);
+						}
 						sequenceToken = result.getNextSequenceToken();
 						exception = null;
-						eventsWrittenCount += logEvents.size();
+						eventsWrittenCount.addAndGet(logEvents.size());
 						break;
 					} catch (InvalidSequenceTokenException iste) {
 						exception = iste;
@@ -617,18 +840,34 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			} catch (Exception e) {
 				// catch everything else to make sure we don't quit the thread
 				exception = e;
-			} finally {
-				if (exception != null) {
-					// we do this because we don't want to go recursive
-					events.add(makeEvent(Level.ERROR,
-							"Exception thrown when creating logging " + events.size() + " events", exception));
-					appendToEmergencyAppender(events);
+			}
+			if (exception != null) {
+				// we do this because we don't want to go recursive
+				List<ILoggingEvent> failed = new ArrayList<ILoggingEvent>(events);
+				failed.add(makeEvent(Level.ERROR,
+						"Exception thrown when creating logging " + events.size() + " events", exception));
+				appendToEmergencyAppender(failed);
+			}
+		}
+
+		/**
+		 * Create the logs client the first time one of the writers needs it. Returns null if we have no client.
+		 */
+		private AWSLogs initLogsClient() {
+			synchronized (logsClientLock) {
+				if (!logsClientInitialized) {
+					logsClientInitialized = true;
+					if (awsLogsClient == null) {
+						awsLogsClient = createLogsClient();
+						verifyLogStreams = true;
+					}
+					// else mostly here for testing
 				}
-				stopMessagesThreadLocal.set(false);
+				return awsLogsClient;
 			}
 		}
 
-		private void createLogsClient() {
+		private AWSLogs createLogsClient() {
 			String prolog = "CloudWatchWriter.createLogsClient() - ";
 			AWSCredentialsProvider credentialProvider;
 			if (MiscUtils.isBlank(accessKeyId)) {
@@ -671,11 +910,8 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 			} catch (Exception e) {
 				appendEvent(Level.ERROR, "Problems looking up instance-name", e);
 			}
-			logStreamName = buildLogStreamName();
-			System.err.println(prolog + "CloudWatchAppender is using logStream: "+ logStreamName);
 			verifyLogGroupExists(client);
-			verifyLogStreamExists(client);
-			awsLogsClient = client;
+			return client;
 		}
 
 		private void verifyLogGroupExists(AWSLogs client) {
@@ -712,6 +948,10 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 
 		private String buildLogStreamName() {
 			String name = CloudWatchAppender.this.logStreamName;
+			if (writers.length > 1) {
+				// each writer needs its own stream
+				name = name + "-" + index;
+			}
 			if (name.indexOf('%') < 0) {
 				return name;
 			}
@@ -827,24 +1067,41 @@ public class CloudWatchAppender extends UnsynchronizedAppenderBase<ILoggingEvent
 	}
 
 	/**
-	 * Compares a log event by it's timestamp value.
+	 * Number of bytes in the UTF-8 encoding of the string, without encoding it.
 	 */
-	private static class InputLogEventComparator implements Comparator<InputLogEvent> {
-		@Override
-		public int compare(InputLogEvent o1, InputLogEvent o2) {
-			if (o1.getTimestamp() == null) {
-				if (o2.getTimestamp() == null) {
-					return 0;
-				} else {
-					// null - long
-					return -1;
-				}
-			} else if (o2.getTimestamp() == null) {
-				// long - null
-				return 1;
+	private static int utf8Length(String str) {
+		int length = 0;
+		for (int i = 0; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			if (ch < 0x80) {
+				length++;
+			} else if (ch < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(ch) && i + 1 < str.length()
+					&& Character.isLowSurrogate(str.charAt(i + 1))) {
+				length += 4;
+				i++;
 			} else {
-				return o1.getTimestamp().compareTo(o2.getTimestamp());
+				length += 3;
 			}
 		}
+		return length;
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Compares a log event by it's timestamp value. The sort is stable so events from one thread keep their order.
+	 */
+	private static class EventTimeStampComparator implements Comparator<ILoggingEvent> {
+		@Override
+		public int compare(ILoggingEvent o1, ILoggingEvent o2) {
+			return Long.compare(o1.getTimeStamp(), o2.getTimeStamp());
+		}
 	}
 }
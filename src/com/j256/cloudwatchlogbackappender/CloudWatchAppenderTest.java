@@ -0,0 +1,230 @@
+package com.j256.cloudwatchlogbackappender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.logs.AbstractAWSLogs;
+import com.amazonaws.services.logs.model.InputLogEvent;
+import com.amazonaws.services.logs.model.PutLogEventsRequest;
+import com.amazonaws.services.logs.model.PutLogEventsResult;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class CloudWatchAppenderTest {
+
+	private final LoggerContext context = new LoggerContext();
+	private CloudWatchAppender appender;
+
+	@After
+	public void after() {
+		if (appender != null) {
+			appender.stop();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testBatchesByBytes() throws Exception {
+		StubAwsLogs stub = new StubAwsLogs(null);
+		appender = createAppender(stub);
+		appender.setMaxBatchSize(1000);
+		appender.setMaxBatchBytes(10000);
+		appender.start();
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			sb.append('x');
+		}
+		int numEvents = 500;
+		for (int i = 0; i < numEvents; i++) {
+			appender.doAppend(makeEvent(Level.INFO, sb.toString()));
+		}
+		appender.stop();
+
+		assertEquals(numEvents, appender.getEventsWrittenCount());
+		assertTrue(stub.requests.size() > 1);
+		for (PutLogEventsRequest request : stub.requests) {
+			int bytes = 0;
+			for (InputLogEvent event : request.getLogEvents()) {
+				bytes += event.getMessage().getBytes(StandardCharsets.UTF_8).length + 26;
+			}
+			assertTrue("request of " + bytes + " bytes", bytes <= 10000);
+		}
+		assertEquals(0, appender.getEventsDroppedCount());
+		assertEquals(stub.requests.size(), appender.getPutCount());
+	}
+
+	@Test(timeout = 10000)
+	public void testWriterPerStream() throws Exception {
+		StubAwsLogs stub = new StubAwsLogs(null);
+		appender = createAppender(stub);
+		appender.setWriterThreads(3);
+		appender.start();
+
+		int numThreads = 6;
+		final int perThread = 100;
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < numThreads; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < perThread; j++) {
+						appender.doAppend(makeEvent(Level.INFO, "event " + j));
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		appender.stop();
+
+		assertEquals(numThreads * perThread, appender.getEventsWrittenCount());
+		Set<String> streams = new HashSet<String>();
+		for (PutLogEventsRequest request : stub.requests) {
+			streams.add(request.getLogStreamName());
+		}
+		for (String stream : streams) {
+			assertTrue(stream, stream.matches("stream-[012]"));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testDropsWithoutBlocking() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		StubAwsLogs stub = new StubAwsLogs(release);
+		appender = createAppender(stub);
+		appender.setMaxBatchSize(1);
+		appender.setInternalQueueSize(16);
+		appender.start();
+
+		// the writer takes the first event and then blocks in the put so the buffer fills up
+		long start = System.currentTimeMillis();
+		int numEvents = 1000;
+		for (int i = 0; i < numEvents; i++) {
+			appender.doAppend(makeEvent(Level.INFO, "event " + i));
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue("appending took " + elapsed + "ms", elapsed < 1000);
+		assertTrue(appender.getEventsDroppedCount() >= numEvents - 17);
+
+		release.countDown();
+		appender.stop();
+		// what was not dropped was written, along with at least one report of the drops
+		long kept = numEvents - appender.getEventsDroppedCount();
+		assertTrue(appender.getEventsWrittenCount() > kept);
+		boolean reported = false;
+		for (PutLogEventsRequest request : stub.requests) {
+			for (InputLogEvent event : request.getLogEvents()) {
+				reported |= event.getMessage().startsWith("Dropped ");
+			}
+		}
+		assertTrue(reported);
+	}
+
+	@Test(timeout = 10000)
+	public void testSamplingKeepsWarnings() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		StubAwsLogs stub = new StubAwsLogs(release);
+		appender = createAppender(stub);
+		appender.setMaxBatchSize(1);
+		appender.setInternalQueueSize(64);
+		appender.setSampleThresholdPercent(50);
+		appender.setSampleOneIn(1000000);
+		appender.start();
+
+		for (int i = 0; i < 100; i++) {
+			appender.doAppend(makeEvent(Level.INFO, "info " + i));
+		}
+		for (int i = 0; i < 20; i++) {
+			appender.doAppend(makeEvent(Level.ERROR, "error " + i));
+		}
+		assertTrue(appender.getEventsSampledCount() > 0);
+		assertEquals(0, appender.getEventsDroppedCount());
+
+		release.countDown();
+		appender.stop();
+		int errors = 0;
+		for (PutLogEventsRequest request : stub.requests) {
+			for (InputLogEvent event : request.getLogEvents()) {
+				if (event.getMessage().startsWith("error")) {
+					errors++;
+				}
+			}
+		}
+		assertEquals(20, errors);
+	}
+
+	private CloudWatchAppender createAppender(StubAwsLogs stub) {
+		PatternLayout layout = new PatternLayout();
+		layout.setContext(context);
+		layout.setPattern("%msg");
+		layout.start();
+		CloudWatchAppender appender = new CloudWatchAppender();
+		appender.setContext(context);
+		appender.setRegion("us-east-1");
+		appender.setLogGroup("group");
+		appender.setLogStream("stream");
+		appender.setLayout(layout);
+		appender.setMaxBatchTimeMillis(100);
+		appender.setAwsLogsClient(stub);
+		return appender;
+	}
+
+	private LoggingEvent makeEvent(Level level, String message) {
+		LoggingEvent event =
+				new LoggingEvent(getClass().getName(), context.getLogger("test"), level, message, null, null);
+		// set so that the event doesn't need an mdc adapter from the context
+		event.setMDCPropertyMap(Collections.<String, String> emptyMap());
+		return event;
+	}
+
+	/**
+	 * Records the put requests, optionally holding every put until the latch is released.
+	 */
+	private static class StubAwsLogs extends AbstractAWSLogs {
+
+		final List<PutLogEventsRequest> requests = new ArrayList<PutLogEventsRequest>();
+		private final CountDownLatch release;
+
+		public StubAwsLogs(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public PutLogEventsResult putLogEvents(PutLogEventsRequest request) {
+			if (release != null) {
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// stop() interrupts the writer, finish the put anyway
+				}
+			}
+			synchronized (requests) {
+				requests.add(request.clone());
+			}
+			return new PutLogEventsResult().withNextSequenceToken("token" + requests.size());
+		}
+
+		@Override
+		public void shutdown() {
+			// nothing to release
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.j256.cloudwatchlogbackappender;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer queue used between the logging threads and a cloudwatch writer thread. Offering
+ * never blocks: when the buffer is full the offer fails and the caller decides what to do with the event.
+ *
+ * Each slot carries a sequence number which tells producers and consumers whether the slot is free for the lap they
+ * are on (Dmitry Vyukov's bounded queue).
+ */
+class EventRingBuffer<E> {
+
+	private final Object[] slots;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * @param size
+	 *            Minimum number of slots, rounded up to a power of two.
+	 */
+	public EventRingBuffer(int size) {
+		int capacity = 1;
+		while (capacity < size) {
+			capacity <<= 1;
+		}
+		slots = new Object[capacity];
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Add the element to the buffer returning false if the buffer was full.
+	 */
+	public boolean offer(E element) {
+		long pos = tail.get();
+		while (true) {
+			int index = (int) (pos & mask);
+			long diff = sequences.get(index) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					slots[index] = element;
+					// the volatile write publishes the element to the consumer
+					sequences.set(index, pos + 1);
+					return true;
+				}
+				pos = tail.get();
+			} else if (diff < 0) {
+				// the consumer has not freed this slot from the last lap yet
+				return false;
+			} else {
+				// another producer claimed the slot
+				pos = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Remove and return the oldest element or null if the buffer is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long pos = head.get();
+		while (true) {
+			int index = (int) (pos & mask);
+			long diff = sequences.get(index) - (pos + 1);
+			if (diff == 0) {
+				if (head.compareAndSet(pos, pos + 1)) {
+					E element = (E) slots[index];
+					slots[index] = null;
+					sequences.set(index, pos + mask + 1);
+					return element;
+				}
+				pos = head.get();
+			} else if (diff < 0) {
+				return null;
+			} else {
+				pos = head.get();
+			}
+		}
+	}
+
+	/**
+	 * Move up to max elements into the list returning how many were moved.
+	 */
+	public int drainTo(List<? super E> list, int max) {
+		int count = 0;
+		while (count < max) {
+			E element = poll();
+			if (element == null) {
+				break;
+			}
+			list.add(element);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Approximate number of elements in the buffer, exact when nothing is being added or removed.
+	 */
+	public int size() {
+		long size = tail.get() - head.get();
+		if (size < 0) {
+			return 0;
+		} else if (size > slots.length) {
+			return slots.length;
+		} else {
+			return (int) size;
+		}
+	}
+
+	public int capacity() {
+		return slots.length;
+	}
+}
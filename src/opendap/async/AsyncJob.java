@@ -0,0 +1,255 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+package opendap.async;
+
+import opendap.coreServlet.TransmitCoordinator;
+import org.jdom.Element;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Future;
+
+/**
+ * A data request that is run in the background by the AsyncJobManager. The
+ * result is written to a file in the staging directory from where the client
+ * downloads it once the job is done.
+ */
+public class AsyncJob {
+
+    /**
+     * The BES transaction that produces the response. It is built on the
+     * request thread and must not hold on to the request.
+     */
+    public interface Task {
+        void run(OutputStream os, TransmitCoordinator tc) throws Exception;
+    }
+
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED, CANCELED }
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    private final String id;
+    private final String owner;
+    private final String requestId;
+    private final Map<String, String> logContext;
+    private final String resourceId;
+    private final String requestUrl;
+    private final String mediaType;
+    private final String downloadFileName;
+    private final Task task;
+    private final File resultFile;
+    private final long created;
+
+    private volatile State state;
+    private volatile long started;
+    private volatile long finished;
+    private volatile long bytesWritten;
+    private volatile String errorMessage;
+    private volatile Future<?> future;
+
+    AsyncJob(String id,
+             String owner,
+             String requestId,
+             Map<String, String> logContext,
+             String resourceId,
+             String requestUrl,
+             String mediaType,
+             String downloadFileName,
+             Task task,
+             File resultFile) {
+        this.id = id;
+        this.owner = owner;
+        this.requestId = requestId;
+        this.logContext = logContext;
+        this.resourceId = resourceId;
+        this.requestUrl = requestUrl;
+        this.mediaType = mediaType;
+        this.downloadFileName = downloadFileName;
+        this.task = task;
+        this.resultFile = resultFile;
+        created = System.currentTimeMillis();
+        state = State.QUEUED;
+        started = -1;
+        finished = -1;
+        bytesWritten = 0;
+    }
+
+    public String getId() { return id; }
+
+    /**
+     * @return The uid of the user that made the request, null for guests.
+     */
+    public String getOwner() { return owner; }
+
+    public String getResourceId() { return resourceId; }
+    public String getMediaType() { return mediaType; }
+    public String getDownloadFileName() { return downloadFileName; }
+    public State getState() { return state; }
+    public long getBytesWritten() { return bytesWritten; }
+    public String getErrorMessage() { return errorMessage; }
+    public File getResultFile() { return resultFile; }
+
+    /**
+     * @return The time the job finished, or -1 if it has not.
+     */
+    public long getFinished() { return finished; }
+
+    public boolean isDone() {
+        State s = state;
+        return s == State.COMPLETED || s == State.FAILED || s == State.CANCELED;
+    }
+
+    String getRequestId() { return requestId; }
+    Map<String, String> getLogContext() { return logContext; }
+    Task getTask() { return task; }
+    void setFuture(Future<?> future) { this.future = future; }
+
+    /**
+     * @return False if the job was canceled before it could start.
+     */
+    synchronized boolean running() {
+        if(state != State.QUEUED)
+            return false;
+        started = System.currentTimeMillis();
+        state = State.RUNNING;
+        return true;
+    }
+
+    synchronized void completed() {
+        if(state != State.RUNNING)
+            return;
+        finished = System.currentTimeMillis();
+        state = State.COMPLETED;
+    }
+
+    synchronized void failed(String message) {
+        if(state != State.RUNNING)
+            return;
+        finished = System.currentTimeMillis();
+        errorMessage = message;
+        state = State.FAILED;
+    }
+
+    /**
+     * Stops the job if it has not finished.
+     * @return True if the job was canceled.
+     */
+    synchronized boolean cancel() {
+        if(isDone())
+            return false;
+        Future<?> f = future;
+        if(f != null)
+            f.cancel(true);
+        finished = System.currentTimeMillis();
+        state = State.CANCELED;
+        return true;
+    }
+
+    /**
+     * Wraps the stream that the task writes to so that the progress of the
+     * job can be reported.
+     */
+    OutputStream countBytes(OutputStream os) {
+        return new FilterOutputStream(os) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesWritten++;
+            }
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesWritten += len;
+            }
+        };
+    }
+
+
+    /**
+     * @param jobUrl The URL of this job's status document.
+     * @return The status of the job as an XML element.
+     */
+    public Element getStatusElement(String jobUrl) {
+        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+        State s = state;
+
+        Element job = new Element("AsyncJob");
+        job.setAttribute("id", id);
+        job.setAttribute("status", s.name().toLowerCase());
+        job.setAttribute("href", jobUrl);
+
+        Element e = new Element("resourceId");
+        e.setText(resourceId);
+        job.addContent(e);
+
+        e = new Element("request");
+        e.setText(requestUrl);
+        job.addContent(e);
+
+        e = new Element("created");
+        e.setText(sdf.format(new Date(created)));
+        job.addContent(e);
+
+        if(started > 0) {
+            e = new Element("started");
+            e.setText(sdf.format(new Date(started)));
+            job.addContent(e);
+        }
+        if(finished > 0) {
+            e = new Element("finished");
+            e.setText(sdf.format(new Date(finished)));
+            job.addContent(e);
+        }
+
+        // The size of the result is not known until the BES is done, so the
+        // progress is the number of bytes received so far.
+        e = new Element("progress");
+        e.setAttribute("units", "bytes");
+        e.setText(Long.toString(bytesWritten));
+        job.addContent(e);
+
+        if(s == State.COMPLETED) {
+            e = new Element("result");
+            e.setAttribute("href", jobUrl + "/" + AsyncJobManager.RESULT_PATH);
+            e.setAttribute("type", mediaType);
+            e.setAttribute("size", Long.toString(resultFile.length()));
+            job.addContent(e);
+        }
+        if(errorMessage != null) {
+            e = new Element("error");
+            e.setText(errorMessage);
+            job.addContent(e);
+        }
+        return job;
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.async;
+
+import opendap.PathBuilder;
+import opendap.bes.BesApi;
+import opendap.bes.FileRangeResponse;
+import opendap.coreServlet.DispatchHandler;
+import opendap.coreServlet.ReqInfo;
+import opendap.coreServlet.ServletUtil;
+import opendap.dap.User;
+import opendap.http.error.Forbidden;
+import opendap.http.error.NotFound;
+import org.jdom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the status documents and the results of the jobs run by the
+ * AsyncJobManager:
+ * <pre>
+ *     prefix/{id}          The status of the job.
+ *     prefix/{id}/result   The result, once the job has completed.
+ * </pre>
+ * The handler does nothing unless olfs.xml has an AsyncJobs element.
+ */
+public class AsyncJobDispatchHandler implements DispatchHandler {
+
+    private Logger log;
+    private boolean initialized;
+    private Pattern jobPattern;
+
+    public AsyncJobDispatchHandler() {
+        log = LoggerFactory.getLogger(getClass());
+        initialized = false;
+    }
+
+    @Override
+    public void init(HttpServlet servlet, Element config) throws Exception {
+        init(servlet, config, null);
+    }
+
+    @Override
+    public void init(HttpServlet servlet, Element config, BesApi besApi) throws Exception {
+        if (initialized) return;
+
+        Element asyncJobs = config.getChild(AsyncJobManager.ASYNC_JOBS_ELEMENT_NAME);
+        if (asyncJobs != null) {
+            String defaultDir = PathBuilder.pathConcat(ServletUtil.getConfigPath(servlet), "cache");
+            defaultDir = PathBuilder.pathConcat(defaultDir, AsyncJobManager.ASYNC_JOBS_ELEMENT_NAME);
+            AsyncJobManager.init(asyncJobs, defaultDir);
+            jobPattern = Pattern.compile(
+                    "/" + Pattern.quote(AsyncJobManager.getPrefix()) + "/([^/]+)(/" + AsyncJobManager.RESULT_PATH + ")?/?$");
+            log.info("Initialized. {}", AsyncJobManager.getStatus());
+        }
+        else {
+            log.info("Asynchronous responses are disabled.");
+        }
+        initialized = true;
+    }
+
+    @Override
+    public boolean requestCanBeHandled(HttpServletRequest request) throws Exception {
+        return jobPattern != null && jobPattern.matcher(ReqInfo.getLocalUrl(request)).matches();
+    }
+
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws Exception {
+
+        Matcher m = jobPattern.matcher(ReqInfo.getLocalUrl(request));
+        if (!m.matches())
+            throw new NotFound("Not an asynchronous job URL.");
+
+        AsyncJob job = AsyncJobManager.getJob(m.group(1));
+        if (job == null)
+            throw new NotFound("There is no job " + m.group(1) + ", it may have expired.");
+
+        String owner = job.getOwner();
+        if (owner != null && !owner.equals(new User(request).getUID()))
+            throw new Forbidden("The job " + job.getId() + " belongs to another user.");
+
+        String jobUrl = AsyncJobManager.getJobUrl(request, job);
+        boolean wantsResult = m.group(2) != null;
+
+        if (!wantsResult) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            AsyncJobManager.sendStatus(response, job, jobUrl);
+            return;
+        }
+
+        switch (job.getState()) {
+            case COMPLETED:
+                File result = job.getResultFile();
+                if (!result.exists())
+                    throw new NotFound("The result of job " + job.getId() + " has expired.");
+                response.setContentType(job.getMediaType());
+                response.setHeader("Content-Disposition",
+                        " attachment; filename=\"" + job.getDownloadFileName() + "\"");
+                FileRangeResponse.send(request, response, result);
+                log.debug("Sent the result of job {}", job.getId());
+                break;
+
+            case QUEUED:
+            case RUNNING:
+                // Not there yet, the client should keep polling.
+                response.setStatus(HttpServletResponse.SC_ACCEPTED);
+                AsyncJobManager.sendStatus(response, job, jobUrl);
+                break;
+
+            default:
+                throw new NotFound("The job " + job.getId() + " " + job.getState().name().toLowerCase() +
+                        ", it has no result.");
+        }
+    }
+
+    @Override
+    public long getLastModified(HttpServletRequest req) {
+        return -1;
+    }
+
+    @Override
+    public void destroy() {
+        AsyncJobManager.destroy();
+        log.info("Destroy complete.");
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+package opendap.async;
+
+import opendap.bes.BadConfigurationException;
+import opendap.coreServlet.FileOutputStreamTransmitCoordinator;
+import opendap.coreServlet.ReqInfo;
+import opendap.coreServlet.RequestCache;
+import opendap.dap.User;
+import opendap.dap4.QueryParameters;
+import opendap.http.error.ServiceUnavailable;
+import opendap.io.HyraxStringEncoding;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs data requests that the client asked to be asynchronous (with the
+ * dap4.async query parameter or the X-DAP-Async-Accept header) as background
+ * jobs, so that a large subset doesn't hold a Tomcat thread for minutes.
+ *
+ * The client gets a 202 (Accepted) response that points at the job's status
+ * document. The jobs run on a fixed number of threads, each of which holds
+ * one BES client while it works, so maxRunning is also the number of BES
+ * clients that jobs can take from the pool. Jobs that can't be started right
+ * away wait in a bounded queue and when that is full the request is refused
+ * with a 503. Results are written to the staging directory and are deleted,
+ * along with the job, resultTtl seconds after the job finished.
+ *
+ * This class is a singleton, it is configured by the AsyncJobs element in
+ * olfs.xml:
+ * <pre>
+ *     &lt;AsyncJobs prefix="jobs" maxRunning="2" maxQueued="20" resultTtl="3600" /&gt;
+ * </pre>
+ */
+public class AsyncJobManager {
+
+    public  static final String ASYNC_JOBS_ELEMENT_NAME = "AsyncJobs";
+    private static final String PREFIX_ATTRIBUTE_NAME = "prefix";
+    private static final String DIRECTORY_ATTRIBUTE_NAME = "directory";
+    private static final String MAX_RUNNING_ATTRIBUTE_NAME = "maxRunning";
+    private static final String MAX_QUEUED_ATTRIBUTE_NAME = "maxQueued";
+    private static final String RESULT_TTL_ATTRIBUTE_NAME = "resultTtl";
+
+    private static final String PREFIX_DEFAULT = "jobs";
+    private static final int MAX_RUNNING_DEFAULT = 2;
+    private static final int MAX_QUEUED_DEFAULT = 20;
+    private static final long RESULT_TTL_DEFAULT = 3600; // seconds
+
+    public  static final String RESULT_PATH = "result";
+    public  static final String ASYNC_ACCEPT_HEADER = "X-DAP-Async-Accept";
+    public  static final String ASYNC_ACCEPTED_HEADER = "X-DAP-Async-Accepted";
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String RESULT_SUFFIX = ".result";
+
+    // Seconds a client is asked to wait when the queue is full.
+    private static final long RETRY_AFTER = 60;
+
+    private static final AtomicBoolean INITIALIZED = new AtomicBoolean(false);
+    private static final ConcurrentHashMap<String, AsyncJob> JOBS = new ConcurrentHashMap<>();
+
+    private static final AtomicLong SUBMITTED = new AtomicLong(0);
+    private static final AtomicLong REJECTED = new AtomicLong(0);
+    private static final AtomicLong COMPLETED = new AtomicLong(0);
+    private static final AtomicLong FAILED = new AtomicLong(0);
+
+    // A static logger for this singleton class.
+    private static final Logger SLOG = LoggerFactory.getLogger(AsyncJobManager.class);
+
+    private static String prefix = PREFIX_DEFAULT;
+    private static File stagingDir = null;
+    private static long resultTtl = RESULT_TTL_DEFAULT * 1000;
+    private static ThreadPoolExecutor executor = null;
+    private static ScheduledExecutorService cleaner = null;
+
+
+    /**
+     * This is a singleton class and as such all methods are static and the
+     * constructor is private because an instance should never be created.
+     */
+    private AsyncJobManager(){}
+
+
+    /**
+     * Initialize the AsyncJobManager using an XML Element.
+     * @param config The ASYNC_JOBS_ELEMENT_NAME configuration element
+     * @param defaultDir The staging directory to use if the configuration
+     *                   does not name one.
+     * @throws BadConfigurationException When the configuration is broken.
+     */
+    public static synchronized void init(Element config, String defaultDir) throws BadConfigurationException {
+
+        if (config == null || !config.getName().equals(ASYNC_JOBS_ELEMENT_NAME))
+            throw new BadConfigurationException("AsyncJobManager must be passed a " +
+                    "non-null configuration element named " + ASYNC_JOBS_ELEMENT_NAME);
+
+        if (INITIALIZED.get()) {
+            SLOG.error("AsyncJobManager has already been initialized! {}", getStatus());
+            return;
+        }
+
+        String s = config.getAttributeValue(PREFIX_ATTRIBUTE_NAME);
+        if(s != null && !s.trim().isEmpty()) {
+            s = s.trim();
+            while(s.startsWith("/"))
+                s = s.substring(1);
+            while(s.endsWith("/"))
+                s = s.substring(0, s.length() - 1);
+            prefix = s;
+        }
+
+        int maxRunning = (int) getPositiveAttribute(config, MAX_RUNNING_ATTRIBUTE_NAME, MAX_RUNNING_DEFAULT);
+        int maxQueued  = (int) getPositiveAttribute(config, MAX_QUEUED_ATTRIBUTE_NAME, MAX_QUEUED_DEFAULT);
+        resultTtl = getPositiveAttribute(config, RESULT_TTL_ATTRIBUTE_NAME, RESULT_TTL_DEFAULT) * 1000;
+
+        String dirName = config.getAttributeValue(DIRECTORY_ATTRIBUTE_NAME);
+        if(dirName == null)
+            dirName = defaultDir;
+        if(dirName == null)
+            throw new BadConfigurationException("The " + ASYNC_JOBS_ELEMENT_NAME + " staging directory is not set.");
+
+        File dir = new File(dirName);
+        if(!dir.exists() && !dir.mkdirs())
+            throw new BadConfigurationException("Unable to create the asynchronous job staging directory " +
+                    dir.getAbsolutePath());
+        stagingDir = dir;
+        purgeStagingDir();
+
+        AtomicInteger threadCount = new AtomicInteger(0);
+        executor = new ThreadPoolExecutor(maxRunning, maxRunning, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued),
+                r -> {
+                    Thread t = new Thread(r, "AsyncJob-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "AsyncJob-cleaner");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(resultTtl / 4, 60000));
+        cleaner.scheduleWithFixedDelay(AsyncJobManager::removeExpiredJobs, period, period, TimeUnit.MILLISECONDS);
+
+        INITIALIZED.set(true);
+        SLOG.info("INITIALIZED {}", getStatus());
+    }
+
+    private static long getPositiveAttribute(Element config, String name, long defaultValue){
+        String s = config.getAttributeValue(name);
+        if(s == null)
+            return defaultValue;
+        try {
+            long value = Long.parseLong(s.trim());
+            if(value > 0)
+                return value;
+            SLOG.error("The value of {}@{} must be > 0. Using default value: {}",
+                    ASYNC_JOBS_ELEMENT_NAME, name, defaultValue);
+        }
+        catch (NumberFormatException nfe) {
+            SLOG.error("Failed to parse value of {}@{}! Using default value: {}",
+                    ASYNC_JOBS_ELEMENT_NAME, name, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    public static boolean isInitialized(){
+        return INITIALIZED.get();
+    }
+
+    /**
+     * @return The first path component of the job URLs, relative to the
+     * service.
+     */
+    public static String getPrefix(){
+        return prefix;
+    }
+
+
+    /**
+     * @param request The request.
+     * @return True if the client asked for the response to be asynchronous
+     * and the request is not a DAP4 store-result request, which the BES
+     * handles itself.
+     */
+    public static boolean isAsyncRequest(HttpServletRequest request){
+        if(!isInitialized())
+            return false;
+        if(request.getParameter(QueryParameters.DAP4_STORE_RESULT_KEY) != null)
+            return false;
+        return request.getParameter(QueryParameters.DAP4_ASYNC_KEY) != null ||
+                request.getHeader(ASYNC_ACCEPT_HEADER) != null;
+    }
+
+
+    /**
+     * Queues a job for the request.
+     *
+     * @param request The request, only used here on the request thread.
+     * @param resourceId The dataset.
+     * @param mediaType The media type of the result.
+     * @param downloadFileName The file name offered for the result.
+     * @param task The BES transaction that writes the result.
+     * @return The new job.
+     * @throws ServiceUnavailable When the job queue is full.
+     */
+    public static AsyncJob submit(HttpServletRequest request,
+                                  String resourceId,
+                                  String mediaType,
+                                  String downloadFileName,
+                                  AsyncJob.Task task) throws ServiceUnavailable {
+
+        if(!isInitialized())
+            throw new ServiceUnavailable("Asynchronous requests are not enabled.");
+
+        String id = UUID.randomUUID().toString();
+        String requestUrl = request.getRequestURL().toString();
+        String query = request.getQueryString();
+        if(query != null)
+            requestUrl += "?" + query;
+
+        AsyncJob job = new AsyncJob(
+                id,
+                new User(request).getUID(),
+                RequestCache.getRequestId(),
+                MDC.getCopyOfContextMap(),
+                resourceId,
+                requestUrl,
+                mediaType,
+                downloadFileName,
+                task,
+                new File(stagingDir, id + RESULT_SUFFIX));
+
+        JOBS.put(id, job);
+        try {
+            job.setFuture(executor.submit(() -> runJob(job)));
+        }
+        catch (RejectedExecutionException e){
+            JOBS.remove(id);
+            REJECTED.incrementAndGet();
+            SLOG.warn("Rejected an asynchronous job for {}, the job queue is full.", resourceId);
+            throw new ServiceUnavailable("The queue for asynchronous requests is full.", RETRY_AFTER);
+        }
+        SUBMITTED.incrementAndGet();
+        SLOG.info("Queued job {} for {}", id, resourceId);
+        return job;
+    }
+
+
+    /**
+     * Runs the job on one of the job threads.
+     */
+    private static void runJob(AsyncJob job){
+        if(!job.running())
+            return;
+
+        Map<String, String> logContext = job.getLogContext();
+        if(logContext != null)
+            MDC.setContextMap(logContext);
+        RequestCache.open(job.getRequestId());
+
+        File part = new File(stagingDir, job.getId() + PART_SUFFIX);
+        try {
+            SLOG.info("Starting job {} for {}", job.getId(), job.getResourceId());
+            try (FileOutputStream fos = new FileOutputStream(part);
+                 OutputStream os = job.countBytes(new BufferedOutputStream(fos))) {
+                job.getTask().run(os, new FileOutputStreamTransmitCoordinator(fos));
+            }
+            if(!part.renameTo(job.getResultFile()))
+                throw new IOException("Unable to move the result of job " + job.getId() + " into place.");
+            job.completed();
+            if(job.getState() == AsyncJob.State.COMPLETED) {
+                COMPLETED.incrementAndGet();
+                SLOG.info("Job {} completed, {} bytes.", job.getId(), job.getBytesWritten());
+            }
+            else {
+                // canceled while the BES was still sending
+                deleteFile(job.getResultFile());
+            }
+        }
+        catch (Exception e) {
+            deleteFile(part);
+            FAILED.incrementAndGet();
+            String msg = e.getMessage();
+            if(msg == null)
+                msg = e.getClass().getName();
+            job.failed(msg);
+            SLOG.error("Job {} failed. Caught {} Message: {}", job.getId(), e.getClass().getName(), msg);
+        }
+        finally {
+            RequestCache.close();
+            MDC.clear();
+        }
+    }
+
+
+    /**
+     * @param id The job id.
+     * @return The job, or null if there is no such job (anymore).
+     */
+    public static AsyncJob getJob(String id){
+        if(id == null)
+            return null;
+        return JOBS.get(id);
+    }
+
+    /**
+     * Cancels a job that has not finished, the job and any result are kept
+     * until they expire.
+     * @param id The job id.
+     * @return True if the job was canceled.
+     */
+    public static boolean cancel(String id){
+        AsyncJob job = getJob(id);
+        return job != null && job.cancel();
+    }
+
+
+    /**
+     * @param request The request.
+     * @param job The job.
+     * @return The URL of the job's status document.
+     */
+    public static String getJobUrl(HttpServletRequest request, AsyncJob job){
+        return ReqInfo.getServiceUrl(request) + "/" + prefix + "/" + job.getId();
+    }
+
+
+    /**
+     * Answers the request with a 202 (Accepted) and the status of the job.
+     * @param request The request.
+     * @param response The response.
+     * @param job The job that will produce the response.
+     * @throws IOException When the response can't be written.
+     */
+    public static void sendAccepted(HttpServletRequest request, HttpServletResponse response, AsyncJob job)
+            throws IOException {
+        String jobUrl = getJobUrl(request, job);
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setHeader("Location", jobUrl);
+        response.setHeader(ASYNC_ACCEPTED_HEADER, "true");
+        sendStatus(response, job, jobUrl);
+    }
+
+    /**
+     * Writes the status document of the job to the response.
+     */
+    static void sendStatus(HttpServletResponse response, AsyncJob job, String jobUrl) throws IOException {
+        response.setContentType("text/xml");
+        response.setCharacterEncoding(HyraxStringEncoding.getCharset().name());
+        response.setHeader("Cache-Control", "no-cache");
+        XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
+        xmlo.output(new Document(job.getStatusElement(jobUrl)), response.getOutputStream());
+    }
+
+
+    /**
+     * Drops the jobs that finished more than resultTtl ago, along with their
+     * results.
+     */
+    static void removeExpiredJobs(){
+        long now = System.currentTimeMillis();
+        Iterator<AsyncJob> i = JOBS.values().iterator();
+        while(i.hasNext()){
+            AsyncJob job = i.next();
+            long finished = job.getFinished();
+            if(job.isDone() && finished > 0 && now - finished > resultTtl){
+                i.remove();
+                deleteFile(job.getResultFile());
+                SLOG.debug("Removed expired job {}", job.getId());
+            }
+        }
+    }
+
+    /**
+     * Removes the results left behind by an earlier run.
+     */
+    private static void purgeStagingDir(){
+        File[] files = stagingDir.listFiles();
+        if(files == null)
+            return;
+        for(File f : files){
+            String name = f.getName();
+            if(f.isFile() && (name.endsWith(PART_SUFFIX) || name.endsWith(RESULT_SUFFIX)))
+                deleteFile(f);
+        }
+    }
+
+    private static void deleteFile(File f){
+        if(f.exists() && !f.delete())
+            SLOG.warn("Unable to delete {}", f.getAbsolutePath());
+    }
+
+
+    public static String getStatus(){
+        int running = 0;
+        int queued = 0;
+        for(AsyncJob job : JOBS.values()){
+            if(job.getState() == AsyncJob.State.RUNNING)
+                running++;
+            else if(job.getState() == AsyncJob.State.QUEUED)
+                queued++;
+        }
+        return "AsyncJobManager: prefix: " + prefix +
+                " staging: " + (stagingDir == null ? "none" : stagingDir.getAbsolutePath()) +
+                " maxRunning: " + (executor == null ? 0 : executor.getMaximumPoolSize()) +
+                " resultTtl: " + (resultTtl / 1000) + "s" +
+                " jobs: " + JOBS.size() +
+                " running: " + running +
+                " queued: " + queued +
+                " submitted: " + SUBMITTED.get() +
+                " completed: " + COMPLETED.get() +
+                " failed: " + FAILED.get() +
+                " rejected: " + REJECTED.get();
+    }
+
+
+    /**
+     * Stops the job threads and removes all of the jobs and their results.
+     */
+    public static synchronized void destroy(){
+        if(!INITIALIZED.getAndSet(false))
+            return;
+        for(AsyncJob job : JOBS.values())
+            job.cancel();
+        executor.shutdownNow();
+        cleaner.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        JOBS.clear();
+        purgeStagingDir();
+        SLOG.info("Destroyed.");
+    }
+
+}
@@ -8,6 +8,7 @@ import java.util.Vector;
 public class AuthGroup {
     private String name;
     private Vector<AuthUser> users;
+    private UserQuotas.Quota quota;
 
     public AuthGroup(String name){
         this.name = name;
@@ -16,6 +17,13 @@ public class AuthGroup {
 
     public String name(){ return name; }
 
+    /**
+     * @return The limits on the members of this group, null if there are none.
+     */
+    public UserQuotas.Quota getQuota(){ return quota; }
+
+    void setQuota(UserQuotas.Quota quota){ this.quota = quota; }
+
     public boolean isMember(String userId, String authContext){
         for(AuthUser authUser : users){
             if(authUser.matches(userId, authContext))
@@ -76,6 +76,7 @@ public class MembershipRulesManager {
 
         authGroups.putIfAbsent(gid, new AuthGroup(gid));
         AuthGroup authGroup = authGroups.get(gid);
+        authGroup.setQuota(getQuota(groupElem));
 
         Iterator userItr = groupElem.getChildren("user").iterator();
         if(!userItr.hasNext()){
@@ -113,6 +114,37 @@ public class MembershipRulesManager {
     }
 
 
+    /**
+     * Reads the optional maxInFlight, bytesPerSecond and burstBytes
+     * attributes of a group.
+     * @return The quota, or null if the group has none.
+     */
+    private static UserQuotas.Quota getQuota(Element groupElem) throws ConfigurationException {
+        long maxInFlight = getQuotaValue(groupElem, "maxInFlight");
+        long bytesPerSecond = getQuotaValue(groupElem, "bytesPerSecond");
+        long burstBytes = getQuotaValue(groupElem, "burstBytes");
+        if(maxInFlight == 0 && bytesPerSecond == 0)
+            return null;
+        return new UserQuotas.Quota((int) Math.min(maxInFlight, Integer.MAX_VALUE), bytesPerSecond, burstBytes);
+    }
+
+    private static long getQuotaValue(Element groupElem, String name) throws ConfigurationException {
+        String value = groupElem.getAttributeValue(name);
+        if(value == null)
+            return 0;
+        try {
+            long l = Long.parseLong(value.trim());
+            if(l >= 0)
+                return l;
+        }
+        catch(NumberFormatException e){
+            // Handled below.
+        }
+        throw new ConfigurationException("init() - The \"" + name + "\" attribute of <group> \"" +
+                groupElem.getAttributeValue("id") + "\" must be a whole number >= 0");
+    }
+
+
     private static void addRole(Element roleElem) throws ConfigurationException {
         String rid = roleElem.getAttributeValue("id");
         if (rid == null) {
@@ -149,6 +181,22 @@ public class MembershipRulesManager {
         return groupMemberships;
     }
 
+    /**
+     * @param uid The user id.
+     * @param authContext The auth context the user logged in with.
+     * @return The most generous of the quotas of the groups the user is a
+     * member of, or null if none of them has one.
+     */
+    public static UserQuotas.Quota getQuota(String uid, String authContext){
+        UserQuotas.Quota quota = null;
+        for(AuthGroup authGroup : authGroups.values()){
+            UserQuotas.Quota q = authGroup.getQuota();
+            if(q != null && authGroup.isMember(uid, authContext))
+                quota = q.merge(quota);
+        }
+        return quota;
+    }
+
     public static HashSet<String> getUserRoles(String uid, String authContext){
 
         HashSet<String> userRoles = new HashSet<>();
@@ -52,6 +52,12 @@ public class PEPFilter implements Filter {
     private PolicyDecisionPoint pdp;
     private boolean everyOneMustHaveUid;
     private String unauthorizedMsg = "We don't know who you are! Login and let us know, and then maybe you can have what you want.";
+    private String tooManyRequestsMsg = "You have as many requests in progress as you are allowed. " +
+            "Please wait for some of them to finish.";
+
+    // HttpServletResponse has no constant for it.
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final long TOO_MANY_REQUESTS_RETRY_AFTER = 10; // seconds
 
     private boolean isInitialized;
     private FilterConfig filterConfig;
@@ -103,6 +109,8 @@ public class PEPFilter implements Filter {
         Element e = config.getChild("PolicyDecisionPoint");
         pdp = PolicyDecisionPoint.pdpFactory(e);
 
+        UserQuotas.init(config.getChild(UserQuotas.USER_QUOTAS_ELEMENT_NAME));
+
         e = config.getChild("EveryOneMustHaveId");
         if(e !=null){
             everyOneMustHaveUid = true;
@@ -173,8 +181,21 @@ public class PEPFilter implements Filter {
 
             // Are they allowed access?
             if (requestIsGranted(userId, authContext, hsReq)) {
-                // Yup, so we just move along...
-                filterChain.doFilter(hsReq, hsRes);
+                // Yup, but do they have too much going on already?
+                UserQuotas.Lease lease = UserQuotas.acquire(userId, authContext, hsReq);
+                if (lease == null) {
+                    OPeNDAPException.setCachedErrorMessage(tooManyRequestsMsg);
+                    hsRes.setHeader("Retry-After", Long.toString(TOO_MANY_REQUESTS_RETRY_AFTER));
+                    hsRes.sendError(SC_TOO_MANY_REQUESTS);
+                    return;
+                }
+                // Nope, so we just move along...
+                try {
+                    filterChain.doFilter(hsReq, UserQuotas.throttle(hsRes, lease));
+                }
+                finally {
+                    lease.close();
+                }
             } else {
                 // Access was denied, so...
                 if (userId == null) {
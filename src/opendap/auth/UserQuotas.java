@@ -0,0 +1,448 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.auth;
+
+import opendap.coreServlet.RequestCache;
+import org.jdom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Enforces the quotas set on the groups in user-access.xml: the number of
+ * requests a user may have in progress at once and the rate, in bytes per
+ * second, at which the BES responses are sent to them.
+ * <pre>
+ *     &lt;group id="urs_users" maxInFlight="4" bytesPerSecond="20000000" burstBytes="4000000"&gt;
+ * </pre>
+ * Authenticated users are tracked by uid and everyone else by their remote
+ * address. When a user is in more than one group with a quota they get the
+ * most generous of them. Guests get the quota of the groups that the guest
+ * profile (uid GUEST, auth context guest) is a member of.
+ *
+ * The users are held in a fixed number of shards, each an LRU map with its
+ * own lock, and the total is bounded by maxUsers (the UserQuotas element in
+ * user-access.xml). Idle users are dropped first when a shard is full.
+ *
+ * The in-flight limit is applied by the PEPFilter. The byte rate is applied
+ * to the servlet response stream, which the PEPFilter wraps with
+ * throttle(), so only what is sent to the user counts against it and not
+ * what the OLFS fetches from the BES for its own use. The bucket is shared
+ * by all of the user's requests.
+ */
+public class UserQuotas {
+
+    public static final String USER_QUOTAS_ELEMENT_NAME = "UserQuotas";
+
+    private static final String LEASE_KEY = UserQuotas.class.getName() + ".lease";
+    private static final String GUEST_UID = "GUEST";
+    private static final String GUEST_AUTH_CONTEXT = "guest";
+
+    private static final int SHARD_COUNT = 16;
+    private static final int DEFAULT_MAX_USERS = 10000;
+
+    // The largest piece that is written before the bucket is consulted, it
+    // keeps the output smooth when the BES hands over large buffers.
+    private static final int MAX_WRITE = 64 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserQuotas.class);
+
+    private static volatile Shard[] shards = newShards(DEFAULT_MAX_USERS);
+
+    private static final AtomicLong REFUSED = new AtomicLong(0);
+    private static final AtomicLong THROTTLED_NANOS = new AtomicLong(0);
+
+
+    /**
+     * The limits for a group of users. A limit of zero means no limit.
+     */
+    public static class Quota {
+        private final int maxInFlight;
+        private final long bytesPerSecond;
+        private final long burstBytes;
+
+        public Quota(int maxInFlight, long bytesPerSecond, long burstBytes){
+            this.maxInFlight = Math.max(0, maxInFlight);
+            this.bytesPerSecond = Math.max(0, bytesPerSecond);
+            // A second's worth of data when no burst is given.
+            this.burstBytes = burstBytes > 0 ? burstBytes : this.bytesPerSecond;
+        }
+
+        public int getMaxInFlight() { return maxInFlight; }
+        public long getBytesPerSecond() { return bytesPerSecond; }
+        public long getBurstBytes() { return burstBytes; }
+
+        /**
+         * @param other Another quota that applies to the same user.
+         * @return The most generous combination of the two.
+         */
+        Quota merge(Quota other){
+            if(other == null)
+                return this;
+            return new Quota(
+                    maxInFlight == 0 || other.maxInFlight == 0 ? 0 : Math.max(maxInFlight, other.maxInFlight),
+                    bytesPerSecond == 0 || other.bytesPerSecond == 0 ? 0 : Math.max(bytesPerSecond, other.bytesPerSecond),
+                    Math.max(burstBytes, other.burstBytes));
+        }
+
+        boolean isUnlimited(){
+            return maxInFlight == 0 && bytesPerSecond == 0;
+        }
+
+        @Override
+        public String toString(){
+            return "maxInFlight: " + maxInFlight + " bytesPerSecond: " + bytesPerSecond + " burstBytes: " + burstBytes;
+        }
+    }
+
+
+    /**
+     * A request's place in its user's quota. Closing it ends the request.
+     */
+    public interface Lease extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Lease UNLIMITED = () -> {};
+
+
+    /**
+     * This is a singleton class and as such all methods are static and the
+     * constructor is private because an instance should never be created.
+     */
+    private UserQuotas(){}
+
+
+    /**
+     * Sets the number of users tracked. Without this call the default of
+     * 10000 is used.
+     * @param config The USER_QUOTAS_ELEMENT_NAME element from user-access.xml.
+     */
+    public static void init(Element config){
+        int maxUsers = DEFAULT_MAX_USERS;
+        String s = config == null ? null : config.getAttributeValue("maxUsers");
+        if(s != null) {
+            try {
+                maxUsers = Math.max(SHARD_COUNT, Integer.parseInt(s.trim()));
+            } catch (NumberFormatException e) {
+                LOG.error("Failed to parse value of {}@maxUsers! Using default value: {}",
+                        USER_QUOTAS_ELEMENT_NAME, DEFAULT_MAX_USERS);
+            }
+        }
+        shards = newShards(maxUsers);
+        LOG.info("Initialized. maxUsers: {}", maxUsers);
+    }
+
+    private static Shard[] newShards(int maxUsers){
+        Shard[] s = new Shard[SHARD_COUNT];
+        for(int i = 0; i < SHARD_COUNT; i++)
+            s[i] = new Shard(Math.max(1, maxUsers / SHARD_COUNT));
+        return s;
+    }
+
+
+    /**
+     * Starts a request for the user.
+     *
+     * @param userId The uid of the user, null for guests.
+     * @param authContext The auth context the user logged in with, may be null.
+     * @param request The request, its remote address identifies guests.
+     * @return The lease, which must be closed when the request is done, or
+     * null if the user already has as many requests in progress as their
+     * quota allows.
+     */
+    public static Lease acquire(String userId, String authContext, HttpServletRequest request){
+
+        boolean guest = userId == null || userId.equals(GUEST_UID);
+        Quota quota = guest ?
+                MembershipRulesManager.getQuota(GUEST_UID, GUEST_AUTH_CONTEXT) :
+                MembershipRulesManager.getQuota(userId, authContext == null ? "" : authContext);
+        if(quota == null || quota.isUnlimited())
+            return UNLIMITED;
+
+        String key = guest ? "ip:" + request.getRemoteAddr() : "uid:" + userId;
+        UserState user = getShard(key).get(key);
+        user.setQuota(quota);
+
+        int inFlight = user.inFlight.incrementAndGet();
+        if(quota.maxInFlight > 0 && inFlight > quota.maxInFlight){
+            user.inFlight.decrementAndGet();
+            REFUSED.incrementAndGet();
+            LOG.warn("Refused a request from {}, {} requests are in progress. Quota: {}",
+                    key, quota.maxInFlight, quota);
+            return null;
+        }
+
+        RequestCache.put(LEASE_KEY, user);
+        return new UserLease(user);
+    }
+
+
+    /**
+     * Wraps the response so that its content is sent no faster than the
+     * user's byte rate allows.
+     *
+     * @param response The response.
+     * @param lease The lease returned by acquire() for the request.
+     * @return The response, wrapped if the user has a byte rate.
+     */
+    public static HttpServletResponse throttle(HttpServletResponse response, Lease lease){
+        if(!(lease instanceof UserLease))
+            return response;
+        final UserState user = ((UserLease) lease).user;
+        if(user.quota.bytesPerSecond <= 0)
+            return response;
+        return new HttpServletResponseWrapper(response) {
+            private ServletOutputStream tos = null;
+
+            @Override
+            public ServletOutputStream getOutputStream() throws IOException {
+                if(tos == null)
+                    tos = new ThrottledOutputStream(super.getOutputStream(), user);
+                return tos;
+            }
+        };
+    }
+
+    /**
+     * @return True if the response to the request being worked on by this
+     * thread is held to a byte rate.
+     */
+    public static boolean isThrottled(){
+        Object o = RequestCache.get(LEASE_KEY);
+        return o instanceof UserState && ((UserState) o).quota.bytesPerSecond > 0;
+    }
+
+
+    public static String getStatus(){
+        int users = 0;
+        int busy = 0;
+        for(Shard shard : shards){
+            shard.lock.lock();
+            try {
+                users += shard.users.size();
+                for(UserState user : shard.users.values()){
+                    if(user.inFlight.get() > 0)
+                        busy++;
+                }
+            }
+            finally {
+                shard.lock.unlock();
+            }
+        }
+        return "UserQuotas: users: " + users +
+                " active: " + busy +
+                " refused: " + REFUSED.get() +
+                " throttledMs: " + TimeUnit.NANOSECONDS.toMillis(THROTTLED_NANOS.get());
+    }
+
+
+    private static Shard getShard(String key){
+        Shard[] s = shards;
+        return s[(key.hashCode() & 0x7fffffff) % s.length];
+    }
+
+
+    private static class UserLease implements Lease {
+        private final UserState user;
+        private final AtomicInteger released = new AtomicInteger(0);
+
+        UserLease(UserState user){
+            this.user = user;
+        }
+
+        @Override
+        public void close(){
+            if(released.getAndIncrement() == 0)
+                user.inFlight.decrementAndGet();
+        }
+    }
+
+
+    /**
+     * What is known about one user, it's left in the RequestCache so that
+     * the BesApi can find the user's bucket.
+     */
+    private static class UserState {
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+        private volatile Quota quota;
+        private double tokens;
+        private long lastRefill;
+
+        UserState(){
+            lastRefill = System.nanoTime();
+        }
+
+        synchronized void setQuota(Quota q){
+            if(quota == null)
+                tokens = q.burstBytes;
+            quota = q;
+        }
+
+        /**
+         * Takes bytes from the bucket, going into debt if there aren't
+         * enough.
+         * @return How long, in nanoseconds, the caller has to wait for the
+         * bytes to have been paid for.
+         */
+        synchronized long take(int bytes){
+            Quota q = quota;
+            long now = System.nanoTime();
+            tokens = Math.min(q.burstBytes, tokens + (now - lastRefill) * q.bytesPerSecond / 1e9);
+            lastRefill = now;
+            tokens -= bytes;
+            if(tokens >= 0)
+                return 0;
+            return (long) (-tokens * 1e9 / q.bytesPerSecond);
+        }
+    }
+
+
+    private static class ThrottledOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+        private final UserState user;
+
+        ThrottledOutputStream(ServletOutputStream out, UserState user){
+            this.out = out;
+            this.user = user;
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            pace(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while(len > 0){
+                int n = Math.min(len, MAX_WRITE);
+                pace(n);
+                out.write(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void pace(int bytes) throws InterruptedIOException {
+            long wait = user.take(bytes);
+            if(wait <= 0)
+                return;
+            THROTTLED_NANOS.addAndGet(wait);
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while pacing the response.");
+            }
+        }
+    }
+
+
+    private static class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, UserState> users = new LinkedHashMap<>(16, 0.75f, true);
+        private final int max;
+
+        Shard(int max){
+            this.max = max;
+        }
+
+        UserState get(String key){
+            lock.lock();
+            try {
+                UserState user = users.get(key);
+                if(user == null){
+                    if(users.size() >= max)
+                        evict();
+                    user = new UserState();
+                    users.put(key, user);
+                }
+                return user;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Drops the least recently seen idle user, or the least recently
+         * seen user if they are all busy. A dropped busy user keeps their
+         * state until their requests finish, they just aren't counted
+         * against any new ones.
+         */
+        private void evict(){
+            Iterator<Map.Entry<String, UserState>> i = users.entrySet().iterator();
+            while(i.hasNext()){
+                if(i.next().getValue().inFlight.get() == 0){
+                    i.remove();
+                    return;
+                }
+            }
+            i = users.entrySet().iterator();
+            if(i.hasNext()){
+                i.next();
+                i.remove();
+            }
+        }
+    }
+
+}
@@ -25,9 +25,10 @@
  */
 
 package opendap.bes;
-import opendap.coreServlet.ByteArrayOutputStreamTransmitCoordinator;
+import opendap.coreServlet.SpillBufferTransmitCoordinator;
 import opendap.coreServlet.TransmitCoordinator;
 import opendap.io.HyraxStringEncoding;
+import opendap.io.SpillBuffer;
 import opendap.logging.Timer;
 import opendap.logging.Procedure;
 import opendap.ppt.OPeNDAPClient;
@@ -45,8 +46,8 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
@@ -59,14 +60,17 @@ import java.util.concurrent.locks.ReentrantLock;
 public class BES {
 
     private Logger log;
-    private BESConfig config;
+    private volatile BESConfig config;
 
-    private ArrayBlockingQueue<OPeNDAPClient> clientQueue;
+    // The pool is bounded by clientCheckOutFlag, not by the queue, so that
+    // the number of clients can be changed while the BES is in use.
+    private LinkedBlockingQueue<OPeNDAPClient> clientQueue;
     private ConcurrentHashMap<String, OPeNDAPClient> clientsMap;
     private ReentrantLock clientCheckoutLock;
-    private Semaphore clientCheckOutFlag;
+    private ClientPermits clientCheckOutFlag;
     private ReentrantLock clientsMapLock;
     private int totalClients;
+    private volatile boolean retired;
 
     private ReentrantLock adminLock;
 
@@ -77,6 +81,8 @@ public class BES {
     private ReentrantLock versionDocLock;
     private Document serverVersionDocument;
 
+    private final BesHealth health;
+
     private static final Namespace BES_NS = opendap.namespaces.BES.BES_NS;
     private static final Namespace BES_ADMIN_NS = opendap.namespaces.BES.BES_ADMIN_NS;
 
@@ -91,23 +97,99 @@ public class BES {
         log = org.slf4j.LoggerFactory.getLogger(getClass());
         this.config = config.copy();
 
-        clientQueue = new ArrayBlockingQueue<>(getMaxClients(), true);
+        clientQueue = new LinkedBlockingQueue<>();
         clientsMap = new ConcurrentHashMap<>();
         clientCheckoutLock = new ReentrantLock(true);
-        clientCheckOutFlag = new Semaphore(getMaxClients(), true);
+        clientCheckOutFlag = new ClientPermits(getMaxClients());
         clientsMapLock = new ReentrantLock(true);
         totalClients = 0;
+        retired = false;
 
         adminLock = new ReentrantLock(true);
         administratorInfo= null;
         supportEmail = null;
         versionDocLock = new ReentrantLock(true);
         serverVersionDocument = null;
+        health = new BesHealth();
 
         log.debug("BES built with configuration:\n{}", this.config);
 
     }
 
+    /**
+     * A Semaphore whose number of permits can be lowered as well as raised.
+     */
+    private static class ClientPermits extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        ClientPermits(int permits) {
+            super(permits, true);
+        }
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    /**
+     * Applies a new configuration to this BES while it is in use. The client
+     * pool is resized in place: when it grows the new permits are available
+     * at once, when it shrinks idle clients are shut down now and busy ones
+     * as they are returned. Clients that are already connected keep their
+     * time out until they are replaced. The nick name is not changed since
+     * it is how the BesGroup knows this BES.
+     * @param newConfig The new configuration, it must be for the same
+     *                  prefix, host and port as the current one.
+     */
+    void reconfigure(BESConfig newConfig) {
+        BESConfig next = newConfig.copy();
+        clientsMapLock.lock();
+        try {
+            BESConfig current = config;
+            next.setBesName(current.getBesName());
+            int delta = next.getMaxClients() - current.getMaxClients();
+            config = next;
+            if (delta > 0)
+                clientCheckOutFlag.release(delta);
+            else if (delta < 0)
+                clientCheckOutFlag.reducePermits(-delta);
+            log.info("reconfigure() - {} maxClients: {} -> {}", getNickName(),
+                    current.getMaxClients(), next.getMaxClients());
+        } finally {
+            clientsMapLock.unlock();
+        }
+        trimIdleClients();
+    }
+
+    /**
+     * Marks this BES as no longer in service. Clients that are in use may
+     * finish what they are doing, but they are shut down when they are
+     * returned rather than going back into the pool.
+     */
+    void retire() {
+        retired = true;
+        trimIdleClients();
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * Shuts down idle clients until the pool is no bigger than MaxClients,
+     * or all of them if this BES has been retired.
+     */
+    private void trimIdleClients() {
+        OPeNDAPClient oc;
+        while ((retired || getBesClientCount() > getMaxClients()) && (oc = clientQueue.poll()) != null) {
+            try {
+                discardClient(oc);
+            } catch (PPTException e) {
+                log.error("trimIdleClients() - Failed to discard BES Client (id:{}) msg: {}", oc.getID(), e.getMessage());
+            }
+        }
+    }
+
     /**
      * Returns the number of times to retry a command transaction.
      * Set dynamically to the number of client connections plus 2.
@@ -272,6 +354,15 @@ public class BES {
     public String getNickName() {
         return config.getBesName();
     }
+
+    /**
+     *
+     * @return The BES data root directory as seen by the OLFS, or null if
+     * the OLFS can't see the BES file system.
+     */
+    public String getDataRoot() {
+        return config.getDataRoot();
+    }
     public void setNickName(String name) {
         config.setBesName(name);
     }
@@ -810,15 +901,19 @@ public class BES {
         Document doc;
 
 
-        try (ByteArrayOutputStream responseStream = new ByteArrayOutputStream()) {
+        // Large responses (a big showNode or DMR) are spooled to disk
+        // rather than held in the heap while they are parsed.
+        try (SpillBuffer responseStream = new SpillBuffer()) {
 
-            ByteArrayOutputStreamTransmitCoordinator baostc = new ByteArrayOutputStreamTransmitCoordinator(responseStream);
+            SpillBufferTransmitCoordinator sbtc = new SpillBufferTransmitCoordinator(responseStream);
 
-            besTransaction(request, responseStream, baostc);
+            besTransaction(request, responseStream, sbtc);
             log.debug("besTransaction() The BES returned this document:\n{}", responseStream);
             if (responseStream.size() != 0) {
 
-                doc = sb.build(new ByteArrayInputStream(responseStream.toByteArray()));
+                try (InputStream is = responseStream.getInputStream()) {
+                    doc = sb.build(is);
+                }
 
                 // Get the root element.
                 Element root = doc.getRootElement();
@@ -854,6 +949,39 @@ public class BES {
     public void besTransaction(Document request, OutputStream os, TransmitCoordinator tc)
             throws IOException, PPTException, BESError {
 
+        // A transaction on a BES whose breaker is open is the probe if no
+        // other one is. If the probe is taken (or it is too soon) it is run
+        // anyway, the BesGroup only hands out such a BES when it has no
+        // better choice.
+        boolean probe = health.claim();
+        long startTime = health.transactionStarted();
+        boolean failed = true;
+        try {
+            besTransactionWithRetries(request, os, tc);
+            failed = false;
+        }
+        catch (BESError besError) {
+            // Only a fatal error says something about the health of the BES.
+            failed = besError.getBesErrorCode() == BESError.INTERNAL_FATAL_ERROR;
+            throw besError;
+        }
+        finally {
+            health.transactionFinished(startTime, failed, probe);
+        }
+    }
+
+    /**
+     *
+     * @return The health (load, latency, error rate and circuit breaker
+     * state) of this BES.
+     */
+    public BesHealth getHealth() {
+        return health;
+    }
+
+    private void besTransactionWithRetries(Document request, OutputStream os, TransmitCoordinator tc)
+            throws IOException, PPTException, BESError {
+
         log.debug("BEGIN");
         int attempts = 0;
         boolean besTrouble;
@@ -870,7 +998,7 @@ public class BES {
             Procedure timedProc=null;
 
             log.debug("This is attempt: {}", attempts);
-            try (ByteArrayOutputStream errorOutputStream = new ByteArrayOutputStream()) {
+            try (SpillBuffer errorOutputStream = new SpillBuffer()) {
                 oc = getClient();
                 if (oc == null) {
                     besTrouble = true;
@@ -894,9 +1022,11 @@ public class BES {
                 if (!result) {
                     // We got back an error object from the BES in the baos.
                     // We feed that to the BESError class to build the error object.
-                    log.debug("BESError: \n{}", errorOutputStream.toString(HyraxStringEncoding.getCharset()));
-                    ByteArrayInputStream bais = new ByteArrayInputStream(errorOutputStream.toByteArray());
-                    BESError besError = new BESError(bais);
+                    log.debug("BESError: \n{}", errorOutputStream);
+                    BESError besError;
+                    try (InputStream is = errorOutputStream.getInputStream()) {
+                        besError = new BESError(is);
+                    }
 
                     log.error("ERROR: BES transaction received a BESError Object. Msg: {}", besError.getMessage());
 
@@ -1078,12 +1208,14 @@ public class BES {
 
             log.debug("clientQueue size: '{}'", clientQueue.size());
 
-            if (clientQueue.isEmpty()) {
+            // Idle clients may be trimmed from the pool at any time, so we
+            // poll() rather than take() to avoid waiting on an empty queue.
+            besClient = clientQueue.poll();
+            if (besClient == null) {
                 besClient = getNewClient();
             } else {
 
-                // Get a client from the client pool.
-                besClient = clientQueue.take();
+                // Got a client from the client pool.
                 log.debug("getClient() - Retrieved BES Client (id:{}) from Pool.", besClient.getID());
 
                 // If the bes connection is closed, or the client just is not connected, pitch the client
@@ -1118,7 +1250,7 @@ public class BES {
     private OPeNDAPClient getNewClient() throws PPTException, InterruptedException  {
 
         // Make a new OPeNDAClient to connect to the BES
-        OPeNDAPClient besClient = new OPeNDAPClient();
+        OPeNDAPClient besClient = newClient();
 
         log.debug("Made new BES Client. (id:{}) Starting Client.",besClient.getID());
 
@@ -1159,6 +1291,16 @@ public class BES {
     }
 
 
+    /**
+     * Makes the (unstarted) clients for the pool. The benchmarks replace it
+     * to measure the pool without the BES.
+     * @return A new OPeNDAPClient.
+     */
+    OPeNDAPClient newClient() {
+        return new OPeNDAPClient();
+    }
+
+
     /**
      * When a piece of code is done using an OPeNDAPClient, it should return it
      * to the pool using this method.
@@ -1200,7 +1342,11 @@ public class BES {
 
 
     private void checkInClient(OPeNDAPClient dapClient) throws PPTException {
-        if (
+        if (retired || getBesClientCount() > getMaxClients()) {
+            // Retired, or the pool was made smaller while this client was out.
+            discardClient(dapClient);
+        }
+        else if (
             !dapClient.isOk() ||
             (config.getMaxCommands() > 0 &&
             dapClient.getCommandCount() > config.getMaxCommands())
@@ -1270,26 +1416,35 @@ public class BES {
      * client's connection to the BES.
      */
     public void destroy() {
+        destroy(10000);
+    }
+
+    /**
+     * Like destroy() but waits up to timeout milliseconds for the clients
+     * that are in use to be returned before they are killed.
+     * @param timeout How long to wait, in milliseconds.
+     */
+    public void destroy(long timeout) {
 
         boolean nicely = false;
         boolean gotClientCheckoutLock = false;
 
         try {
-            if (clientCheckoutLock.tryLock(10, TimeUnit.SECONDS)) {
+            if (clientCheckoutLock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
                 gotClientCheckoutLock = true;
 
                 log.debug("Attempting to acquire all client permits...");
 
 
-                if (clientCheckOutFlag.tryAcquire(getMaxClients(), 10, TimeUnit.SECONDS)) {
+                if (clientCheckOutFlag.tryAcquire(getMaxClients(), timeout, TimeUnit.MILLISECONDS)) {
                     log.debug("All {} client permits acquired.",getMaxClients());
 
                     log.debug("There are {} client(s) to shutdown.", clientQueue.size());
 
 
                     int i = 0;
-                    while (!clientQueue.isEmpty()) {
-                        OPeNDAPClient odc = clientQueue.take();
+                    OPeNDAPClient odc;
+                    while ((odc = clientQueue.poll()) != null) {
                         log.debug("Retrieved OPeNDAPClient[{}] (id:{}) from queue.",i++,odc.getID());
                         shutdownClient(odc);
                     }
@@ -58,6 +58,7 @@ public class BESConfig  {
     private  int     _BesTimeOut;  // in ms
 
     private  String  _BesNickName;
+    private  String  _BesDataRoot;
 
 
     //private  boolean   _usePersistentContentDocs;
@@ -67,6 +68,7 @@ public class BESConfig  {
     public static final String MAX_RESPONSE_SIZE_ELEMENT_OLFS="maxResponseSize";
     public static final String UNITS_ATTRIBUTE_NAME="units";
     public static final String MAX_TIME_OUT_ELEMENT_OLFS="timeOut";
+    public static final String DATA_ROOT_ELEMENT_OLFS="dataRoot";
 
     private BESConfig() {
         log = org.slf4j.LoggerFactory.getLogger(getClass());
@@ -80,6 +82,7 @@ public class BESConfig  {
         _BesMaxResponseSize = 0;
         _BesMaxVariableSize = 0;
         _BesNickName = null;
+        _BesDataRoot = null;
         _BesTimeOut = 300000; // 5 minutes in ms
     }
 
@@ -112,6 +115,7 @@ public class BESConfig  {
         copy._BesPrefix          = _BesPrefix;
         copy._BesNickName        = _BesNickName;
         copy._BesTimeOut         = _BesTimeOut;
+        copy._BesDataRoot        = _BesDataRoot;
 
         return copy;
     }
@@ -237,6 +241,15 @@ public class BESConfig  {
             log.info("BES '{}' timeOut set to {}",getPrefix(), getTimeOut());
         }
 
+        // The BES data root directory (BES.Catalog.catalog.RootDirectory) as
+        // seen from the OLFS host. Optional, and only useful when the OLFS
+        // and the BES share a file system.
+        Element dataRoot = besConfig.getChild(DATA_ROOT_ELEMENT_OLFS);
+        if( dataRoot!=null ){
+            setDataRoot(dataRoot.getTextTrim());
+            log.info("BES '{}' dataRoot set to {}",getPrefix(), getDataRoot());
+        }
+
         //  <ClientPool maximum="10" maxCmds="2000"/>
 
         Element clientPool = besConfig.getChild("ClientPool");
@@ -472,6 +485,12 @@ public class BESConfig  {
         bes.addContent(maxVariableSize);
         bes.addContent(clientPool);
 
+        if(getDataRoot()!=null){
+            Element dataRoot = new Element(DATA_ROOT_ELEMENT_OLFS);
+            dataRoot.setText(getDataRoot());
+            bes.addContent(dataRoot);
+        }
+
         return bes;
     }
 
@@ -540,6 +559,8 @@ public class BESConfig  {
 
 
     public void setPrefix(String prefix){ _BesPrefix = prefix; }
+    public void setDataRoot(String dataRoot){ _BesDataRoot = dataRoot; }
+    public String getDataRoot() { return _BesDataRoot; }
     public String getPrefix() { return _BesPrefix; }
 
 
@@ -561,6 +582,8 @@ public class BESConfig  {
         s += "        adminPort:  " + getAdminPort() + "\n";
         s += "        MaxClients: " + getMaxClients() + "\n";
         s += "        MaxCommands/client: " + getMaxCommands() + "\n";
+        if(getDataRoot()!=null)
+            s += "        DataRoot:   " + getDataRoot() + "\n";
 
 
 
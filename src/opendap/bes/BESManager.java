@@ -28,6 +28,9 @@ package opendap.bes;
 
 import opendap.PathBuilder;
 import opendap.bes.caching.BesNodeCache;
+import opendap.bes.caching.BesRequestCoalescer;
+import opendap.bes.caching.BesResponseCache;
+import opendap.bes.caching.RenderedResponseCache;
 import opendap.coreServlet.Scrub;
 import opendap.coreServlet.ServletUtil;
 import opendap.ppt.PPTException;
@@ -38,10 +41,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -55,15 +64,22 @@ public class BESManager {
 
     private static final Logger LOG = LoggerFactory.getLogger(BESManager.class);
     private static final AtomicBoolean INITIALIZED = new AtomicBoolean(false);
-    private static final Vector<BesGroup> BES_COLLECTION = new Vector<>();
+    // Copy on write so that requests can look up a group while the
+    // configuration is being reloaded.
+    private static final CopyOnWriteArrayList<BesGroup> BES_COLLECTION = new CopyOnWriteArrayList<>();
     private static final AtomicBoolean CONFIGURED = new AtomicBoolean(false);
     private static final ReentrantLock LOCK = new ReentrantLock() ;
 
     public static final String BES_MANAGER_CONFIG_ELEMENT = "BESManager";
+    public static final String BES_SELECTION_ELEMENT_NAME = "BesSelection";
 
 
+    public static final String DEFAULT_CONFIG_FILENAME = "olfs.xml";
+
     private static Element config = null;
-    private static BesGroup rootGroup;
+    private static volatile BesGroup rootGroup;
+    private static ServletContext servletContext = null;
+    private static String configFileName = DEFAULT_CONFIG_FILENAME;
 
     /**
      * This is a singleton class so we make the default constructor private. All of the methods are static and so
@@ -78,6 +94,7 @@ public class BESManager {
             if (INITIALIZED.get()) return;
 
             BESManager.config = (Element) config.clone();
+            BESManager.servletContext = servletContext;
             configure(servletContext, config);
             LOG.info("Initialized.");
             INITIALIZED.set(true);
@@ -97,6 +114,9 @@ public class BESManager {
     public static void destroy(){
         shutdown();
         BesNodeCache.destroy();
+        BesResponseCache.destroy();
+        BesRequestCoalescer.destroy();
+        RenderedResponseCache.destroy();
         LOG.info("Destroy complete.");
     }
 
@@ -105,6 +125,176 @@ public class BESManager {
         return (Element) config.clone();
     }
 
+    /**
+     * @param fileName The name of the OLFS configuration file that reload()
+     *                 reads the BESManager element from.
+     */
+    public static void setConfigFileName(String fileName){
+        if(fileName != null)
+            configFileName = fileName;
+    }
+
+
+    /**
+     * Reads the BESManager element from the OLFS configuration file again
+     * and applies it with reload(Element).
+     * @return A summary of what was changed.
+     * @throws BadConfigurationException When the configuration can't be
+     * read or is broken, in which case nothing is changed.
+     */
+    public static String reload() throws BadConfigurationException {
+        if(servletContext == null)
+            throw new BadConfigurationException("BESManager has not been initialized, there is nothing to reload.");
+        Document configDoc;
+        try {
+            configDoc = ServletUtil.loadConfig(configFileName, servletContext);
+        } catch (ServletException e) {
+            throw new BadConfigurationException(e.getMessage());
+        }
+        Element besManagerElement = configDoc.getRootElement().getChild(BES_MANAGER_CONFIG_ELEMENT);
+        if(besManagerElement == null)
+            throw new BadConfigurationException("The configuration file " + configFileName +
+                    " has no " + BES_MANAGER_CONFIG_ELEMENT + " element.");
+        return reload(besManagerElement);
+    }
+
+
+    /**
+     * Applies a new set of BES elements (and the BesSelection element)
+     * without stopping the server. A BES is known by its prefix, host and
+     * port:
+     *   - A BES that is in both the old and the new configuration is kept,
+     *     along with its clients and health, and its pool size, time out and
+     *     limits are changed in place.
+     *   - A new BES is added to the group for its prefix, making the group
+     *     if there isn't one.
+     *   - A BES that is gone is taken out of its group so that no new
+     *     requests are sent to it, and is then drained in the background:
+     *     the requests it is working on are allowed to finish (for up to its
+     *     time out) before its clients are shut down.
+     * New members are added before old ones are taken away, so there is
+     * always a BES for every prefix that is still configured. The caches
+     * and the site map are left alone, they stay warm.
+     *
+     * @param besConfiguration The new BESManager element.
+     * @return A summary of what was changed.
+     * @throws BadConfigurationException When the configuration is broken,
+     * in which case nothing is changed.
+     */
+    public static String reload(Element besConfiguration) throws BadConfigurationException {
+        LOCK.lock();
+        try {
+            if (!INITIALIZED.get())
+                throw new BadConfigurationException("BESManager has not been initialized, there is nothing to reload.");
+
+            // Parse everything before touching anything.
+            List<BESConfig> besConfigs = new ArrayList<>();
+            boolean foundRootBES = false;
+            for (Object o : besConfiguration.getChildren("BES")) {
+                BESConfig besConfig = new BESConfig((Element) o);
+                besConfigs.add(besConfig);
+                if (besConfig.getPrefix().equals("/"))
+                    foundRootBES = true;
+            }
+            if (!foundRootBES)
+                throw new BadConfigurationException("OLFS Configuration must " +
+                        "contain at LEAST one BES configuration element. Whose " +
+                        "prefix is \"/\". The configuration was not reloaded.");
+
+            configureBesSelection(besConfiguration.getChild(BES_SELECTION_ELEMENT_NAME));
+
+            Map<String, Deque<BES>> current = new HashMap<>();
+            for (BesGroup besGroup : BES_COLLECTION) {
+                for (BES bes : besGroup.getMembers())
+                    current.computeIfAbsent(getBesKey(bes.getPrefix(), bes.getHost(), bes.getPort()),
+                            k -> new ArrayDeque<>()).add(bes);
+            }
+
+            int added = 0;
+            int changed = 0;
+            for (BESConfig besConfig : besConfigs) {
+                Deque<BES> matches = current.get(getBesKey(besConfig.getPrefix(), besConfig.getHost(), besConfig.getPort()));
+                BES bes = matches == null ? null : matches.poll();
+                if (bes != null) {
+                    bes.reconfigure(besConfig);
+                    changed++;
+                } else {
+                    bes = new BES(besConfig);
+                    BesGroup besGroup = null;
+                    for (BesGroup bg : BES_COLLECTION) {
+                        if (bg.getGroupPrefix().equals(bes.getPrefix()))
+                            besGroup = bg;
+                    }
+                    if (besGroup == null) {
+                        besGroup = new BesGroup(bes.getPrefix());
+                        besGroup.add(bes);
+                        BES_COLLECTION.add(besGroup);
+                    } else {
+                        besGroup.add(bes);
+                    }
+                    LOG.info("reload() - Added BES {}", bes);
+                    added++;
+                }
+            }
+
+            // Whatever is left over is no longer configured.
+            List<BES> removed = new ArrayList<>();
+            for (Deque<BES> leftOvers : current.values())
+                removed.addAll(leftOvers);
+
+            for (BesGroup besGroup : BES_COLLECTION) {
+                List<BES> members = besGroup.getMembers();
+                if (removed.containsAll(members)) {
+                    // Drop the whole group before emptying it so that no one
+                    // is handed an empty group.
+                    BES_COLLECTION.remove(besGroup);
+                    LOG.info("reload() - Removed BesGroup for prefix '{}'", besGroup.getGroupPrefix());
+                } else {
+                    for (BES bes : members) {
+                        if (removed.contains(bes))
+                            besGroup.remove(bes);
+                    }
+                }
+            }
+            for (BesGroup besGroup : BES_COLLECTION) {
+                if (besGroup.getGroupPrefix().equals("/"))
+                    rootGroup = besGroup;
+            }
+            for (BES bes : removed)
+                drain(bes);
+
+            BESManager.config = (Element) besConfiguration.clone();
+
+            String msg = "BESManager configuration reloaded. added: " + added +
+                    " reconfigured: " + changed + " removed: " + removed.size();
+            LOG.info("reload() - {}", msg);
+            return msg;
+        }
+        finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static String getBesKey(String prefix, String host, int port){
+        return prefix + " " + host + ":" + port;
+    }
+
+    /**
+     * Retires a BES that has been taken out of its group and shuts it down
+     * once the requests it is working on are done, or its time out has
+     * passed, whichever comes first.
+     */
+    private static void drain(final BES bes){
+        LOG.info("reload() - Draining BES {}", bes);
+        bes.retire();
+        Thread drainer = new Thread(() -> {
+            bes.destroy(bes.getTimeout());
+            LOG.info("BES {} has been drained and shut down.", bes.getNickName());
+        }, "BesDrain-" + bes.getNickName());
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
 
     private static void configure(ServletContext servletContext, Element besConfiguration) throws BadConfigurationException {
 
@@ -118,6 +308,8 @@ public class BESManager {
                     "the value of it's prefix element  must be \"/\".");
 
 
+        configureBesSelection(besConfiguration.getChild(BES_SELECTION_ELEMENT_NAME));
+
         boolean foundRootBES = false;
         BES bes;
         BESConfig besConfig;
@@ -160,6 +352,25 @@ public class BESManager {
             BesNodeCache.init(nodeCache);
         }
 
+        Element responseCache = besConfiguration.getChild(BesResponseCache.RESPONSE_CACHE_ELEMENT_NAME);
+        // Like the NodeCache, the ResponseCache is disabled if it's not in
+        // the configuration.
+        if(responseCache!=null){
+            String defaultResponseCacheDir = PathBuilder.pathConcat(ServletUtil.getConfigPath(servletContext),"cache");
+            defaultResponseCacheDir = PathBuilder.pathConcat(defaultResponseCacheDir,"ResponseCache");
+            BesResponseCache.init(responseCache, defaultResponseCacheDir);
+        }
+
+        Element renderedResponseCache = besConfiguration.getChild(RenderedResponseCache.RENDERED_RESPONSE_CACHE_ELEMENT_NAME);
+        if(renderedResponseCache!=null){
+            RenderedResponseCache.init(renderedResponseCache);
+        }
+
+        Element coalesceRequests = besConfiguration.getChild(BesRequestCoalescer.COALESCE_REQUESTS_ELEMENT_NAME);
+        if(coalesceRequests!=null){
+            BesRequestCoalescer.init(coalesceRequests);
+        }
+
         Element siteMapCache = besConfiguration.getChild(BesSiteMap.SITE_MAP_CACHE_ELEMENT_NAME);
         // The SiteMap cache is required, so if it's not in the configuration
         // then we need to gin one up.
@@ -184,6 +395,36 @@ public class BESManager {
     }
 
 
+    /**
+     * Configures how a BES is chosen from each BesGroup, and the BES circuit
+     * breakers, from the (optional) BesSelection element:
+     *     &lt;BesSelection strategy="powerOfTwo" failureThreshold="5" openSeconds="30" /&gt;
+     * @param besSelection The BesSelection element, may be null.
+     * @throws BadConfigurationException When the element has bad values.
+     */
+    private static void configureBesSelection(Element besSelection) throws BadConfigurationException {
+        if(besSelection == null)
+            return;
+        try {
+            String strategy = besSelection.getAttributeValue("strategy");
+            if (strategy != null)
+                BesGroup.setSelectionStrategy(BesGroup.SelectionStrategy.valueOf(strategy.trim()));
+
+            int failureThreshold = Integer.parseInt(besSelection.getAttributeValue("failureThreshold", "5"));
+            long openSeconds = Long.parseLong(besSelection.getAttributeValue("openSeconds", "30"));
+            BesHealth.setCircuitBreaker(failureThreshold, openSeconds * 1000);
+
+            LOG.info("BES selection strategy: {} failureThreshold: {} openSeconds: {}",
+                    BesGroup.getSelectionStrategy(), failureThreshold, openSeconds);
+        }
+        catch (IllegalArgumentException e) {
+            throw new BadConfigurationException("The " + BES_SELECTION_ELEMENT_NAME + " element is broken. " +
+                    "The strategy must be one of roundRobin, leastLoaded or powerOfTwo and failureThreshold " +
+                    "and openSeconds must be integers. Message: " + e.getMessage());
+        }
+    }
+
+
     public static void addBes(BES bes) throws BadConfigurationException {
 
         Iterator<BesGroup> i = BESManager.getBesGroups();
@@ -302,6 +543,28 @@ public class BESManager {
     }
 
 
+    /**
+     * @return The members of each BesGroup along with their pool size and
+     * health.
+     */
+    public static String getStatus(){
+        StringBuilder sb = new StringBuilder();
+        sb.append("BESManager ");
+        if(!INITIALIZED.get())
+            return sb.append("NOT INITIALIZED").toString();
+        sb.append("selection: ").append(BesGroup.getSelectionStrategy());
+        for(BesGroup besGroup : BES_COLLECTION){
+            sb.append("\n  BesGroup prefix: '").append(besGroup.getGroupPrefix()).append("'");
+            for(BES bes : besGroup.getMembers()){
+                sb.append("\n    ").append(bes.getNickName()).append(" ").append(bes);
+                sb.append(" clients: ").append(bes.getBesClientCount());
+                sb.append(" ").append(bes.getHealth());
+            }
+        }
+        return sb.toString();
+    }
+
+
     public static void shutdown(){
         for(BesGroup besGroup : BES_COLLECTION){
             LOG.debug("Shutting down BesGroup for prefix '" + besGroup.getGroupPrefix()+"'");
@@ -26,6 +26,7 @@
 
 package opendap.bes;
 
+import opendap.coreServlet.RequestCache;
 import opendap.coreServlet.ResourceInfo;
 import org.jdom.Document;
 import org.jdom.Element;
@@ -63,6 +64,33 @@ public class BESResource implements ResourceInfo {
     private static final Namespace BES_NS = opendap.namespaces.BES.BES_NS;
 
 
+    /**
+     * Returns the BESResource for dataSourceName, asking the BES (or the
+     * BesNodeCache) about it only the first time it is wanted during the
+     * current request. Dispatch, getLastModified() and the response itself
+     * all want the same facts and they are held in the RequestCache so that
+     * a request costs at most one showNode.
+     * @param dataSourceName The BES data source.
+     * @param besApi The BesApi to ask.
+     * @return The BESResource.
+     * @throws Exception When the BES can't be asked.
+     */
+    public static BESResource get(String dataSourceName, BesApi besApi) throws Exception {
+        if(besApi == null || dataSourceName == null)
+            return new BESResource(dataSourceName, besApi);
+
+        String key = BESResource.class.getName() + ":" + besApi.getClass().getName() + ":" +
+                (dataSourceName.startsWith("/") ? dataSourceName : "/" + dataSourceName);
+        Object o = RequestCache.get(key);
+        if(o instanceof BESResource)
+            return (BESResource) o;
+
+        BESResource besResource = new BESResource(dataSourceName, besApi);
+        RequestCache.put(key, besResource);
+        return besResource;
+    }
+
+
     public BESResource(String dataSourceName, BesApi besApi) throws Exception {
 
         Logger log = org.slf4j.LoggerFactory.getLogger(getClass());
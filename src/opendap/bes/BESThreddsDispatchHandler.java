@@ -147,6 +147,18 @@ public class BESThreddsDispatchHandler implements DispatchHandler {
     public void handleRequest(HttpServletRequest request,
                               HttpServletResponse response)
             throws Exception {
+        AdmissionControl.Permit permit = AdmissionControl.admit(request, AdmissionControl.RequestKind.catalog);
+        try {
+            sendThreddsCatalog(request, response);
+        }
+        finally {
+            permit.close();
+        }
+    }
+
+    private void sendThreddsCatalog(HttpServletRequest request,
+                                    HttpServletResponse response)
+            throws Exception {
 
 
         d_log.debug("handleRequest() - Processing THREDDS request.");
@@ -30,12 +30,15 @@ import opendap.PathBuilder;
 import opendap.auth.EarthDataLoginAccessToken;
 import opendap.auth.UserProfile;
 import opendap.bes.caching.BesNodeCache;
-import opendap.coreServlet.ByteArrayOutputStreamTransmitCoordinator;
+import opendap.bes.caching.BesRequestCoalescer;
+import opendap.bes.caching.BesResponseCache;
 import opendap.coreServlet.RequestCache;
 import opendap.coreServlet.ResourceInfo;
+import opendap.coreServlet.SpillBufferTransmitCoordinator;
 import opendap.coreServlet.TransmitCoordinator;
 import opendap.dap.User;
 import opendap.dap4.QueryParameters;
+import opendap.io.SpillBuffer;
 import opendap.logging.ServletLogUtil;
 import opendap.logging.Procedure;
 import opendap.logging.Timer;
@@ -325,21 +328,13 @@ public class BesApi implements Cloneable {
             JDOMException, BESError {
 
 
-        ByteArrayOutputStream ddxString = new ByteArrayOutputStream();
-        ByteArrayOutputStreamTransmitCoordinator baostc = new ByteArrayOutputStreamTransmitCoordinator(ddxString);
+        try (SpillBuffer ddxString = new SpillBuffer()) {
+            SpillBufferTransmitCoordinator sbtc = new SpillBufferTransmitCoordinator(ddxString);
 
-        writeDDX(user, dataSource,constraintExpression,xmlBase,ddxString,baostc);
+            writeDDX(user, dataSource, constraintExpression, xmlBase, ddxString, sbtc);
 
-
-        SAXBuilder sb = new SAXBuilder();
-
-
-
-        Document ddx = sb.build(new ByteArrayInputStream(ddxString.toByteArray()));
-
-        response.detachRootElement();
-
-        response.setRootElement(ddx.detachRootElement());
+            parseResponse(ddxString, response);
+        }
 
 
 
@@ -368,19 +363,13 @@ public class BesApi implements Cloneable {
             JDOMException, BESError {
 
 
-        ByteArrayOutputStream ddxString = new ByteArrayOutputStream();
-        ByteArrayOutputStreamTransmitCoordinator baostc = new ByteArrayOutputStreamTransmitCoordinator(ddxString);
+        try (SpillBuffer dmrString = new SpillBuffer()) {
+            SpillBufferTransmitCoordinator sbtc = new SpillBufferTransmitCoordinator(dmrString);
 
-        writeDMR(user, dataSource,qp,xmlBase,ddxString, baostc);
+            writeDMR(user, dataSource, qp, xmlBase, dmrString, sbtc);
 
-
-        SAXBuilder sb = new SAXBuilder();
-
-        Document ddx = sb.build(new ByteArrayInputStream(ddxString.toByteArray()));
-
-        response.detachRootElement();
-
-        response.setRootElement(ddx.detachRootElement());
+            parseResponse(dmrString, response);
+        }
 
 
 
@@ -849,14 +838,25 @@ public class BesApi implements Cloneable {
             IOException,
             JDOMException, BESError {
 
-        ByteArrayOutputStream pathInfoDocString = new ByteArrayOutputStream();
-        ByteArrayOutputStreamTransmitCoordinator baostc = new ByteArrayOutputStreamTransmitCoordinator(pathInfoDocString);
-        writePathInfoResponse(dataSource,pathInfoDocString, baostc);
+        try (SpillBuffer pathInfoDocString = new SpillBuffer()) {
+            SpillBufferTransmitCoordinator sbtc = new SpillBufferTransmitCoordinator(pathInfoDocString);
+            writePathInfoResponse(dataSource, pathInfoDocString, sbtc);
+            parseResponse(pathInfoDocString, response);
+        }
+    }
 
+    /**
+     * Parses a BES response that was written to a SpillBuffer and makes its
+     * root element the root of response.
+     */
+    private static void parseResponse(SpillBuffer besResponse, Document response) throws IOException, JDOMException {
         SAXBuilder sb = new SAXBuilder();
-        Document pathInfoResponseDoc = sb.build(new ByteArrayInputStream(pathInfoDocString.toByteArray()));
+        Document doc;
+        try (InputStream is = besResponse.getInputStream()) {
+            doc = sb.build(is);
+        }
         response.detachRootElement();
-        response.setRootElement(pathInfoResponseDoc.detachRootElement());
+        response.setRootElement(doc.detachRootElement());
     }
 
 
@@ -1508,12 +1508,79 @@ public class BesApi implements Cloneable {
             throws BadConfigurationException, IOException, PPTException, BESError {
 
         log.debug("besTransaction() started.");
+
+        // A response that is being collected in a SpillBuffer is put in the
+        // response cache from the SpillBuffer once it's complete, rather
+        // than being captured as it goes by.
+        SpillBuffer spillBuffer = os instanceof SpillBuffer ? (SpillBuffer) os : null;
+
         log.debug("besTransaction() request document: \n-----------\n"+ getDocumentAsString(request)+"-----------\n");
 
         BES bes = BESManager.getBES(dataSource);
+
+        // The same key identifies the request to the response cache and to
+        // the coalescer, so it's only made once.
+        boolean cacheable = BesResponseCache.isInitialized() && BesResponseCache.isCacheable(request);
+        String requestKey = null;
+        if(cacheable || BesRequestCoalescer.isInitialized())
+            requestKey = BesResponseCache.getRequestKey(bes.getPrefix(), request);
+
+        String cacheKey = null;
+        long lastModified = -1;
+        if(cacheable && requestKey != null) {
+            lastModified = getResponseCacheLastModified(dataSource);
+            if (lastModified > 0) {
+                cacheKey = requestKey;
+                if (BesResponseCache.writeCachedResponse(cacheKey, lastModified, os)) {
+                    log.debug("besTransaction() - Response for {} served from BesResponseCache.", dataSource);
+                    return;
+                }
+            }
+        }
+
+        // Identical requests that are already running share their response.
+        String coalesceKey = BesRequestCoalescer.isInitialized() ? requestKey : null;
+
         int bes_timeout_seconds = bes.getTimeout()/1000;
         request.getRootElement().addContent(0,setContextElement("bes_timeout",Integer.toString(bes_timeout_seconds)));
-        bes.besTransaction(request, os, tc);
+
+        final String responseCacheKey = cacheKey;
+        final long responseLastModified = lastModified;
+        BesRequestCoalescer.execute(coalesceKey, os, tc, (out, coordinator) -> {
+            if(responseCacheKey != null && spillBuffer == null){
+                BesResponseCache.ResponseCapture capture = new BesResponseCache.ResponseCapture(out);
+                bes.besTransaction(request, capture, coordinator);
+                BesResponseCache.put(responseCacheKey, responseLastModified, capture.getBytes());
+            }
+            else {
+                bes.besTransaction(request, out, coordinator);
+            }
+        });
+        if(cacheKey != null && spillBuffer != null && spillBuffer.size() <= BesResponseCache.getMaxEntrySize()){
+            // Responses larger than the SpillBuffer threshold have been
+            // moved to a file and are read back from there.
+            BesResponseCache.put(cacheKey, lastModified, spillBuffer.readContent());
+        }
+    }
+
+    /**
+     * Determines the last modified time of a dataSource so that cached
+     * responses can be validated.
+     *
+     * @param dataSource The BES datasource that is going to be accessed.
+     * @return The last modified time of dataSource, or -1 if it cannot be
+     * determined.
+     */
+    private long getResponseCacheLastModified(String dataSource) {
+        try {
+            BESResource besResource = BESResource.get(dataSource, this);
+            if(besResource.sourceExists())
+                return besResource.lastModified();
+        }
+        catch (Exception e) {
+            log.debug("Unable to determine last modified time of {} Msg: {}", dataSource, e.getMessage());
+        }
+        return -1;
     }
 
 
@@ -2614,6 +2681,39 @@ public class BesApi implements Cloneable {
     }
 
 
+    /**
+     * Locates the file for dataSource in the local file system. This only
+     * works when the BES that holds dataSource has been configured with a
+     * dataRoot (that is, the OLFS can see the BES file system).
+     *
+     * @param dataSource The BES datasource.
+     * @return The readable regular file for dataSource, or null if it can't
+     * be found locally.
+     */
+    public File getLocalFile(String dataSource) {
+        try {
+            BES bes = BESManager.getBES(dataSource);
+            String dataRoot = bes.getDataRoot();
+            if (dataRoot == null)
+                return null;
+
+            File root = new File(dataRoot).getCanonicalFile();
+            File file = new File(root, bes.trimPrefix(dataSource)).getCanonicalFile();
+
+            // Don't let a path with ../ (or a symbolic link) escape the data root.
+            if (!file.getPath().startsWith(root.getPath() + File.separator))
+                return null;
+
+            if (file.isFile() && file.canRead())
+                return file;
+        }
+        catch (BadConfigurationException | IOException e) {
+            log.debug("Unable to locate a local file for {} Msg: {}", dataSource, e.getMessage());
+        }
+        return null;
+    }
+
+
 
     private  String getDocumentAsString(Document request) throws IOException{
         XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
@@ -2723,7 +2823,7 @@ public class BesApi implements Cloneable {
                 log.debug("Asking BES about resource: {}", besDataSourceId);
 
                 try {
-                    ResourceInfo dsi = new BESResource(besDataSourceId, this);
+                    ResourceInfo dsi = BESResource.get(besDataSourceId, this);
                     // Q: Why this test and not dsi.sourceExists()??
                     // A: Because this check is only for things the BES views as data. Regular (non data)
                     //    files are handled by the "FileDispatchHandler"
@@ -35,12 +35,14 @@ import opendap.bes.dap4Responders.FileAccess;
 import opendap.bes.dap4Responders.Iso19115.IsoDMR;
 import opendap.bes.dap4Responders.Iso19115.IsoRubricDMR;
 import opendap.bes.dap4Responders.Version;
+import opendap.coreServlet.AdmissionControl;
 import opendap.coreServlet.DispatchHandler;
 import opendap.coreServlet.HttpResponder;
 import opendap.coreServlet.ReqInfo;
 import opendap.coreServlet.ServletUtil;
 import opendap.dap.Dap2Service;
 import opendap.dap4.Dap4Service;
+import opendap.logging.AccessLog;
 import opendap.services.ServicesRegistry;
 import org.jdom.Element;
 import org.slf4j.Logger;
@@ -505,7 +507,7 @@ public class BesDapDispatcher implements DispatchHandler {
             return false;
 
 
-        for (HttpResponder r : _responders) {
+        for (Dap4Responder r : _responders) {
             _log.debug("Checking responder: " + r.getClass().getSimpleName() + " (pathPrefix: " + r.getPathPrefix() + ")");
             if (r.matches(relativeUrl)) {
 
@@ -514,7 +516,7 @@ public class BesDapDispatcher implements DispatchHandler {
 
                 if (sendResponse){
 
-                    r.respondToHttpGetRequest(request, response);
+                    respond(r, request, response);
 
                 }
 
@@ -528,6 +530,36 @@ public class BesDapDispatcher implements DispatchHandler {
     }
 
 
+    /**
+     * Has the responder answer the request once the request has been admitted
+     * to the lane for the kind of response the responder makes.
+     * @param r The responder that matched the request.
+     * @param request The request.
+     * @param response The response.
+     * @throws Exception When the responder fails or the lane is full.
+     */
+    protected void respond(Dap4Responder r, HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+
+        AdmissionControl.RequestKind kind = AdmissionControl.RequestKind.other;
+        if(r.isDataResponder())
+            kind = AdmissionControl.RequestKind.data;
+        else if(r.isMetadataResponder())
+            kind = AdmissionControl.RequestKind.metadata;
+
+        if(AccessLog.isEnabled())
+            AccessLog.setResponder(r.getClass().getSimpleName(), r.getResourceId(ReqInfo.getLocalUrl(request), false));
+
+        AdmissionControl.Permit permit = AdmissionControl.admit(request, kind);
+        try {
+            r.respondToHttpGetRequest(request, response);
+        }
+        finally {
+            permit.close();
+        }
+    }
+
+
     public long getLastModified(HttpServletRequest req) {
 
          String relativeUrl = ReqInfo.getLocalUrl(req);
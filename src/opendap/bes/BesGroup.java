@@ -39,6 +39,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
@@ -47,6 +48,20 @@ import java.util.Vector;
  **/
 public class BesGroup extends CyclicGroup<BES> {
 
+    /**
+     * How a BES is chosen from the group:
+     *   roundRobin  - each member in turn, skipping those whose circuit
+     *                 breaker is open.
+     *   leastLoaded - the member with the lowest load score.
+     *   powerOfTwo  - the better of two members picked at random. This
+     *                 spreads the load almost as well as leastLoaded while
+     *                 avoiding a stampede to the same member.
+     * See BesHealth for the load score and the circuit breaker.
+     */
+    public enum SelectionStrategy { roundRobin, leastLoaded, powerOfTwo }
+
+    private static volatile SelectionStrategy selectionStrategy = SelectionStrategy.powerOfTwo;
+
     Logger log;
     private String prefix;
 
@@ -76,6 +91,16 @@ public class BesGroup extends CyclicGroup<BES> {
         return super.add(bes.getNickName(),bes);
     }
 
+    /**
+     * Takes a BES out of the group so that it is no longer chosen. The BES
+     * itself is left running, see BES.retire().
+     * @param bes The BES to remove.
+     * @return True if the BES was a member of this group.
+     */
+    public boolean remove(BES bes) {
+        return remove(bes.getNickName(), bes);
+    }
+
 
 
 
@@ -85,6 +110,14 @@ public class BesGroup extends CyclicGroup<BES> {
         return prefix;
     }
 
+    public static void setSelectionStrategy(SelectionStrategy strategy){
+        selectionStrategy = strategy;
+    }
+
+    public static SelectionStrategy getSelectionStrategy(){
+        return selectionStrategy;
+    }
+
 
     public void destroy(){
         Object[] members = drain();
@@ -106,7 +139,7 @@ public class BesGroup extends CyclicGroup<BES> {
         Object o  = RequestCache.get(responseCacheKey);
 
         if(o == null){
-            bes = super.getNext();
+            bes = select();
             RequestCache.put(responseCacheKey,bes);
         }
         else {
@@ -116,6 +149,96 @@ public class BesGroup extends CyclicGroup<BES> {
     }
 
 
+    /**
+     * Chooses a member of the group using the current SelectionStrategy. No
+     * locks are taken. Members whose circuit breaker is open are passed
+     * over, unless they all are in which case we fall back to round robin
+     * because trying a sick BES beats not trying at all. Choosing a BES
+     * claims nothing, the half-open probe is claimed by the transaction
+     * (see BES.besTransaction()) since a request may choose a BES and then
+     * never use it.
+     * @return The chosen BES.
+     */
+    private BES select(){
+        List<BES> members = getMembers();
+        int size = members.size();
+        if(size == 1)
+            return members.get(0);
+
+        BES choice = null;
+        switch (selectionStrategy) {
+            case powerOfTwo: {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                BES a = members.get(random.nextInt(size));
+                BES b = members.get(random.nextInt(size));
+                choice = better(a, b);
+                if(choice == null)
+                    choice = leastLoaded(members);
+                break;
+            }
+            case leastLoaded:
+                choice = leastLoaded(members);
+                break;
+
+            case roundRobin:
+            default: {
+                int start = nextIndex();
+                for (int i = 0; i < size && choice == null; i++) {
+                    BES bes = members.get(Math.floorMod(start + i, size));
+                    if (bes.getHealth().isAvailable())
+                        choice = bes;
+                }
+                break;
+            }
+        }
+
+        if(choice == null) {
+            choice = super.getNext();
+            log.warn("select() - Every BES in the group '{}' is unavailable. Falling back to round robin: {}",
+                    prefix, choice.getNickName());
+        }
+        if(log.isDebugEnabled())
+            log.debug("select() - Chose BES {} ({})", choice.getNickName(), choice.getHealth());
+        return choice;
+    }
+
+    /**
+     * @return The available BES with the lower load score, or null if
+     * neither is available.
+     */
+    private BES better(BES a, BES b){
+        boolean aOk = a != null && a.getHealth().isAvailable();
+        boolean bOk = b != null && b.getHealth().isAvailable();
+        if(aOk && bOk)
+            return a.getHealth().getLoadScore() <= b.getHealth().getLoadScore() ? a : b;
+        if(aOk)
+            return a;
+        if(bOk)
+            return b;
+        return null;
+    }
+
+    /**
+     * @return The available BES with the lowest load score, or null if none
+     * are available.
+     */
+    private BES leastLoaded(List<BES> members){
+        BES best = null;
+        double bestScore = Double.MAX_VALUE;
+        for(BES bes : members){
+            BesHealth health = bes.getHealth();
+            if(health.isAvailable()){
+                double score = health.getLoadScore();
+                if(score < bestScore){
+                    best = bes;
+                    bestScore = score;
+                }
+            }
+        }
+        return best;
+    }
+
+
     /**
      *
      * @return
@@ -0,0 +1,215 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.bes;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the health of a BES: the number of transactions in
+ * progress, an exponentially weighted moving average (EWMA) of the
+ * transaction latency and of the error rate, and a circuit breaker.
+ *
+ * The circuit breaker opens after failureThreshold consecutive failed
+ * transactions. While it's open the BES is passed over by the BesGroup. Once
+ * openMillis have gone by a single "probe" transaction is let through
+ * (half-open). If the probe succeeds the breaker closes, if it fails the
+ * breaker opens again.
+ *
+ * Everything here is done with atomics so that the BesGroup can choose a BES
+ * without taking a lock.
+ */
+public class BesHealth {
+
+    /**
+     * The weight given to each new sample in the moving averages.
+     */
+    private static final double EWMA_ALPHA = 0.2;
+
+    /**
+     * The latency assumed for a BES we haven't heard from yet.
+     */
+    private static final double INITIAL_LATENCY_MS = 10.0;
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_OPEN_MILLIS = 30000;
+
+    private static volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private static volatile long openMillis = DEFAULT_OPEN_MILLIS;
+
+    private final AtomicInteger inFlight;
+    private final AtomicLong latencyMsBits;
+    private final AtomicLong errorRateBits;
+    private final AtomicInteger consecutiveFailures;
+    private final AtomicLong openedAt;
+    private final AtomicBoolean probeInFlight;
+    private final AtomicLong transactions;
+    private final AtomicLong failures;
+
+    public BesHealth(){
+        inFlight = new AtomicInteger(0);
+        latencyMsBits = new AtomicLong(Double.doubleToLongBits(INITIAL_LATENCY_MS));
+        errorRateBits = new AtomicLong(Double.doubleToLongBits(0.0));
+        consecutiveFailures = new AtomicInteger(0);
+        openedAt = new AtomicLong(0);
+        probeInFlight = new AtomicBoolean(false);
+        transactions = new AtomicLong(0);
+        failures = new AtomicLong(0);
+    }
+
+
+    /**
+     * Sets the circuit breaker parameters for all of the BES instances.
+     * @param threshold The number of consecutive failures that open the
+     *                  circuit breaker.
+     * @param openTimeMillis How long the circuit breaker stays open before a
+     *                       probe transaction is allowed.
+     */
+    public static void setCircuitBreaker(int threshold, long openTimeMillis){
+        failureThreshold = Math.max(1, threshold);
+        openMillis = Math.max(0, openTimeMillis);
+    }
+
+
+    /**
+     * Must be called when a transaction starts.
+     * @return The start time, to be handed to transactionFinished().
+     */
+    public long transactionStarted(){
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Must be called when a transaction that was started with
+     * transactionStarted() is done.
+     * @param startTime The value returned by transactionStarted()
+     * @param failed True if the transaction failed because of a problem with
+     *               the BES (as opposed to an error in the request).
+     * @param probe True if the transaction was the probe claimed with
+     *              claim().
+     */
+    public void transactionFinished(long startTime, boolean failed, boolean probe){
+        inFlight.decrementAndGet();
+        transactions.incrementAndGet();
+
+        double elapsedMs = (System.nanoTime() - startTime) / 1.0e6;
+        updateEwma(latencyMsBits, elapsedMs);
+        updateEwma(errorRateBits, failed ? 1.0 : 0.0);
+
+        if(failed){
+            failures.incrementAndGet();
+            int count = consecutiveFailures.incrementAndGet();
+            if(probe || count >= failureThreshold){
+                // Trip (or re-trip) the breaker.
+                openedAt.set(System.currentTimeMillis());
+            }
+        }
+        else {
+            consecutiveFailures.set(0);
+            openedAt.set(0);
+        }
+        if(probe)
+            probeInFlight.set(false);
+    }
+
+    private static void updateEwma(AtomicLong bits, double sample){
+        long current;
+        long next;
+        do {
+            current = bits.get();
+            double value = Double.longBitsToDouble(current);
+            next = Double.doubleToLongBits(value + EWMA_ALPHA * (sample - value));
+        } while (!bits.compareAndSet(current, next));
+    }
+
+
+    /**
+     * @return True if the circuit breaker is open (the BES is not to be used).
+     */
+    public boolean isOpen(){
+        return openedAt.get() != 0;
+    }
+
+    /**
+     * @return True if the BES may be selected: the breaker is closed, or it
+     * has been open long enough that a probe may be sent and no other probe
+     * is in progress. This does not change any state.
+     */
+    public boolean isAvailable(){
+        long opened = openedAt.get();
+        if(opened == 0)
+            return true;
+        return !probeInFlight.get() && System.currentTimeMillis() - opened >= openMillis;
+    }
+
+    /**
+     * Claims the single probe transaction of an open breaker, which only one
+     * caller can do. This is called when the transaction starts and the
+     * claim is given up by transactionFinished().
+     * @return True if the breaker is open and the caller holds the probe.
+     */
+    public boolean claim(){
+        long opened = openedAt.get();
+        if(opened == 0)
+            return false;
+        if(System.currentTimeMillis() - opened < openMillis)
+            return false;
+        return probeInFlight.compareAndSet(false, true);
+    }
+
+
+    /**
+     * The load score is used to compare members of a BesGroup; lower is better.
+     * It's the expected wait for a new transaction (the transactions ahead of
+     * it times the average latency) inflated by the recent error rate.
+     * @return The load score.
+     */
+    public double getLoadScore(){
+        return (inFlight.get() + 1) * getLatencyMs() * (1.0 + 10.0 * getErrorRate());
+    }
+
+    public int getInFlight(){
+        return inFlight.get();
+    }
+
+    public double getLatencyMs(){
+        return Double.longBitsToDouble(latencyMsBits.get());
+    }
+
+    public double getErrorRate(){
+        return Double.longBitsToDouble(errorRateBits.get());
+    }
+
+    @Override
+    public String toString(){
+        return String.format("inFlight: %d latency: %.1f ms errorRate: %.3f transactions: %d failures: %d breaker: %s",
+                getInFlight(), getLatencyMs(), getErrorRate(), transactions.get(), failures.get(),
+                isOpen() ? (probeInFlight.get() ? "HALF_OPEN" : "OPEN") : "CLOSED");
+    }
+}
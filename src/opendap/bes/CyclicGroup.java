@@ -30,6 +30,9 @@ package opendap.bes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
@@ -51,6 +54,10 @@ public class CyclicGroup<E> {
 
     private ConcurrentHashMap<String, E> membersNameIndex;
 
+    // An immutable copy of the members, replaced whenever the membership
+    // changes, so that the members can be read without taking the lock.
+    private volatile List<E> membersSnapshot;
+
     private final ReentrantLock lock = new ReentrantLock();
 
 
@@ -61,6 +68,7 @@ public class CyclicGroup<E> {
         membersNameIndex = new ConcurrentHashMap<String, E>();
         nextMemberIndex = new AtomicInteger();
         nextMemberIndex.set(0);
+        membersSnapshot = Collections.emptyList();
 
     }
 
@@ -85,6 +93,7 @@ public class CyclicGroup<E> {
 
             membersNameIndex.put(name,e);
             members.add(e);
+            membersSnapshot = Collections.unmodifiableList(new ArrayList<>(members));
 
 
         } finally {
@@ -95,23 +104,54 @@ public class CyclicGroup<E> {
     }
 
     /**
-     * The cyclic behavior is encoded here.
-     * @return The next BES in the group cycle.
+     * Takes a member out of the group. Threads that are working from an
+     * older snapshot may still hand it out for a moment afterwards.
+     * @param name The name the member was added with.
+     * @param e The member.
+     * @return True if it was a member.
      */
-    public E getNext() {
-
-        // Locking ensures that we don't accidentally cause a permutation of the members of the queue, since
-        // the lock enforces that only one thread will be able to take and add at a time.
+    public boolean remove(String name, E e) {
         lock.lock();
         try {
-            int index = nextMemberIndex.getAndIncrement() % members.size();
-            log.debug("getNext(): "+Thread.currentThread().getName()+" is retrieving index "+index);
-            return members.get(index);     // Return it to the requester.
+            if(!members.remove(e))
+                return false;
+            // Names need not be unique, only drop the name if it is this one's.
+            membersNameIndex.remove(name, e);
+            membersSnapshot = Collections.unmodifiableList(new ArrayList<>(members));
+            return true;
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * The cyclic behavior is encoded here.
+     * @return The next BES in the group cycle.
+     */
+    public E getNext() {
+        // Working from the snapshot means no lock is needed. floorMod() keeps
+        // the index positive when the counter wraps around.
+        List<E> current = membersSnapshot;
+        int index = Math.floorMod(nextMemberIndex.getAndIncrement(), current.size());
+        log.debug("getNext(): {} is retrieving index {}", Thread.currentThread().getName(), index);
+        return current.get(index);
+    }
+
+    /**
+     * @return The next value of the round robin counter.
+     */
+    protected int nextIndex() {
+        return nextMemberIndex.getAndIncrement();
+    }
+
+    /**
+     * @return An unmodifiable snapshot of the current members. It may be
+     * read without any locking.
+     */
+    public List<E> getMembers() {
+        return membersSnapshot;
+    }
+
 
 
     /**
@@ -180,6 +220,7 @@ public class CyclicGroup<E> {
         try {
             members.clear();
             membersNameIndex.clear();
+            membersSnapshot = Collections.emptyList();
         } finally {
             lock.unlock();
         }
@@ -105,7 +105,13 @@ public class DirectoryDispatchHandler implements DispatchHandler {
                               HttpServletResponse response)
             throws Exception {
         log.info("Handling Request.");
-       directoryDispatch(request, response, true);
+        AdmissionControl.Permit permit = AdmissionControl.admit(request, AdmissionControl.RequestKind.catalog);
+        try {
+            directoryDispatch(request, response, true);
+        }
+        finally {
+            permit.close();
+        }
 
     }
 
@@ -119,7 +125,7 @@ public class DirectoryDispatchHandler implements DispatchHandler {
 
 
         try {
-            ResourceInfo dsi = new BESResource(collectionName, d_besApi);
+            ResourceInfo dsi = BESResource.get(collectionName, d_besApi);
             log.debug("getLastModified():  Returning: " + new Date(dsi.lastModified()));
 
             return dsi.lastModified();
@@ -176,7 +182,7 @@ public class DirectoryDispatchHandler implements DispatchHandler {
                 isContentsRequest = true;
 
         } else {
-            ResourceInfo dsi = new BESResource(dsName, d_besApi);
+            ResourceInfo dsi = BESResource.get(dsName, d_besApi);
             if (dsi.sourceExists() &&
                     dsi.isNode() ) {
                     isDirectoryResponse = true;
@@ -30,6 +30,7 @@ import opendap.bes.dap4Responders.MediaType;
 import opendap.coreServlet.*;
 import opendap.dap.User;
 import opendap.http.error.Forbidden;
+import opendap.http.error.RangeNotSatisfiable;
 import opendap.namespaces.BES;
 import opendap.ppt.PPTException;
 import opendap.services.FileService;
@@ -38,11 +39,12 @@ import org.jdom.Element;
 import org.jdom.JDOMException;
 import org.jdom.output.XMLOutputter;
 
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -96,7 +98,7 @@ public class FileDispatchHandler implements DispatchHandler {
         log.debug("getLastModified(): Tomcat requesting getlastModified() for collection: " + name );
 
         try {
-            ResourceInfo dsi = new BESResource(name,_besApi);
+            ResourceInfo dsi = BESResource.get(name,_besApi);
             log.debug("getLastModified(): Returning: " + new Date(dsi.lastModified()));
 
             return dsi.lastModified();
@@ -136,10 +138,10 @@ public class FileDispatchHandler implements DispatchHandler {
         String localUrl = ReqInfo.getLocalUrl(request);
 
         // TODO: Is this the correct order of eval? Should it check for the ".file" suffix first?
-        ResourceInfo dsi = new BESResource(localUrl,_besApi);
+        ResourceInfo dsi = BESResource.get(localUrl,_besApi);
         if (!dsi.sourceExists() && localUrl.endsWith(FileService.getFileServiceSuffix())) {
             localUrl =  localUrl.substring(0,localUrl.lastIndexOf(FileService.getFileServiceSuffix()));
-            dsi = new BESResource(localUrl,_besApi);
+            dsi = BESResource.get(localUrl,_besApi);
         }
 
         boolean isFileResponse = false;
@@ -174,7 +176,7 @@ public class FileDispatchHandler implements DispatchHandler {
 
     public void sendFile(HttpServletRequest req,
                          HttpServletResponse response)
-            throws JDOMException, BadConfigurationException, PPTException, BESError, IOException {
+            throws JDOMException, BadConfigurationException, PPTException, BESError, IOException, RangeNotSatisfiable {
 
 
         String name = ReqInfo.getLocalUrl(req);
@@ -201,7 +203,6 @@ public class FileDispatchHandler implements DispatchHandler {
         String lastModified = item.getAttributeValue("lastModified");
 
         long fileSize = Long.parseLong(sizeStr);
-        response.setHeader("Content-Length", Long.toString(fileSize));
         response.setHeader("Last-Modified", lastModified);
 
         // I commented these two lines  out because it was incorrectly causing browsers to downloadJobOutput
@@ -220,11 +221,15 @@ public class FileDispatchHandler implements DispatchHandler {
         }
 
 
-        TransmitCoordinator tc = new ServletResponseTransmitCoordinator(response);
-        ServletOutputStream sos = response.getOutputStream();
-        _besApi.writeFile(user, name, sos, tc);
+        long lmt = -1;
+        try {
+            lmt = new SimpleDateFormat(BESResource.BESDateFormat).parse(lastModified).getTime();
+        }
+        catch (ParseException | NullPointerException e) {
+            log.debug("sendFile() - Unable to parse lastModified: {}", lastModified);
+        }
 
-        sos.flush();
+        FileRangeResponse.send(req, response, _besApi, user, name, fileSize, lmt);
     }
 
 
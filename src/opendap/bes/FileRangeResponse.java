@@ -0,0 +1,261 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.bes;
+
+import opendap.coreServlet.EntityTag;
+import opendap.coreServlet.ServletResponseTransmitCoordinator;
+import opendap.coreServlet.TransmitCoordinator;
+import opendap.dap.User;
+import opendap.http.ByteRange;
+import opendap.http.error.RangeNotSatisfiable;
+import opendap.io.HyraxStringEncoding;
+import opendap.ppt.PPTException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends a file, or the byte ranges of it asked for by the Range header, to
+ * the client. A single range is sent as a 206 (Partial Content) response and
+ * multiple ranges are sent as a multipart/byteranges response.
+ *
+ * Ranges are only offered when the OLFS can see the file (the BES has a
+ * dataRoot in the configuration), in which case they are read directly from
+ * the file with FileChannel.transferTo(). Otherwise the whole file is
+ * streamed from the BES in a 200 response with "Accept-Ranges: none", since
+ * getting a range from the BES means moving the whole file.
+ */
+public class FileRangeResponse {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileRangeResponse.class);
+
+    private static final String CRLF = "\r\n";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private FileRangeResponse(){}
+
+
+    /**
+     * Sends the file.
+     *
+     * @param request The request.
+     * @param response The response.
+     * @param besApi The BesApi used to get the file.
+     * @param user The user making the request.
+     * @param dataSource The BES datasource for the file.
+     * @param size The size of the file in bytes, as reported by the BES.
+     * @param lastModified The last modified time of the file.
+     * @throws RangeNotSatisfiable When none of the requested ranges are in
+     * the file.
+     * @throws BadConfigurationException .
+     * @throws BESError .
+     * @throws IOException .
+     * @throws PPTException .
+     */
+    public static void send(HttpServletRequest request,
+                            HttpServletResponse response,
+                            BesApi besApi,
+                            User user,
+                            String dataSource,
+                            long size,
+                            long lastModified)
+            throws RangeNotSatisfiable, BadConfigurationException, BESError, IOException, PPTException {
+
+        // The file is sent as-is so it gets a strong entity tag.
+        String etag = EntityTag.getEntityTag(request, false);
+
+        File localFile = besApi.getLocalFile(dataSource);
+        if(localFile != null && localFile.length() != size){
+            // The BES and the file system disagree, trust the BES.
+            LOG.warn("The size of the local file {} ({}) does not match the BES size ({}).",
+                    localFile, localFile.length(), size);
+            localFile = null;
+        }
+
+        if(localFile != null){
+            Parts parts = setHeaders(request, response, etag, size, lastModified, dataSource);
+            ServletOutputStream sos = response.getOutputStream();
+            LOG.debug("Sending local file {}", localFile);
+            sendLocalFile(localFile, size, parts, sos);
+            sos.flush();
+            return;
+        }
+
+        // Any Range is ignored and the whole file is sent.
+        response.setHeader("Accept-Ranges", "none");
+        if(etag != null)
+            response.setHeader(EntityTag.ETAG_HEADER, etag);
+        if(size >= 0)
+            response.setHeader("Content-Length", Long.toString(size));
+        ServletOutputStream sos = response.getOutputStream();
+        TransmitCoordinator tc = new ServletResponseTransmitCoordinator(response);
+        besApi.writeFile(user, dataSource, sos, tc);
+        sos.flush();
+    }
+
+
+    /**
+     * Sends a file that belongs to the OLFS rather than the BES, such as
+     * the result of an asynchronous job.
+     *
+     * @param request The request.
+     * @param response The response.
+     * @param file The file to send.
+     * @throws RangeNotSatisfiable When none of the requested ranges are in
+     * the file.
+     * @throws IOException .
+     */
+    public static void send(HttpServletRequest request, HttpServletResponse response, File file)
+            throws RangeNotSatisfiable, IOException {
+
+        long size = file.length();
+        long lastModified = file.lastModified();
+        String etag = EntityTag.getEntityTag(lastModified, "file", file.getName(), false);
+
+        Parts parts = setHeaders(request, response, etag, size, lastModified, file.getName());
+        ServletOutputStream sos = response.getOutputStream();
+        sendLocalFile(file, size, parts, sos);
+        sos.flush();
+    }
+
+
+    /**
+     * Works out which ranges are to be sent and sets the status, the length,
+     * and the range headers to match.
+     */
+    private static Parts setHeaders(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    String etag,
+                                    long size,
+                                    long lastModified,
+                                    String name) throws RangeNotSatisfiable {
+
+        response.setHeader("Accept-Ranges", ByteRange.BYTES_UNIT);
+        if(etag != null)
+            response.setHeader(EntityTag.ETAG_HEADER, etag);
+
+        Parts parts = new Parts();
+        if(ByteRange.ifRange(request, etag, lastModified))
+            parts.ranges = ByteRange.getRanges(request, size);
+
+        List<ByteRange> ranges = parts.ranges;
+        if(ranges == null){
+            if(size >= 0)
+                response.setHeader("Content-Length", Long.toString(size));
+        }
+        else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            LOG.debug("Sending byte range {} of {}", range, name);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", range.getContentRange(size));
+            response.setHeader("Content-Length", Long.toString(range.getLength()));
+        }
+        else {
+            LOG.debug("Sending {} byte ranges of {}", ranges.size(), name);
+            String contentType = response.getContentType();
+            if(contentType == null)
+                contentType = DEFAULT_CONTENT_TYPE;
+            String boundary = "HYRAX_" + UUID.randomUUID().toString().replace("-", "");
+
+            long contentLength = 0;
+            parts.headers = new byte[ranges.size()][];
+            for(int i=0; i<ranges.size(); i++){
+                ByteRange range = ranges.get(i);
+                String partHeader = CRLF + "--" + boundary + CRLF +
+                        "Content-Type: " + contentType + CRLF +
+                        "Content-Range: " + range.getContentRange(size) + CRLF + CRLF;
+                parts.headers[i] = partHeader.getBytes(HyraxStringEncoding.getCharset());
+                contentLength += parts.headers[i].length + range.getLength();
+            }
+            parts.trailer = (CRLF + "--" + boundary + "--" + CRLF).getBytes(HyraxStringEncoding.getCharset());
+            contentLength += parts.trailer.length;
+
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+            response.setHeader("Content-Length", Long.toString(contentLength));
+        }
+        return parts;
+    }
+
+
+    /**
+     * Sends the whole file, or its ranges, straight from disk.
+     */
+    private static void sendLocalFile(File file, long size, Parts parts, ServletOutputStream sos) throws IOException {
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(sos);
+            if (parts.ranges == null) {
+                transfer(fc, 0, size, out);
+            }
+            else {
+                for (int i = 0; i < parts.ranges.size(); i++) {
+                    if (parts.headers != null)
+                        sos.write(parts.headers[i]);
+                    transfer(fc, parts.ranges.get(i).getFirst(), parts.ranges.get(i).getLength(), out);
+                }
+            }
+        }
+        if(parts.trailer != null)
+            sos.write(parts.trailer);
+    }
+
+
+    /**
+     * The ranges to send, and for a multipart response the part headers and
+     * the closing boundary. The ranges are null when the whole file is sent.
+     */
+    private static class Parts {
+        List<ByteRange> ranges;
+        byte[][] headers;
+        byte[] trailer;
+    }
+
+
+    /**
+     * Copies count bytes, starting at position, from the file to the channel.
+     */
+    private static void transfer(FileChannel fc, long position, long count, WritableByteChannel out) throws IOException {
+        long sent = 0;
+        while(sent < count){
+            long n = fc.transferTo(position + sent, count - sent, out);
+            if(n <= 0)
+                throw new IOException("The file ended before all of the requested bytes were sent.");
+            sent += n;
+        }
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.bes.caching;
+
+import opendap.auth.UserQuotas;
+import opendap.bes.BESError;
+import opendap.bes.BadConfigurationException;
+import opendap.coreServlet.TransmitCoordinator;
+import opendap.ppt.PPTException;
+import org.jdom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets identical BES requests that arrive while one of them is being worked
+ * on share a single BES transaction. The first request (the leader) runs the
+ * transaction; the requests that arrive while it is running (the followers)
+ * are sent a copy of the response as the leader receives it.
+ *
+ * Requests are matched with BesResponseCache.getRequestKey(), so requests
+ * that carry user credentials are never shared.
+ *
+ * Followers can join a response until more than window bytes of it have
+ * been received. After that the response is no longer held for new
+ * followers, only for the ones that have joined, and the leader waits for
+ * a follower that falls more than window bytes behind. This class is a
+ * singleton.
+ */
+public class BesRequestCoalescer {
+
+    public  static final String COALESCE_REQUESTS_ELEMENT_NAME = "CoalesceRequests";
+    private static final String WINDOW_ATTRIBUTE_NAME = "window";
+    private static final String MAX_FOLLOWERS_ATTRIBUTE_NAME = "maxFollowers";
+
+    private static final long WINDOW_DEFAULT = 8L * 1024 * 1024;
+    private static final int MAX_FOLLOWERS_DEFAULT = 64;
+
+    private static final AtomicBoolean INITIALIZED = new AtomicBoolean(false);
+
+    private static final Logger SLOG = LoggerFactory.getLogger(BesRequestCoalescer.class);
+
+    private static final ConcurrentHashMap<String, Flight> FLIGHTS = new ConcurrentHashMap<>();
+
+    private static final AtomicLong LEADERS = new AtomicLong(0);
+    private static final AtomicLong FOLLOWERS = new AtomicLong(0);
+    private static final AtomicLong SHARED_BYTES = new AtomicLong(0);
+
+    private static long window = WINDOW_DEFAULT;
+    private static int maxFollowers = MAX_FOLLOWERS_DEFAULT;
+
+
+    /**
+     * The BES transaction that is run by the leader.
+     */
+    public interface Transaction {
+        void run(OutputStream os, TransmitCoordinator tc) throws IOException, PPTException, BESError;
+    }
+
+
+    /**
+     * This is a singleton class and as such all methods are static and the
+     * constructor is private because an instance should never be created.
+     */
+    private BesRequestCoalescer(){}
+
+
+    /**
+     * Initialize the BesRequestCoalescer using an XML Element.
+     * @param config The COALESCE_REQUESTS_ELEMENT_NAME configuration element
+     * @throws BadConfigurationException When the configuration is broken.
+     */
+    public static void init(Element config) throws BadConfigurationException {
+
+        if (config == null || !config.getName().equals(COALESCE_REQUESTS_ELEMENT_NAME))
+            throw new BadConfigurationException("BesRequestCoalescer must be passed a " +
+                    "non-null configuration element named " + COALESCE_REQUESTS_ELEMENT_NAME);
+
+        long w = BesResponseCache.getSizeAttribute(config, WINDOW_ATTRIBUTE_NAME, WINDOW_DEFAULT);
+        int max = MAX_FOLLOWERS_DEFAULT;
+        String s = config.getAttributeValue(MAX_FOLLOWERS_ATTRIBUTE_NAME);
+        if (s != null) {
+            try {
+                max = Integer.parseInt(s.trim());
+            } catch (NumberFormatException e) {
+                throw new BadConfigurationException(COALESCE_REQUESTS_ELEMENT_NAME + "@" +
+                        MAX_FOLLOWERS_ATTRIBUTE_NAME + " must be an integer. Found: " + s);
+            }
+        }
+        init(w, max);
+    }
+
+    /**
+     * @param windowSize The number of bytes of a response that are held for
+     *                   followers.
+     * @param followers The most followers a single transaction may have.
+     */
+    public static synchronized void init(long windowSize, int followers) {
+        if (INITIALIZED.get()) {
+            SLOG.error("BesRequestCoalescer has already been initialized! {}", getStatus());
+            return;
+        }
+        window = Math.max(1, windowSize);
+        maxFollowers = followers;
+        INITIALIZED.set(true);
+        SLOG.info("INITIALIZED {}", getStatus());
+    }
+
+    public static boolean isInitialized() {
+        return INITIALIZED.get();
+    }
+
+
+    /**
+     * Runs the transaction, or, if an identical one is already running,
+     * copies its response to os.
+     *
+     * @param key The request key from BesResponseCache.getRequestKey(). If
+     *            null the transaction is run without being shared.
+     * @param os The stream to which the response is written.
+     * @param tc The TransmitCoordinator for os.
+     * @param transaction The BES transaction.
+     * @throws IOException When the response can't be written, or the shared
+     * response failed part way.
+     * @throws PPTException When the BES connection fails.
+     * @throws BESError When the BES returns an error.
+     */
+    public static void execute(String key, OutputStream os, TransmitCoordinator tc, Transaction transaction)
+            throws IOException, PPTException, BESError {
+
+        // The leader sends the response to its own client as it goes, so a
+        // leader held to a user's byte rate would hold its followers to it.
+        if (!INITIALIZED.get() || key == null || maxFollowers <= 0 || UserQuotas.isThrottled()) {
+            transaction.run(os, tc);
+            return;
+        }
+
+        Flight leading = new Flight(key);
+        Flight flight;
+        Follower follower;
+        while (true) {
+            flight = FLIGHTS.putIfAbsent(key, leading);
+            if (flight == null) {
+                flight = leading;
+                follower = null;
+                break;
+            }
+            follower = flight.join();
+            if (follower != null)
+                break;
+            // That one is closed to followers, replace it with ours.
+            if (FLIGHTS.replace(key, flight, leading)) {
+                flight = leading;
+                break;
+            }
+        }
+
+        if (follower != null) {
+            FOLLOWERS.incrementAndGet();
+            SLOG.debug("Following the BES transaction for {}", key);
+            follower.copyTo(os);
+        }
+        else {
+            LEADERS.incrementAndGet();
+            flight.lead(os, tc, transaction);
+        }
+    }
+
+
+    public static String getStatus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("BesRequestCoalescer ");
+        if (!INITIALIZED.get())
+            return sb.append("DISABLED").toString();
+        sb.append("window: ").append(window);
+        sb.append(" maxFollowers: ").append(maxFollowers);
+        sb.append(" inFlight: ").append(FLIGHTS.size());
+        sb.append(" leaders: ").append(LEADERS.get());
+        sb.append(" followers: ").append(FOLLOWERS.get());
+        sb.append(" sharedBytes: ").append(SHARED_BYTES.get());
+        return sb.toString();
+    }
+
+
+    public static synchronized void destroy() {
+        INITIALIZED.set(false);
+        FLIGHTS.clear();
+        SLOG.info("Destroy complete.");
+    }
+
+
+    /**
+     * One running BES transaction and the requests that are waiting on it.
+     * The response is kept as a list of chunks. Chunks that every follower
+     * has written are dropped once the flight is closed to new followers.
+     */
+    private static class Flight {
+
+        private final String key;
+        private final List<byte[]> chunks = new ArrayList<>();
+        private final List<Follower> followers = new ArrayList<>();
+
+        // The index, in the whole response, of chunks.get(0)
+        private int firstChunk = 0;
+        private long received = 0;
+        private long held = 0;
+        private boolean open = true;
+        private boolean done = false;
+        private Throwable error = null;
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        synchronized Follower join() {
+            if (!open || followers.size() >= maxFollowers)
+                return null;
+            Follower f = new Follower(this);
+            followers.add(f);
+            return f;
+        }
+
+        private synchronized void close() {
+            if (open) {
+                open = false;
+                FLIGHTS.remove(key, this);
+            }
+        }
+
+        void lead(OutputStream os, TransmitCoordinator tc, Transaction transaction)
+                throws IOException, PPTException, BESError {
+            LeaderStream ls = new LeaderStream(os);
+            Throwable failure = null;
+            try {
+                transaction.run(ls, new TransmitCoordinator() {
+                    // Once followers have been sent part of the response
+                    // the transaction must not be retried.
+                    @Override
+                    public boolean isCommitted() {
+                        return received() > 0 || tc.isCommitted();
+                    }
+                    @Override
+                    public void reset() throws IllegalStateException {
+                        tc.reset();
+                    }
+                });
+            }
+            catch (Throwable t) {
+                failure = t;
+                throw t;
+            }
+            finally {
+                finish(failure);
+            }
+            ls.checkError();
+        }
+
+        private synchronized long received() {
+            return received;
+        }
+
+        private synchronized void finish(Throwable t) {
+            close();
+            done = true;
+            error = t;
+            notifyAll();
+        }
+
+        /**
+         * Holds a chunk of the response for the followers. Waits while a
+         * follower is more than window bytes behind.
+         */
+        synchronized void publish(byte[] b, int off, int len) throws IOException {
+            if (!open && followers.isEmpty())
+                return;
+            chunks.add(Arrays.copyOfRange(b, off, off + len));
+            received += len;
+            held += len;
+            if (open && received > window)
+                close();
+            notifyAll();
+            if (open)
+                return;
+
+            trim();
+            while (held > window && !followers.isEmpty()) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for followers of " + key);
+                }
+                trim();
+            }
+        }
+
+        /**
+         * Drops the chunks that every follower has written.
+         */
+        private void trim() {
+            int next = Integer.MAX_VALUE;
+            for (Follower f : followers)
+                next = Math.min(next, f.nextChunk);
+            if (followers.isEmpty())
+                next = firstChunk + chunks.size();
+            while (firstChunk < next) {
+                held -= chunks.remove(0).length;
+                firstChunk++;
+            }
+        }
+
+        synchronized boolean hasFollowers() {
+            return !followers.isEmpty();
+        }
+
+        /**
+         * @return The next chunk for the follower, null when the response
+         * is done.
+         */
+        synchronized byte[] next(Follower f) throws IOException, PPTException, BESError {
+            while (f.nextChunk >= firstChunk + chunks.size()) {
+                if (done) {
+                    followers.remove(f);
+                    notifyAll();
+                    if (error != null)
+                        rethrow(f);
+                    return null;
+                }
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while following " + key);
+                }
+            }
+            byte[] chunk = chunks.get(f.nextChunk - firstChunk);
+            f.nextChunk++;
+            notifyAll();
+            return chunk;
+        }
+
+        private void rethrow(Follower f) throws IOException, PPTException, BESError {
+            // If nothing has been sent the follower can report the error as
+            // if it had run the transaction itself.
+            if (f.nextChunk == 0) {
+                if (error instanceof BESError)
+                    throw (BESError) error;
+                if (error instanceof PPTException)
+                    throw (PPTException) error;
+                if (error instanceof IOException)
+                    throw (IOException) error;
+            }
+            throw new IOException("The shared BES response for this request failed. Msg: " + error.getMessage(), error);
+        }
+
+        synchronized void leave(Follower f) {
+            followers.remove(f);
+            notifyAll();
+        }
+
+        /**
+         * Passes the response to the leader's client and to the followers.
+         * If the leader's client goes away the transaction keeps going for
+         * the followers and the error is reported when it is done.
+         */
+        private class LeaderStream extends OutputStream {
+            private final OutputStream out;
+            private IOException clientError = null;
+
+            LeaderStream(OutputStream out) {
+                this.out = out;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (clientError == null) {
+                    try {
+                        out.write(b, off, len);
+                    }
+                    catch (IOException e) {
+                        clientError = e;
+                        Flight.this.close();
+                    }
+                }
+                if (clientError != null && !hasFollowers())
+                    throw clientError;
+                publish(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (clientError == null)
+                    out.flush();
+            }
+
+            void checkError() throws IOException {
+                if (clientError != null)
+                    throw clientError;
+            }
+        }
+    }
+
+
+    /**
+     * A request that is being sent the response of another request's BES
+     * transaction.
+     */
+    private static class Follower {
+        private final Flight flight;
+        private int nextChunk = 0;
+
+        Follower(Flight flight) {
+            this.flight = flight;
+        }
+
+        void copyTo(OutputStream os) throws IOException, PPTException, BESError {
+            try {
+                byte[] chunk;
+                while ((chunk = flight.next(this)) != null) {
+                    os.write(chunk);
+                    SHARED_BYTES.addAndGet(chunk.length);
+                }
+                os.flush();
+            }
+            finally {
+                flight.leave(this);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,699 @@
+package opendap.bes.caching;
+
+import opendap.bes.BadConfigurationException;
+import opendap.bes.BesApi;
+import opendap.namespaces.BES;
+import org.jdom.Attribute;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A two tier (memory and disk) LRU cache for the BES metadata responses
+ * (DDS, DAS, DDX, DMR, and their JSON/HTML representations). Entries are keyed
+ * on the BES prefix and the BES request document, with the per-request
+ * bookkeeping contexts removed, and are validated against the last modified
+ * time of the dataset. When an entry is evicted from the memory tier it is
+ * moved to the disk tier, if the disk tier is enabled. This class is a singleton.
+ */
+public class BesResponseCache {
+
+    private static final AtomicBoolean INITIALIZED = new AtomicBoolean(false);
+
+    public  static final String RESPONSE_CACHE_ELEMENT_NAME = "ResponseCache";
+    private static final String MAX_MEMORY_ATTRIBUTE_NAME = "maxMemorySize";
+    private static final String MAX_DISK_ATTRIBUTE_NAME = "maxDiskSize";
+    private static final String MAX_ENTRY_ATTRIBUTE_NAME = "maxEntrySize";
+    private static final String CACHE_DIR_ATTRIBUTE_NAME = "cacheDir";
+
+    private static final long MAX_MEMORY_DEFAULT = 64L * 1024 * 1024;
+    private static final long MAX_DISK_DEFAULT = 1024L * 1024 * 1024;
+    private static final long MAX_ENTRY_DEFAULT = 4L * 1024 * 1024;
+
+    private static final String CACHE_FILE_SUFFIX = ".bescache";
+
+    /**
+     * The BES response types that are metadata, and thus candidates for
+     * caching. Data responses are never cached here.
+     */
+    private static final Set<String> CACHEABLE_TYPES = new HashSet<>(Arrays.asList(
+            BesApi.DDS,
+            BesApi.DAS,
+            BesApi.DDX,
+            BesApi.DAP4_DMR,
+            BesApi.INFO_PAGE,
+            BesApi.HTML_FORM));
+
+    /**
+     * These contexts change with every request (or with every user) but they
+     * don't change the content of a metadata response, so they are dropped
+     * from the cache key.
+     */
+    private static final Set<String> IGNORED_CONTEXTS = new HashSet<>(Arrays.asList(
+            BesApi.OLFS_LOG_CONTEXT,
+            BesApi.UID_CONTEXT,
+            "bes_timeout"));
+
+    /**
+     * Requests that carry any of these contexts are never cached.
+     */
+    private static final Set<String> UNCACHEABLE_CONTEXTS = new HashSet<>(Collections.singletonList(
+            "edl_auth_token"));
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    // A static logger for this singleton class.
+    private static final Logger SLOG = LoggerFactory.getLogger(RESPONSE_CACHE_ELEMENT_NAME);
+
+    private static final AtomicLong HITS = new AtomicLong(0);
+    private static final AtomicLong MISSES = new AtomicLong(0);
+    private static final AtomicLong INVALIDATIONS = new AtomicLong(0);
+
+    private static long maxMemoryBytes = MAX_MEMORY_DEFAULT;
+    private static long maxDiskBytes = MAX_DISK_DEFAULT;
+    private static long maxEntryBytes = MAX_ENTRY_DEFAULT;
+    private static File cacheDir = null;
+
+    private static long memoryBytes = 0;
+    private static long diskBytes = 0;
+
+    private static LinkedHashMap<String, CachedResponse> memoryTier = null;
+    private static LinkedHashMap<String, CachedResponse> diskTier = null;
+
+
+    /**
+     * This is a singleton class and as such all methods are static and the
+     * constructor is private because an instance should never be created.
+     */
+    private BesResponseCache(){}
+
+
+    /**
+     * Initialize the BesResponseCache using an XML Element.
+     * @param config The RESPONSE_CACHE_ELEMENT_NAME configuration element
+     * @param defaultCacheDir The directory to use for the disk tier if the
+     *                        configuration does not name one.
+     * @throws BadConfigurationException When the configuration is broken.
+     */
+    public static void init(Element config, String defaultCacheDir) throws BadConfigurationException {
+
+        if (config == null || !config.getName().equals(RESPONSE_CACHE_ELEMENT_NAME))
+            throw new BadConfigurationException("BesResponseCache must be passed a " +
+                    "non-null configuration element named " + RESPONSE_CACHE_ELEMENT_NAME);
+
+        long maxMemory = getSizeAttribute(config, MAX_MEMORY_ATTRIBUTE_NAME, MAX_MEMORY_DEFAULT);
+        long maxDisk   = getSizeAttribute(config, MAX_DISK_ATTRIBUTE_NAME, MAX_DISK_DEFAULT);
+        long maxEntry  = getSizeAttribute(config, MAX_ENTRY_ATTRIBUTE_NAME, MAX_ENTRY_DEFAULT);
+
+        String dirName = config.getAttributeValue(CACHE_DIR_ATTRIBUTE_NAME);
+        if(dirName == null)
+            dirName = defaultCacheDir;
+
+        init(maxMemory, maxDisk, maxEntry, dirName==null?null:new File(dirName));
+    }
+
+    /**
+     * Reads a size attribute, in bytes, from the configuration. The value
+     * may carry a K, M, or G suffix.
+     */
+    public static long getSizeAttribute(Element config, String name, long defaultValue){
+        String s = config.getAttributeValue(name);
+        if(s == null)
+            return defaultValue;
+        s = s.trim().toUpperCase();
+        long scalar = 1;
+        if(s.endsWith("K")) { scalar = 1024L; }
+        else if(s.endsWith("M")) { scalar = 1024L * 1024; }
+        else if(s.endsWith("G")) { scalar = 1024L * 1024 * 1024; }
+        if(scalar > 1)
+            s = s.substring(0, s.length() - 1).trim();
+        try {
+            long value = Long.parseLong(s) * scalar;
+            if(value < 0) {
+                SLOG.error("The value of {}@{} must be >= 0. Using default value: {}",
+                        config.getName(), name, defaultValue);
+                return defaultValue;
+            }
+            return value;
+        }
+        catch (NumberFormatException nfe) {
+            SLOG.error("Failed to parse value of {}@{}! Using default value: {}",
+                    config.getName(), name, defaultValue);
+        }
+        return defaultValue;
+    }
+
+
+    /**
+     * The _actual_ init method that sets up the cache. This must be called
+     * prior to using the cache.
+     * @param maxMemory The maximum number of bytes held in the memory tier.
+     * @param maxDisk  The maximum number of bytes held in the disk tier. A
+     *                 value of zero disables the disk tier.
+     * @param maxEntry The largest response, in bytes, that will be cached.
+     * @param dir The directory used for the disk tier.
+     */
+    public static void init(long maxMemory, long maxDisk, long maxEntry, File dir) {
+        LOCK.lock();
+        try {
+            if (INITIALIZED.get()) {
+                SLOG.error("BesResponseCache has already been initialized! {}", getStatus());
+                return;
+            }
+            maxMemoryBytes = maxMemory;
+            maxEntryBytes = Math.min(maxEntry, maxMemory);
+            maxDiskBytes = 0;
+            cacheDir = null;
+
+            if(maxDisk > 0 && dir != null) {
+                if(dir.exists() || dir.mkdirs()) {
+                    cacheDir = dir;
+                    maxDiskBytes = maxDisk;
+                    purgeCacheDir();
+                }
+                else {
+                    SLOG.error("Unable to create the response cache directory {} The disk tier is DISABLED.",
+                            dir.getAbsolutePath());
+                }
+            }
+
+            memoryTier = new LinkedHashMap<>(16, 0.75f, true);
+            diskTier = new LinkedHashMap<>(16, 0.75f, true);
+            memoryBytes = 0;
+            diskBytes = 0;
+
+            INITIALIZED.set(true);
+            SLOG.info("INITIALIZED {}", getStatus());
+        }
+        finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     *
+     * @return True if BesResponseCache has been successfully initialized, false
+     * otherwise.
+     */
+    public static boolean isInitialized() {
+        return INITIALIZED.get();
+    }
+
+
+    /**
+     * Builds the cache key for a BES request document. The key is made from
+     * the BES prefix and the request document with the reqID and the
+     * per-request contexts removed.
+     *
+     * @param besPrefix The prefix of the BES that will service the request.
+     * @param request The BES request document.
+     * @return The cache key, or null if the request is not a cacheable
+     * metadata request.
+     */
+    public static String getCacheKey(String besPrefix, Document request) {
+        if(!isCacheable(request))
+            return null;
+        return getRequestKey(besPrefix, request);
+    }
+
+    /**
+     * @param request The BES request document.
+     * @return True if the request is for one of the metadata responses that
+     * are cached.
+     */
+    public static boolean isCacheable(Document request) {
+        Element root = request.getRootElement();
+        if(root == null)
+            return false;
+
+        Element get = root.getChild("get", BES.BES_NS);
+        return get != null && CACHEABLE_TYPES.contains(get.getAttributeValue("type"));
+    }
+
+
+    /**
+     * Builds a key that is the same for any two BES requests that will get
+     * the same response, whatever their type. The reqID and the contexts that
+     * only identify the request or the user are left out. The key is the
+     * SHA-256 digest, in hex, of the BES prefix and what is left of the
+     * request, so it is small and of a fixed size however large the request.
+     *
+     * @param besPrefix The prefix of the BES that will service the request.
+     * @param request The BES request document.
+     * @return The key, or null if the request carries user specific
+     * credentials or asks the BES to store its result.
+     */
+    public static String getRequestKey(String besPrefix, Document request) {
+
+        Element root = request.getRootElement();
+        if(root == null)
+            return null;
+
+        Element get = root.getChild("get", BES.BES_NS);
+        if(get != null && (get.getAttributeValue("async")!=null || get.getAttributeValue("store_result")!=null))
+            return null;
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to have SHA-256.
+            SLOG.error("SHA-256 is not available, requests will not be cached or shared. Msg: {}", e.getMessage());
+            return null;
+        }
+        OutputStream digester = new OutputStream() {
+            @Override
+            public void write(int b) {
+                md.update((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                md.update(b, off, len);
+            }
+        };
+
+        try {
+            md.update((besPrefix + "|" + root.getQualifiedName()).getBytes(StandardCharsets.UTF_8));
+            for(Object o : root.getAttributes()){
+                Attribute attribute = (Attribute) o;
+                if(attribute.getName().equals(BesApi.REQUEST_ID))
+                    continue;
+                md.update((" " + attribute.getQualifiedName() + "=" + attribute.getValue())
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+
+            XMLOutputter xmlo = new XMLOutputter(Format.getCompactFormat());
+            for(Object o : root.getChildren()){
+                Element child = (Element) o;
+                if(child.getName().equals("setContext") && BES.BES_NS.equals(child.getNamespace())) {
+                    String name = child.getAttributeValue("name");
+                    if (UNCACHEABLE_CONTEXTS.contains(name))
+                        return null;
+                    if (IGNORED_CONTEXTS.contains(name))
+                        continue;
+                }
+                xmlo.output(child, digester);
+            }
+        }
+        catch (IOException e) {
+            // The digester doesn't throw.
+            SLOG.error("Failed to make a request key. Msg: {}", e.getMessage());
+            return null;
+        }
+        return toHex(md.digest());
+    }
+
+    private static String toHex(byte[] digest){
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for(byte b: digest){
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Writes the cached response for key to the stream, if there is a cached
+     * response and it was made from a dataset with the same last modified
+     * time.
+     *
+     * @param key The cache key (from getCacheKey())
+     * @param lastModified The current last modified time of the dataset.
+     * @param os The stream to which the cached response is written.
+     * @return True if the cached response was written, false otherwise.
+     * @throws IOException When the response cannot be written to the stream.
+     */
+    public static boolean writeCachedResponse(String key, long lastModified, OutputStream os) throws IOException {
+
+        if(!INITIALIZED.get() || key == null)
+            return false;
+
+        CachedResponse cr;
+        boolean fromDisk = false;
+        LOCK.lock();
+        try {
+            cr = memoryTier.get(key);
+            if(cr == null) {
+                cr = diskTier.remove(key);
+                if(cr != null) {
+                    diskBytes -= cr.size;
+                    fromDisk = true;
+                }
+            }
+            if(cr != null && cr.lastModified != lastModified){
+                SLOG.debug("Cached response is stale, dropping it. key: {}", key);
+                if(!fromDisk)
+                    removeFromMemory(key);
+                INVALIDATIONS.incrementAndGet();
+                cr.deleteFile();
+                cr = null;
+            }
+        }
+        finally {
+            LOCK.unlock();
+        }
+
+        if(cr == null){
+            MISSES.incrementAndGet();
+            return false;
+        }
+
+        byte[] bytes = cr.bytes;
+        if(fromDisk){
+            // Promote it back into the memory tier.
+            try {
+                bytes = Files.readAllBytes(cr.file.toPath());
+            }
+            catch (IOException e){
+                SLOG.error("Failed to read cached response file {} Msg: {}", cr.file, e.getMessage());
+                MISSES.incrementAndGet();
+                return false;
+            }
+            finally {
+                cr.deleteFile();
+            }
+            put(key, lastModified, bytes);
+        }
+        HITS.incrementAndGet();
+        os.write(bytes);
+        return true;
+    }
+
+
+    /**
+     * Adds a response to the cache.
+     * @param key The cache key (from getCacheKey())
+     * @param lastModified The last modified time of the dataset from which
+     *                     the response was made.
+     * @param bytes The response.
+     */
+    public static void put(String key, long lastModified, byte[] bytes){
+
+        if(!INITIALIZED.get() || key == null || bytes == null || bytes.length > maxEntryBytes)
+            return;
+
+        List<CachedResponse> evicted = new ArrayList<>();
+        LOCK.lock();
+        try {
+            removeFromMemory(key);
+            CachedResponse onDisk = diskTier.remove(key);
+            if(onDisk != null){
+                diskBytes -= onDisk.size;
+                onDisk.deleteFile();
+            }
+            CachedResponse cr = new CachedResponse(key, lastModified, bytes);
+            memoryTier.put(key, cr);
+            memoryBytes += cr.getMemorySize();
+
+            Iterator<Map.Entry<String,CachedResponse>> it = memoryTier.entrySet().iterator();
+            while(memoryBytes > maxMemoryBytes && it.hasNext()){
+                CachedResponse eldest = it.next().getValue();
+                it.remove();
+                memoryBytes -= eldest.getMemorySize();
+                evicted.add(eldest);
+            }
+        }
+        finally {
+            LOCK.unlock();
+        }
+
+        for(CachedResponse cr : evicted){
+            demote(cr);
+        }
+    }
+
+
+    /**
+     * Moves an entry evicted from the memory tier to the disk tier. The file
+     * is written without holding the cache lock.
+     */
+    private static void demote(CachedResponse cr){
+        if(cacheDir == null || cr.size > maxDiskBytes)
+            return;
+
+        // Each demotion gets a file of its own, so that a reader of an
+        // earlier copy of the entry never sees this one being written, and
+        // never deletes it when it's done with its own.
+        File file = null;
+        try {
+            file = File.createTempFile(cr.key + "-", CACHE_FILE_SUFFIX, cacheDir);
+            Files.write(file.toPath(), cr.bytes);
+        }
+        catch (IOException e){
+            SLOG.error("Failed to write cached response file {} Msg: {}", file, e.getMessage());
+            if(file != null && !file.delete())
+                SLOG.warn("Unable to delete cache file {}", file);
+            return;
+        }
+
+        CachedResponse onDisk = new CachedResponse(cr.key, cr.lastModified, file, cr.size);
+        List<CachedResponse> evicted = new ArrayList<>();
+        LOCK.lock();
+        try {
+            if(memoryTier.containsKey(cr.key)) {
+                // A fresh copy arrived while we were writing.
+                evicted.add(onDisk);
+            }
+            else {
+                CachedResponse previous = diskTier.put(cr.key, onDisk);
+                if (previous != null) {
+                    diskBytes -= previous.size;
+                    evicted.add(previous);
+                }
+                diskBytes += onDisk.size;
+
+                Iterator<Map.Entry<String, CachedResponse>> it = diskTier.entrySet().iterator();
+                while (diskBytes > maxDiskBytes && it.hasNext()) {
+                    CachedResponse eldest = it.next().getValue();
+                    it.remove();
+                    diskBytes -= eldest.size;
+                    evicted.add(eldest);
+                }
+            }
+        }
+        finally {
+            LOCK.unlock();
+        }
+        for(CachedResponse e : evicted){
+            e.deleteFile();
+        }
+    }
+
+
+    private static void removeFromMemory(String key){
+        CachedResponse cr = memoryTier.remove(key);
+        if(cr != null)
+            memoryBytes -= cr.getMemorySize();
+    }
+
+
+    /**
+     * Removes the cache files left in the cache directory. The index of the
+     * disk tier lives in memory, so any existing files are orphans.
+     */
+    private static void purgeCacheDir(){
+        if(cacheDir == null)
+            return;
+        File[] files = cacheDir.listFiles((d, name) -> name.endsWith(CACHE_FILE_SUFFIX));
+        if(files == null)
+            return;
+        for(File f : files){
+            if(!f.delete())
+                SLOG.warn("Unable to delete cache file {}", f);
+        }
+    }
+
+
+    /**
+     * Drops every entry from both tiers of the cache.
+     * @return The number of entries that were dropped.
+     */
+    public static int purge(){
+        int count = 0;
+        LOCK.lock();
+        try {
+            if(!INITIALIZED.get())
+                return 0;
+            count = memoryTier.size() + diskTier.size();
+            memoryTier.clear();
+            diskTier.clear();
+            memoryBytes = 0;
+            diskBytes = 0;
+            purgeCacheDir();
+            SLOG.info("Purged {} entries.", count);
+        }
+        finally {
+            LOCK.unlock();
+        }
+        return count;
+    }
+
+
+    /**
+     * @return A human readable summary of the state of the cache.
+     */
+    public static String getStatus(){
+        StringBuilder sb = new StringBuilder();
+        LOCK.lock();
+        try {
+            sb.append("BesResponseCache ");
+            if(!INITIALIZED.get()) {
+                return sb.append("DISABLED").toString();
+            }
+            sb.append("memoryEntries: ").append(memoryTier.size());
+            sb.append(" memoryBytes: ").append(memoryBytes).append("/").append(maxMemoryBytes);
+            sb.append(" diskEntries: ").append(diskTier.size());
+            sb.append(" diskBytes: ").append(diskBytes).append("/").append(maxDiskBytes);
+            sb.append(" maxEntrySize: ").append(maxEntryBytes);
+            sb.append(" cacheDir: ").append(cacheDir==null?"DISABLED":cacheDir.getAbsolutePath());
+            sb.append(" hits: ").append(HITS.get());
+            sb.append(" misses: ").append(MISSES.get());
+            sb.append(" invalidations: ").append(INVALIDATIONS.get());
+        }
+        finally {
+            LOCK.unlock();
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * @return The largest response, in bytes, that will be cached.
+     */
+    public static long getMaxEntrySize(){
+        return maxEntryBytes;
+    }
+
+
+    /**
+     * Drops all references from the cache.
+     */
+    public static void destroy(){
+        LOCK.lock();
+        try {
+            if(INITIALIZED.get()) {
+                purge();
+            }
+            memoryTier = null;
+            diskTier = null;
+            INITIALIZED.set(false);
+            SLOG.info("Destroy complete.");
+        }
+        finally {
+            LOCK.unlock();
+        }
+    }
+
+
+    /**
+     * An OutputStream that passes everything through to the wrapped stream
+     * and keeps a copy, up to a limit, for the cache. If the limit is exceeded
+     * the copy is abandoned.
+     */
+    public static class ResponseCapture extends FilterOutputStream {
+
+        private ByteArrayOutputStream copy;
+        private final long limit;
+
+        public ResponseCapture(OutputStream os){
+            this(os, getMaxEntrySize());
+        }
+
+        /**
+         * @param os The stream to pass everything to.
+         * @param limit The most bytes that will be copied.
+         */
+        public ResponseCapture(OutputStream os, long limit){
+            super(os);
+            copy = new ByteArrayOutputStream();
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if(copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if(copy != null) {
+                copy.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        private void checkLimit(){
+            if(copy.size() > limit)
+                copy = null;
+        }
+
+        /**
+         * @return The captured response or null if the response was too large.
+         */
+        public byte[] getBytes(){
+            return copy==null?null:copy.toByteArray();
+        }
+    }
+
+
+    /**
+     * A cached response, either held in memory or in a file.
+     */
+    private static class CachedResponse {
+        private final String key;
+        private final long lastModified;
+        private final long size;
+        private final byte[] bytes;
+        private final File file;
+
+        CachedResponse(String key, long lastModified, byte[] bytes){
+            this.key = key;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+            this.size = bytes.length;
+            this.file = null;
+        }
+
+        CachedResponse(String key, long lastModified, File file, long size){
+            this.key = key;
+            this.lastModified = lastModified;
+            this.bytes = null;
+            this.size = size;
+            this.file = file;
+        }
+
+        /**
+         * @return The number of bytes this entry counts against the memory
+         * tier, the response and its key.
+         */
+        long getMemorySize(){
+            return size + 2L * key.length();
+        }
+
+        void deleteFile(){
+            if(file != null && file.exists() && !file.delete())
+                SLOG.warn("Unable to delete cache file {}", file);
+        }
+    }
+
+}
@@ -0,0 +1,368 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.bes.caching;
+
+import opendap.auth.Util;
+import opendap.bes.BadConfigurationException;
+import opendap.coreServlet.EntityTag;
+import opendap.coreServlet.RequestCache;
+import opendap.logging.ServletLogUtil;
+import org.jdom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An LRU cache, held in memory, of the pages the OLFS makes from dataset
+ * metadata with XSLT: the HTML data request forms, the ISO 19115 documents
+ * and rubrics, and the RDF representations. A cached page is sent without
+ * asking the BES for the DMR/DDX and without running the transform.
+ *
+ * Entries are keyed on the responder, the dataset, and every part of the
+ * request that the page depends on (the request URL and query, the user,
+ * and the Accept header). They are validated against the last modified time
+ * of the dataset that DispatchServlet.getLastModified() puts in the
+ * RequestCache, if that isn't known the page isn't cached.
+ *
+ * A responder uses the cache in three steps: sendCached() sends the cached
+ * page if there is one, otherwise capture() wraps the response stream so
+ * that complete() can cache the page once it has been sent. This class is a
+ * singleton.
+ */
+public class RenderedResponseCache {
+
+    private static final AtomicBoolean INITIALIZED = new AtomicBoolean(false);
+
+    public  static final String RENDERED_RESPONSE_CACHE_ELEMENT_NAME = "RenderedResponseCache";
+    private static final String MAX_MEMORY_ATTRIBUTE_NAME = "maxMemorySize";
+    private static final String MAX_ENTRY_ATTRIBUTE_NAME = "maxEntrySize";
+
+    private static final long MAX_MEMORY_DEFAULT = 32L * 1024 * 1024;
+    private static final long MAX_ENTRY_DEFAULT = 2L * 1024 * 1024;
+
+    // Holds the key and capture of a page that is being made.
+    private static final String PENDING_KEY = RenderedResponseCache.class.getName() + ".pending";
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private static final Logger SLOG = LoggerFactory.getLogger(RENDERED_RESPONSE_CACHE_ELEMENT_NAME);
+
+    private static final AtomicLong HITS = new AtomicLong(0);
+    private static final AtomicLong MISSES = new AtomicLong(0);
+
+    private static long maxMemoryBytes = MAX_MEMORY_DEFAULT;
+    private static long maxEntryBytes = MAX_ENTRY_DEFAULT;
+    private static long memoryBytes = 0;
+
+    private static LinkedHashMap<String, Rendering> renderings = null;
+
+
+    /**
+     * This is a singleton class and as such all methods are static and the
+     * constructor is private because an instance should never be created.
+     */
+    private RenderedResponseCache(){}
+
+
+    /**
+     * Initialize the RenderedResponseCache using an XML Element.
+     * @param config The RENDERED_RESPONSE_CACHE_ELEMENT_NAME configuration element
+     * @throws BadConfigurationException When the configuration is broken.
+     */
+    public static void init(Element config) throws BadConfigurationException {
+
+        if (config == null || !config.getName().equals(RENDERED_RESPONSE_CACHE_ELEMENT_NAME))
+            throw new BadConfigurationException("RenderedResponseCache must be passed a " +
+                    "non-null configuration element named " + RENDERED_RESPONSE_CACHE_ELEMENT_NAME);
+
+        init(BesResponseCache.getSizeAttribute(config, MAX_MEMORY_ATTRIBUTE_NAME, MAX_MEMORY_DEFAULT),
+             BesResponseCache.getSizeAttribute(config, MAX_ENTRY_ATTRIBUTE_NAME, MAX_ENTRY_DEFAULT));
+    }
+
+    /**
+     * @param maxMemory The most bytes held by the cache.
+     * @param maxEntry The largest page, in bytes, that will be cached.
+     */
+    public static void init(long maxMemory, long maxEntry) {
+        LOCK.lock();
+        try {
+            if (INITIALIZED.get()) {
+                SLOG.error("RenderedResponseCache has already been initialized! {}", getStatus());
+                return;
+            }
+            maxMemoryBytes = maxMemory;
+            maxEntryBytes = Math.min(maxEntry, maxMemory);
+            renderings = new LinkedHashMap<>(16, 0.75f, true);
+            memoryBytes = 0;
+            INITIALIZED.set(true);
+            SLOG.info("INITIALIZED {}", getStatus());
+        }
+        finally {
+            LOCK.unlock();
+        }
+    }
+
+    public static boolean isInitialized() {
+        return INITIALIZED.get();
+    }
+
+
+    /**
+     * Builds the key of the page a responder makes for a request.
+     */
+    static String getKey(String responder, String resourceId, HttpServletRequest request) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(responder).append('|').append(resourceId);
+        sb.append('|').append(request.getRequestURL());
+        String query = request.getQueryString();
+        if (query != null)
+            sb.append('?').append(query);
+        // The pages name the protocol (in the support link) and the user (in
+        // the login controls).
+        sb.append('|').append(request.getProtocol());
+        String uid = Util.getUID(request);
+        sb.append('|').append(uid == null ? "" : uid);
+        sb.append('|').append(request.getHeader("Accept"));
+        sb.append('|').append(request.getHeader("Accepts"));
+        return sb.toString();
+    }
+
+
+    /**
+     * Sends the cached page for the request, if there is one and it was made
+     * from the current version of the dataset. The page keeps the entity tag
+     * that DispatchServlet set from the last modified time, and the
+     * If-None-Match header has already been handled there, so that a page
+     * has the same tag whether or not it came from the cache.
+     *
+     * @param responder The name of the responder that makes the page.
+     * @param resourceId The dataset.
+     * @param request The request.
+     * @param response The response, its headers other than the Content-Type
+     *                 should already be set.
+     * @return True if a response was sent, false if the responder has to make
+     * the page.
+     * @throws IOException When the page can't be sent.
+     */
+    public static boolean sendCached(String responder, String resourceId,
+                                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        if (!INITIALIZED.get())
+            return false;
+        long lastModified = EntityTag.getLastModified();
+        if (lastModified < 0)
+            return false;
+
+        String key = getKey(responder, resourceId, request);
+        Rendering r;
+        LOCK.lock();
+        try {
+            r = renderings.get(key);
+            if (r != null && r.lastModified != lastModified) {
+                SLOG.debug("Cached page is stale, dropping it. key: {}", key);
+                remove(key);
+                r = null;
+            }
+        }
+        finally {
+            LOCK.unlock();
+        }
+
+        if (r == null) {
+            MISSES.incrementAndGet();
+            RequestCache.put(PENDING_KEY, new Pending(key, lastModified));
+            return false;
+        }
+
+        HITS.incrementAndGet();
+        if (r.contentType != null)
+            response.setContentType(r.contentType);
+        response.setContentLength(r.bytes.length);
+        ServletOutputStream sos = response.getOutputStream();
+        sos.write(r.bytes);
+        sos.flush();
+        ServletLogUtil.setResponseSize(r.bytes.length);
+        return true;
+    }
+
+
+    /**
+     * @param os The stream to which the responder writes the page.
+     * @return A stream that also keeps a copy of the page, if it is to be
+     * cached, or os.
+     */
+    public static OutputStream capture(OutputStream os) {
+        Object o = RequestCache.get(PENDING_KEY);
+        if (!(o instanceof Pending))
+            return os;
+        Pending p = (Pending) o;
+        p.capture = new BesResponseCache.ResponseCapture(os, maxEntryBytes);
+        return p.capture;
+    }
+
+
+    /**
+     * Caches the page that the responder has finished sending through the
+     * stream returned by capture().
+     * @param response The response, for its Content-Type.
+     */
+    public static void complete(HttpServletResponse response) {
+        Object o = RequestCache.get(PENDING_KEY);
+        if (!(o instanceof Pending) || !INITIALIZED.get())
+            return;
+        Pending p = (Pending) o;
+        byte[] bytes = p.capture == null ? null : p.capture.getBytes();
+        if (bytes == null)
+            return;
+        put(p.key, p.lastModified, response.getContentType(), bytes);
+    }
+
+
+    static void put(String key, long lastModified, String contentType, byte[] bytes) {
+        Rendering r = new Rendering(key, lastModified, contentType, bytes);
+        if (r.size > maxEntryBytes)
+            return;
+        LOCK.lock();
+        try {
+            remove(key);
+            renderings.put(key, r);
+            memoryBytes += r.size;
+            Iterator<Map.Entry<String, Rendering>> it = renderings.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                memoryBytes -= it.next().getValue().size;
+                it.remove();
+            }
+        }
+        finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void remove(String key) {
+        Rendering r = renderings.remove(key);
+        if (r != null)
+            memoryBytes -= r.size;
+    }
+
+
+    /**
+     * Drops every cached page.
+     * @return The number of pages that were dropped.
+     */
+    public static int purge() {
+        LOCK.lock();
+        try {
+            if (!INITIALIZED.get())
+                return 0;
+            int count = renderings.size();
+            renderings.clear();
+            memoryBytes = 0;
+            SLOG.info("Purged {} entries.", count);
+            return count;
+        }
+        finally {
+            LOCK.unlock();
+        }
+    }
+
+
+    public static String getStatus() {
+        StringBuilder sb = new StringBuilder();
+        LOCK.lock();
+        try {
+            sb.append("RenderedResponseCache ");
+            if (!INITIALIZED.get())
+                return sb.append("DISABLED").toString();
+            sb.append("entries: ").append(renderings.size());
+            sb.append(" memoryBytes: ").append(memoryBytes).append("/").append(maxMemoryBytes);
+            sb.append(" maxEntrySize: ").append(maxEntryBytes);
+            sb.append(" hits: ").append(HITS.get());
+            sb.append(" misses: ").append(MISSES.get());
+        }
+        finally {
+            LOCK.unlock();
+        }
+        return sb.toString();
+    }
+
+
+    public static void destroy() {
+        LOCK.lock();
+        try {
+            renderings = null;
+            memoryBytes = 0;
+            INITIALIZED.set(false);
+            SLOG.info("Destroy complete.");
+        }
+        finally {
+            LOCK.unlock();
+        }
+    }
+
+
+    /**
+     * A page that is being made for the current request.
+     */
+    private static class Pending {
+        private final String key;
+        private final long lastModified;
+        private BesResponseCache.ResponseCapture capture;
+
+        Pending(String key, long lastModified) {
+            this.key = key;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * A cached page.
+     */
+    private static class Rendering {
+        private final long lastModified;
+        private final String contentType;
+        private final byte[] bytes;
+        private final long size;
+
+        Rendering(String key, long lastModified, String contentType, byte[] bytes) {
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.bytes = bytes;
+            // Java strings are 2 bytes a character.
+            size = bytes.length + 2L * key.length();
+        }
+    }
+}
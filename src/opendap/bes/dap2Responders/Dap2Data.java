@@ -34,6 +34,7 @@ import opendap.dap.User;
 import opendap.dap4.Dap4Error;
 import opendap.dap4.QueryParameters;
 import opendap.io.HyraxStringEncoding;
+import opendap.io.SpillBuffer;
 import opendap.logging.ServletLogUtil;
 import org.jdom.Document;
 import org.jdom.Element;
@@ -126,19 +127,26 @@ public class Dap2Data extends Dap4Responder {
 
 
         DataOutputStream os;
-        ByteArrayOutputStream srr = new ByteArrayOutputStream();
+        SpillBuffer srr = null;
         TransmitCoordinator tc;
         if(qp.isStoreResultRequest()){
+            srr = new SpillBuffer();
             os = new DataOutputStream(srr);
-            tc = new ByteArrayOutputStreamTransmitCoordinator(srr);
+            tc = new SpillBufferTransmitCoordinator(srr);
         }
         else {
             tc = new ServletResponseTransmitCoordinator(response);
             os = new DataOutputStream(response.getOutputStream());
         }
-        besApi.writeDap2Data(user, resourceID,dap2CE,qp.getAsync(),qp.getStoreResultRequestServiceUrl(),os, tc);
-        if(qp.isStoreResultRequest()){
-            handleStoreResultResponse(srr, response);
+        try {
+            besApi.writeDap2Data(user, resourceID, dap2CE, qp.getAsync(), qp.getStoreResultRequestServiceUrl(), os, tc);
+            if (qp.isStoreResultRequest()) {
+                handleStoreResultResponse(srr, response);
+            }
+        }
+        finally {
+            if(srr != null)
+                srr.close();
         }
         os.flush();
         ServletLogUtil.setResponseSize(os.size());
@@ -147,7 +155,7 @@ public class Dap2Data extends Dap4Responder {
 
 
 
-    public void handleStoreResultResponse(ByteArrayOutputStream besResponse,  HttpServletResponse resp) throws IOException {
+    public void handleStoreResultResponse(SpillBuffer besResponse,  HttpServletResponse resp) throws IOException {
 
 
         ServletOutputStream sos = resp.getOutputStream();
@@ -155,7 +163,9 @@ public class Dap2Data extends Dap4Responder {
         SAXBuilder sb = new SAXBuilder();
         Document doc;
         try {
-            doc = sb.build(new ByteArrayInputStream(besResponse.toByteArray()));
+            try (InputStream is = besResponse.getInputStream()) {
+                doc = sb.build(is);
+            }
 
         } catch (JDOMException e) {
             String msg = "Failed to parse asynchronous response from BES!";
@@ -163,7 +173,7 @@ public class Dap2Data extends Dap4Responder {
             Dap4Error d4e = new Dap4Error();
             d4e.setHttpStatusCode(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             d4e.setMessage(msg);
-            d4e.setOtherInformation(besResponse.toString( HyraxStringEncoding.getCharset().name()));
+            d4e.setOtherInformation(besResponse.toString(HyraxStringEncoding.getCharset()));
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             sos.print(d4e.toString());
             sos.flush();
@@ -185,7 +195,7 @@ public class Dap2Data extends Dap4Responder {
             resp.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
         }
 
-        sos.write(besResponse.toByteArray());
+        besResponse.writeTo(sos);
         sos.flush();
 
 
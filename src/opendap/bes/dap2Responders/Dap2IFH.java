@@ -33,6 +33,7 @@ import opendap.bes.BesDapDispatcher;
 import opendap.bes.Version;
 import opendap.bes.dap4Responders.Dap4Responder;
 import opendap.bes.dap4Responders.MediaType;
+import opendap.bes.caching.RenderedResponseCache;
 import opendap.coreServlet.OPeNDAPException;
 import opendap.coreServlet.ReqInfo;
 import opendap.coreServlet.RequestCache;
@@ -132,6 +133,10 @@ public class Dap2IFH extends Dap4Responder {
         // Commented because of a bug in the OPeNDAP C++ stuff...
         //response.setHeader("Content-Encoding", "plain");
 
+        // A page made earlier from the same version of the dataset is sent as is.
+        if(RenderedResponseCache.sendCached(getClass().getName(), resourceID, request, response))
+            return;
+
         XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
         Document ddx = new Document();
         User user = new User(request);
@@ -173,9 +178,10 @@ public class Dap2IFH extends Dap4Responder {
             AuthenticationControls.setLoginParameters(transformer,request);
 
             // Transform the BES  showCatalog response into a HTML page for the browser
-            DataOutputStream os = new DataOutputStream(response.getOutputStream());
+            DataOutputStream os = new DataOutputStream(RenderedResponseCache.capture(response.getOutputStream()));
             transformer.transform(new JDOMSource(ddx), os);
             os.flush();
+            RenderedResponseCache.complete(response);
             ServletLogUtil.setResponseSize(os.size());
             _log.info("Sent {} size: {}", getServiceTitle(),os.size());
         }
@@ -31,6 +31,7 @@ import opendap.bes.BesApi;
 import opendap.bes.Version;
 import opendap.bes.dap4Responders.Dap4Responder;
 import opendap.bes.dap4Responders.MediaType;
+import opendap.bes.caching.RenderedResponseCache;
 import opendap.coreServlet.OPeNDAPException;
 import opendap.coreServlet.ReqInfo;
 import opendap.coreServlet.RequestCache;
@@ -112,6 +113,10 @@ public class Iso19115 extends Dap4Responder {
         Version.setOpendapMimeHeaders(request, response);
         response.setHeader("Content-Description","ISO 19115 Metadata");
 
+        // A page made earlier from the same version of the dataset is sent as is.
+        if(RenderedResponseCache.sendCached(getClass().getName(), resourceID, request, response))
+            return;
+
         Document ddx = new Document();
         User user = new User(request);
         besApi.getDDXDocument(
@@ -142,13 +147,14 @@ public class Iso19115 extends Dap4Responder {
             // See the source code for opendap.xml.Transformer for more.
             Transformer transformer = new Transformer(xsltDocName);
 
-            DataOutputStream os = new DataOutputStream(response.getOutputStream());
+            DataOutputStream os = new DataOutputStream(RenderedResponseCache.capture(response.getOutputStream()));
 
             // Transform the BES  showCatalog response into a HTML page for the browser
             transformer.transform(new JDOMSource(ddx), os);
 
 
             os.flush();
+            RenderedResponseCache.complete(response);
             ServletLogUtil.setResponseSize(os.size());
             log.debug("Sent {} size:{}",getServiceTitle(),os.size());
         }
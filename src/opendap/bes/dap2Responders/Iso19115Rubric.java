@@ -31,6 +31,7 @@ import opendap.bes.BesApi;
 import opendap.bes.Version;
 import opendap.bes.dap4Responders.Dap4Responder;
 import opendap.bes.dap4Responders.MediaType;
+import opendap.bes.caching.RenderedResponseCache;
 import opendap.coreServlet.OPeNDAPException;
 import opendap.coreServlet.ReqInfo;
 import opendap.coreServlet.RequestCache;
@@ -115,6 +116,10 @@ public class Iso19115Rubric extends Dap4Responder {
         Version.setOpendapMimeHeaders(request, response);
         response.setHeader("Content-Description", "ISO19115 Metadata Compliance Report");
 
+        // A page made earlier from the same version of the dataset is sent as is.
+        if(RenderedResponseCache.sendCached(getClass().getName(), resourceID, request, response))
+            return;
+
 
         Document ddx = new Document();
         User user = new User(request);
@@ -150,13 +155,14 @@ public class Iso19115Rubric extends Dap4Responder {
             transformer.setParameter("docsService", oreq.getDocsServiceLocalID());
             transformer.setParameter("HyraxVersion", Version.getHyraxVersionString());
 
-            DataOutputStream os = new DataOutputStream(response.getOutputStream());
+            DataOutputStream os = new DataOutputStream(RenderedResponseCache.capture(response.getOutputStream()));
 
             // Transform the BES  showCatalog response into a HTML page for the browser
             transformer.transform(new JDOMSource(ddx), os);
 
 
             os.flush();
+            RenderedResponseCache.complete(response);
             ServletLogUtil.setResponseSize(os.size());
             log.debug("Sent {} size:{}",getServiceTitle(),os.size());
         }
@@ -30,6 +30,7 @@ import opendap.bes.BesApi;
 import opendap.bes.Version;
 import opendap.bes.dap4Responders.Dap4Responder;
 import opendap.bes.dap4Responders.MediaType;
+import opendap.bes.caching.RenderedResponseCache;
 import opendap.coreServlet.OPeNDAPException;
 import opendap.coreServlet.ReqInfo;
 import opendap.coreServlet.RequestCache;
@@ -114,6 +115,10 @@ public class RDF extends Dap4Responder {
         Version.setOpendapMimeHeaders(request,response);
         response.setHeader("Content-Description", "RDF Encoding of DAP2 DDX");
 
+        // A page made earlier from the same version of the dataset is sent as is.
+        if(RenderedResponseCache.sendCached(getClass().getName(), resourceID, request, response))
+            return;
+
         Document ddx = new Document();
         User user = new User(request);
         besApi.getDDXDocument(user, resourceID, constraintExpression, xmlBase, ddx);
@@ -146,7 +151,7 @@ public class RDF extends Dap4Responder {
         // set the destination of the 1st transform to be the 2nd transform
         addRdfId2DdxTransform.setDestination(xml2rdf);
 
-        DataOutputStream os = new DataOutputStream(response.getOutputStream());
+        DataOutputStream os = new DataOutputStream(RenderedResponseCache.capture(response.getOutputStream()));
 
         // Set the destination of the 2nd transform to be the response OutputStream
         xml2rdf.setOutputStream(os);
@@ -168,6 +173,8 @@ public class RDF extends Dap4Responder {
             errorMessage.append(e.getMessage()).append("\"");
             throw new InternalError(errorMessage.toString());
         }
+        os.flush();
+        RenderedResponseCache.complete(response);
         ServletLogUtil.setResponseSize(os.size());
         log.debug("Sent {} size:{}",getServiceTitle(),os.size());
     }
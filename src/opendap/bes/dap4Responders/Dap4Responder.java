@@ -26,6 +26,8 @@
 
 package opendap.bes.dap4Responders;
 
+import opendap.async.AsyncJob;
+import opendap.async.AsyncJobManager;
 import opendap.bes.*;
 import opendap.bes.BesApi;
 import opendap.coreServlet.ReqInfo;
@@ -309,6 +311,22 @@ public abstract class Dap4Responder extends BesDapResponder  {
             }
             _log.debug("respondToHttpGetRequest() - Target Responder: {} normative media-type: {}", targetResponder.getClass().getName(), targetResponder.getNormativeMediaType());
 
+            if(AsyncJobManager.isAsyncRequest(request)){
+                AsyncJob.Task task = targetResponder.getAsyncTask(request);
+                if(task != null){
+                    String resourceId = targetResponder.getResourceId(relativeUrl, false);
+                    AsyncJob job = AsyncJobManager.submit(
+                            request,
+                            resourceId,
+                            targetResponder.getNormativeMediaType().getMimeType(),
+                            targetResponder.getDownloadFileName(resourceId),
+                            task);
+                    AsyncJobManager.sendAccepted(request, response, job);
+                    _log.debug("respondToHttpGetRequest() - Queued asynchronous job {}", job.getId());
+                    return;
+                }
+            }
+
             targetResponder.sendNormativeRepresentation(request,response);
             return;
         }
@@ -489,6 +507,20 @@ public abstract class Dap4Responder extends BesDapResponder  {
     public abstract void sendNormativeRepresentation(HttpServletRequest request, HttpServletResponse response) throws Exception;
 
 
+    /**
+     * Builds the BES transaction for the request so that it can be run later
+     * by the AsyncJobManager. Responders that can't be run asynchronously
+     * return null (the default) and are answered right away.
+     *
+     * @param request The request, which must not be used by the returned task.
+     * @return The task, or null.
+     * @throws Exception When the request can't be parsed.
+     */
+    public AsyncJob.Task getAsyncTask(HttpServletRequest request) throws Exception {
+        return null;
+    }
+
+
 
 
 }
@@ -26,6 +26,7 @@
 
 package opendap.bes.dap4Responders.DataResponse;
 
+import opendap.async.AsyncJob;
 import opendap.bes.Version;
 import opendap.bes.BesApi;
 import opendap.bes.dap4Responders.Dap4Responder;
@@ -137,4 +138,18 @@ public class Netcdf4DR extends Dap4Responder{
         ServletLogUtil.setResponseSize(os.size());
         log.info("Sent {} size: {}",getServiceTitle(),os.size());
     }
+
+
+    @Override
+    public AsyncJob.Task getAsyncTask(HttpServletRequest request) throws Exception {
+
+        QueryParameters qp = new QueryParameters(request);
+        String resourceID = getResourceId(ReqInfo.getLocalUrl(request), false);
+        String cf_history_entry = ReqInfo.getCFHistoryEntry(request);
+        String history_json_entry = ReqInfo.getHistoryJsonEntry(request);
+        User user = new User(request).detach();
+        BesApi besApi = getBesApi();
+
+        return (os, tc) -> besApi.writeDap4DataAsNetcdf4(user, resourceID, qp, cf_history_entry, history_json_entry, os, tc);
+    }
 }
@@ -26,6 +26,7 @@
 
 package opendap.bes.dap4Responders.DataResponse;
 
+import opendap.async.AsyncJob;
 import opendap.bes.Version;
 import opendap.bes.BesApi;
 import opendap.bes.dap4Responders.Dap4Responder;
@@ -36,6 +37,7 @@ import opendap.dap4.Dap4Error;
 import opendap.dap4.QueryParameters;
 import opendap.http.mediaTypes.Dap4Data;
 import opendap.io.HyraxStringEncoding;
+import opendap.io.SpillBuffer;
 import opendap.logging.ServletLogUtil;
 import org.jdom.Document;
 import org.jdom.Element;
@@ -136,28 +138,34 @@ public class NormativeDR extends Dap4Responder {
         User user = new User(request);
 
         DataOutputStream os;
-        ByteArrayOutputStream srr;
+        SpillBuffer srr;
         TransmitCoordinator tc;
         if(qp.isStoreResultRequest()){
-            srr = new ByteArrayOutputStream();
+            srr = new SpillBuffer();
             os = new DataOutputStream(srr);
-            tc = new ByteArrayOutputStreamTransmitCoordinator(srr);
+            tc = new SpillBufferTransmitCoordinator(srr);
         }
         else {
             srr = null;
             tc = new ServletResponseTransmitCoordinator(response);
             os = new DataOutputStream(response.getOutputStream());
         }
-        besApi.writeDap4Data(
-                user,
-                resourceID,
-                qp,
-                xmlBase,
-                startID,
-                mb.getBoundary(),
-                os, tc);
-        if(qp.isStoreResultRequest()){
-            handleStoreResultResponse(srr, response);
+        try {
+            besApi.writeDap4Data(
+                    user,
+                    resourceID,
+                    qp,
+                    xmlBase,
+                    startID,
+                    mb.getBoundary(),
+                    os, tc);
+            if (qp.isStoreResultRequest()) {
+                handleStoreResultResponse(srr, response);
+            }
+        }
+        finally {
+            if(srr != null)
+                srr.close();
         }
         os.flush();
         ServletLogUtil.setResponseSize(os.size());
@@ -165,13 +173,35 @@ public class NormativeDR extends Dap4Responder {
     }
 
 
-    public void handleStoreResultResponse(ByteArrayOutputStream besResponse,  HttpServletResponse resp) throws IOException {
+    @Override
+    public AsyncJob.Task getAsyncTask(HttpServletRequest request) throws Exception {
+
+        QueryParameters qp = new QueryParameters(request);
+        if(qp.isStoreResultRequest())
+            return null;
+
+        String xmlBase = getXmlBase(request);
+        String resourceID = getResourceId(ReqInfo.getLocalUrl(request), false);
+        User user = new User(request).detach();
+        BesApi besApi = getBesApi();
+
+        MimeBoundary mb = new MimeBoundary();
+        String startID = mb.newContentID();
+        String boundary = mb.getBoundary();
+
+        return (os, tc) -> besApi.writeDap4Data(user, resourceID, qp, xmlBase, startID, boundary, os, tc);
+    }
+
+
+    public void handleStoreResultResponse(SpillBuffer besResponse,  HttpServletResponse resp) throws IOException {
 
         ServletOutputStream sos = resp.getOutputStream();
         SAXBuilder sb = new SAXBuilder();
         Document doc;
         try {
-            doc = sb.build(new ByteArrayInputStream(besResponse.toByteArray()));
+            try (InputStream is = besResponse.getInputStream()) {
+                doc = sb.build(is);
+            }
 
         } catch (JDOMException e) {
             String msg = "Failed to parse asynchronous response from BES!";
@@ -179,7 +209,7 @@ public class NormativeDR extends Dap4Responder {
             Dap4Error d4e = new Dap4Error();
             d4e.setHttpStatusCode(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             d4e.setMessage(msg);
-            d4e.setOtherInformation(besResponse.toString( HyraxStringEncoding.getCharset().name()));
+            d4e.setOtherInformation(besResponse.toString(HyraxStringEncoding.getCharset()));
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             sos.write(d4e.toString().getBytes(HyraxStringEncoding.getCharset()));
             sos.flush();
@@ -200,7 +230,7 @@ public class NormativeDR extends Dap4Responder {
         else if(status.equalsIgnoreCase("rejected")){
             resp.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
         }
-        sos.write(besResponse.toByteArray());
+        besResponse.writeTo(sos);
         sos.flush();
 
     }
@@ -34,6 +34,7 @@ import opendap.bes.BesApi;
 import opendap.bes.dap2Responders.Dap2IFH;
 import opendap.bes.dap4Responders.Dap4Responder;
 import opendap.bes.dap4Responders.MediaType;
+import opendap.bes.caching.RenderedResponseCache;
 import opendap.coreServlet.OPeNDAPException;
 import opendap.coreServlet.ReqInfo;
 import opendap.coreServlet.RequestCache;
@@ -125,6 +126,10 @@ public class HtmlDMR extends Dap4Responder {
         // Commented because of a bug in the OPeNDAP C++ stuff...
         //response.setHeader("Content-Encoding", "plain");
         // XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
+
+        // A page made earlier from the same version of the dataset is sent as is.
+        if(RenderedResponseCache.sendCached(getClass().getName(), resourceID, request, response))
+            return;
         User user = new User(request);
         Document dmr = new Document();
         besApi.getDMRDocument(
@@ -166,11 +171,12 @@ public class HtmlDMR extends Dap4Responder {
 
             AuthenticationControls.setLoginParameters(transformer,request);
 
-            DataOutputStream os = new DataOutputStream(response.getOutputStream());
+            DataOutputStream os = new DataOutputStream(RenderedResponseCache.capture(response.getOutputStream()));
 
             // Transform the BES  showCatalog response into a HTML page for the browser
             transformer.transform(new JDOMSource(dmr), os);
             os.flush();
+            RenderedResponseCache.complete(response);
             ServletLogUtil.setResponseSize(os.size());
             log.debug("Sent {} size:{}",getServiceTitle(),os.size());
         }
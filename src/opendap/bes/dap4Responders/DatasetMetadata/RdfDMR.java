@@ -31,6 +31,7 @@ import opendap.bes.Version;
 import opendap.bes.BesApi;
 import opendap.bes.dap4Responders.Dap4Responder;
 import opendap.bes.dap4Responders.MediaType;
+import opendap.bes.caching.RenderedResponseCache;
 import opendap.coreServlet.OPeNDAPException;
 import opendap.coreServlet.ReqInfo;
 import opendap.coreServlet.RequestCache;
@@ -127,6 +128,22 @@ public class RdfDMR extends Dap4Responder {
 
         //response.setHeader("Content-Disposition", " attachment; filename=\"" +getDownloadFileName(resourceID)+"\"");
 
+        // Set the response headers
+
+        String accepts = request.getHeader("Accepts");
+
+        if(accepts!=null && accepts.equalsIgnoreCase("application/rdf+xml"))
+            response.setContentType("application/rdf+xml");
+        else
+            response.setContentType("text/xml");
+
+        Version.setOpendapMimeHeaders(request,response);
+        response.setHeader("Content-Description", getNormativeMediaType().getMimeType());
+
+        // A page made earlier from the same version of the dataset is sent as is.
+        if(RenderedResponseCache.sendCached(getClass().getName(), resourceID, request, response))
+            return;
+
         XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
 
         Document dmr = new Document();
@@ -165,22 +182,10 @@ public class RdfDMR extends Dap4Responder {
         // set the destination of the 1st transform to be the 2nd transform
         addRdfId2DdxTransform.setDestination(xml2rdf);
 
-        DataOutputStream os = new DataOutputStream(response.getOutputStream());
+        DataOutputStream os = new DataOutputStream(RenderedResponseCache.capture(response.getOutputStream()));
         // Set the destination of the 2nd transform to be the response OutputStream
         xml2rdf.setOutputStream(os);
 
-        // Set the response headers
-
-        String accepts = request.getHeader("Accepts");
-
-        if(accepts!=null && accepts.equalsIgnoreCase("application/rdf+xml"))
-            response.setContentType("application/rdf+xml");
-        else
-            response.setContentType("text/xml");
-
-        Version.setOpendapMimeHeaders(request,response);
-        response.setHeader("Content-Description", getNormativeMediaType().getMimeType());
-
 
         // run the 1st transform. This will send the result through the 2nd transform and
         // the result of the 2nd transform will then be sent out the response OutputStream
@@ -201,6 +206,7 @@ public class RdfDMR extends Dap4Responder {
             throw new InternalError(errorMessage.toString());
         }
         os.flush();
+        RenderedResponseCache.complete(response);
         ServletLogUtil.setResponseSize(os.size());
         log.debug("Sent {} size:{}",getServiceTitle(),os.size());
     }
@@ -33,13 +33,13 @@ import opendap.dap.Request;
 import opendap.dap.User;
 import opendap.http.error.Forbidden;
 import opendap.http.error.NotFound;
+import opendap.http.error.RangeNotSatisfiable;
 import opendap.io.HyraxStringEncoding;
 import opendap.ppt.PPTException;
 import org.jdom.Element;
 import org.owasp.encoder.Encode;
 import org.slf4j.Logger;
 
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -125,7 +125,7 @@ public class FileAccess extends Dap4Responder {
 
         BesApi besApi = getBesApi();
 
-        ResourceInfo dsi = new BESResource(resourceID, besApi);
+        BESResource dsi = BESResource.get(resourceID, besApi);
         if (dsi.sourceExists()) {
             if (!dsi.isNode()) {
                 if (dsi.sourceIsAccesible()) {
@@ -133,7 +133,7 @@ public class FileAccess extends Dap4Responder {
                         if(isFileServiceUrl){
                             if(d_allowDirectDataSourceAccess) {
                                 log.debug("Sending source dataset file: " + Encode.forHtml(resourceID));
-                                sendDatasetFile(user, resourceID, response);
+                                sendDatasetFile(req, user, resourceID, dsi, response);
                             }
                             else {
                                 log.debug("Sending Access Denied for resource: " + Encode.forHtml(resourceID));
@@ -146,7 +146,7 @@ public class FileAccess extends Dap4Responder {
                                 {
                                     if(d_allowDirectDataSourceAccess) {
                                         log.debug("Sending source dataset file: " + Encode.forHtml(resourceID));
-                                        sendDatasetFile(user, resourceID, response);
+                                        sendDatasetFile(req, user, resourceID, dsi, response);
                                     }
                                     else {
                                         log.debug("Sending Access Denied for resource: " + Encode.forHtml(resourceID));
@@ -231,8 +231,12 @@ public class FileAccess extends Dap4Responder {
     }
 
 
-    private void sendDatasetFile(User user, String dataSourceId, HttpServletResponse response)
-            throws IOException, BESError, BadConfigurationException, PPTException {
+    private void sendDatasetFile(HttpServletRequest req,
+                                 User user,
+                                 String dataSourceId,
+                                 BESResource dsi,
+                                 HttpServletResponse response)
+            throws IOException, BESError, BadConfigurationException, PPTException, RangeNotSatisfiable {
         log.debug("sendDatasetFile() - Sending dataset file \"" + dataSourceId + "\"");
 
         response.setHeader("Content-Disposition", " attachment; filename=\"" +getDownloadFileName(dataSourceId)+"\"");
@@ -249,11 +253,7 @@ public class FileAccess extends Dap4Responder {
             }
         }
 
-        TransmitCoordinator tc = new ServletResponseTransmitCoordinator(response);
-        ServletOutputStream sos = response.getOutputStream();
-        besApi.writeFile(user, dataSourceId, sos, tc);
-
-        sos.flush();
+        FileRangeResponse.send(req, response, besApi, user, dataSourceId, dsi.getSize(), dsi.lastModified());
 
 
         log.debug("sendDatasetFile() - Sent {}",getServiceTitle());
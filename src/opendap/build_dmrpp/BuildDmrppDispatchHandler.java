@@ -102,6 +102,11 @@ public class BuildDmrppDispatchHandler implements DispatchHandler {
 
         ingestPrefix(config);
 
+        Element queueConfig = null;
+        if (config != null && config.getChild("BuildDmrppService") != null)
+            queueConfig = config.getChild("BuildDmrppService").getChild(BuildDmrppJobQueue.BUILD_QUEUE_ELEMENT_NAME);
+        BuildDmrppJobQueue.init(queueConfig);
+
         _initialized=true;
     }
 
@@ -122,7 +127,7 @@ public class BuildDmrppDispatchHandler implements DispatchHandler {
 
     @Override
     public void destroy() {
-
+        BuildDmrppJobQueue.destroy();
     }
 
     public boolean requestDispatch(HttpServletRequest request,
@@ -203,7 +208,12 @@ public class BuildDmrppDispatchHandler implements DispatchHandler {
                     log.debug("BES command document: \n-----------\n" + xmlo.outputString(buildDmrppCmdDoc) + "-----------\n");
                 }
                 ServletResponseTransmitCoordinator tc = new ServletResponseTransmitCoordinator(response);
-                bes.besTransaction(buildDmrppCmdDoc, response.getOutputStream(), tc);
+                final Document cmd = buildDmrppCmdDoc;
+                BuildDmrppJobQueue.execute(
+                        getBuildKey(bes, resourceID, user, qp, invocation),
+                        response.getOutputStream(),
+                        tc,
+                        (os, btc) -> bes.besTransaction(cmd, os, btc));
 
                 long reqNum = buildDmrppServiceCounter.incrementAndGet();
                 log.info("Sent DAP build dmr++ response {}", reqNum);
@@ -215,6 +225,36 @@ public class BuildDmrppDispatchHandler implements DispatchHandler {
 
 
 
+    /**
+     * Builds the BuildDmrppJobQueue key for a request. A dmr++ that was
+     * built with a user's credentials is only shared with that user. The
+     * BES writes the invocation (the request URL and query) into the dmr++,
+     * so only requests with the same invocation get the same dmr++.
+     *
+     * @return The key, or null if the BES is asked to run the build
+     * asynchronously or to store the result, in which case the request is
+     * neither shared nor cached.
+     */
+    private String getBuildKey(BES bes, String resourceID, User user, QueryParameters qp, String invocation) {
+        if ((qp.getAsync() != null && !qp.getAsync().isEmpty()) ||
+                (qp.getStoreResultRequestServiceUrl() != null && !qp.getStoreResultRequestServiceUrl().isEmpty()))
+            return null;
+
+        StringBuilder key = new StringBuilder();
+        key.append(bes.getPrefix()).append("|").append(resourceID);
+        key.append("|ce=").append(qp.getCe() == null ? "" : qp.getCe());
+        key.append("|func=").append(qp.getFunc() == null ? "" : qp.getFunc());
+        key.append("|invocation=").append(invocation);
+        if (user.profile() != null)
+            key.append("|uid=").append(user.getUID());
+        if (user.getMaxResponseSize() >= 0)
+            key.append("|maxResponseSize=").append(user.getMaxResponseSize());
+        if (user.getMaxVariableSize() >= 0)
+            key.append("|maxVariableSize=").append(user.getMaxVariableSize());
+        return key.toString();
+    }
+
+
     private void ingestPrefix(Element config) throws BadConfigurationException {
 
         _prefix = DEFAULT_PREFIX;
@@ -266,6 +306,7 @@ public class BuildDmrppDispatchHandler implements DispatchHandler {
         sos.println("all requests: " + reqCounter.get() + "<br/>");
         sos.println("build dmr++ service: " + buildDmrppServiceCounter.get() + "<br/>");
         sos.println("this page: " + buildDmrppServiceEndpointCounter.incrementAndGet() + "<br/>");
+        sos.println("build queue: " + BuildDmrppJobQueue.getStatus() + "<br/>");
         sos.println("<br/>");
         sos.println("hyrax version: " + Version.getHyraxVersionString()+" <br/>");
         Document besversion = null;
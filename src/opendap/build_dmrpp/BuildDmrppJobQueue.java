@@ -0,0 +1,536 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.build_dmrpp;
+
+import opendap.bes.BESError;
+import opendap.bes.caching.BesResponseCache;
+import opendap.coreServlet.TransmitCoordinator;
+import opendap.http.error.ServiceUnavailable;
+import opendap.io.SpillBuffer;
+import opendap.ppt.PPTException;
+import org.jdom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of dmr++ builds that run at once to maxRunning, so that
+ * a burst of build_dmrpp requests can only take that many clients from the
+ * BES client pool and the rest is left for ordinary DAP traffic. Up to
+ * maxQueued requests may wait for a build to finish, after that requests
+ * are refused with a 503.
+ *
+ * A build is run on the thread of the request that asked for it. A request
+ * for a dmr++ that is already being built waits for that build rather than
+ * starting another one. The build is streamed to the client that asked for
+ * it and, for the requests waiting on it, spooled into a SpillBuffer, which
+ * moves to a temporary file if the dmr++ is large. Builds whose request has
+ * no key (async and store_result requests) are streamed to the client and
+ * are neither shared nor cached.
+ *
+ * The dmr++ responses of recent builds are kept in memory for cacheTtl
+ * seconds and sent without asking the BES at all. The cache holds at most
+ * cacheSize bytes (the value may carry a K, M or G suffix) and a dmr++
+ * larger than a quarter of that is not cached.
+ *
+ * This class is a singleton, it is configured by the BuildQueue element in
+ * the BuildDmrppService element of build_dmrpp.xml:
+ * <pre>
+ *     &lt;BuildQueue maxRunning="2" maxQueued="20" cacheSize="64M" cacheTtl="600" /&gt;
+ * </pre>
+ * A missing BuildQueue element gets the defaults.
+ */
+public class BuildDmrppJobQueue {
+
+    public  static final String BUILD_QUEUE_ELEMENT_NAME = "BuildQueue";
+    private static final String MAX_RUNNING_ATTRIBUTE_NAME = "maxRunning";
+    private static final String MAX_QUEUED_ATTRIBUTE_NAME = "maxQueued";
+    private static final String CACHE_SIZE_ATTRIBUTE_NAME = "cacheSize";
+    private static final String CACHE_TTL_ATTRIBUTE_NAME = "cacheTtl";
+
+    private static final int MAX_RUNNING_DEFAULT = 2;
+    private static final int MAX_QUEUED_DEFAULT = 20;
+    private static final long CACHE_SIZE_DEFAULT = 64L * 1024 * 1024;
+    private static final long CACHE_TTL_DEFAULT = 600; // seconds
+
+    // Seconds a client is asked to wait when the queue is full.
+    private static final long RETRY_AFTER = 30;
+
+    private static final AtomicBoolean INITIALIZED = new AtomicBoolean(false);
+
+    // The builds that are running, so that identical requests can find them.
+    private static final ConcurrentHashMap<String, Flight> BUILDS = new ConcurrentHashMap<>();
+
+    // Guarded by itself, as is cachedBytes.
+    private static final LinkedHashMap<String, Result> RESULTS = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes = 0;
+
+    private static final AtomicInteger WAITING = new AtomicInteger(0);
+    private static final AtomicInteger RUNNING = new AtomicInteger(0);
+
+    private static final AtomicLong BUILT = new AtomicLong(0);
+    private static final AtomicLong SHARED = new AtomicLong(0);
+    private static final AtomicLong CACHE_HITS = new AtomicLong(0);
+    private static final AtomicLong REJECTED = new AtomicLong(0);
+    private static final AtomicLong FAILED = new AtomicLong(0);
+
+    // A static logger for this singleton class.
+    private static final Logger SLOG = LoggerFactory.getLogger(BuildDmrppJobQueue.class);
+
+    private static volatile int maxRunning = MAX_RUNNING_DEFAULT;
+    private static volatile int maxQueued = MAX_QUEUED_DEFAULT;
+    private static volatile long cacheSize = CACHE_SIZE_DEFAULT;
+    private static volatile long cacheTtl = CACHE_TTL_DEFAULT * 1000;
+    private static volatile Semaphore permits = new Semaphore(MAX_RUNNING_DEFAULT);
+
+
+    /**
+     * The BES transaction that builds the dmr++.
+     */
+    public interface Build {
+        void run(OutputStream os, TransmitCoordinator tc) throws IOException, PPTException, BESError;
+    }
+
+    /**
+     * A cached build result.
+     */
+    private static class Result {
+        final byte[] dmrpp;
+        final long created;
+
+        Result(byte[] dmrpp) {
+            this.dmrpp = dmrpp;
+            created = System.currentTimeMillis();
+        }
+    }
+
+
+    /**
+     * This is a singleton class and as such all methods are static and the
+     * constructor is private because an instance should never be created.
+     */
+    private BuildDmrppJobQueue(){}
+
+
+    /**
+     * Initialize the BuildDmrppJobQueue using an XML Element.
+     * @param config The BUILD_QUEUE_ELEMENT_NAME configuration element, if
+     *               null the defaults are used.
+     */
+    public static void init(Element config) {
+        int running = MAX_RUNNING_DEFAULT;
+        int queued = MAX_QUEUED_DEFAULT;
+        long size = CACHE_SIZE_DEFAULT;
+        long ttl = CACHE_TTL_DEFAULT;
+        if (config != null) {
+            running = (int) getAttribute(config, MAX_RUNNING_ATTRIBUTE_NAME, MAX_RUNNING_DEFAULT, 1);
+            queued  = (int) getAttribute(config, MAX_QUEUED_ATTRIBUTE_NAME, MAX_QUEUED_DEFAULT, 0);
+            size    = BesResponseCache.getSizeAttribute(config, CACHE_SIZE_ATTRIBUTE_NAME, CACHE_SIZE_DEFAULT);
+            ttl     = getAttribute(config, CACHE_TTL_ATTRIBUTE_NAME, CACHE_TTL_DEFAULT, 0);
+        }
+        init(running, queued, size, ttl);
+    }
+
+    /**
+     * @param running The number of builds that may run at once.
+     * @param queued The number of requests that may wait for a build.
+     * @param size The most bytes of build results that are kept, 0 disables
+     *             the cache.
+     * @param ttl The number of seconds a build result is kept.
+     */
+    public static synchronized void init(int running, int queued, long size, long ttl) {
+        if (INITIALIZED.get()) {
+            SLOG.error("BuildDmrppJobQueue has already been initialized! {}", getStatus());
+            return;
+        }
+        maxRunning = running;
+        maxQueued = queued;
+        permits = new Semaphore(running, true);
+        cacheSize = size;
+        cacheTtl = ttl * 1000;
+        INITIALIZED.set(true);
+        SLOG.info("INITIALIZED {}", getStatus());
+    }
+
+    private static long getAttribute(Element config, String name, long defaultValue, long min){
+        String s = config.getAttributeValue(name);
+        if(s == null)
+            return defaultValue;
+        try {
+            long value = Long.parseLong(s.trim());
+            if(value >= min)
+                return value;
+            SLOG.error("The value of {}@{} must be >= {}. Using default value: {}",
+                    BUILD_QUEUE_ELEMENT_NAME, name, min, defaultValue);
+        }
+        catch (NumberFormatException nfe) {
+            SLOG.error("Failed to parse value of {}@{}! Using default value: {}",
+                    BUILD_QUEUE_ELEMENT_NAME, name, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    public static boolean isInitialized(){
+        return INITIALIZED.get();
+    }
+
+
+    /**
+     * Writes the dmr++ to os. It comes from the cache, from an identical
+     * build that is already running, or from a new build on the calling
+     * thread, in that order.
+     *
+     * @param key Identifies the dmr++, two requests with the same key get the
+     *            same dmr++. If null the build is neither shared nor cached.
+     * @param os The stream to which the dmr++ is written.
+     * @param tc The TransmitCoordinator for os.
+     * @param build The BES transaction that builds the dmr++.
+     * @throws ServiceUnavailable When the queue is full.
+     * @throws IOException When the dmr++ can't be written, or the build
+     * failed.
+     * @throws PPTException When the BES connection fails.
+     * @throws BESError When the BES returns an error.
+     */
+    public static void execute(String key, OutputStream os, TransmitCoordinator tc, Build build)
+            throws ServiceUnavailable, IOException, PPTException, BESError {
+
+        if(!INITIALIZED.get()){
+            build.run(os, tc);
+            return;
+        }
+        if(key == null){
+            runBuild(build, os, tc);
+            return;
+        }
+
+        while(true) {
+            byte[] dmrpp = getCachedResult(key);
+            if (dmrpp != null) {
+                CACHE_HITS.incrementAndGet();
+                SLOG.debug("Sending the cached dmr++ for {}", key);
+                os.write(dmrpp);
+                return;
+            }
+
+            Flight flight = BUILDS.get(key);
+            if (flight != null) {
+                if (flight.join()) {
+                    SHARED.incrementAndGet();
+                    SLOG.debug("Waiting for the running build of {}", key);
+                    flight.follow(os);
+                    return;
+                }
+                // It's done and its result has been let go of.
+                BUILDS.remove(key, flight);
+                continue;
+            }
+
+            flight = new Flight();
+            if (BUILDS.putIfAbsent(key, flight) == null) {
+                flight.lead(key, build, os, tc);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs the build once there is room for it.
+     */
+    private static void runBuild(Build build, OutputStream os, TransmitCoordinator tc)
+            throws ServiceUnavailable, IOException, PPTException, BESError {
+        Semaphore s = permits;
+        if (!s.tryAcquire()) {
+            if (WAITING.incrementAndGet() > maxQueued) {
+                WAITING.decrementAndGet();
+                REJECTED.incrementAndGet();
+                SLOG.warn("Rejected a dmr++ build, the build queue is full. {}", getStatus());
+                throw new ServiceUnavailable("The queue for dmr++ builds is full.", RETRY_AFTER);
+            }
+            try {
+                s.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to build a dmr++.");
+            } finally {
+                WAITING.decrementAndGet();
+            }
+        }
+        RUNNING.incrementAndGet();
+        boolean failed = true;
+        try {
+            build.run(os, tc);
+            failed = false;
+            BUILT.incrementAndGet();
+        } finally {
+            if (failed)
+                FAILED.incrementAndGet();
+            RUNNING.decrementAndGet();
+            s.release();
+        }
+    }
+
+
+    /**
+     * One build and the requests waiting on it. The build result is spooled
+     * so that the waiting requests can be sent it once it's done, the spool
+     * is let go of when the last of them has been sent it.
+     */
+    private static class Flight {
+        private final CompletableFuture<SpillBuffer> result = new CompletableFuture<>();
+        private int readers = 1; // the leader
+        private boolean released = false;
+
+        synchronized boolean join() {
+            if (released)
+                return false;
+            readers++;
+            return true;
+        }
+
+        synchronized void leave() {
+            if (--readers > 0)
+                return;
+            released = true;
+            if (result.isDone() && !result.isCompletedExceptionally())
+                result.join().close();
+        }
+
+        void lead(String key, Build build, OutputStream os, TransmitCoordinator tc)
+                throws ServiceUnavailable, IOException, PPTException, BESError {
+            SpillBuffer spool = new SpillBuffer();
+            Tee tee = new Tee(os, spool);
+            try {
+                runBuild(build, tee, new TransmitCoordinator() {
+                    @Override
+                    public boolean isCommitted() {
+                        return tc.isCommitted();
+                    }
+
+                    @Override
+                    public void reset() throws IllegalStateException {
+                        tc.reset();
+                        spool.reset();
+                    }
+                });
+                // Cached before it is dropped from BUILDS so that there is
+                // no moment in which an identical request would start a new
+                // build.
+                cacheResult(key, spool);
+                result.complete(spool);
+            }
+            catch (Throwable t) {
+                result.completeExceptionally(t);
+                spool.close();
+                throw t;
+            }
+            finally {
+                BUILDS.remove(key, this);
+                leave();
+            }
+            tee.checkError();
+        }
+
+        void follow(OutputStream os) throws ServiceUnavailable, IOException, PPTException, BESError {
+            try {
+                waitFor(result).writeTo(os);
+            }
+            finally {
+                leave();
+            }
+        }
+    }
+
+    /**
+     * Sends the build to the leader's client and to the spool. If the client
+     * goes away the build keeps going for the spool and the error is
+     * reported when it's done.
+     */
+    private static class Tee extends OutputStream {
+        private final OutputStream out;
+        private final SpillBuffer spool;
+        private IOException clientError = null;
+
+        Tee(OutputStream out, SpillBuffer spool) {
+            this.out = out;
+            this.spool = spool;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            spool.write(b);
+            if (clientError == null) {
+                try {
+                    out.write(b);
+                } catch (IOException e) {
+                    clientError = e;
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            spool.write(b, off, len);
+            if (clientError == null) {
+                try {
+                    out.write(b, off, len);
+                } catch (IOException e) {
+                    clientError = e;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            spool.flush();
+            if (clientError == null) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    clientError = e;
+                }
+            }
+        }
+
+        void checkError() throws IOException {
+            if (clientError != null)
+                throw clientError;
+        }
+    }
+
+    private static SpillBuffer waitFor(CompletableFuture<SpillBuffer> future)
+            throws ServiceUnavailable, IOException, PPTException, BESError {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a dmr++ build.");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof ServiceUnavailable)
+                throw (ServiceUnavailable) cause;
+            if(cause instanceof IOException)
+                throw (IOException) cause;
+            if(cause instanceof PPTException)
+                throw (PPTException) cause;
+            if(cause instanceof BESError)
+                throw (BESError) cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if(cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+
+    private static byte[] getCachedResult(String key){
+        synchronized (RESULTS) {
+            Result result = RESULTS.get(key);
+            if(result == null)
+                return null;
+            if(System.currentTimeMillis() - result.created > cacheTtl){
+                RESULTS.remove(key);
+                cachedBytes -= result.dmrpp.length;
+                return null;
+            }
+            return result.dmrpp;
+        }
+    }
+
+    private static void cacheResult(String key, SpillBuffer spool) throws IOException {
+        long size = cacheSize;
+        if(size <= 0 || cacheTtl <= 0 || spool.size() > size / 4)
+            return;
+        byte[] dmrpp = spool.readContent();
+        synchronized (RESULTS) {
+            Result old = RESULTS.put(key, new Result(dmrpp));
+            if(old != null)
+                cachedBytes -= old.dmrpp.length;
+            cachedBytes += dmrpp.length;
+            Iterator<Result> i = RESULTS.values().iterator();
+            while(cachedBytes > size && i.hasNext()){
+                cachedBytes -= i.next().dmrpp.length;
+                i.remove();
+            }
+        }
+    }
+
+
+    public static String getStatus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("BuildDmrppJobQueue ");
+        if (!INITIALIZED.get())
+            return sb.append("DISABLED").toString();
+        int cached;
+        long bytes;
+        synchronized (RESULTS) {
+            cached = RESULTS.size();
+            bytes = cachedBytes;
+        }
+        sb.append("maxRunning: ").append(maxRunning);
+        sb.append(" running: ").append(RUNNING.get());
+        sb.append(" waiting: ").append(WAITING.get());
+        sb.append(" maxQueued: ").append(maxQueued);
+        sb.append(" cached: ").append(cached);
+        sb.append(" cachedBytes: ").append(bytes);
+        sb.append(" cacheSize: ").append(cacheSize);
+        sb.append(" built: ").append(BUILT.get());
+        sb.append(" shared: ").append(SHARED.get());
+        sb.append(" cacheHits: ").append(CACHE_HITS.get());
+        sb.append(" rejected: ").append(REJECTED.get());
+        sb.append(" failed: ").append(FAILED.get());
+        return sb.toString();
+    }
+
+
+    public static synchronized void destroy() {
+        INITIALIZED.set(false);
+        // Builds that are running finish on their request threads and
+        // their followers are sent the result.
+        BUILDS.clear();
+        synchronized (RESULTS) {
+            RESULTS.clear();
+            cachedBytes = 0;
+        }
+        SLOG.info("Destroy complete.");
+    }
+
+}
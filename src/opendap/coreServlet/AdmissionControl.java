@@ -0,0 +1,306 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.coreServlet;
+
+import opendap.bes.BadConfigurationException;
+import opendap.dap.User;
+import opendap.http.error.ServiceUnavailable;
+import org.jdom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of requests of each kind that are worked on at once, so
+ * that a pile of large data downloads can't take every Tomcat thread and BES
+ * client away from the cheap metadata and catalog requests.
+ *
+ * Requests are sorted into lanes by the kind of response (metadata, data,
+ * catalog, other) and by the kind of user (guest or authenticated). The first
+ * lane that matches a request is used, a request that matches no lane is not
+ * limited. Each lane lets maxConcurrent requests run, up to maxQueued more
+ * wait (for no more than queueTimeout seconds) and the rest are refused
+ * with a 503 that asks the client to come back in retryAfter seconds.
+ *
+ * This class is a singleton, configured by the AdmissionControl element in
+ * olfs.xml:
+ * <pre>
+ *     &lt;AdmissionControl&gt;
+ *         &lt;Lane name="metadata" requests="metadata catalog" maxConcurrent="64"
+ *               maxQueued="128" queueTimeout="5" retryAfter="5" /&gt;
+ *         &lt;Lane name="data" requests="data" users="authenticated" maxConcurrent="16"
+ *               maxQueued="32" queueTimeout="30" retryAfter="30" /&gt;
+ *         &lt;Lane name="guest-data" requests="data other" maxConcurrent="8"
+ *               maxQueued="16" queueTimeout="30" retryAfter="60" /&gt;
+ *     &lt;/AdmissionControl&gt;
+ * </pre>
+ * Without the element nothing is limited.
+ */
+public class AdmissionControl {
+
+    public static final String ADMISSION_CONTROL_ELEMENT_NAME = "AdmissionControl";
+    private static final String LANE_ELEMENT_NAME = "Lane";
+
+    /**
+     * The kinds of request that lanes are selected by.
+     */
+    public enum RequestKind { metadata, data, catalog, other }
+
+    /**
+     * The kinds of user that lanes are selected by.
+     */
+    public enum UserKind { any, guest, authenticated }
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionControl.class);
+
+    private static volatile List<Lane> lanes = new ArrayList<>();
+
+
+    /**
+     * A place held in a lane. It must be closed when the response is done.
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Permit UNLIMITED = () -> {};
+
+
+    /**
+     * This is a singleton class and as such all methods are static and the
+     * constructor is private because an instance should never be created.
+     */
+    private AdmissionControl(){}
+
+
+    /**
+     * Sets up the lanes. A null config disables admission control.
+     * @param config The ADMISSION_CONTROL_ELEMENT_NAME element.
+     * @throws BadConfigurationException When a lane is broken.
+     */
+    public static synchronized void init(Element config) throws BadConfigurationException {
+        List<Lane> newLanes = new ArrayList<>();
+        if(config != null) {
+            for (Object o : config.getChildren(LANE_ELEMENT_NAME)) {
+                newLanes.add(new Lane((Element) o));
+            }
+        }
+        lanes = newLanes;
+        LOG.info("Initialized. {}", getStatus());
+    }
+
+    public static boolean isEnabled(){
+        return !lanes.isEmpty();
+    }
+
+
+    /**
+     * Waits for a place in the lane that the request belongs in.
+     *
+     * @param request The request.
+     * @param kind The kind of response the request is for.
+     * @return The place, which must be closed when the response has been sent.
+     * @throws ServiceUnavailable When the lane is full or the wait timed out.
+     */
+    public static Permit admit(HttpServletRequest request, RequestKind kind) throws ServiceUnavailable {
+        List<Lane> current = lanes;
+        if(current.isEmpty())
+            return UNLIMITED;
+
+        UserKind user = new User(request).getUID() == null ? UserKind.guest : UserKind.authenticated;
+        for(Lane lane : current){
+            if(lane.matches(kind, user))
+                return lane.admit();
+        }
+        return UNLIMITED;
+    }
+
+
+    /**
+     * @return The occupancy and counters of each lane.
+     */
+    public static String getStatus(){
+        List<Lane> current = lanes;
+        if(current.isEmpty())
+            return "AdmissionControl: disabled";
+        StringBuilder sb = new StringBuilder("AdmissionControl:");
+        for(Lane lane : current)
+            sb.append("\n  ").append(lane.getStatus());
+        return sb.toString();
+    }
+
+    public static synchronized void destroy(){
+        lanes = new ArrayList<>();
+        LOG.info("Destroyed.");
+    }
+
+
+    private static class Lane {
+
+        private final String name;
+        private final EnumSet<RequestKind> requests;
+        private final UserKind users;
+        private final int maxConcurrent;
+        private final int maxQueued;
+        private final long queueTimeout; // milliseconds
+        private final long retryAfter;   // seconds
+
+        private final Semaphore running;
+        private final AtomicInteger waiting = new AtomicInteger(0);
+        private final AtomicLong admitted = new AtomicLong(0);
+        private final AtomicLong rejected = new AtomicLong(0);
+        private final AtomicLong timedOut = new AtomicLong(0);
+        private final AtomicLong totalWait = new AtomicLong(0);
+        private final AtomicLong maxWait = new AtomicLong(0);
+
+        Lane(Element config) throws BadConfigurationException {
+            name = config.getAttributeValue("name", "lane");
+
+            String s = config.getAttributeValue("requests");
+            if(s == null || s.trim().isEmpty()) {
+                requests = EnumSet.allOf(RequestKind.class);
+            }
+            else {
+                requests = EnumSet.noneOf(RequestKind.class);
+                for (String kind : s.trim().split("[\\s,]+")) {
+                    try {
+                        requests.add(RequestKind.valueOf(kind));
+                    } catch (IllegalArgumentException e) {
+                        throw new BadConfigurationException("Lane " + name + ": unknown request kind '" +
+                                kind + "', expected one of " + EnumSet.allOf(RequestKind.class));
+                    }
+                }
+            }
+
+            s = config.getAttributeValue("users", UserKind.any.name());
+            try {
+                users = UserKind.valueOf(s.trim());
+            } catch (IllegalArgumentException e) {
+                throw new BadConfigurationException("Lane " + name + ": unknown user kind '" + s +
+                        "', expected one of " + EnumSet.allOf(UserKind.class));
+            }
+
+            maxConcurrent = (int) getNumber(config, "maxConcurrent", 1, null);
+            maxQueued = (int) getNumber(config, "maxQueued", 0, 0.0);
+            queueTimeout = (long) (getNumber(config, "queueTimeout", 0, 0.0) * 1000);
+            // Without a retryAfter the 503 has no Retry-After header.
+            retryAfter = (long) Math.ceil(getNumber(config, "retryAfter", 0, -1.0));
+
+            running = new Semaphore(maxConcurrent, true);
+        }
+
+        private double getNumber(Element config, String attribute, double min, Double defaultValue)
+                throws BadConfigurationException {
+            String s = config.getAttributeValue(attribute);
+            if(s == null && defaultValue != null)
+                return defaultValue;
+            if(s == null)
+                throw new BadConfigurationException("Lane " + name + ": the " + attribute + " attribute is required.");
+            try {
+                double value = Double.parseDouble(s.trim());
+                if(value >= min)
+                    return value;
+            } catch (NumberFormatException e) {
+                // Handled below.
+            }
+            throw new BadConfigurationException("Lane " + name + ": " + attribute + " must be a number >= " + min);
+        }
+
+        boolean matches(RequestKind kind, UserKind user){
+            return requests.contains(kind) && (users == UserKind.any || users == user);
+        }
+
+        Permit admit() throws ServiceUnavailable {
+            long start = System.nanoTime();
+            boolean acquired = false;
+            try {
+                // The fair semaphore honors the queue even for a zero wait.
+                acquired = running.tryAcquire(0, TimeUnit.MILLISECONDS);
+                if(!acquired) {
+                    if(waiting.incrementAndGet() > maxQueued) {
+                        waiting.decrementAndGet();
+                        rejected.incrementAndGet();
+                        throw refuse("is full");
+                    }
+                    try {
+                        acquired = running.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS);
+                    } finally {
+                        waiting.decrementAndGet();
+                    }
+                    if(!acquired) {
+                        timedOut.incrementAndGet();
+                        throw refuse("did not free up in time");
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw refuse("wait was interrupted");
+            }
+
+            long waited = (System.nanoTime() - start) / 1000000;
+            admitted.incrementAndGet();
+            totalWait.addAndGet(waited);
+            long max = maxWait.get();
+            while(waited > max && !maxWait.compareAndSet(max, waited))
+                max = maxWait.get();
+
+            AtomicInteger released = new AtomicInteger(0);
+            return () -> {
+                if(released.getAndIncrement() == 0)
+                    running.release();
+            };
+        }
+
+        private ServiceUnavailable refuse(String why){
+            LOG.warn("Refused a request, the {} lane {}. running: {} waiting: {}",
+                    name, why, maxConcurrent - running.availablePermits(), waiting.get());
+            return new ServiceUnavailable("The server is busy, the " + name + " lane " + why + ".", retryAfter);
+        }
+
+        String getStatus(){
+            long count = admitted.get();
+            return name + " requests: " + requests + " users: " + users +
+                    " running: " + (maxConcurrent - running.availablePermits()) + "/" + maxConcurrent +
+                    " waiting: " + waiting.get() + "/" + maxQueued +
+                    " admitted: " + count +
+                    " rejected: " + rejected.get() +
+                    " timedOut: " + timedOut.get() +
+                    " meanWaitMs: " + (count == 0 ? 0 : totalWait.get() / count) +
+                    " maxWaitMs: " + maxWait.get();
+        }
+    }
+
+}
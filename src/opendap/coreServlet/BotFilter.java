@@ -9,7 +9,6 @@ import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Vector;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
@@ -27,6 +26,18 @@ import java.util.regex.Pattern;
  *   <IpMatch>65\.55\.[012]?\d?\d\.[012]?\d?\d</IpMatch>
  * and the user agent can be blocked using a UserAgentMatch element:
  * 	 <UserAgentMatch>^.*facebookexternalhit.*$</UserAgentMatch>
+ * Address ranges can be blocked with zero or more IpCidr elements (IPv4 or IPv6):
+ *   <IpCidr>65.55.0.0/16</IpCidr>
+ * The IpAddress and IpCidr values are compiled into a single CidrTrie, and the
+ * IpMatch and UserAgentMatch expressions are each combined into a single
+ * regular expression, so the cost of checking a request doesn't grow (much)
+ * with the number of rules.
+ *
+ * The BotFilter can also limit the rate at which each client (IP address)
+ * may make requests. Clients that go over the limit get a 429 (Too Many
+ * Requests) response before the request gets anywhere near the BES:
+ *   <RateLimit requestsPerSecond="10" burst="40" maxClients="100000" shards="32" adaptiveThreshold="200"/>
+ * See RateLimiter for the details.
  */
 public class BotFilter implements Filter {
 
@@ -48,27 +59,36 @@ public class BotFilter implements Filter {
     private static final String BOT_BLOCKER_ELEMENT_KEY = "BotBlocker";
     private static final String IP_ADDRESS_ELEMENT_KEY = "IpAddress";
     private static final String IP_MATCH_ELEMENT_KEY = "IpMatch";
+    private static final String IP_CIDR_ELEMENT_KEY = "IpCidr";
+    private static final String RATE_LIMIT_ELEMENT_KEY = "RateLimit";
     private static final String USER_AGENT_MATCH_ELEMENT_KEY = "UserAgentMatch";
     private static final String ALLOWED_RESPONSE_REGEX_ELEMENT_KEY = "AllowedResponseRegex";
     private static final String BLOCKED_RESPONSE_REGEX_ELEMENT_KEY = "BlockedResponseRegex";
     private static final String BOT_FILTER_LOG_NAME = "BotFilterLog";
     private static final String BLOCK_IMAGES_AND_CSS_ELEMENT_NAME = "BlockImagesAndCss";
+    private static final int SC_TOO_MANY_REQUESTS = 429;
     private static final String imagesAndCssRegex = "\\/docs\\/(images|css)\\/.*$";
 
     private static org.slf4j.Logger log = null;
 
     private boolean initialized;
     private boolean filterBlockedResponses;
-    private final HashSet<String> ipAddresses;
+    private final CidrTrie ipAddresses;
     private final Vector<Pattern> ipMatchPatterns;
     private final Vector<Pattern> userAgentMatchPatterns;
+    private Pattern ipMatchPattern;
+    private Pattern userAgentMatchPattern;
+    private RateLimiter rateLimiter;
     private final Vector<Pattern> blockedResponsePatterns;
     private final Vector<Pattern> allowedResponsePatterns;
 
     public BotFilter() {
         log = org.slf4j.LoggerFactory.getLogger(BOT_FILTER_LOG_NAME);
         initialized = false;
-        ipAddresses = new HashSet<>();
+        ipAddresses = new CidrTrie();
+        ipMatchPattern = null;
+        userAgentMatchPattern = null;
+        rateLimiter = null;
         ipMatchPatterns = new Vector<>();
         userAgentMatchPatterns = new Vector<>();
         allowedResponsePatterns = new Vector<>();
@@ -132,14 +152,21 @@ public class BotFilter implements Filter {
                 // Client Blocking
                 //
                 // Ingest the blocked ip addresses.
-                for (Object o : botFilterConfig.getChildren(IP_ADDRESS_ELEMENT_KEY)) {
-                    String ipAddr = ((Element) o).getTextTrim();
-                    ipAddresses.add(ipAddr);
-                }
+                processConfigAddressElements(botFilterConfig, IP_ADDRESS_ELEMENT_KEY);
+                // Ingest the blocked CIDR blocks.
+                processConfigAddressElements(botFilterConfig, IP_CIDR_ELEMENT_KEY);
                 // Ingest the blocked ip address match regex expressions.
                 processConfigMatchElements(botFilterConfig,IP_MATCH_ELEMENT_KEY,ipMatchPatterns);
+                ipMatchPattern = combinePatterns(ipMatchPatterns);
                 // Ingest the blocked user-agent match regex expressions.
                 processConfigMatchElements(botFilterConfig,USER_AGENT_MATCH_ELEMENT_KEY,userAgentMatchPatterns);
+                userAgentMatchPattern = combinePatterns(userAgentMatchPatterns);
+
+                // Per client rate limiting
+                Element rateLimit = botFilterConfig.getChild(RATE_LIMIT_ELEMENT_KEY);
+                if(rateLimit != null){
+                    rateLimiter = buildRateLimiter(rateLimit);
+                }
 
                 // Response filtering patterns
                 //
@@ -200,7 +227,41 @@ public class BotFilter implements Filter {
             rd.forward(request, response);
             return;
         }
-        filterChain.doFilter(request, response);
+
+        if(rateLimiter == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long waitMs = rateLimiter.acquire(request.getRemoteAddr());
+        if (waitMs > 0) {
+            log.info(makeBlockedRequestMessageJson(request, RATE_LIMIT_ELEMENT_KEY));
+            sendTooManyRequests(response, waitMs);
+            return;
+        }
+        rateLimiter.requestStarted();
+        try {
+            filterChain.doFilter(request, response);
+        }
+        finally {
+            rateLimiter.requestFinished();
+        }
+    }
+
+    /**
+     * Sends a 429 (Too Many Requests) response. This is done here, without
+     * an error page, because the whole point is to keep the cost of the
+     * refused request as low as possible.
+     * @param response The response.
+     * @param waitMs The time, in milliseconds, until the client may try again.
+     * @throws IOException When the response can't be written.
+     */
+    private void sendTooManyRequests(HttpServletResponse response, long waitMs) throws IOException {
+        long retryAfter = Math.max(1, (waitMs + 999) / 1000);
+        response.setStatus(SC_TOO_MANY_REQUESTS);
+        response.setHeader("Retry-After", Long.toString(retryAfter));
+        response.setContentType("text/plain");
+        response.getWriter().println("Too Many Requests. Retry after " + retryAfter + " second(s).");
     }
 
     @Override
@@ -226,6 +287,68 @@ public class BotFilter implements Filter {
         }
     }
 
+    /**
+     * Adds the addresses (or CIDR blocks) in the matching elements to the
+     * blocked address trie.
+     * @param config The configuration Element to use.
+     * @param elementName The name of the element(s) in the configuration
+     *                    to process.
+     */
+    private void processConfigAddressElements(Element config, String elementName){
+        for (Object o : config.getChildren(elementName)) {
+            String ipAddr = ((Element) o).getTextTrim();
+            try {
+                ipAddresses.add(ipAddr);
+            }
+            catch (IllegalArgumentException e){
+                jsonWarn("Ignoring " + elementName + " value \"" + ipAddr + "\" Message: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Combines the patterns into one alternation so that a request is
+     * checked against all of them in a single pass.
+     * @param patterns The patterns to combine.
+     * @return The combined pattern, or null if there are no patterns.
+     */
+    private Pattern combinePatterns(Vector<Pattern> patterns){
+        if(patterns.isEmpty())
+            return null;
+        if(patterns.size() == 1)
+            return patterns.get(0);
+        StringBuilder sb = new StringBuilder();
+        for(Pattern p : patterns){
+            if(sb.length() > 0)
+                sb.append("|");
+            sb.append("(?:").append(p.pattern()).append(")");
+        }
+        return Pattern.compile(sb.toString());
+    }
+
+    /**
+     * Builds the RateLimiter from the RateLimit configuration element.
+     * @param rateLimit The RateLimit element.
+     * @return The RateLimiter, or null if the configuration is broken.
+     */
+    private RateLimiter buildRateLimiter(Element rateLimit){
+        try {
+            double requestsPerSecond = Double.parseDouble(rateLimit.getAttributeValue("requestsPerSecond", "10"));
+            double burst = Double.parseDouble(rateLimit.getAttributeValue("burst", Double.toString(requestsPerSecond * 4)));
+            int maxClients = Integer.parseInt(rateLimit.getAttributeValue("maxClients", "100000"));
+            int shards = Integer.parseInt(rateLimit.getAttributeValue("shards", "32"));
+            int adaptiveThreshold = Integer.parseInt(rateLimit.getAttributeValue("adaptiveThreshold", "0"));
+            RateLimiter rl = new RateLimiter(requestsPerSecond, burst, maxClients, shards, adaptiveThreshold);
+            jsonDebug("Rate limiting enabled. " + rl);
+            return rl;
+        }
+        catch (IllegalArgumentException e){
+            jsonWarn("Rate limiting is DISABLED. Failed to process the " + RATE_LIMIT_ELEMENT_KEY +
+                    " element. Message: " + e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Determines if the incoming request should be blocked.
      * @param request The request to be handled.
@@ -243,24 +366,21 @@ public class BotFilter implements Filter {
             rv.blockResponse = isResponseBlocked(request);
             rv.cause = "IpAddress";
         }
-        for(Pattern p: ipMatchPatterns){
-            if(p.matcher(remoteAddr).matches()){
-                jsonDebug("The ip address: " + LogUtil.scrubEntry(remoteAddr) +
-                        " matches the pattern: \""+p.pattern()+"\"");
-                rv.blockResponse = isResponseBlocked(request);
-                rv.cause = "IpMatch";
-            }
+        else if(ipMatchPattern != null && ipMatchPattern.matcher(remoteAddr).matches()){
+            jsonDebug("The ip address: " + LogUtil.scrubEntry(remoteAddr) +
+                    " matches the pattern: \"" + ipMatchPattern.pattern() + "\"");
+            rv.blockResponse = isResponseBlocked(request);
+            rv.cause = "IpMatch";
         }
-        String userAgent = request.getHeader("User-Agent");
-        if(userAgent != null) {
-            for (Pattern p : userAgentMatchPatterns) {
-                if (p.matcher(userAgent).matches()) {
-                    jsonDebug("The User-Agent header: " +
-                            LogUtil.scrubEntry(userAgent) +
-                            " matches the pattern: \""+ p.pattern() + "\"");
-                    rv.blockResponse = isResponseBlocked(request);
-                    rv.cause = "UserAgentMatch";
-                }
+        else {
+            String userAgent = request.getHeader("User-Agent");
+            if (userAgent != null && userAgentMatchPattern != null &&
+                    userAgentMatchPattern.matcher(userAgent).matches()) {
+                jsonDebug("The User-Agent header: " +
+                        LogUtil.scrubEntry(userAgent) +
+                        " matches the pattern: \"" + userAgentMatchPattern.pattern() + "\"");
+                rv.blockResponse = isResponseBlocked(request);
+                rv.cause = "UserAgentMatch";
             }
         }
         return rv;
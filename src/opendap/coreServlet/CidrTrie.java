@@ -0,0 +1,237 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.coreServlet;
+
+import java.util.regex.Pattern;
+
+/**
+ * A binary prefix trie of IPv4 and IPv6 CIDR blocks. Looking up an address
+ * costs at most one step per bit of the address (32 for IPv4, 128 for IPv6)
+ * no matter how many blocks are in the trie.
+ *
+ * IPv4 addresses are stored as IPv4-mapped IPv6 addresses (::ffff:a.b.c.d) so
+ * a single trie holds both address families.
+ */
+public class CidrTrie {
+
+    private static final Pattern IPV4_PATTERN = Pattern.compile("^\\d{1,3}(\\.\\d{1,3}){3}$");
+    private static final Pattern IPV6_PATTERN = Pattern.compile("^[0-9a-fA-F:.]*:[0-9a-fA-F:.]*(%.*)?$");
+
+    private static final int IPV4_MAPPED_PREFIX_BITS = 96;
+
+    private static class Node {
+        private final Node[] children = new Node[2];
+        private boolean terminal = false;
+    }
+
+    private final Node root;
+    private int size;
+
+    public CidrTrie(){
+        root = new Node();
+        size = 0;
+    }
+
+    /**
+     * Adds a CIDR block (such as 10.0.0.0/8 or 2001:db8::/32) or a single
+     * address to the trie.
+     * @param cidr The CIDR block or address.
+     * @throws IllegalArgumentException When the value is not an IP address
+     * or CIDR block.
+     */
+    public void add(String cidr) {
+        String address = cidr.trim();
+        int prefixLength = -1;
+        int slash = address.indexOf('/');
+        if(slash >= 0){
+            try {
+                prefixLength = Integer.parseInt(address.substring(slash + 1).trim());
+            }
+            catch (NumberFormatException e){
+                throw new IllegalArgumentException("Invalid CIDR prefix length in: " + cidr);
+            }
+            address = address.substring(0, slash).trim();
+        }
+
+        boolean isV4 = IPV4_PATTERN.matcher(address).matches();
+        byte[] bytes = toBytes(address);
+        if(bytes == null)
+            throw new IllegalArgumentException("Not an IP address or CIDR block: " + cidr);
+
+        int maxLength = isV4 ? 32 : 128;
+        if(prefixLength < 0)
+            prefixLength = maxLength;
+        if(prefixLength > maxLength)
+            throw new IllegalArgumentException("Invalid CIDR prefix length in: " + cidr);
+        if(isV4)
+            prefixLength += IPV4_MAPPED_PREFIX_BITS;
+
+        Node node = root;
+        for(int i=0; i<prefixLength && !node.terminal; i++){
+            int bit = bit(bytes, i);
+            if(node.children[bit] == null)
+                node.children[bit] = new Node();
+            node = node.children[bit];
+        }
+        if(!node.terminal) {
+            node.terminal = true;
+            // Anything below this node is now redundant.
+            node.children[0] = null;
+            node.children[1] = null;
+            size++;
+        }
+    }
+
+    /**
+     * @param address An IPv4 or IPv6 address.
+     * @return True if the address is in one of the blocks in the trie.
+     */
+    public boolean contains(String address){
+        if(address == null)
+            return false;
+        byte[] bytes = toBytes(address.trim());
+        if(bytes == null)
+            return false;
+
+        Node node = root;
+        for(int i=0; i<128; i++){
+            if(node.terminal)
+                return true;
+            node = node.children[bit(bytes, i)];
+            if(node == null)
+                return false;
+        }
+        return node.terminal;
+    }
+
+    /**
+     * @return The number of blocks in the trie.
+     */
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    private static int bit(byte[] bytes, int i){
+        return (bytes[i >> 3] >> (7 - (i & 7))) & 1;
+    }
+
+    /**
+     * Converts an address literal to its 16 byte IPv6 form, IPv4 addresses
+     * are mapped. Host names are never resolved.
+     * @return The bytes, or null if the string is not an address literal.
+     */
+    private static byte[] toBytes(String address){
+        byte[] result = new byte[16];
+        if(IPV4_PATTERN.matcher(address).matches()){
+            String[] octets = address.split("\\.");
+            result[10] = (byte) 0xff;
+            result[11] = (byte) 0xff;
+            for(int i=0; i<4; i++){
+                int v = Integer.parseInt(octets[i]);
+                if(v > 255)
+                    return null;
+                result[12 + i] = (byte) v;
+            }
+            return result;
+        }
+        if(!IPV6_PATTERN.matcher(address).matches())
+            return null;
+
+        int zone = address.indexOf('%');
+        if(zone >= 0)
+            address = address.substring(0, zone);
+
+        // An embedded IPv4 address in the last 32 bits.
+        int[] tail = null;
+        int lastColon = address.lastIndexOf(':');
+        String last = address.substring(lastColon + 1);
+        if(last.contains(".")){
+            if(!IPV4_PATTERN.matcher(last).matches())
+                return null;
+            String[] octets = last.split("\\.");
+            tail = new int[2];
+            for(int i=0; i<4; i++){
+                int v = Integer.parseInt(octets[i]);
+                if(v > 255)
+                    return null;
+                tail[i/2] = (tail[i/2] << 8) | v;
+            }
+            address = address.substring(0, lastColon + 1) + "0:0";
+        }
+
+        int doubleColon = address.indexOf("::");
+        if(doubleColon != address.lastIndexOf("::"))
+            return null;
+
+        String[] head;
+        String[] rest;
+        if(doubleColon >= 0){
+            String h = address.substring(0, doubleColon);
+            String r = address.substring(doubleColon + 2);
+            head = h.isEmpty() ? new String[0] : h.split(":");
+            rest = r.isEmpty() ? new String[0] : r.split(":");
+            if(head.length + rest.length > 7)
+                return null;
+        }
+        else {
+            head = address.split(":");
+            rest = new String[0];
+            if(head.length != 8)
+                return null;
+        }
+
+        int[] groups = new int[8];
+        try {
+            for (int i = 0; i < head.length; i++)
+                groups[i] = parseGroup(head[i]);
+            for (int i = 0; i < rest.length; i++)
+                groups[8 - rest.length + i] = parseGroup(rest[i]);
+        }
+        catch (NumberFormatException e){
+            return null;
+        }
+        if(tail != null){
+            groups[6] = tail[0];
+            groups[7] = tail[1];
+        }
+        for(int i=0; i<8; i++){
+            result[2*i] = (byte) (groups[i] >> 8);
+            result[2*i + 1] = (byte) groups[i];
+        }
+        return result;
+    }
+
+    private static int parseGroup(String group){
+        if(group.isEmpty() || group.length() > 4)
+            throw new NumberFormatException("Bad IPv6 group: " + group);
+        return Integer.parseInt(group, 16);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.coreServlet;
+
+// This uses JUnit 4
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CidrTrieTest {
+
+    private CidrTrie trie;
+
+    @Before
+    public void setUp() {
+        trie = new CidrTrie();
+        trie.add("10.0.0.0/8");
+        trie.add("192.168.1.17");
+        trie.add("2001:db8::/32");
+        trie.add("::1");
+    }
+
+    @Test
+    public void testIpv4() {
+        Assert.assertTrue(trie.contains("10.1.2.3"));
+        Assert.assertTrue(trie.contains("10.255.255.255"));
+        Assert.assertFalse(trie.contains("11.0.0.1"));
+        Assert.assertTrue(trie.contains("192.168.1.17"));
+        Assert.assertFalse(trie.contains("192.168.1.18"));
+    }
+
+    @Test
+    public void testIpv6() {
+        Assert.assertTrue(trie.contains("2001:db8:1234::42"));
+        Assert.assertTrue(trie.contains("2001:0DB8:0:0:0:0:0:1"));
+        Assert.assertFalse(trie.contains("2001:db9::1"));
+        Assert.assertTrue(trie.contains("0:0:0:0:0:0:0:1"));
+        Assert.assertTrue(trie.contains("::ffff:10.9.8.7"));
+    }
+
+    @Test
+    public void testNotAnAddress() {
+        Assert.assertFalse(trie.contains("www.example.com"));
+        Assert.assertFalse(trie.contains("10.0.0.256"));
+        Assert.assertFalse(trie.contains(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCidr() {
+        trie.add("10.0.0.0/33");
+    }
+
+    @Test
+    public void testSize() {
+        trie.add("10.20.0.0/16");
+        Assert.assertEquals(4, trie.size());
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.coreServlet;
+
+import org.jdom.Document;
+import org.jdom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Vector;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+
+/**
+ * CompressionFilter
+ * This implementation of the javax.servlet.Filter interface compresses
+ * responses (using gzip) for clients whose Accept-Encoding header says they
+ * can handle it. Whether a response is compressed is decided by its
+ * Content-Type, so that already compressed formats (netCDF-4, GeoTIFF, etc.)
+ * are passed through untouched, and by its size, so that small responses
+ * are not worth the trouble.
+ *
+ * The filter is configured by the Compression element in olfs.xml:
+ * <pre>
+ *   &lt;Compression level="6" minimumSize="2048"&gt;
+ *       &lt;CompressMediaType&gt;^text/.*$&lt;/CompressMediaType&gt;
+ *       &lt;SkipMediaType&gt;^application/x-netcdf.*$&lt;/SkipMediaType&gt;
+ *   &lt;/Compression&gt;
+ * </pre>
+ * If the Compression element is missing then the filter does nothing. If no
+ * CompressMediaType or SkipMediaType elements are given then the default
+ * lists are used.
+ */
+public class CompressionFilter implements Filter {
+
+    private static final String CONFIG_PARAMETER_KEY = "config";
+    private static final String DEFAULT_CONFIG_FILENAME = "olfs.xml";
+    private static final String COMPRESSION_ELEMENT_KEY = "Compression";
+    private static final String LEVEL_ATTRIBUTE_KEY = "level";
+    private static final String MINIMUM_SIZE_ATTRIBUTE_KEY = "minimumSize";
+    private static final String COMPRESS_MEDIA_TYPE_ELEMENT_KEY = "CompressMediaType";
+    private static final String SKIP_MEDIA_TYPE_ELEMENT_KEY = "SkipMediaType";
+
+    private static final int DEFAULT_MINIMUM_SIZE = 2048;
+
+    /**
+     * Text based responses, these compress well.
+     */
+    private static final String[] DEFAULT_COMPRESS_MEDIA_TYPES = {
+            "^text/.*$",
+            "^application/(json|xml|javascript|x-javascript)(;.*)?$",
+            "^application/[^;]*\\+(xml|json)(;.*)?$",
+            "^application/vnd\\.opendap\\.dap4\\.error\\.xml(;.*)?$"
+    };
+
+    /**
+     * Binary and already compressed responses, these don't.
+     */
+    private static final String[] DEFAULT_SKIP_MEDIA_TYPES = {
+            "^application/x-netcdf.*$",
+            "^image/.*$",
+            "^application/(zip|gzip|x-gzip|x-bzip2|zstd|octet-stream)(;.*)?$",
+            "^application/vnd\\.opendap\\.dap4\\.data(;.*)?$"
+    };
+
+    private static final ReentrantLock initLock = new ReentrantLock();
+
+    private final Logger log;
+
+    private boolean initialized;
+    private boolean enabled;
+    private int level;
+    private int minimumSize;
+    private final Vector<Pattern> compressMediaTypes;
+    private final Vector<Pattern> skipMediaTypes;
+
+
+    public CompressionFilter() {
+        log = LoggerFactory.getLogger(getClass());
+        initialized = false;
+        enabled = false;
+        level = Deflater.DEFAULT_COMPRESSION;
+        minimumSize = DEFAULT_MINIMUM_SIZE;
+        compressMediaTypes = new Vector<>();
+        skipMediaTypes = new Vector<>();
+    }
+
+    /**
+     * For the Filter interface.
+     * @param filterConfig
+     * @throws ServletException
+     */
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        initLock.lock();
+        try {
+            if(initialized) {
+                return;
+            }
+            try {
+                String configFileName = filterConfig.getInitParameter(CONFIG_PARAMETER_KEY);
+                if (configFileName == null) {
+                    configFileName = DEFAULT_CONFIG_FILENAME;
+                    log.warn("init() - The web.xml configuration for {} does not contain an init-parameter " +
+                            "named \"{}\" Using the DEFAULT name: {}",
+                            getClass().getName(), CONFIG_PARAMETER_KEY, configFileName);
+                }
+                Document configDoc = ServletUtil.loadConfig(configFileName, filterConfig.getServletContext());
+                init(configDoc.getRootElement());
+            } catch (Exception e) {
+                log.warn("init() - INITIALIZATION HAS BEEN POSTPONED! FAILED TO INITIALIZE CompressionFilter! " +
+                        "Caught {} Message: {}", e.getClass().getName(), e.getMessage());
+            }
+        }
+        finally {
+            initLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the configuration state (if any) from the XML Element.
+     * @param config The OLFSConfig element.
+     */
+    private void init(Element config) {
+        Element compressionConfig = config.getChild(COMPRESSION_ELEMENT_KEY);
+        if (compressionConfig != null) {
+
+            String s = compressionConfig.getAttributeValue(LEVEL_ATTRIBUTE_KEY);
+            if (s != null) {
+                try {
+                    int l = Integer.parseInt(s.trim());
+                    if (l < Deflater.NO_COMPRESSION || l > Deflater.BEST_COMPRESSION)
+                        throw new NumberFormatException("level must be between 0 and 9");
+                    level = l;
+                } catch (NumberFormatException nfe) {
+                    log.error("Failed to parse {}@{}! Using default value. Msg: {}",
+                            COMPRESSION_ELEMENT_KEY, LEVEL_ATTRIBUTE_KEY, nfe.getMessage());
+                }
+            }
+
+            s = compressionConfig.getAttributeValue(MINIMUM_SIZE_ATTRIBUTE_KEY);
+            if (s != null) {
+                try {
+                    minimumSize = Math.max(0, Integer.parseInt(s.trim()));
+                } catch (NumberFormatException nfe) {
+                    log.error("Failed to parse {}@{}! Using default value: {}",
+                            COMPRESSION_ELEMENT_KEY, MINIMUM_SIZE_ATTRIBUTE_KEY, DEFAULT_MINIMUM_SIZE);
+                }
+            }
+
+            processConfigMatchElements(compressionConfig, COMPRESS_MEDIA_TYPE_ELEMENT_KEY, compressMediaTypes);
+            if (compressMediaTypes.isEmpty()) {
+                for (String regex : DEFAULT_COMPRESS_MEDIA_TYPES)
+                    compressMediaTypes.add(Pattern.compile(regex));
+            }
+            processConfigMatchElements(compressionConfig, SKIP_MEDIA_TYPE_ELEMENT_KEY, skipMediaTypes);
+            if (skipMediaTypes.isEmpty()) {
+                for (String regex : DEFAULT_SKIP_MEDIA_TYPES)
+                    skipMediaTypes.add(Pattern.compile(regex));
+            }
+            enabled = true;
+            log.info("init() - Compression enabled. level: {} minimumSize: {}", level, minimumSize);
+        }
+        else {
+            log.info("init() - No {} element found in configuration. Compression is disabled.",
+                    COMPRESSION_ELEMENT_KEY);
+        }
+        initialized = true;
+    }
+
+
+    /**
+     * For the Filter interface.
+     * @param servletRequest
+     * @param servletResponse
+     * @param filterChain
+     * @throws IOException
+     * @throws ServletException
+     */
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+            throws IOException, ServletException {
+
+        HttpServletRequest request = (HttpServletRequest)servletRequest;
+        HttpServletResponse response = (HttpServletResponse)servletResponse;
+
+        if(!enabled || !acceptsGzip(request)){
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        CompressionResponseWrapper wrapper = new CompressionResponseWrapper(response, this);
+        try {
+            filterChain.doFilter(request, wrapper);
+        }
+        finally {
+            wrapper.finish();
+        }
+    }
+
+
+    @Override
+    public void destroy() {
+    }
+
+
+    /**
+     * @return The gzip compression level.
+     */
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return The size, in bytes, below which responses are not compressed.
+     */
+    int getMinimumSize(){
+        return minimumSize;
+    }
+
+
+    /**
+     * Determines if responses of the passed content type should be compressed.
+     * @param contentType The value of the response's Content-Type header.
+     * @return True if the media type is on the compress list and not on the
+     * skip list.
+     */
+    boolean isCompressible(String contentType) {
+        if (contentType == null)
+            return false;
+        String ct = contentType.trim().toLowerCase();
+        for (Pattern p : skipMediaTypes) {
+            if (p.matcher(ct).matches())
+                return false;
+        }
+        for (Pattern p : compressMediaTypes) {
+            if (p.matcher(ct).matches())
+                return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Evaluates the request's Accept-Encoding header.
+     * @param request The request.
+     * @return True if the client will accept a gzip encoded response.
+     */
+    static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null)
+            return false;
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            if (name.equals("gzip") || name.equals("x-gzip") || name.equals("*")) {
+                double q = 1.0;
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            q = Double.parseDouble(param.substring(2).trim());
+                        } catch (NumberFormatException e) {
+                            q = 0;
+                        }
+                    }
+                }
+                if (q > 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * This helper function is used by init(Element) to process the regex match
+     * expressions in the configuration.
+     *
+     * @param config The configuration Element to use.
+     * @param matchElementName The name of the element(s) in the configuration
+     *                         to process.
+     * @param matchPatterns The Vector to which the new Patterns will be added.
+     */
+    private void processConfigMatchElements(Element config, String matchElementName, Vector<Pattern> matchPatterns){
+        for (Object o : config.getChildren(matchElementName)) {
+            String regex = ((Element) o).getTextTrim();
+            matchPatterns.add(Pattern.compile(regex));
+        }
+    }
+
+}
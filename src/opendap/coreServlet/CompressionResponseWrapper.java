@@ -0,0 +1,369 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.coreServlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The HttpServletResponseWrapper used by the CompressionFilter. The first
+ * minimumSize bytes of the response are held back until the wrapper can
+ * decide (from the Content-Type and the size) whether the response should be
+ * compressed. After that the response is streamed, compressed or not, to the
+ * underlying response. Because nothing is sent to the client until the
+ * decision is made the response can still be reset() by the error handlers.
+ */
+public class CompressionResponseWrapper extends HttpServletResponseWrapper {
+
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    static final String GZIP = "gzip";
+
+    private final CompressionFilter filter;
+    private CompressingOutputStream stream;
+    private PrintWriter writer;
+    private long contentLength;
+
+    public CompressionResponseWrapper(HttpServletResponse response, CompressionFilter filter) {
+        super(response);
+        this.filter = filter;
+        stream = null;
+        writer = null;
+        contentLength = -1;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null)
+            throw new IllegalStateException("getWriter() has already been called for this response.");
+        if (stream == null)
+            stream = new CompressingOutputStream();
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null)
+                throw new IllegalStateException("getOutputStream() has already been called for this response.");
+            stream = new CompressingOutputStream();
+            writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    /**
+     * The Content-Length is held until we know whether the response will be
+     * compressed, in which case it's dropped.
+     */
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name))
+            contentLength = parseLength(value);
+        else
+            super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name))
+            contentLength = parseLength(value);
+        else
+            super.addHeader(name, value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name))
+            contentLength = value;
+        else
+            super.setIntHeader(name, value);
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name))
+            contentLength = value;
+        else
+            super.addIntHeader(name, value);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null)
+            writer.flush();
+        // Flushing the underlying response would commit the headers before
+        // we know if the response is to be compressed.
+        if (stream == null || !stream.isBuffering()) {
+            if (stream != null)
+                stream.flush();
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        stream = null;
+        writer = null;
+        contentLength = -1;
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (stream != null)
+            stream.resetBuffer();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        discard();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        discard();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        discard();
+        super.sendRedirect(location);
+    }
+
+    private void discard() {
+        if (stream != null)
+            stream.discard();
+    }
+
+    /**
+     * Completes the response, compressing it or not as needed. Called by the
+     * CompressionFilter once the filter chain has returned.
+     * @throws IOException When the response can't be written.
+     */
+    void finish() throws IOException {
+        if (writer != null)
+            writer.flush();
+        if (stream != null)
+            stream.finish();
+    }
+
+    private static long parseLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Holds the first minimumSize bytes and then streams either through a
+     * GZIPOutputStream or straight to the underlying response.
+     */
+    private class CompressingOutputStream extends ServletOutputStream {
+
+        private ByteArrayOutputStream buffer;
+        private OutputStream out;
+        private ServletOutputStream target;
+        private GZIPOutputStream gzip;
+        private boolean closed;
+
+        CompressingOutputStream() {
+            buffer = new ByteArrayOutputStream();
+            out = null;
+            gzip = null;
+            closed = false;
+        }
+
+        boolean isBuffering() {
+            return out == null && !closed;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (closed)
+                throw new IOException("Stream closed.");
+            if (out == null) {
+                buffer.write(b);
+                if (buffer.size() >= filter.getMinimumSize())
+                    commit(false, true);
+            } else {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed)
+                throw new IOException("Stream closed.");
+            if (out == null) {
+                buffer.write(b, off, len);
+                if (buffer.size() >= filter.getMinimumSize())
+                    commit(false, true);
+            } else {
+                out.write(b, off, len);
+            }
+        }
+
+        /**
+         * Decides if the response gets compressed and sends the held bytes.
+         * @param atEnd True if the response is complete.
+         * @param compressionAllowed False if the response must be sent as is.
+         */
+        private void commit(boolean atEnd, boolean compressionAllowed) throws IOException {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+
+            String contentType = getContentType();
+            boolean compressible = filter.isCompressible(contentType);
+            if (compressible)
+                response.addHeader("Vary", "Accept-Encoding");
+
+            target = response.getOutputStream();
+            int status = response.getStatus();
+            boolean compress = compressionAllowed && compressible &&
+                    !(atEnd && buffer.size() < filter.getMinimumSize()) &&
+                    !response.containsHeader(CONTENT_ENCODING) &&
+                    !response.containsHeader("Content-Range") &&
+                    status != HttpServletResponse.SC_PARTIAL_CONTENT &&
+                    status != HttpServletResponse.SC_NO_CONTENT &&
+                    status != HttpServletResponse.SC_NOT_MODIFIED;
+
+            if (compress) {
+                response.setHeader(CONTENT_ENCODING, GZIP);
+                // The gzip body is a different representation than the
+                // identity one and must not share its (strong) entity tag.
+                String etag = response.getHeader(EntityTag.ETAG_HEADER);
+                if (etag != null)
+                    response.setHeader(EntityTag.ETAG_HEADER, EntityTag.getEncodedEntityTag(etag, GZIP));
+                final int level = filter.getLevel();
+                gzip = new GZIPOutputStream(target, 8192, true) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+                out = gzip;
+            } else {
+                if (contentLength >= 0)
+                    response.setHeader(CONTENT_LENGTH, Long.toString(contentLength));
+                else if (atEnd)
+                    response.setHeader(CONTENT_LENGTH, Integer.toString(buffer.size()));
+                out = target;
+            }
+            buffer.writeTo(out);
+            buffer = null;
+        }
+
+        @Override
+        public boolean isReady() {
+            return target == null || target.isReady();
+        }
+
+        /**
+         * Non-blocking writes go straight to the underlying stream, so a
+         * response that is still being held is sent uncompressed.
+         */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (isBuffering()) {
+                try {
+                    commit(false, false);
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException("Unable to send the held response. Msg: " + e.getMessage(), e);
+                }
+            }
+            target.setWriteListener(writeListener);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // While buffering there is nothing we can send yet.
+            if (out != null)
+                out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        void finish() throws IOException {
+            if (closed)
+                return;
+            if (out == null)
+                commit(true, true);
+            closed = true;
+            if (gzip != null)
+                gzip.finish();
+            out.flush();
+        }
+
+        void resetBuffer() {
+            if (out == null && !closed)
+                buffer.reset();
+            else if (gzip != null) {
+                // The compressed bytes are gone from the underlying buffer,
+                // so start again with a fresh gzip stream.
+                final int level = filter.getLevel();
+                try {
+                    gzip = new GZIPOutputStream(getResponse().getOutputStream(), 8192, true) {
+                        {
+                            def.setLevel(level);
+                        }
+                    };
+                    out = gzip;
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to reset the compressed response.", e);
+                }
+            }
+        }
+
+        void discard() {
+            buffer = null;
+            out = null;
+            gzip = null;
+            closed = true;
+        }
+    }
+}
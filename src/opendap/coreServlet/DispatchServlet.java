@@ -27,9 +27,12 @@
 package opendap.coreServlet;
 
 
+import opendap.PathBuilder;
 import opendap.auth.AuthenticationControls;
 import opendap.bes.BESManager;
+import opendap.bes.BadConfigurationException;
 import opendap.http.error.NotFound;
+import opendap.logging.AccessLog;
 import opendap.logging.ServletLogUtil;
 import opendap.logging.Procedure;
 import opendap.logging.Timer;
@@ -136,6 +139,8 @@ public class DispatchServlet extends HttpServlet {
             PersistentConfigurationHandler.installDefaultConfiguration(this, configFile);
 
             configDoc = ServletUtil.loadConfig(configFile, getServletContext());
+            // So that the BES configuration can be reloaded from the same file.
+            BESManager.setConfigFileName(configFile);
 
             Element config = configDoc.getRootElement();
 
@@ -145,6 +150,18 @@ public class DispatchServlet extends HttpServlet {
             Element useDualCWLogs = config.getChild("UseDualCloudWatchLogs");
             ServletLogUtil.useDualCloudWatchLogs(useDualCWLogs!=null);
 
+            Element accessLog = config.getChild(AccessLog.ACCESS_LOG_ELEMENT_NAME);
+            if (accessLog != null) {
+                String logDir = System.getProperty("logdir");
+                if (logDir == null)
+                    logDir = PathBuilder.pathConcat(ServletUtil.getConfigPath(this), "logs");
+                try {
+                    AccessLog.init(accessLog, logDir);
+                } catch (BadConfigurationException e) {
+                    throw new ServletException(e);
+                }
+            }
+
             boolean enablePost = false;
             Element postConfig = config.getChild("HttpPost");
             if (postConfig != null) {
@@ -169,6 +186,12 @@ public class DispatchServlet extends HttpServlet {
 
             initAuthenticationControls();
 
+            try {
+                AdmissionControl.init(config.getChild(AdmissionControl.ADMISSION_CONTROL_ELEMENT_NAME));
+            } catch (BadConfigurationException e) {
+                throw new ServletException(e);
+            }
+
             try {
                 loadHyraxServiceHandlers(httpGetDispatchHandlers, httpPostDispatchHandlers, enablePost, config);
             } catch (Exception e) {
@@ -274,6 +297,7 @@ public class DispatchServlet extends HttpServlet {
         Element noDynamicNavigation = config.getChild("NoDynamicNavigation");
 
         httpGetHandlers.add(new opendap.bes.VersionDispatchHandler());
+        httpGetHandlers.add(new opendap.async.AsyncJobDispatchHandler());
         httpGetHandlers.add(new opendap.ncml.NcmlDatasetDispatcher());
         httpGetHandlers.add(new opendap.threddsHandler.StaticCatalogDispatch());
         httpGetHandlers.add(new opendap.gateway.DispatchHandler());
@@ -441,6 +465,10 @@ public class DispatchServlet extends HttpServlet {
                 DispatchHandler dh = getDispatchHandler(request, httpGetDispatchHandlers);
                 if (dh != null) {
                     log.debug("Request being handled by: {}", dh.getClass().getName());
+                    if (EntityTag.notModified(request, response, true)) {
+                        httpStatus = HttpServletResponse.SC_NOT_MODIFIED;
+                        return;
+                    }
                     dh.handleRequest(request, response);
 
                 } else {
@@ -559,14 +587,24 @@ public class DispatchServlet extends HttpServlet {
      * @param request The request we are looking to handle
      * @param dhvec   A Vector of DispatchHandlers that will be asked if they can
      *                handle the request.
+     * The handler is remembered in the RequestCache, so the search made for
+     * getLastModified() isn't made again by doGet().
+     *
      * @return The IsoDispatchHandler that can handle the request, null if no
      * handler claims the request.
      * @throws Exception For bad behaviour.
      */
     private DispatchHandler getDispatchHandler(HttpServletRequest request, List<DispatchHandler> dhvec) throws Exception {
+        String key = getClass().getName() + ".getDispatchHandler(" + System.identityHashCode(dhvec) + ")";
+        Object o = RequestCache.get(key);
+        if (o instanceof DispatchHandler) {
+            log.debug("Using handler from the RequestCache: {}", o.getClass().getName());
+            return (DispatchHandler) o;
+        }
         for (DispatchHandler dh : dhvec) {
             log.debug("Checking handler: {}", dh.getClass().getName());
             if (dh.requestCanBeHandled(request)) {
+                RequestCache.put(key, dh);
                 return dh;
             }
         }
@@ -574,6 +612,22 @@ public class DispatchServlet extends HttpServlet {
     }
 
 
+    /**
+     * getLastModified() opens the RequestCache and leaves it for doGet(), but
+     * HttpServlet answers a conditional GET with a 304 without calling
+     * doGet(). Closing the cache here keeps the next request on this thread
+     * from finding what was cached for this one.
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        try {
+            super.service(req, resp);
+        } finally {
+            RequestCache.close();
+        }
+    }
+
+
     /**
      * Gets the last modified date of the requested resource. Because the data handler is really
      * the only entity capable of determining the last modified date the job is passed  through to it.
@@ -601,6 +655,8 @@ public class DispatchServlet extends HttpServlet {
                 if (dh != null) {
                     log.debug("getLastModified() -  Request being handled by: {}", dh.getClass().getName());
                     lmt = dh.getLastModified(req);
+                    // Hold on to it so that doGet() can build the ETag.
+                    EntityTag.setLastModified(lmt);
                 }
             }
         } catch (Exception e) {
@@ -626,6 +682,8 @@ public class DispatchServlet extends HttpServlet {
             dh.destroy();
         }
         BESManager.destroy();
+        AdmissionControl.destroy();
+        AccessLog.destroy();
         super.destroy();
     }
 
@@ -0,0 +1,260 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.coreServlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds HTTP entity tags (ETags) for OLFS responses and evaluates the
+ * If-None-Match request header against them.
+ *
+ * An entity tag is built from the last modified time of the dataset, the
+ * requested response type (the request suffix and the Accept header used for
+ * content negotiation) and a hash of the query string (the
+ * constraint expression). Responses that are generated by the BES get weak
+ * tags because the same response may not be byte for byte identical from one
+ * request to the next. Files that are returned as-is get strong tags.
+ *
+ * A response that the CompressionFilter gzips is a different
+ * representation, so its entity tag gets the suffix "-gzip" (see
+ * getEncodedEntityTag()). If-None-Match treats the two as matching, since
+ * a 304 sends no content, but a strong comparison (If-Range) does not.
+ *
+ * The last modified time is computed once per request by
+ * DispatchServlet.getLastModified() and held in the RequestCache so that the
+ * dispatch handlers don't have to ask the BES for it again.
+ */
+public class EntityTag {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntityTag.class);
+
+    public static final String ETAG_HEADER = "ETag";
+    public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    private static final String LAST_MODIFIED_KEY = EntityTag.class.getName() + ".lastModified";
+    private static final String WEAK_PREFIX = "W/";
+    private static final String ENCODING_SEPARATOR = "-";
+
+    private EntityTag(){}
+
+
+    /**
+     * Places the last modified time of the requested resource in the
+     * RequestCache for use by getEntityTag(HttpServletRequest, boolean)
+     * @param lastModified The last modified time of the requested resource.
+     */
+    public static void setLastModified(long lastModified){
+        RequestCache.put(LAST_MODIFIED_KEY, lastModified);
+    }
+
+
+    /**
+     * @return The last modified time of the requested resource that was
+     * stored by setLastModified() or -1 if it's not been set.
+     */
+    public static long getLastModified(){
+        Object o = RequestCache.get(LAST_MODIFIED_KEY);
+        if(o instanceof Long)
+            return (Long) o;
+        return -1;
+    }
+
+
+    /**
+     * Builds the entity tag for the request using the last modified time held
+     * in the RequestCache.
+     * @param request The request.
+     * @param weak If true a weak entity tag is returned.
+     * @return The entity tag or null if the last modified time of the
+     * requested resource is not known.
+     */
+    public static String getEntityTag(HttpServletRequest request, boolean weak){
+        long lastModified = getLastModified();
+        if(lastModified < 0)
+            return null;
+
+        String responseType = ReqInfo.getRequestSuffix(request);
+        if(responseType==null)
+            responseType = "";
+        // The response type may be content negotiated.
+        String accept = request.getHeader("Accept");
+        if (accept != null)
+            responseType += "|" + accept;
+        return getEntityTag(lastModified, responseType, request.getQueryString(), weak);
+    }
+
+
+    /**
+     * Builds an entity tag.
+     * @param lastModified The last modified time of the dataset.
+     * @param responseType The type of the response.
+     * @param constraint The constraint expression, may be null.
+     * @param weak If true a weak entity tag is returned.
+     * @return The quoted entity tag.
+     */
+    public static String getEntityTag(long lastModified, String responseType, String constraint, boolean weak){
+        StringBuilder sb = new StringBuilder();
+        if(weak)
+            sb.append(WEAK_PREFIX);
+        sb.append("\"");
+        sb.append(Long.toHexString(lastModified));
+        sb.append("-").append(hash(responseType == null ? "" : responseType));
+        sb.append("-").append(hash(constraint == null ? "" : constraint));
+        sb.append("\"");
+        return sb.toString();
+    }
+
+
+    /**
+     * @param etag An entity tag.
+     * @param contentCoding The content coding applied to the response, for
+     *                      example "gzip".
+     * @return The entity tag of the encoded representation: the opaque tag
+     * with "-" and the content coding appended, weak if etag is.
+     */
+    public static String getEncodedEntityTag(String etag, String contentCoding){
+        if(etag == null || !etag.endsWith("\"") || etag.length() < 2)
+            return etag;
+        return etag.substring(0, etag.length() - 1) + ENCODING_SEPARATOR + contentCoding + "\"";
+    }
+
+
+    /**
+     * Evaluates the If-None-Match header of the request against the entity
+     * tag of the current representation. As per RFC 7232 the weak comparison
+     * function is used.
+     * @param request The request.
+     * @param etag The entity tag of the current representation.
+     * @return True if the request's If-None-Match header matches the entity
+     * tag, in which case a 304 (Not Modified) response should be sent.
+     */
+    public static boolean ifNoneMatch(HttpServletRequest request, String etag){
+        return getMatchingTag(request, etag) != null;
+    }
+
+    /**
+     * @return The entity tag, or its gzip encoded form, that the request's
+     * If-None-Match header matched, null if it matched neither.
+     */
+    private static String getMatchingTag(HttpServletRequest request, String etag){
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH_HEADER);
+        if(ifNoneMatch==null || etag==null)
+            return null;
+
+        ifNoneMatch = ifNoneMatch.trim();
+        if(ifNoneMatch.equals("*"))
+            return etag;
+
+        String opaqueTag = opaqueTag(etag);
+        String encodedTag = getEncodedEntityTag(etag, CompressionResponseWrapper.GZIP);
+        String opaqueEncodedTag = opaqueTag(encodedTag);
+        for(String candidate : ifNoneMatch.split(",")){
+            String opaqueCandidate = opaqueTag(candidate.trim());
+            if(opaqueCandidate.equals(opaqueTag))
+                return etag;
+            if(opaqueCandidate.equals(opaqueEncodedTag))
+                return encodedTag;
+        }
+        return null;
+    }
+
+
+    /**
+     * Sets the ETag header on the response and, if the request's
+     * If-None-Match header matches it, sets the status to 304 (Not Modified).
+     *
+     * @param request The request.
+     * @param response The response.
+     * @param weak If true a weak entity tag is used.
+     * @return True if the response status was set to 304 and no content
+     * should be sent, false otherwise.
+     */
+    public static boolean notModified(HttpServletRequest request, HttpServletResponse response, boolean weak){
+        return notModified(request, response, getEntityTag(request, weak));
+    }
+
+    /**
+     * Sets the ETag header on the response and, if the request's
+     * If-None-Match header matches it, sets the status to 304 (Not Modified).
+     * The 304 carries the tag the client matched, which is the gzip encoded
+     * one if that's the representation the client holds.
+     *
+     * @param request The request.
+     * @param response The response.
+     * @param etag The entity tag of the identity representation, may be null.
+     * @return True if the response status was set to 304 and no content
+     * should be sent, false otherwise.
+     */
+    public static boolean notModified(HttpServletRequest request, HttpServletResponse response, String etag){
+        if(etag == null)
+            return false;
+
+        String matched = getMatchingTag(request, etag);
+        response.setHeader(ETAG_HEADER, matched == null ? etag : matched);
+        if(matched != null){
+            LOG.debug("notModified() - If-None-Match matched {} Sending 304.", matched);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+
+    private static String opaqueTag(String etag){
+        if(etag.startsWith(WEAK_PREFIX))
+            return etag.substring(WEAK_PREFIX.length());
+        return etag;
+    }
+
+
+    private static String toHex(byte[] digest){
+        StringBuilder sb = new StringBuilder();
+        // 64 bits is plenty to tell constraints, and responses, apart.
+        for(int i=0; i<8 ;i++){
+            sb.append(String.format("%02x", digest[i]));
+        }
+        return sb.toString();
+    }
+
+
+    private static String hash(String s){
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return toHex(md.digest(s.getBytes(StandardCharsets.UTF_8)));
+        }
+        catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(s.hashCode());
+        }
+    }
+}
@@ -28,6 +28,7 @@ package opendap.coreServlet;
 
 
 import opendap.bes.dap4Responders.MediaType;
+import opendap.http.error.ServiceUnavailable;
 import opendap.http.mediaTypes.*;
 import opendap.io.HyraxStringEncoding;
 import org.jdom.output.Format;
@@ -239,6 +240,10 @@ public class OPeNDAPException extends Exception {
 
                 response.reset();
 
+                // The reset dropped any headers, put back the ones that belong to the error.
+                if(oe instanceof ServiceUnavailable)
+                    ((ServiceUnavailable) oe).setRetryAfterHeader(response);
+
                 oe.setSystemPath(ServletUtil.getSystemPath(servlet,""));
                 try {
                     oe.sendHttpErrorResponse(response);
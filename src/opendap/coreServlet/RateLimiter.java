@@ -0,0 +1,212 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.coreServlet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A per client token bucket rate limiter. Each client (usually an IP address)
+ * gets a bucket that holds up to burst tokens and is refilled at
+ * requestsPerSecond. A request that finds the bucket empty is refused.
+ *
+ * The buckets are held in a fixed number of shards, each an LRU map with its
+ * own lock, so that contention is spread out and the total number of buckets
+ * (and so the memory used) is bounded by maxClients. When a shard is full the
+ * least recently seen client is dropped.
+ *
+ * If an adaptiveThreshold is set then the refill rate is scaled back, in
+ * proportion, when the number of requests in progress goes over the
+ * threshold. So under load every client is slowed down.
+ */
+public class RateLimiter {
+
+    private static final double MIN_ADAPTIVE_FACTOR = 0.1;
+
+    private final double requestsPerSecond;
+    private final double burst;
+    private final int adaptiveThreshold;
+    private final Shard[] shards;
+
+    private final AtomicInteger inProgress;
+    private final AtomicLong refused;
+
+    /**
+     * @param requestsPerSecond The sustained rate allowed for each client.
+     * @param burst The maximum number of requests a client can make at once.
+     * @param maxClients The maximum number of clients tracked.
+     * @param shardCount The number of shards.
+     * @param adaptiveThreshold The number of requests in progress above which
+     *                          the rate is reduced. Zero disables adaptation.
+     */
+    public RateLimiter(double requestsPerSecond, double burst, int maxClients, int shardCount, int adaptiveThreshold){
+        if(requestsPerSecond <= 0 || burst < 1 || maxClients < 1 || shardCount < 1)
+            throw new IllegalArgumentException("RateLimiter: requestsPerSecond and maxClients must be > 0, " +
+                    "burst must be >= 1 and shards must be > 0");
+
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.adaptiveThreshold = Math.max(0, adaptiveThreshold);
+        int perShard = Math.max(1, maxClients / shardCount);
+        shards = new Shard[shardCount];
+        for(int i=0; i<shardCount; i++)
+            shards[i] = new Shard(perShard);
+        inProgress = new AtomicInteger(0);
+        refused = new AtomicLong(0);
+    }
+
+
+    /**
+     * Takes a token from the client's bucket.
+     * @param clientId The client, usually the IP address.
+     * @return Zero if the request may proceed, otherwise the number of
+     * milliseconds until the client's next token will be available.
+     */
+    public long acquire(String clientId){
+        double rate = getEffectiveRate();
+        Shard shard = shards[(clientId.hashCode() & 0x7fffffff) % shards.length];
+        long now = System.nanoTime();
+        long wait;
+        shard.lock.lock();
+        try {
+            Bucket b = shard.buckets.get(clientId);
+            if(b == null){
+                b = new Bucket(burst, now);
+                shard.buckets.put(clientId, b);
+            }
+            else {
+                double elapsed = (now - b.lastRefill) / 1.0e9;
+                b.tokens = Math.min(burst, b.tokens + elapsed * rate);
+                b.lastRefill = now;
+            }
+            if(b.tokens >= 1.0){
+                b.tokens -= 1.0;
+                wait = 0;
+            }
+            else {
+                wait = (long) Math.ceil((1.0 - b.tokens) / rate * 1000.0);
+            }
+        }
+        finally {
+            shard.lock.unlock();
+        }
+        if(wait > 0)
+            refused.incrementAndGet();
+        return wait;
+    }
+
+    /**
+     * Called when a request that was allowed starts being serviced.
+     */
+    public void requestStarted(){
+        inProgress.incrementAndGet();
+    }
+
+    /**
+     * Called when a request that was allowed has been serviced.
+     */
+    public void requestFinished(){
+        inProgress.decrementAndGet();
+    }
+
+    /**
+     * @return The refill rate, reduced if the server is busy.
+     */
+    double getEffectiveRate(){
+        if(adaptiveThreshold == 0)
+            return requestsPerSecond;
+        int active = inProgress.get();
+        if(active <= adaptiveThreshold)
+            return requestsPerSecond;
+        double factor = Math.max(MIN_ADAPTIVE_FACTOR, (double) adaptiveThreshold / active);
+        return requestsPerSecond * factor;
+    }
+
+    /**
+     * @return The number of clients being tracked.
+     */
+    public int getClientCount(){
+        int count = 0;
+        for(Shard shard : shards){
+            shard.lock.lock();
+            try {
+                count += shard.buckets.size();
+            }
+            finally {
+                shard.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of requests refused so far.
+     */
+    public long getRefusedCount(){
+        return refused.get();
+    }
+
+    @Override
+    public String toString(){
+        return "RateLimiter{requestsPerSecond=" + requestsPerSecond +
+                ", burst=" + burst +
+                ", shards=" + shards.length +
+                ", adaptiveThreshold=" + adaptiveThreshold +
+                ", clients=" + getClientCount() +
+                ", inProgress=" + inProgress.get() +
+                ", refused=" + refused.get() + "}";
+    }
+
+
+    private static class Bucket {
+        private double tokens;
+        private long lastRefill;
+
+        Bucket(double tokens, long now){
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+    }
+
+
+    private static class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Bucket> buckets;
+
+        Shard(final int maxEntries){
+            buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+}
@@ -108,6 +108,19 @@ public class RequestCache {
         }
     }
 
+    /**
+     * Opens the cache for a thread that does work on behalf of a request
+     * after the request itself has been answered, for example an
+     * asynchronous job. The request id is the one of the original request.
+     * @param requestId The id of the request the work is being done for.
+     */
+    public static void open(String requestId){
+        Thread thisThread = Thread.currentThread();
+        cache.put(thisThread, new HashMap<>());
+        put(REQUEST_ID_KEY, requestId);
+        log.info("Created request cache for thread: {} request id: {}", thisThread.getName(), requestId);
+    }
+
     public static void close(){
         int size = 0;
         Thread thisThread = Thread.currentThread();
@@ -0,0 +1,28 @@
+package opendap.coreServlet;
+
+import opendap.io.SpillBuffer;
+
+public class SpillBufferTransmitCoordinator implements TransmitCoordinator {
+    private SpillBuffer d_buffer;
+
+    public SpillBufferTransmitCoordinator(SpillBuffer buffer) {
+        d_buffer = buffer;
+    }
+
+    /**
+     * Nothing in a SpillBuffer has been sent anywhere, so it can always be
+     * reset.
+     *
+     * @return False, always
+     */
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void reset() throws IllegalStateException {
+        d_buffer.reset();
+    }
+
+}
@@ -51,6 +51,9 @@ public class User {
     private final Logger log;
     private UserProfile userProfile;
     private final HttpServletRequest request;
+    // Only used by detached copies, which have no request.
+    private String remoteUser;
+    private String relativeUrl;
 
 
     public User(HttpServletRequest req){
@@ -67,6 +70,29 @@ public class User {
 
     }
 
+    /**
+     * Makes a copy that no longer refers to the request, for use after the
+     * request has been answered (by an asynchronous job for example).
+     * @param req The request the user made.
+     */
+    private User(User user, HttpServletRequest req){
+        log = user.log;
+        userProfile = user.userProfile;
+        request = null;
+        remoteUser = req.getRemoteUser();
+        relativeUrl = ReqInfo.getLocalUrl(req);
+    }
+
+    /**
+     * @return A copy of this User that can be used once the request that it
+     * came from is gone.
+     */
+    public User detach(){
+        if(request == null)
+            return this;
+        return new User(this, request);
+    }
+
     public UserProfile profile(){
         return userProfile;
     }
@@ -75,10 +101,14 @@ public class User {
         if(userProfile!=null){
             return userProfile.getUID();
         }
+        if(request == null)
+            return remoteUser;
         return request.getRemoteUser();
     }
 
     public String getRelativeUrl(){
+        if(request == null)
+            return relativeUrl;
         return ReqInfo.getLocalUrl(request);
     }
 
@@ -41,6 +41,11 @@ import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DmrppJoinNewAggregator {
 
@@ -51,6 +56,8 @@ public class DmrppJoinNewAggregator {
     public static final String HTTP_PROTOCOL  = "http://";
     public static final String HTTPS_PROTOCOL = "https://";
 
+    public static final int DEFAULT_MAX_THREADS = 8;
+
     private ArrayList<URL> aggFileList;
     private Map<String, Element> dimensions;
     private Map<String,Element> coordinateVars;
@@ -63,6 +70,15 @@ public class DmrppJoinNewAggregator {
     private String aggVarsFileName;
     private Set<String> aggVarNames;
 
+    // What the granules are checked against. They are filled in from the
+    // template before any granule is read and are only read after that, so
+    // the granule workers can use them without touching the template.
+    private Map<String,String> dimensionSizes;
+    private Map<String,Integer> aggVarDimCounts;
+    private Map<String,String> aggVarTemplateChunkDimSizes;
+
+    private int maxThreads;
+
     /**
      *
       * @param dimName
@@ -79,6 +95,10 @@ public class DmrppJoinNewAggregator {
         aggDatasetTemplate = null;
         aggVarsFileName = aggVariablesFileName;
         aggVarNames = new HashSet<>();
+        dimensionSizes = new HashMap<>();
+        aggVarDimCounts = new HashMap<>();
+        aggVarTemplateChunkDimSizes = new HashMap<>();
+        maxThreads = DEFAULT_MAX_THREADS;
 
         if(dimName==null) {
             dimName="myNewDim";
@@ -95,6 +115,14 @@ public class DmrppJoinNewAggregator {
 
     }
 
+    /**
+     * @param threads The number of granules that are retrieved and parsed at
+     *                the same time.
+     */
+    public void setMaxThreads(int threads){
+        maxThreads = Math.max(1, threads);
+    }
+
     /**
      *
      * @throws IOException
@@ -227,15 +255,37 @@ public class DmrppJoinNewAggregator {
         Document aggDataset = Util.getDocument(templateDmrppUrl);
         ingestTemplateDataset(aggDataset);
 
-        int chunkIndex = 1;
-        for(URL url:aggFileList){
-            aggDataset = Util.getDocument(url);
-            ingestAggDataset(aggDataset,chunkIndex);
-            chunkIndex++;
-            if(newAggDimensionElement!=null) {
-                newAggDimensionElement.setAttribute(DAP4.SIZE, chunkIndex+"");
+        // The granules are retrieved and parsed by a pool of threads, each of
+        // which keeps only the chunks of the aggregation variables. The
+        // chunks are added to the template here, in the order of the
+        // granules, and no more than a few granules per thread are held at
+        // once.
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(maxThreads, r -> {
+            Thread t = new Thread(r, "DmrppJoinNew-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            ArrayDeque<Future<Map<String, List<Element>>>> window = new ArrayDeque<>();
+            Iterator<URL> granules = aggFileList.iterator();
+            int chunkIndex = 1;
+            while (granules.hasNext() || !window.isEmpty()) {
+                while (granules.hasNext() && window.size() < 2 * maxThreads) {
+                    final URL url = granules.next();
+                    final int index = chunkIndex + window.size();
+                    window.add(pool.submit(() -> getGranuleChunks(url, index)));
+                }
+                mergeGranuleChunks(getGranule(window.remove()));
+                chunkIndex++;
+                if(newAggDimensionElement!=null) {
+                    newAggDimensionElement.setAttribute(DAP4.SIZE, chunkIndex+"");
+                }
             }
         }
+        finally {
+            pool.shutdownNow();
+        }
 
         for(String aggVarName:aggVarTemplates.keySet()){
 
@@ -274,14 +324,64 @@ public class DmrppJoinNewAggregator {
      * @throws IOException
      */
     public void ingestAggDataset(Document datasetDoc, int chunkIndex) throws IOException {
+        mergeGranuleChunks(getGranuleChunks(datasetDoc, chunkIndex));
+    }
 
+    /**
+     * Retrieves and parses a granule and returns the chunks it adds to the
+     * aggregation. Runs on the worker threads so it must not touch the
+     * template.
+     * @param url The dmr++ of the granule.
+     * @param chunkIndex The position of the granule on the new dimension.
+     * @return The chunks for each aggregation variable, by FQN.
+     */
+    private Map<String, List<Element>> getGranuleChunks(URL url, int chunkIndex) throws IOException, JDOMException {
+        log.debug("Ingesting granule {}: {}", chunkIndex, url);
+        return getGranuleChunks(Util.getDocument(url), chunkIndex);
+    }
+
+    private Map<String, List<Element>> getGranuleChunks(Document datasetDoc, int chunkIndex) throws IOException {
         Element datasetElement = datasetDoc.getRootElement();
         String s = datasetElement.getAttributeValue(DMRPP.HREF,DMRPP.NS);
         URL dataURL = null;
         if(s!=null)
             dataURL = new URL(s);
 
-        aggContainer(datasetElement, dataURL, chunkIndex);
+        Map<String, List<Element>> granuleChunks = new HashMap<>();
+        aggContainer(datasetElement, dataURL, chunkIndex, granuleChunks);
+        return granuleChunks;
+    }
+
+    /**
+     * Adds the chunks of one granule to the template variables.
+     */
+    private void mergeGranuleChunks(Map<String, List<Element>> granuleChunks) {
+        for(Map.Entry<String, List<Element>> entry : granuleChunks.entrySet()){
+            Element tChunksElement = aggVarTemplates.get(entry.getKey()).getChild(DMRPP.CHUNKS, DMRPP.NS);
+            tChunksElement.addContent(entry.getValue());
+        }
+    }
+
+    /**
+     * Waits for a granule worker and passes on what went wrong, if anything.
+     */
+    private static Map<String, List<Element>> getGranule(Future<Map<String, List<Element>>> granule)
+            throws IOException, JDOMException {
+        try {
+            return granule.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a granule.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof JDOMException)
+                throw (JDOMException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
     }
 
 
@@ -289,34 +389,34 @@ public class DmrppJoinNewAggregator {
      *
      * @param container
      * @param chunkIndex
+     * @param granuleChunks Receives the (adjusted) chunks of each aggregation variable.
      * @throws IOException
      */
-    private void aggContainer(Element container,  URL dataURL , int chunkIndex ) throws IOException {
+    private void aggContainer(Element container,  URL dataURL , int chunkIndex, Map<String, List<Element>> granuleChunks) throws IOException {
 
         @SuppressWarnings("unchecked")
         List<Element> topKids = container.getChildren();
         for(Element kid:topKids){
             if (kid.getName().equals(DAP4.GROUP)){
-                aggContainer(kid, dataURL, chunkIndex);
+                aggContainer(kid, dataURL, chunkIndex, granuleChunks);
             }
             else if(kid.getName().equals(DAP4.DIMENSION)){
                 String dimName = getFQN(kid);
-                Element templateDimension = dimensions.get(dimName);
-                if(templateDimension==null){
+                String tSize = dimensionSizes.get(dimName);
+                if(tSize==null){
                     throw new IOException("OUCH! Encountered non templated Dimension declaration for '"+dimName+"'");
                 }
                 String dSize = kid.getAttributeValue(DAP4.SIZE);
-                String tSize = templateDimension.getAttributeValue(DAP4.SIZE);
                 if(!dSize.equals(tSize)){
                     throw new IOException("OUCH! Agg dimension ("+dimName+") size ("+dSize+")" +
                             " does not match template dimension size ("+tSize+")");
                 }
             }
             else if (kid.getName().equals(DAP4.STRUCTURE)){
-                aggContainer(kid, dataURL, chunkIndex);
+                aggContainer(kid, dataURL, chunkIndex, granuleChunks);
             }
             else if (kid.getName().equals(DAP4.SEQUENCE)){
-                aggContainer(kid, dataURL, chunkIndex);
+                aggContainer(kid, dataURL, chunkIndex, granuleChunks);
             }
             else if (kid.getName().equals(DAP4.INT8)   |
                     kid.getName().equals(DAP4.UINT8)   |
@@ -337,80 +437,56 @@ public class DmrppJoinNewAggregator {
 
                 String aggVarName = getFQN(kid);
 
-                if(!coordinateVars.containsKey(aggVarName)) {
+                Integer tDimCount = aggVarDimCounts.get(aggVarName);
 
-                    Element templateVar = aggVarTemplates.get(aggVarName);
-
-                    if (templateVar == null) {
+                if (tDimCount == null) {
+                    if(!coordinateVars.containsKey(aggVarName))
                         log.warn("Unable to locate aggVarTemplate '{}' SKIPPING.", aggVarName);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    List<Element> vDims = kid.getChildren(DAP4.DIM, DAP4.NS);
+                    if (tDimCount != vDims.size()) {
+                        throw new IOException("The template variable does not have the same number of Dimensions " +
+                                "as the aggregation variable. (name: " + aggVarName + ")");
                     } else {
-                        @SuppressWarnings("unchecked")
-                        List<Element> vDims = kid.getChildren(DAP4.DIM, DAP4.NS);
-                        @SuppressWarnings("unchecked")
-                        List<Element> tDims = templateVar.getChildren(DAP4.DIM, DAP4.NS);
-                        if (tDims.size() != vDims.size()) {
-                            throw new IOException("The template variable does not have the same number of Dimensions " +
-                                    "as the aggregation variable. (name: " + aggVarName + ")");
-                        } else {
 
-                            Element vChunksElement = kid.getChild(DMRPP.CHUNKS, DMRPP.NS);
-                            if (vChunksElement == null) {
-                                throw new IOException("The aggregation variable '" + aggVarName + "' has no chunks!");
-                            }
-
-                            Element vChunkDimSizesElement = vChunksElement.getChild(DMRPP.CHUNK_DIMENSION_SIZES, DMRPP.NS);
-                            if (vChunkDimSizesElement == null) {
-                                throw new IOException("The aggregation variable '" + aggVarName + "' has no dmrpp:" +
-                                        DMRPP.CHUNK_DIMENSION_SIZES + " element!");
-                            }
-                            List<Integer> vChunkDimSizes = parseChunkDimensionSizes(vChunkDimSizesElement);
-
-                            Element tChunksElement = templateVar.getChild(DMRPP.CHUNKS, DMRPP.NS);
-                            if (tChunksElement == null) {
-                                throw new IOException("The template variable '" + aggVarName + "' has no chunks!");
-                            }
-                            Element tChunkDimSizesElement = tChunksElement.getChild(DMRPP.CHUNK_DIMENSION_SIZES, DMRPP.NS);
-                            if (tChunkDimSizesElement == null) {
-                                throw new IOException("The template variable '" + aggVarName + "' has no dmrpp:" +
-                                        DMRPP.CHUNK_DIMENSION_SIZES + " element!");
-                            }
-                            List<Integer> tChunkDimSizes = parseChunkDimensionSizes(tChunkDimSizesElement);
-
-                            String msg = "The template variable chunk dimension sizes (" +
-                                    tChunkDimSizesElement.getTextTrim() + ") are not compatible " +
+                        Element vChunksElement = kid.getChild(DMRPP.CHUNKS, DMRPP.NS);
+                        if (vChunksElement == null) {
+                            throw new IOException("The aggregation variable '" + aggVarName + "' has no chunks!");
+                        }
+
+                        Element vChunkDimSizesElement = vChunksElement.getChild(DMRPP.CHUNK_DIMENSION_SIZES, DMRPP.NS);
+                        if (vChunkDimSizesElement == null) {
+                            throw new IOException("The aggregation variable '" + aggVarName + "' has no dmrpp:" +
+                                    DMRPP.CHUNK_DIMENSION_SIZES + " element!");
+                        }
+                        String tChunkDimSizes = aggVarTemplateChunkDimSizes.get(aggVarName);
+                        if (!parseChunkDimensionSizes(vChunkDimSizesElement.getTextTrim()).equals(
+                                parseChunkDimensionSizes(tChunkDimSizes))) {
+                            throw new IOException("The template variable chunk dimension sizes (" +
+                                    tChunkDimSizes + ") are not compatible " +
                                     "with the aggregation variable chunk dimension sizes (" +
-                                    vChunkDimSizesElement.getTextTrim() + ") (name: " + aggVarName + ")";
-
-                            if (vChunkDimSizes.size() != tChunkDimSizes.size()) {
-                                throw new IOException(msg);
-                            }
-                            int vSize, tSize;
-                            for (int i = 0; i < tChunkDimSizes.size(); i++) {
-                                vSize = vChunkDimSizes.get(i);
-                                tSize = tChunkDimSizes.get(i);
-                                if (vSize != tSize) {
-                                    throw new IOException(msg);
-                                }
-                            }
-
-                            // Add the new dimension to the CHUNK_POSITION_IN_ARRAY
-                            @SuppressWarnings("unchecked")
-                            List<Element> vChunkElements = vChunksElement.getChildren(DMRPP.CHUNK, DMRPP.NS);
-
-                            for (Element vChunkElement : vChunkElements) {
-                                String chunkPositionInArray = vChunkElement.getAttributeValue(DMRPP.CHUNK_POSITION_IN_ARRAY);
-                                chunkPositionInArray = chunkPositionInArray.replaceFirst("\\[", "[" + chunkIndex + ",");
-                                Element chunk = (Element) vChunkElement.clone();
-                                chunk.setAttribute(DMRPP.CHUNK_POSITION_IN_ARRAY,chunkPositionInArray);
-
-                                String href = chunk.getAttributeValue(DMRPP.HREF);
-                                if(href==null)
-                                    chunk.setAttribute(DMRPP.HREF,dataURL.toString());
-
-                                tChunksElement.addContent(chunk);
-                                }
+                                    vChunkDimSizesElement.getTextTrim() + ") (name: " + aggVarName + ")");
+                        }
+
+                        // Add the new dimension to the CHUNK_POSITION_IN_ARRAY
+                        @SuppressWarnings("unchecked")
+                        List<Element> vChunkElements = vChunksElement.getChildren(DMRPP.CHUNK, DMRPP.NS);
+                        List<Element> chunks = new ArrayList<>(vChunkElements.size());
 
+                        for (Element vChunkElement : vChunkElements) {
+                            String chunkPositionInArray = vChunkElement.getAttributeValue(DMRPP.CHUNK_POSITION_IN_ARRAY);
+                            chunkPositionInArray = chunkPositionInArray.replaceFirst("\\[", "[" + chunkIndex + ",");
+                            Element chunk = (Element) vChunkElement.clone();
+                            chunk.setAttribute(DMRPP.CHUNK_POSITION_IN_ARRAY,chunkPositionInArray);
+
+                            String href = chunk.getAttributeValue(DMRPP.HREF);
+                            if(href==null)
+                                chunk.setAttribute(DMRPP.HREF,dataURL.toString());
+
+                            chunks.add(chunk);
                         }
+                        granuleChunks.put(aggVarName, chunks);
                     }
                 }
             }
@@ -431,9 +507,13 @@ public class DmrppJoinNewAggregator {
      * @return
      */
     public static ArrayList<Integer> parseChunkDimensionSizes(Element cdsElement){
+        return parseChunkDimensionSizes(cdsElement.getTextTrim());
+    }
+
+    public static ArrayList<Integer> parseChunkDimensionSizes(String chunkDimensionSizes){
         ArrayList<Integer> cds = new ArrayList<>();
 
-        String[] values = cdsElement.getTextTrim().split(" ");
+        String[] values = chunkDimensionSizes.split(" ");
         for(String s : values){
             cds.add(Integer.valueOf(s));
         }
@@ -494,6 +574,26 @@ public class DmrppJoinNewAggregator {
         locateCoordinates();
         pruneAggTree();
 
+        for (Map.Entry<String, Element> entry : dimensions.entrySet()) {
+            dimensionSizes.put(entry.getKey(), entry.getValue().getAttributeValue(DAP4.SIZE));
+        }
+        for (Map.Entry<String, Element> entry : aggVarTemplates.entrySet()) {
+            String aggVarName = entry.getKey();
+            Element templateVar = entry.getValue();
+            aggVarDimCounts.put(aggVarName, templateVar.getChildren(DAP4.DIM, DAP4.NS).size());
+
+            Element tChunksElement = templateVar.getChild(DMRPP.CHUNKS, DMRPP.NS);
+            if (tChunksElement == null) {
+                throw new IOException("The template variable '" + aggVarName + "' has no chunks!");
+            }
+            Element tChunkDimSizesElement = tChunksElement.getChild(DMRPP.CHUNK_DIMENSION_SIZES, DMRPP.NS);
+            if (tChunkDimSizesElement == null) {
+                throw new IOException("The template variable '" + aggVarName + "' has no dmrpp:" +
+                        DMRPP.CHUNK_DIMENSION_SIZES + " element!");
+            }
+            aggVarTemplateChunkDimSizes.put(aggVarName, tChunkDimSizesElement.getTextTrim());
+        }
+
         if(newAggDimensionElement!=null) {
             newAggDimensionElement.setAttribute(DAP4.SIZE, "1");
         }
@@ -662,6 +762,7 @@ public class DmrppJoinNewAggregator {
         String joinNewDimName = null;
         Level debugLevel = Level.OFF;
         String aggVarsFile = null;
+        int threads = DEFAULT_MAX_THREADS;
 
         try {
             //----------------------------------------------------------------------
@@ -707,11 +808,18 @@ public class DmrppJoinNewAggregator {
                 aggVarsFile = cmd.getOptionValue("v");
             }
 
+            //---------------------------
+            // Number of granules to work on at once
+            if (cmd.hasOption("t")) {
+                threads = Integer.parseInt(cmd.getOptionValue("t"));
+            }
+
             //----------------------------------------------------------------------
             //----------------------------------------------------------------------
 
             DmrppJoinNewAggregator dAgg = new DmrppJoinNewAggregator(joinNewDimName, aggVarsFile);
             dAgg.log.setLevel(debugLevel);
+            dAgg.setMaxThreads(threads);
             dAgg.loadDmrppList(args);
             dAgg.loadAggVarsList();
 
@@ -745,6 +853,8 @@ public class DmrppJoinNewAggregator {
         options.addOption("n", "dimName", true, "joinNew dimension name");
         options.addOption("v", "variablesFile", true, "A file containing a list of the " +
                 "names of the variables to be aggregated.");
+        options.addOption("t", "threads", true, "The number of granules to retrieve and parse " +
+                "at the same time. Default: " + DEFAULT_MAX_THREADS);
         return options;
     }
 
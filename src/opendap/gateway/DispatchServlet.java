@@ -139,6 +139,19 @@ public class DispatchServlet extends HttpServlet {
 
 
 
+    /**
+     * Closes the RequestCache, see opendap.coreServlet.DispatchServlet.service()
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        try {
+            super.service(req, resp);
+        } finally {
+            RequestCache.close();
+        }
+    }
+
+
     /**
      * Gets the last modified date of the requested resource. Because the data handler is really
      * the only entity capable of determining the last modified date the job is passed  through to it.
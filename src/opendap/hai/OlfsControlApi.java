@@ -33,9 +33,17 @@ import ch.qos.logback.classic.spi.LoggingEvent;
 import ch.qos.logback.classic.spi.StackTraceElementProxy;
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.read.CyclicBufferAppender;
+import opendap.auth.UserQuotas;
+import opendap.bes.BESManager;
+import opendap.bes.BadConfigurationException;
+import opendap.bes.caching.BesRequestCoalescer;
+import opendap.bes.caching.BesResponseCache;
+import opendap.bes.caching.RenderedResponseCache;
+import opendap.coreServlet.AdmissionControl;
 import opendap.coreServlet.HttpResponder;
 import opendap.coreServlet.ResourceInfo;
 import opendap.coreServlet.Scrub;
+import opendap.logging.AccessLog;
 import opendap.logging.LogUtil;
 import org.apache.commons.text.StringEscapeUtils;
 import org.slf4j.LoggerFactory;
@@ -199,7 +207,9 @@ public class OlfsControlApi extends HttpResponder {
 
 
     private enum olfsCmds {
-        cmd, getLog, lines, getLogLevel, setLogLevel, logger, level
+        cmd, getLog, lines, getLogLevel, setLogLevel, logger, level,
+        getResponseCacheStatus, purgeResponseCache, getAdmissionStatus, getUserQuotaStatus, getAccessLogStatus,
+        getCoalescingStatus, getBesStatus, reloadBesConfiguration
     }
 
 
@@ -255,6 +265,52 @@ public class OlfsControlApi extends HttpResponder {
                     break;
 
 
+                case getResponseCacheStatus:
+                    sb.append(BesResponseCache.getStatus()).append("\n");
+                    sb.append(RenderedResponseCache.getStatus());
+                    break;
+
+
+                case purgeResponseCache:
+                    int count = BesResponseCache.purge() + RenderedResponseCache.purge();
+                    sb.append("Purged ").append(count).append(" entries. ");
+                    sb.append(BesResponseCache.getStatus()).append("\n");
+                    sb.append(RenderedResponseCache.getStatus());
+                    break;
+
+
+                case getAdmissionStatus:
+                    sb.append(AdmissionControl.getStatus());
+                    break;
+
+
+                case getUserQuotaStatus:
+                    sb.append(UserQuotas.getStatus());
+                    break;
+
+                case getAccessLogStatus:
+                    sb.append(AccessLog.getStatus());
+                    break;
+
+                case getCoalescingStatus:
+                    sb.append(BesRequestCoalescer.getStatus());
+                    break;
+
+                case getBesStatus:
+                    sb.append(BESManager.getStatus());
+                    break;
+
+                case reloadBesConfiguration:
+                    try {
+                        sb.append(BESManager.reload()).append("\n");
+                    } catch (BadConfigurationException e) {
+                        sb.append("Failed to reload the BES configuration. ");
+                        sb.append(StringEscapeUtils.escapeXml11(e.getMessage())).append("\n");
+                    }
+                    sb.append(BESManager.getStatus());
+                    break;
+
+
                 default:
                     sb.append(" Unrecognized OLFS command: ").append(Scrub.simpleString(olfsCmd));
                     break;
@@ -0,0 +1,225 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.http;
+
+import opendap.http.error.RangeNotSatisfiable;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A single byte range (inclusive at both ends) from an HTTP Range request
+ * header, plus the methods for parsing the Range and If-Range headers as
+ * described in RFC 7233.
+ */
+public class ByteRange {
+
+    public static final String RANGE_HEADER = "Range";
+    public static final String IF_RANGE_HEADER = "If-Range";
+    public static final String BYTES_UNIT = "bytes";
+
+    /**
+     * More ranges than this in one request is almost certainly abuse, so we
+     * just send the whole thing.
+     */
+    private static final int MAX_RANGES = 200;
+
+    private final long first;
+    private final long last;
+
+    public ByteRange(long first, long last){
+        this.first = first;
+        this.last = last;
+    }
+
+    public long getFirst() { return first; }
+    public long getLast() { return last; }
+    public long getLength() { return last - first + 1; }
+
+    /**
+     * @param size The size of the complete representation.
+     * @return The value of the Content-Range header for this range.
+     */
+    public String getContentRange(long size){
+        return BYTES_UNIT + " " + first + "-" + last + "/" + size;
+    }
+
+    @Override
+    public String toString(){
+        return first + "-" + last;
+    }
+
+
+    /**
+     * Parses the Range header of the request.
+     *
+     * @param request The request.
+     * @param size The size, in bytes, of the complete representation.
+     * @return The requested ranges, sorted and with the overlapping and
+     * adjacent ranges merged, or null if the request has no Range header or
+     * the header can't be used, in which case the whole representation
+     * should be sent.
+     * @throws RangeNotSatisfiable When none of the requested ranges overlap
+     * the representation.
+     */
+    public static List<ByteRange> getRanges(HttpServletRequest request, long size) throws RangeNotSatisfiable {
+        String range = request.getHeader(RANGE_HEADER);
+        if(range == null || size < 0)
+            return null;
+        return parse(range, size);
+    }
+
+
+    /**
+     * Parses the value of a Range header.
+     *
+     * @param range The value of the Range header.
+     * @param size The size, in bytes, of the complete representation.
+     * @return The requested ranges, sorted and with the overlapping and
+     * adjacent ranges merged, or null if the header is malformed or uses a
+     * unit other than bytes.
+     * @throws RangeNotSatisfiable When none of the requested ranges overlap
+     * the representation.
+     */
+    public static List<ByteRange> parse(String range, long size) throws RangeNotSatisfiable {
+
+        range = range.trim();
+        if(!range.startsWith(BYTES_UNIT + "="))
+            return null;
+
+        String[] specs = range.substring(BYTES_UNIT.length() + 1).split(",");
+        if(specs.length > MAX_RANGES)
+            return null;
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for(String spec : specs){
+            spec = spec.trim();
+            if(spec.isEmpty())
+                continue;
+            int dash = spec.indexOf('-');
+            if(dash < 0)
+                return null;
+            String firstStr = spec.substring(0, dash).trim();
+            String lastStr = spec.substring(dash + 1).trim();
+            long first;
+            long last;
+            try {
+                if (firstStr.isEmpty()) {
+                    // A suffix range: the last N bytes.
+                    long suffixLength = Long.parseLong(lastStr);
+                    if (suffixLength <= 0)
+                        continue;
+                    first = Math.max(0, size - suffixLength);
+                    last = size - 1;
+                }
+                else {
+                    first = Long.parseLong(firstStr);
+                    last = lastStr.isEmpty() ? size - 1 : Math.min(Long.parseLong(lastStr), size - 1);
+                    if (first < 0 || (!lastStr.isEmpty() && Long.parseLong(lastStr) < first))
+                        return null;
+                }
+            }
+            catch (NumberFormatException e){
+                return null;
+            }
+            // Ranges that start beyond the end are unsatisfiable.
+            if(first < size && first <= last)
+                ranges.add(new ByteRange(first, last));
+        }
+
+        if(ranges.isEmpty())
+            throw new RangeNotSatisfiable("None of the requested ranges ("+range+") overlap the " +
+                    size + " bytes of the requested resource.");
+
+        return merge(ranges);
+    }
+
+
+    /**
+     * Sorts the ranges and merges those that overlap or are adjacent.
+     */
+    private static List<ByteRange> merge(List<ByteRange> ranges){
+        if(ranges.size() < 2)
+            return ranges;
+
+        Collections.sort(ranges, Comparator.comparingLong(ByteRange::getFirst));
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = ranges.get(0);
+        for(int i=1; i<ranges.size(); i++){
+            ByteRange next = ranges.get(i);
+            if(next.first <= current.last + 1){
+                current = new ByteRange(current.first, Math.max(current.last, next.last));
+            }
+            else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+
+    /**
+     * Evaluates the If-Range header of the request. If-Range holds either a
+     * strong entity tag or an HTTP date. If it doesn't match the current
+     * representation the Range header is to be ignored.
+     *
+     * @param request The request.
+     * @param strongEtag The strong entity tag of the current representation,
+     *                   may be null.
+     * @param lastModified The last modified time of the current
+     *                     representation.
+     * @return True if there is no If-Range header, or it matches the current
+     * representation.
+     */
+    public static boolean ifRange(HttpServletRequest request, String strongEtag, long lastModified){
+        String ifRange = request.getHeader(IF_RANGE_HEADER);
+        if(ifRange == null)
+            return true;
+
+        ifRange = ifRange.trim();
+        if(ifRange.startsWith("\"") || ifRange.startsWith("W/")){
+            // Weak entity tags never match.
+            return strongEtag != null && !strongEtag.startsWith("W/") && ifRange.equals(strongEtag);
+        }
+
+        long date;
+        try {
+            date = request.getDateHeader(IF_RANGE_HEADER);
+        }
+        catch (IllegalArgumentException e){
+            return false;
+        }
+        // HTTP dates have a resolution of one second.
+        return date >= 0 && lastModified >= 0 && (lastModified / 1000) == (date / 1000);
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.http.error;
+
+import opendap.coreServlet.OPeNDAPException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * None of the ranges in the request's Range header field overlap the current
+ * extent of the selected resource.
+ */
+public class RangeNotSatisfiable extends OPeNDAPException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RangeNotSatisfiable(String msg) {
+        super(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE,msg);
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.http.error;
+
+import opendap.coreServlet.OPeNDAPException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The server is currently unable to handle the request due to a temporary
+ * overloading or maintenance of the server. If the delay is known it is sent
+ * to the client in a Retry-After header.
+ */
+public class ServiceUnavailable extends OPeNDAPException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    private final long retryAfter;
+
+    public ServiceUnavailable(String msg) {
+        this(msg, -1);
+    }
+
+    /**
+     * @param msg The message.
+     * @param retryAfter The number of seconds after which the client may try
+     *                   again, or a negative value if that is not known.
+     */
+    public ServiceUnavailable(String msg, long retryAfter) {
+        super(HttpServletResponse.SC_SERVICE_UNAVAILABLE,msg);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter(){
+        return retryAfter;
+    }
+
+    /**
+     * Adds the Retry-After header to the response, if the delay is known.
+     * @param response The response.
+     */
+    public void setRetryAfterHeader(HttpServletResponse response){
+        if(retryAfter >= 0)
+            response.setHeader(RETRY_AFTER_HEADER, Long.toString(retryAfter));
+    }
+
+}
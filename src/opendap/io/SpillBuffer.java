@@ -0,0 +1,258 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * An OutputStream that holds what is written to it in memory until it grows
+ * past a threshold, after which it is moved to a temporary file. What was
+ * written can be read back, as many times as needed, with getInputStream().
+ *
+ * This is used in place of a ByteArrayOutputStream for BES responses that
+ * are parsed or inspected after they have been received, so that a large
+ * response doesn't have to fit in the heap. The temporary file is deleted
+ * by close().
+ */
+public class SpillBuffer extends OutputStream {
+
+    public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+
+    private static final String TEMP_FILE_PREFIX = "hyrax-";
+    private static final String TEMP_FILE_SUFFIX = ".spill";
+
+    private final int threshold;
+    private byte[] buf;
+    private int count;
+    private long size;
+
+    private File file;
+    private OutputStream fileStream;
+
+    public SpillBuffer() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold The most bytes that are held in memory.
+     */
+    public SpillBuffer(int threshold) {
+        this.threshold = Math.max(0, threshold);
+        buf = new byte[Math.min(this.threshold, 8192)];
+        count = 0;
+        size = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (fileStream == null && count < threshold) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+        }
+        else {
+            spill().write(b);
+        }
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (fileStream == null && count + len <= threshold) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+        else {
+            spill().write(b, off, len);
+        }
+        size += len;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buf.length)
+            buf = Arrays.copyOf(buf, Math.min(threshold, Math.max(capacity, buf.length * 2)));
+    }
+
+    /**
+     * Moves the content to the temporary file, if that hasn't been done.
+     * @return The stream to the temporary file.
+     */
+    private OutputStream spill() throws IOException {
+        if (fileStream == null) {
+            file = Files.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX).toFile();
+            fileStream = new BufferedOutputStream(new FileOutputStream(file));
+            fileStream.write(buf, 0, count);
+            buf = new byte[0];
+            count = 0;
+        }
+        return fileStream;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileStream != null)
+            fileStream.flush();
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return True if the content is held in memory, false if it has been
+     * moved to a file.
+     */
+    public boolean isInMemory() {
+        return fileStream == null;
+    }
+
+    /**
+     * @return A stream that reads the content from the beginning.
+     * @throws IOException When the temporary file can't be read.
+     */
+    public InputStream getInputStream() throws IOException {
+        if (fileStream == null)
+            return new ByteArrayInputStream(buf, 0, count);
+        fileStream.flush();
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    /**
+     * Writes the content to os.
+     * @throws IOException When the content can't be read or written.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        if (fileStream == null) {
+            os.write(buf, 0, count);
+            return;
+        }
+        fileStream.flush();
+        Files.copy(file.toPath(), os);
+    }
+
+    /**
+     * @return The content, or null if it has been moved to a file. This is
+     * a copy unless the memory buffer is exactly full, in which case the
+     * buffer itself is returned.
+     */
+    public byte[] toByteArray() {
+        if (fileStream != null)
+            return null;
+        return count == buf.length ? buf : Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * @return The content, read back from the temporary file if it has been
+     * moved to one. See toByteArray() for when it's a copy.
+     * @throws IOException When the temporary file can't be read, or the
+     * content is too large for an array.
+     */
+    public byte[] readContent() throws IOException {
+        if (fileStream == null)
+            return toByteArray();
+        if (size > Integer.MAX_VALUE - 8)
+            throw new IOException("The content (" + size + " bytes) is too large for an array.");
+        fileStream.flush();
+        return Files.readAllBytes(file.toPath());
+    }
+
+    /**
+     * @return The content as a string, read from the temporary file if need
+     * be.
+     * @throws IOException When the temporary file can't be read.
+     */
+    public String toString(Charset charset) throws IOException {
+        if (fileStream == null)
+            return new String(buf, 0, count, charset);
+        fileStream.flush();
+        return new String(Files.readAllBytes(file.toPath()), charset);
+    }
+
+    /**
+     * For logging. Content that has been moved to a file is not read back.
+     */
+    @Override
+    public String toString() {
+        if (fileStream == null)
+            return new String(buf, 0, count, HyraxStringEncoding.getCharset());
+        return "[" + size + " bytes in " + file.getAbsolutePath() + "]";
+    }
+
+    /**
+     * Drops the content so the buffer can be written again.
+     */
+    public void reset() {
+        deleteFile();
+        buf = new byte[Math.min(threshold, 8192)];
+        count = 0;
+        size = 0;
+    }
+
+    /**
+     * Drops the content and deletes the temporary file.
+     */
+    @Override
+    public void close() {
+        deleteFile();
+        buf = new byte[0];
+        count = 0;
+    }
+
+    private void deleteFile() {
+        if (fileStream != null) {
+            try {
+                fileStream.close();
+            }
+            catch (IOException e) {
+                // It's being thrown away.
+            }
+            fileStream = null;
+        }
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            }
+            catch (IOException e) {
+                file.deleteOnExit();
+            }
+            file = null;
+        }
+    }
+}
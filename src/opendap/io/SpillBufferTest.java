@@ -0,0 +1,103 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+
+package opendap.io;
+
+// This uses JUnit 4
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class SpillBufferTest {
+
+    private static byte[] pattern(int n) {
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++)
+            b[i] = (byte) (i % 251);
+        return b;
+    }
+
+    private static byte[] readAll(SpillBuffer sb) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (InputStream is = sb.getInputStream()) {
+            byte[] buf = new byte[1000];
+            int n;
+            while ((n = is.read(buf)) >= 0)
+                baos.write(buf, 0, n);
+        }
+        return baos.toByteArray();
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        byte[] data = pattern(1000);
+        try (SpillBuffer sb = new SpillBuffer(4096)) {
+            sb.write(data, 0, 500);
+            sb.write(data, 500, 500);
+            Assert.assertTrue(sb.isInMemory());
+            Assert.assertEquals(1000, sb.size());
+            Assert.assertArrayEquals(data, sb.toByteArray());
+            Assert.assertArrayEquals(data, sb.readContent());
+            Assert.assertArrayEquals(data, readAll(sb));
+        }
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        byte[] data = pattern(10000);
+        try (SpillBuffer sb = new SpillBuffer(4096)) {
+            sb.write(data[0]);
+            sb.write(data, 1, 4095);
+            Assert.assertTrue(sb.isInMemory());
+            sb.write(data, 4096, data.length - 4096);
+            Assert.assertFalse(sb.isInMemory());
+            Assert.assertEquals(data.length, sb.size());
+            Assert.assertNull(sb.toByteArray());
+            Assert.assertArrayEquals(data, sb.readContent());
+            Assert.assertArrayEquals(data, readAll(sb));
+            // It can be read more than once.
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            sb.writeTo(baos);
+            Assert.assertArrayEquals(data, baos.toByteArray());
+        }
+    }
+
+    @Test
+    public void testReset() throws IOException {
+        try (SpillBuffer sb = new SpillBuffer(10)) {
+            sb.write(pattern(100));
+            Assert.assertFalse(sb.isInMemory());
+            sb.reset();
+            Assert.assertTrue(sb.isInMemory());
+            Assert.assertEquals(0, sb.size());
+            sb.write("hello".getBytes(HyraxStringEncoding.getCharset()));
+            Assert.assertEquals("hello", sb.toString(HyraxStringEncoding.getCharset()));
+        }
+    }
+}
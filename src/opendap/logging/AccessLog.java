@@ -0,0 +1,356 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.logging;
+
+import opendap.bes.BadConfigurationException;
+import org.jdom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the Hyrax access log on a background thread. A request fills in one
+ * of a fixed set of records and hands it to the writer through a lock-free
+ * queue, so the request thread never formats the entry or touches the file.
+ * If the writer falls so far behind that all of the records are in use, new
+ * entries are dropped and counted rather than making requests wait.
+ *
+ * The log can be written as text (the same lines as the HyraxAccess.log
+ * appender in logback.xml), as newline delimited JSON, or in a compact
+ * binary form. The file is rolled when it reaches maxFileSize, keeping
+ * maxFiles old files (name.1 is the most recent). The AccessLogAggregator
+ * reads all three formats.
+ *
+ * This class is a singleton, configured by the AccessLog element in olfs.xml:
+ * <pre>
+ *     &lt;AccessLog format="ndjson" maxFileSize="104857600" maxFiles="10" records="8192" /&gt;
+ * </pre>
+ * Without the element the access log is written by logback as before.
+ */
+public class AccessLog {
+
+    public static final String ACCESS_LOG_ELEMENT_NAME = "AccessLog";
+
+    public enum Format {
+        text("log"), ndjson("ndjson"), binary("bin");
+
+        private final String extension;
+        Format(String extension) { this.extension = extension; }
+        public String getExtension() { return extension; }
+    }
+
+    /**
+     * The first bytes of a binary access log, followed by a format version
+     * byte and then the records.
+     */
+    public static final byte[] BINARY_MAGIC = {'H', 'X', 'A', 'L'};
+    static final int BINARY_VERSION = 1;
+
+    private static final String DEFAULT_BASE_NAME = "HyraxAccess";
+    private static final long DEFAULT_MAX_FILE_SIZE = 100L * 1024 * 1024;
+    private static final int DEFAULT_MAX_FILES = 10;
+    private static final int DEFAULT_RECORDS = 8192;
+    private static final long WRITER_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final Logger LOG = LoggerFactory.getLogger(AccessLog.class);
+
+    private static final AtomicBoolean ENABLED = new AtomicBoolean(false);
+    private static final ThreadLocal<AccessLogRecord> CURRENT = new ThreadLocal<>();
+
+    private static final AtomicLong WRITTEN = new AtomicLong(0);
+    private static final AtomicLong DROPPED = new AtomicLong(0);
+
+    private static Format format = Format.text;
+    private static File file;
+    private static long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private static int maxFiles = DEFAULT_MAX_FILES;
+
+    private static RecordRing<AccessLogRecord> free;
+    private static RecordRing<AccessLogRecord> filled;
+    private static Thread writer;
+
+
+    /**
+     * This is a singleton class and as such all methods are static and the
+     * constructor is private because an instance should never be created.
+     */
+    private AccessLog(){}
+
+
+    /**
+     * @param config The ACCESS_LOG_ELEMENT_NAME element.
+     * @param logDir Where the log goes if the configuration doesn't say.
+     * @throws BadConfigurationException When the configuration is broken.
+     */
+    public static synchronized void init(Element config, String logDir) throws BadConfigurationException {
+        if (ENABLED.get()) {
+            LOG.error("AccessLog has already been initialized! {}", getStatus());
+            return;
+        }
+
+        String s = config.getAttributeValue("format");
+        if (s != null) {
+            try {
+                format = Format.valueOf(s.trim());
+            } catch (IllegalArgumentException e) {
+                throw new BadConfigurationException(ACCESS_LOG_ELEMENT_NAME + "@format must be one of text, ndjson " +
+                        "or binary. Found: " + s);
+            }
+        }
+        maxFileSize = getLong(config, "maxFileSize", DEFAULT_MAX_FILE_SIZE);
+        maxFiles = (int) getLong(config, "maxFiles", DEFAULT_MAX_FILES);
+        int records = (int) getLong(config, "records", DEFAULT_RECORDS);
+
+        s = config.getAttributeValue("file");
+        file = s != null ? new File(s) : new File(logDir, DEFAULT_BASE_NAME + "." + format.getExtension());
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs())
+            throw new BadConfigurationException("Unable to create the access log directory " + dir);
+
+        free = new RecordRing<>(records);
+        filled = new RecordRing<>(records);
+        for (int i = 0; i < free.capacity(); i++)
+            free.offer(new AccessLogRecord());
+        WRITTEN.set(0);
+        DROPPED.set(0);
+
+        ENABLED.set(true);
+        writer = new Thread(AccessLog::writeRecords, "AccessLog-writer");
+        writer.setDaemon(true);
+        writer.start();
+        LOG.info("Initialized. {}", getStatus());
+    }
+
+    private static long getLong(Element config, String name, long defaultValue) throws BadConfigurationException {
+        String s = config.getAttributeValue(name);
+        if (s == null)
+            return defaultValue;
+        try {
+            long value = Long.parseLong(s.trim());
+            if (value > 0)
+                return value;
+        } catch (NumberFormatException e) {
+            // Handled below.
+        }
+        throw new BadConfigurationException(ACCESS_LOG_ELEMENT_NAME + "@" + name + " must be a number > 0. Found: " + s);
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED.get();
+    }
+
+
+    /**
+     * Takes a record for the request being worked on by this thread.
+     * @return The record, or null if there are none to be had.
+     */
+    static AccessLogRecord start() {
+        if (!ENABLED.get())
+            return null;
+        AccessLogRecord r = CURRENT.get();
+        if (r == null) {
+            r = free.poll();
+            if (r == null) {
+                DROPPED.incrementAndGet();
+                return null;
+            }
+            CURRENT.set(r);
+        }
+        r.clear();
+        return r;
+    }
+
+    /**
+     * @return The record for the request being worked on by this thread.
+     */
+    static AccessLogRecord current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Records which responder answered the request and for which dataset.
+     * @param responder The responder.
+     * @param datasetId The dataset.
+     */
+    public static void setResponder(String responder, String datasetId) {
+        AccessLogRecord r = CURRENT.get();
+        if (r != null) {
+            r.responder = responder == null ? AccessLogRecord.MISSING : responder;
+            r.datasetId = datasetId == null ? AccessLogRecord.MISSING : datasetId;
+        }
+    }
+
+    /**
+     * Hands the record for the request being worked on by this thread to the
+     * writer.
+     */
+    static void end() {
+        AccessLogRecord r = CURRENT.get();
+        if (r == null)
+            return;
+        CURRENT.remove();
+        if (!filled.offer(r)) {
+            DROPPED.incrementAndGet();
+            free.offer(r);
+        }
+    }
+
+
+    private static void writeRecords() {
+        StringBuilder sb = new StringBuilder(512);
+        OutputStream os = null;
+        DataOutputStream dos = null;
+        long fileSize = 0;
+        try {
+            while (true) {
+                AccessLogRecord r = filled.poll();
+                if (r == null) {
+                    if (dos != null)
+                        dos.flush();
+                    if (!ENABLED.get())
+                        break;
+                    LockSupport.parkNanos(WRITER_IDLE_NANOS);
+                    continue;
+                }
+                try {
+                    if (dos == null || fileSize >= maxFileSize) {
+                        if (dos != null) {
+                            dos.close();
+                            roll();
+                        }
+                        boolean append = file.exists() && file.length() > 0;
+                        os = new BufferedOutputStream(new FileOutputStream(file, true), 64 * 1024);
+                        dos = new DataOutputStream(os);
+                        fileSize = append ? file.length() : 0;
+                        if (format == Format.binary && !append) {
+                            dos.write(BINARY_MAGIC);
+                            dos.writeByte(BINARY_VERSION);
+                            fileSize += BINARY_MAGIC.length + 1;
+                        }
+                    }
+                    if (format == Format.binary) {
+                        int before = dos.size();
+                        r.writeBinary(dos);
+                        fileSize += dos.size() - before;
+                    }
+                    else {
+                        sb.setLength(0);
+                        if (format == Format.ndjson)
+                            r.appendJson(sb);
+                        else
+                            r.appendText(sb);
+                        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+                        dos.write(bytes);
+                        fileSize += bytes.length;
+                    }
+                    WRITTEN.incrementAndGet();
+                }
+                finally {
+                    free.offer(r);
+                }
+            }
+        }
+        catch (IOException e) {
+            LOG.error("The access log writer failed, access logging is off. Caught {} Message: {}",
+                    e.getClass().getName(), e.getMessage());
+            ENABLED.set(false);
+        }
+        finally {
+            if (dos != null) {
+                try {
+                    dos.close();
+                } catch (IOException e) {
+                    LOG.error("Unable to close {} Message: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves name to name.1, name.1 to name.2 and so on, dropping the oldest.
+     */
+    private static void roll() {
+        File oldest = new File(file.getPath() + "." + maxFiles);
+        if (oldest.exists() && !oldest.delete())
+            LOG.warn("Unable to delete {}", oldest);
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File f = new File(file.getPath() + "." + i);
+            if (f.exists() && !f.renameTo(new File(file.getPath() + "." + (i + 1))))
+                LOG.warn("Unable to roll {}", f);
+        }
+        if (!file.renameTo(new File(file.getPath() + ".1")))
+            LOG.warn("Unable to roll {}", file);
+    }
+
+
+    static long getWrittenCount() {
+        return WRITTEN.get();
+    }
+
+    static long getDroppedCount() {
+        return DROPPED.get();
+    }
+
+    public static String getStatus() {
+        return "AccessLog: format: " + format +
+                " file: " + (file == null ? "none" : file.getAbsolutePath()) +
+                " maxFileSize: " + maxFileSize +
+                " maxFiles: " + maxFiles +
+                " queued: " + (filled == null ? 0 : filled.size()) +
+                " written: " + WRITTEN.get() +
+                " dropped: " + DROPPED.get();
+    }
+
+    /**
+     * Stops the writer once it has written the records that are waiting.
+     */
+    public static synchronized void destroy() {
+        if (!ENABLED.getAndSet(false))
+            return;
+        Thread w = writer;
+        if (w != null) {
+            LockSupport.unpark(w);
+            try {
+                w.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writer = null;
+        LOG.info("Destroyed. {}", getStatus());
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.logging;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads access logs written by AccessLog, in any of its formats, and reports
+ * the request latency and the bytes sent for each dataset and each responder.
+ *
+ * The text format does not carry the responder or the dataset, so for text
+ * logs they are taken from the suffix of the resource id (the resource
+ * id without its last extension is the dataset, the extension is the
+ * responder).
+ */
+public class AccessLogAggregator {
+
+    private static final Pattern TEXT_RECORD = Pattern.compile(
+            "^\\[(.*?)\\] \\[(.*)\\] \\[(.*?)\\] \\[(.*?)\\] \\[(.*?)\\] \\[\\s*(\\S+)\\] \\[(\\d+)\\] " +
+            "\\[\\s*(.*?)\\] \\[(.*?)\\] \\[(.*?)\\] \\[(.*)\\] \\[(?:(\\d+) bytes)?\\]$");
+
+    private static final Pattern JSON_NUMBER = Pattern.compile("\"(time|duration|status|size)\":(-?\\d+)");
+    private static final Pattern JSON_STRING = Pattern.compile("\"(resource|responder|dataset)\":\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    /**
+     * The latencies and sizes of the requests for one dataset or responder.
+     */
+    static class Stats {
+        private long[] durations = new long[64];
+        private int count = 0;
+        private long totalTime = 0;
+        private long totalBytes = 0;
+        private int errors = 0;
+
+        void add(AccessLogRecord r) {
+            if (count == durations.length)
+                durations = Arrays.copyOf(durations, count * 2);
+            long d = Math.max(0, r.getDuration());
+            durations[count++] = d;
+            totalTime += d;
+            if (r.getSize() > 0)
+                totalBytes += r.getSize();
+            if (r.getHttpStatus() >= 400)
+                errors++;
+        }
+
+        int getCount() { return count; }
+        long getTotalTime() { return totalTime; }
+        long getTotalBytes() { return totalBytes; }
+        int getErrors() { return errors; }
+
+        double getMean() {
+            return count == 0 ? 0 : (double) totalTime / count;
+        }
+
+        /**
+         * @param p The percentile, 0 to 100.
+         * @return The nearest rank percentile of the durations.
+         */
+        long getPercentile(double p) {
+            if (count == 0)
+                return 0;
+            long[] sorted = Arrays.copyOf(durations, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(p / 100.0 * count);
+            return sorted[Math.min(count, Math.max(1, rank)) - 1];
+        }
+    }
+
+    private final Map<String, Stats> byDataset = new HashMap<>();
+    private final Map<String, Stats> byResponder = new HashMap<>();
+    private long records = 0;
+    private long skipped = 0;
+
+
+    /**
+     * Adds one request to the totals.
+     */
+    public void add(AccessLogRecord r) {
+        records++;
+        byDataset.computeIfAbsent(r.getDatasetId(), k -> new Stats()).add(r);
+        byResponder.computeIfAbsent(r.getResponder(), k -> new Stats()).add(r);
+    }
+
+    Map<String, Stats> getByDataset() { return byDataset; }
+    Map<String, Stats> getByResponder() { return byResponder; }
+    long getRecordCount() { return records; }
+    long getSkippedCount() { return skipped; }
+
+
+    /**
+     * Reads a log file, working out its format from the first bytes.
+     * @param fileName The log file.
+     * @throws IOException When the file can't be read.
+     */
+    public void read(String fileName) throws IOException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(fileName))) {
+            byte[] magic = new byte[AccessLog.BINARY_MAGIC.length];
+            is.mark(magic.length);
+            int n = is.read(magic);
+            if (n == magic.length && Arrays.equals(magic, AccessLog.BINARY_MAGIC)) {
+                readBinary(new DataInputStream(is), fileName);
+            }
+            else {
+                is.reset();
+                readLines(is);
+            }
+        }
+    }
+
+    private void readBinary(DataInputStream dis, String fileName) throws IOException {
+        int version = dis.readUnsignedByte();
+        if (version != AccessLog.BINARY_VERSION)
+            throw new IOException("Unsupported access log version " + version + " in " + fileName);
+        while (true) {
+            AccessLogRecord r;
+            try {
+                r = AccessLogRecord.readBinary(dis);
+            }
+            catch (EOFException e) {
+                // The end of the file, or a record cut short by a crash.
+                return;
+            }
+            add(r);
+        }
+    }
+
+    private void readLines(InputStream is) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty())
+                continue;
+            AccessLogRecord r = line.charAt(0) == '{' ? parseJson(line) : parseText(line);
+            if (r == null)
+                skipped++;
+            else
+                add(r);
+        }
+    }
+
+    static AccessLogRecord parseJson(String line) {
+        AccessLogRecord r = new AccessLogRecord();
+        Matcher m = JSON_NUMBER.matcher(line);
+        boolean sawDuration = false;
+        while (m.find()) {
+            long value = Long.parseLong(m.group(2));
+            switch (m.group(1)) {
+                case "time":     r.startTime = value; break;
+                case "duration": r.duration = value; sawDuration = true; break;
+                case "status":   r.httpStatus = (int) value; break;
+                case "size":     r.size = value; break;
+                default: break;
+            }
+        }
+        if (!sawDuration)
+            return null;
+        m = JSON_STRING.matcher(line);
+        while (m.find()) {
+            String value = unescape(m.group(2));
+            switch (m.group(1)) {
+                case "resource":  r.resourceId = value; break;
+                case "responder": r.responder = value; break;
+                case "dataset":   r.datasetId = value; break;
+                default: break;
+            }
+        }
+        return r;
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0)
+            return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 == s.length()) {
+                sb.append(c);
+                continue;
+            }
+            c = s.charAt(++i);
+            switch (c) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 < s.length()) {
+                        sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    }
+                    break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static AccessLogRecord parseText(String line) {
+        Matcher m = TEXT_RECORD.matcher(line);
+        if (!m.matches())
+            return null;
+        AccessLogRecord r = new AccessLogRecord();
+        try {
+            r.duration = Long.parseLong(m.group(6));
+        }
+        catch (NumberFormatException e) {
+            // "unknown" - the request never finished.
+            return null;
+        }
+        r.httpStatus = Integer.parseInt(m.group(7));
+        r.resourceId = m.group(10);
+        if (m.group(12) != null)
+            r.size = Long.parseLong(m.group(12));
+
+        String resource = r.resourceId;
+        int slash = resource.lastIndexOf('/');
+        int dot = resource.lastIndexOf('.');
+        if (dot > slash && dot > 0) {
+            r.datasetId = resource.substring(0, dot);
+            r.responder = resource.substring(dot + 1);
+        }
+        else {
+            r.datasetId = resource;
+        }
+        return r;
+    }
+
+
+    /**
+     * Prints the dataset and responder tables, busiest first.
+     * @param ps Where to print.
+     * @param top The number of rows in each table, 0 for all of them.
+     */
+    public void report(PrintStream ps, int top) {
+        ps.println("Records: " + records + "  Skipped: " + skipped);
+        ps.println();
+        printTable(ps, "Responder", byResponder, top);
+        ps.println();
+        printTable(ps, "Dataset", byDataset, top);
+    }
+
+    private static void printTable(PrintStream ps, String title, Map<String, Stats> table, int top) {
+        List<Map.Entry<String, Stats>> rows = new ArrayList<>(table.entrySet());
+        rows.sort((a, b) -> Long.compare(b.getValue().getTotalTime(), a.getValue().getTotalTime()));
+        if (top > 0 && rows.size() > top)
+            rows = rows.subList(0, top);
+
+        ps.println(String.format("%-10s %8s %10s %8s %8s %8s %8s %14s  %s",
+                "count", "errors", "mean(ms)", "p50", "p95", "p99", "max", "bytes", title));
+        for (Map.Entry<String, Stats> row : rows) {
+            Stats s = row.getValue();
+            ps.println(String.format("%-10d %8d %10.1f %8d %8d %8d %8d %14d  %s",
+                    s.getCount(), s.getErrors(), s.getMean(),
+                    s.getPercentile(50), s.getPercentile(95), s.getPercentile(99), s.getPercentile(100),
+                    s.getTotalBytes(), row.getKey()));
+        }
+    }
+
+
+    private static Options createCmdLineOptions(){
+
+        Options options = new Options();
+
+        options.addOption("t", "top",  true, "Only show the busiest N datasets and responders, 0 for all. default: 20");
+        options.addOption("h", "help", false, "Print this usage statement.");
+
+        return options;
+    }
+
+    /**
+     * @param args Command line arguments as defined by createCmdLineOptions()
+     *             followed by the log files to read.
+     */
+    public static void main(String[] args) throws Exception {
+
+        Options options = createCmdLineOptions();
+        CommandLineParser parser = new PosixParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption("h") || cmd.getArgs().length == 0) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.setWidth(120);
+            formatter.printHelp("AccessLogAggregator [options] logFile ...", options);
+            return;
+        }
+
+        AccessLogAggregator aggregator = new AccessLogAggregator();
+        for (String fileName : cmd.getArgs())
+            aggregator.read(fileName);
+        aggregator.report(System.out, Integer.parseInt(cmd.getOptionValue("t", "20")));
+    }
+}
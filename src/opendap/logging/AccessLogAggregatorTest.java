@@ -0,0 +1,152 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.logging;
+
+// This uses JUnit 4
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class AccessLogAggregatorTest {
+
+    @Test
+    public void testTextLine() {
+        AccessLogRecord r = AccessLogRecordTest.record();
+        StringBuilder sb = new StringBuilder();
+        r.appendText(sb);
+        String line = sb.toString();
+        Assert.assertTrue(line.contains("[dap4.ce=/u[0:1:10];/v \"x\"] [12345 bytes]"));
+
+        AccessLogRecord parsed = AccessLogAggregator.parseText(line.trim());
+        Assert.assertNotNull(parsed);
+        Assert.assertEquals(42, parsed.getDuration());
+        Assert.assertEquals(200, parsed.getHttpStatus());
+        Assert.assertEquals(12345, parsed.getSize());
+        Assert.assertEquals("/opendap/hyrax/data/nc/fnoc1.nc.dap", parsed.getResourceId());
+        // The text format has no responder or dataset, they come from the suffix.
+        Assert.assertEquals("/opendap/hyrax/data/nc/fnoc1.nc", parsed.getDatasetId());
+        Assert.assertEquals("dap", parsed.getResponder());
+    }
+
+    @Test
+    public void testTextLineWithoutSize() {
+        AccessLogRecord r = AccessLogRecordTest.record();
+        r.size = -1;
+        r.query = "";
+        StringBuilder sb = new StringBuilder();
+        r.appendText(sb);
+        AccessLogRecord parsed = AccessLogAggregator.parseText(sb.toString().trim());
+        Assert.assertNotNull(parsed);
+        Assert.assertEquals(-1, parsed.getSize());
+
+        // A request that never finished.
+        r.duration = -1;
+        sb.setLength(0);
+        r.appendText(sb);
+        Assert.assertNull(AccessLogAggregator.parseText(sb.toString().trim()));
+    }
+
+    @Test
+    public void testJsonLine() {
+        AccessLogRecord r = AccessLogRecordTest.record();
+        StringBuilder sb = new StringBuilder();
+        r.appendJson(sb);
+
+        AccessLogRecord parsed = AccessLogAggregator.parseJson(sb.toString().trim());
+        Assert.assertNotNull(parsed);
+        Assert.assertEquals(r.getStartTime(), parsed.getStartTime());
+        Assert.assertEquals(42, parsed.getDuration());
+        Assert.assertEquals(200, parsed.getHttpStatus());
+        Assert.assertEquals(12345, parsed.getSize());
+        Assert.assertEquals(r.getResourceId(), parsed.getResourceId());
+        Assert.assertEquals("Dap4Data", parsed.getResponder());
+        Assert.assertEquals("/data/nc/fnoc1.nc", parsed.getDatasetId());
+
+        Assert.assertNull(AccessLogAggregator.parseJson("{\"time\":1}"));
+    }
+
+    @Test
+    public void testReadAllFormats() throws IOException {
+        AccessLogRecord ok = AccessLogRecordTest.record();
+        AccessLogRecord failed = AccessLogRecordTest.record();
+        failed.duration = 8;
+        failed.httpStatus = 404;
+        failed.size = -1;
+
+        StringBuilder text = new StringBuilder();
+        ok.appendText(text);
+        failed.appendText(text);
+        text.append("not an access log line\n");
+        StringBuilder json = new StringBuilder();
+        ok.appendJson(json);
+        failed.appendJson(json);
+
+        File textFile = File.createTempFile("access", ".log");
+        File jsonFile = File.createTempFile("access", ".ndjson");
+        File binFile = File.createTempFile("access", ".bin");
+        try {
+            Files.write(textFile.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+            Files.write(jsonFile.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+            try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(binFile))) {
+                dos.write(AccessLog.BINARY_MAGIC);
+                dos.writeByte(AccessLog.BINARY_VERSION);
+                ok.writeBinary(dos);
+                failed.writeBinary(dos);
+            }
+
+            AccessLogAggregator textAggregator = new AccessLogAggregator();
+            textAggregator.read(textFile.getPath());
+            Assert.assertEquals(2, textAggregator.getRecordCount());
+            Assert.assertEquals(1, textAggregator.getSkippedCount());
+
+            AccessLogAggregator aggregator = new AccessLogAggregator();
+            aggregator.read(jsonFile.getPath());
+            aggregator.read(binFile.getPath());
+            Assert.assertEquals(4, aggregator.getRecordCount());
+            Assert.assertEquals(0, aggregator.getSkippedCount());
+
+            AccessLogAggregator.Stats stats = aggregator.getByDataset().get("/data/nc/fnoc1.nc");
+            Assert.assertEquals(4, stats.getCount());
+            Assert.assertEquals(2, stats.getErrors());
+            Assert.assertEquals(2 * 12345, stats.getTotalBytes());
+            Assert.assertEquals(100, stats.getTotalTime());
+            Assert.assertEquals(8, stats.getPercentile(50));
+            Assert.assertEquals(42, stats.getPercentile(100));
+            Assert.assertEquals(4, aggregator.getByResponder().get("Dap4Data").getCount());
+        }
+        finally {
+            Assert.assertTrue(textFile.delete());
+            Assert.assertTrue(jsonFile.delete());
+            Assert.assertTrue(binFile.delete());
+        }
+    }
+}
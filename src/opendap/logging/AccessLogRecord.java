@@ -0,0 +1,216 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.logging;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One line of the access log. The records are allocated up front by the
+ * AccessLog and reused, so the fields are plain and mutable.
+ */
+public class AccessLogRecord {
+
+    static final String MISSING = "-";
+
+    // The writeUTF() limit is 64k bytes, so be sure the strings fit.
+    private static final int MAX_STRING_LENGTH = 16 * 1024;
+
+    private static final DateTimeFormatter TEXT_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS Z").withZone(ZoneId.systemDefault());
+
+    long startTime;
+    long duration;
+    int httpStatus;
+    long size;
+    String host;
+    String userAgent;
+    String sessionId;
+    String userId;
+    String requestId;
+    String source;
+    String resourceId;
+    String query;
+    String responder;
+    String datasetId;
+
+    AccessLogRecord() {
+        clear();
+    }
+
+    void clear() {
+        startTime = 0;
+        duration = -1;
+        httpStatus = 0;
+        size = -1;
+        host = MISSING;
+        userAgent = MISSING;
+        sessionId = MISSING;
+        userId = MISSING;
+        requestId = MISSING;
+        source = MISSING;
+        resourceId = MISSING;
+        query = "";
+        responder = MISSING;
+        datasetId = MISSING;
+    }
+
+    public long getStartTime() { return startTime; }
+    public long getDuration() { return duration; }
+    public int getHttpStatus() { return httpStatus; }
+    public long getSize() { return size; }
+    public String getResourceId() { return resourceId; }
+    public String getResponder() { return responder; }
+    public String getDatasetId() { return datasetId; }
+
+
+    /**
+     * Writes the record in the format of the HyraxAccess.log appender in
+     * logback.xml.
+     */
+    void appendText(StringBuilder sb) {
+        sb.append('[').append(host).append("] ");
+        sb.append('[').append(userAgent).append("] ");
+        sb.append('[').append(sessionId).append("] ");
+        sb.append('[').append(userId).append("] ");
+        sb.append('[');
+        TEXT_TIME.formatTo(Instant.ofEpochMilli(startTime + Math.max(0, duration)), sb);
+        sb.append("] ");
+        sb.append('[');
+        pad(sb, duration >= 0 ? Long.toString(duration) : "unknown");
+        sb.append("] ");
+        sb.append('[').append(httpStatus).append("] ");
+        sb.append('[');
+        pad(sb, requestId);
+        sb.append("] ");
+        sb.append('[').append(source).append("] ");
+        sb.append('[').append(resourceId).append("] ");
+        sb.append('[').append(query).append("] ");
+        sb.append('[');
+        if (size >= 0)
+            sb.append(size).append(" bytes");
+        sb.append("]\n");
+    }
+
+    private static void pad(StringBuilder sb, String s) {
+        for (int i = s.length(); i < 8; i++)
+            sb.append(' ');
+        sb.append(s);
+    }
+
+
+    /**
+     * Writes the record as one line of JSON.
+     */
+    void appendJson(StringBuilder sb) {
+        sb.append("{\"time\":").append(startTime);
+        sb.append(",\"duration\":").append(duration);
+        sb.append(",\"status\":").append(httpStatus);
+        sb.append(",\"size\":").append(size);
+        appendJsonField(sb, "host", host);
+        appendJsonField(sb, "userAgent", userAgent);
+        appendJsonField(sb, "session", sessionId);
+        appendJsonField(sb, "user", userId);
+        appendJsonField(sb, "id", requestId);
+        appendJsonField(sb, "source", source);
+        appendJsonField(sb, "resource", resourceId);
+        appendJsonField(sb, "query", query);
+        appendJsonField(sb, "responder", responder);
+        appendJsonField(sb, "dataset", datasetId);
+        sb.append("}\n");
+    }
+
+    private static void appendJsonField(StringBuilder sb, String name, String value) {
+        sb.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+
+    /**
+     * Writes the record in the binary format, see AccessLog.BINARY_MAGIC.
+     */
+    void writeBinary(DataOutputStream dos) throws IOException {
+        dos.writeLong(startTime);
+        dos.writeLong(duration);
+        dos.writeShort(httpStatus);
+        dos.writeLong(size);
+        writeString(dos, host);
+        writeString(dos, userAgent);
+        writeString(dos, sessionId);
+        writeString(dos, userId);
+        writeString(dos, requestId);
+        writeString(dos, source);
+        writeString(dos, resourceId);
+        writeString(dos, query);
+        writeString(dos, responder);
+        writeString(dos, datasetId);
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        dos.writeUTF(s.length() > MAX_STRING_LENGTH ? s.substring(0, MAX_STRING_LENGTH) : s);
+    }
+
+    /**
+     * Reads a record written by writeBinary().
+     */
+    static AccessLogRecord readBinary(DataInputStream dis) throws IOException {
+        AccessLogRecord r = new AccessLogRecord();
+        r.startTime = dis.readLong();
+        r.duration = dis.readLong();
+        r.httpStatus = dis.readShort();
+        r.size = dis.readLong();
+        r.host = dis.readUTF();
+        r.userAgent = dis.readUTF();
+        r.sessionId = dis.readUTF();
+        r.userId = dis.readUTF();
+        r.requestId = dis.readUTF();
+        r.source = dis.readUTF();
+        r.resourceId = dis.readUTF();
+        r.query = dis.readUTF();
+        r.responder = dis.readUTF();
+        r.datasetId = dis.readUTF();
+        return r;
+    }
+}
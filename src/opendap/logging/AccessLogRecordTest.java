@@ -0,0 +1,110 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.logging;
+
+// This uses JUnit 4
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class AccessLogRecordTest {
+
+    static AccessLogRecord record() {
+        AccessLogRecord r = new AccessLogRecord();
+        r.startTime = 1568668858028L;
+        r.duration = 42;
+        r.httpStatus = 200;
+        r.size = 12345;
+        r.host = "0:0:0:0:0:0:0:1";
+        r.userAgent = "curl/7.54.0 [test]";
+        r.sessionId = "abc";
+        r.userId = "bob";
+        r.requestId = "25";
+        r.source = "HyraxGet";
+        r.resourceId = "/opendap/hyrax/data/nc/fnoc1.nc.dap";
+        r.query = "dap4.ce=/u[0:1:10];/v \"x\"";
+        r.responder = "Dap4Data";
+        r.datasetId = "/data/nc/fnoc1.nc";
+        return r;
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        AccessLogRecord r = record();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            r.writeBinary(dos);
+            new AccessLogRecord().writeBinary(dos);
+        }
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        AccessLogRecord copy = AccessLogRecord.readBinary(dis);
+        StringBuilder expected = new StringBuilder();
+        r.appendJson(expected);
+        StringBuilder actual = new StringBuilder();
+        copy.appendJson(actual);
+        Assert.assertEquals(expected.toString(), actual.toString());
+
+        AccessLogRecord empty = AccessLogRecord.readBinary(dis);
+        Assert.assertEquals(-1, empty.getDuration());
+        Assert.assertEquals(AccessLogRecord.MISSING, empty.getResourceId());
+        Assert.assertEquals(0, dis.available());
+    }
+
+    @Test
+    public void testLongStringIsCut() throws IOException {
+        AccessLogRecord r = record();
+        StringBuilder query = new StringBuilder();
+        while (query.length() < 100000)
+            query.append("éx");
+        r.query = query.toString();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            r.writeBinary(dos);
+        }
+        AccessLogRecord copy = AccessLogRecord.readBinary(
+                new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+        Assert.assertTrue(r.query.startsWith(copy.query));
+        Assert.assertTrue(copy.query.length() < r.query.length());
+        Assert.assertEquals(r.getDatasetId(), copy.getDatasetId());
+    }
+
+    @Test
+    public void testJsonEscapes() {
+        AccessLogRecord r = record();
+        r.query = "a\"b\\c\nd\u0001";
+        StringBuilder sb = new StringBuilder();
+        r.appendJson(sb);
+        Assert.assertTrue(sb.toString().contains("\"query\":\"a\\\"b\\\\c\\nd\\u0001\""));
+        Assert.assertTrue(sb.toString().endsWith("}\n"));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.logging;
+
+// This uses JUnit 4
+import org.jdom.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AccessLogTest {
+
+    private static File init(String format, int records) throws Exception {
+        File dir = Files.createTempDirectory("accesslog").toFile();
+        Element config = new Element(AccessLog.ACCESS_LOG_ELEMENT_NAME);
+        config.setAttribute("format", format);
+        config.setAttribute("records", Integer.toString(records));
+        AccessLog.init(config, dir.getPath());
+        return new File(dir, "HyraxAccess." + AccessLog.Format.valueOf(format).getExtension());
+    }
+
+    private static void delete(File file) {
+        File dir = file.getParentFile();
+        Assert.assertTrue(!file.exists() || file.delete());
+        Assert.assertTrue(dir.delete());
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        File file = init("binary", 4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                AccessLogRecord r = AccessLog.start();
+                Assert.assertNotNull(r);
+                r.resourceId = "/data/" + i + ".nc.dmr";
+                AccessLog.setResponder("Dap4Dmr", "/data/" + i + ".nc");
+                r.duration = i;
+                r.httpStatus = 200;
+                AccessLog.end();
+                Assert.assertNull(AccessLog.current());
+                // Don't get ahead of the writer.
+                while (AccessLog.getWrittenCount() < i + 1)
+                    Thread.sleep(1);
+            }
+        }
+        finally {
+            AccessLog.destroy();
+        }
+        Assert.assertEquals(0, AccessLog.getDroppedCount());
+
+        AccessLogAggregator aggregator = new AccessLogAggregator();
+        aggregator.read(file.getPath());
+        Assert.assertEquals(10, aggregator.getRecordCount());
+        Assert.assertEquals(10, aggregator.getByResponder().get("Dap4Dmr").getCount());
+        Assert.assertEquals(1, aggregator.getByDataset().get("/data/3.nc").getCount());
+        delete(file);
+    }
+
+    @Test
+    public void testDropped() throws Exception {
+        File file = init("ndjson", 1);
+        try {
+            AccessLogRecord r = AccessLog.start();
+            Assert.assertNotNull(r);
+
+            // The only record is taken, so another request's entry is dropped.
+            AtomicReference<AccessLogRecord> other = new AtomicReference<>();
+            Thread t = new Thread(() -> other.set(AccessLog.start()));
+            t.start();
+            t.join();
+            Assert.assertNull(other.get());
+            Assert.assertEquals(1, AccessLog.getDroppedCount());
+
+            r.duration = 1;
+            AccessLog.end();
+        }
+        finally {
+            AccessLog.destroy();
+        }
+        Assert.assertEquals(1, AccessLog.getWrittenCount());
+        Assert.assertEquals(1, AccessLog.getDroppedCount());
+        delete(file);
+    }
+}
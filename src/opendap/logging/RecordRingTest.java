@@ -0,0 +1,100 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.logging;
+
+// This uses JUnit 4
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RecordRingTest {
+
+    @Test
+    public void testFullAndEmpty() {
+        RecordRing<Integer> ring = new RecordRing<>(3);
+        Assert.assertEquals(4, ring.capacity());
+        Assert.assertNull(ring.poll());
+        for (int i = 0; i < 4; i++)
+            Assert.assertTrue(ring.offer(i));
+        Assert.assertFalse(ring.offer(4));
+        Assert.assertEquals(4, ring.size());
+        for (int i = 0; i < 4; i++)
+            Assert.assertEquals(Integer.valueOf(i), ring.poll());
+        Assert.assertNull(ring.poll());
+        Assert.assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void testWrapAround() {
+        RecordRing<Integer> ring = new RecordRing<>(4);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(ring.offer(i));
+            Assert.assertTrue(ring.offer(-i));
+            Assert.assertEquals(Integer.valueOf(i), ring.poll());
+            Assert.assertEquals(Integer.valueOf(-i), ring.poll());
+        }
+        Assert.assertNull(ring.poll());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 20000;
+        RecordRing<Integer> ring = new RecordRing<>(64);
+        ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        AtomicInteger taken = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers * 2);
+
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(base + i))
+                        Thread.yield();
+                }
+                done.countDown();
+            }).start();
+            new Thread(() -> {
+                while (taken.get() < producers * perProducer) {
+                    Integer e = ring.poll();
+                    if (e == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    Assert.assertNull(seen.put(e, Boolean.TRUE));
+                    taken.incrementAndGet();
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(producers * perProducer, seen.size());
+        Assert.assertNull(ring.poll());
+    }
+}
@@ -390,7 +390,8 @@ public class ServletLogUtil {
         String uid = opendap.auth.Util.getUID(req);
         MDC.put(USER_ID_KEY, uid==null ? "-" : uid  );
 
-        MDC.put(START_TIME_KEY, Long.toString(System.currentTimeMillis()));
+        long startTime = System.currentTimeMillis();
+        MDC.put(START_TIME_KEY, Long.toString(startTime));
 
         String userAgent = Scrub.simpleString(req.getHeader("User-Agent"));
         MDC.put(USER_AGENT_KEY,  userAgent==null?"-":userAgent);
@@ -402,6 +403,21 @@ public class ServletLogUtil {
         query = (query == null) ? "" : query;
         MDC.put(QUERY_STRING_KEY, query);
 
+        if(logName.equals(HYRAX_ACCESS_LOG_ID)) {
+            AccessLogRecord record = AccessLog.start();
+            if (record != null) {
+                record.startTime = startTime;
+                record.requestId = reqID;
+                record.source = httpVerb;
+                record.host = MDC.get(HOST_KEY);
+                record.sessionId = MDC.get(SESSION_ID_KEY);
+                record.userId = MDC.get(USER_ID_KEY);
+                record.userAgent = MDC.get(USER_AGENT_KEY);
+                record.resourceId = resourceID;
+                record.query = query;
+            }
+        }
+
         if(log.isInfoEnabled()) {
             StringBuilder startMsg = new StringBuilder();
             startMsg.append("REQUEST START - ");
@@ -476,6 +492,9 @@ public class ServletLogUtil {
         // Only set the size if it's not equal to the missing value (-1)
         if(size>=0) {
             MDC.put(RESPONSE_SIZE_KEY, Long.toString(size) + " bytes");
+            AccessLogRecord record = AccessLog.current();
+            if(record != null)
+                record.size = size;
         }
     }
 
@@ -513,10 +532,23 @@ public class ServletLogUtil {
 
         MDC.put(HTTP_STATUS_KEY, Integer.toString(httpStatus));
 
-        // Doesn't matter what we write to the access_log because the access log formatter ignores
-        // it in lieu of the stuff in MDC. All that matters is that we write something.
-        Logger access_log = org.slf4j.LoggerFactory.getLogger(logName);
-        access_log.info("");
+        if(logName.equals(HYRAX_ACCESS_LOG_ID) && AccessLog.isEnabled()){
+            // The AccessLog writer takes the place of the logback appender.
+            AccessLogRecord record = AccessLog.current();
+            if(record != null) {
+                record.duration = duration;
+                record.httpStatus = httpStatus;
+                AccessLog.end();
+            }
+            // else there was no free record when the request started, and
+            // the AccessLog has counted the entry as dropped.
+        }
+        else {
+            // Doesn't matter what we write to the access_log because the access log formatter ignores
+            // it in lieu of the stuff in MDC. All that matters is that we write something.
+            Logger access_log = org.slf4j.LoggerFactory.getLogger(logName);
+            access_log.info("");
+        }
 
         if(logName.equals(HYRAX_ACCESS_LOG_ID) && useDualCloudWatchLogs.get()){
             Logger cwResponseLog = org.slf4j.LoggerFactory.getLogger(CLOUDWATCH_RESPONSE_LOG);
@@ -119,7 +119,7 @@ public class IsoDispatchHandler implements opendap.coreServlet.DispatchHandler {
 
 
         try {
-            ResourceInfo dsi = new BESResource(name, _besApi);
+            ResourceInfo dsi = BESResource.get(name, _besApi);
             log.debug("Returning: {}", new Date(dsi.lastModified()));
 
             return dsi.lastModified();
@@ -163,7 +163,7 @@ public class IsoDispatchHandler implements opendap.coreServlet.DispatchHandler {
         if(isoRequestPattern.matcher(requestURL).matches())   {
             String relativeUrl = ReqInfo.getLocalUrl(request);
             String dataSource = ReqInfo.getBesDataSourceID(relativeUrl);
-            ResourceInfo dsi = new BESResource(dataSource,_besApi);
+            ResourceInfo dsi = BESResource.get(dataSource,_besApi);
 
             if (dsi.sourceExists() && dsi.isDataset()) {
                 isIsoResponse = true;
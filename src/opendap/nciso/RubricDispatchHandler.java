@@ -122,7 +122,7 @@ public class RubricDispatchHandler implements opendap.coreServlet.DispatchHandle
 
 
         try {
-            ResourceInfo dsi = new BESResource(name,_besApi);
+            ResourceInfo dsi = BESResource.get(name,_besApi);
             log.debug("Returning: {}" + new Date(dsi.lastModified()));
 
             return dsi.lastModified();
@@ -166,7 +166,7 @@ public class RubricDispatchHandler implements opendap.coreServlet.DispatchHandle
         if(rubricRequestPattern.matcher(requestURL).matches())   {
             String relativeUrl = ReqInfo.getLocalUrl(request);
             String dataSource = ReqInfo.getBesDataSourceID(relativeUrl);
-            ResourceInfo dsi = new BESResource(dataSource,_besApi);
+            ResourceInfo dsi = BESResource.get(dataSource,_besApi);
 
             if (dsi.sourceExists() && dsi.isDataset()) {
                 isrubricResponse = true;
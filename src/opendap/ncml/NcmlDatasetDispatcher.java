@@ -27,7 +27,7 @@ package opendap.ncml;
 
 import opendap.bes.BesDapDispatcher;
 import opendap.bes.BesApi;
-import opendap.coreServlet.HttpResponder;
+import opendap.bes.dap4Responders.Dap4Responder;
 import opendap.coreServlet.ReqInfo;
 import org.jdom.Element;
 import org.slf4j.Logger;
@@ -104,7 +104,7 @@ public class NcmlDatasetDispatcher extends BesDapDispatcher {
 
         log.debug("The client requested this resource: {}",relativeUrl);
 
-        for (HttpResponder r : getResponders()) {
+        for (Dap4Responder r : getResponders()) {
             log.debug("Checking responder: "+ r.getClass().getSimpleName()+ " (pathPrefix: "+r.getPathPrefix()+")");
 
             String candidateDataSourceId = getBesApi().getBesDataSourceID(relativeUrl,r.getRequestSuffixMatchPattern(),false);
@@ -118,7 +118,7 @@ public class NcmlDatasetDispatcher extends BesDapDispatcher {
                             "the pattern: \"" + r.getRequestMatchRegexString() + "\"");
 
                     if (sendResponse)
-                        r.respondToHttpGetRequest(request, response);
+                        respond(r, request, response);
 
                     return true;
                 }
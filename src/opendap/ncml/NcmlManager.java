@@ -38,12 +38,15 @@ import opendap.threddsHandler.ThreddsCatalogUtil;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.JDOMException;
+import org.jdom.ProcessingInstruction;
+import org.jdom.Text;
 import org.jdom.filter.ElementFilter;
 import org.jdom.input.SAXBuilder;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 import org.slf4j.Logger;
 
+import javax.xml.transform.Result;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -91,10 +94,12 @@ public class NcmlManager {
 
     /**
      *   The key String is the dapAccessId
-     *   The value Element is the ncml:netcdf element that defines the dataset.
+     *   The value String is the ncml:netcdf element that defines the dataset,
+     *   serialized. It goes into every BES command for the dataset as it is,
+     *   see getSetContainerElement(String, String, String).
      *
      */
-    private static ConcurrentHashMap<String, Element> _ncmlDatasets = new ConcurrentHashMap<String,Element>();
+    private static ConcurrentHashMap<String, String> _ncmlDatasets = new ConcurrentHashMap<String,String>();
 
 
 
@@ -152,7 +157,6 @@ public class NcmlManager {
 
                     log.debug("ingestNcml() - DAP ACCESS ID: {}",dapAccessID);
 
-                    _ncmlDatasets.put(dapAccessID, (Element)netcdf.clone());
                     _ncmlDatasetsLastModifiedTimes.put(dapAccessID, catalog.getLastModified());
                     ncmlDatasetIds.add(dapAccessID);
 
@@ -160,6 +164,9 @@ public class NcmlManager {
                         log.debug("ingestNcml() - Sending NcML content to BES.");
                         sendNcmlToBes(dapAccessID, netcdf);
                     }
+                    else {
+                        _ncmlDatasets.put(dapAccessID, serialize(netcdf));
+                    }
 
 
                 }
@@ -224,13 +231,13 @@ public class NcmlManager {
 
         log.debug("BES Dataset ID: {}",besDatasetID);
 
-        Element netcdf = _ncmlDatasets.get(dapAccessID);
+        String netcdf = _ncmlDatasets.get(dapAccessID);
 
         if(netcdf==null)
             return null;
 
 
-        return getSetContainerElement(besDatasetID, "ncml", (Element)netcdf.clone());
+        return getSetContainerElement(besDatasetID, "ncml", netcdf);
     }
 
 
@@ -244,6 +251,9 @@ public class NcmlManager {
 
         XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat() );
 
+        String serializedNetcdf = serialize(netcdf);
+        _ncmlDatasets.put(dapAccessID, serializedNetcdf);
+
         BesGroup besGroup = BESManager.getBesGroup(dapAccessID);
 
         for(opendap.bes.BES bes: besGroup.toArray()){
@@ -252,7 +262,7 @@ public class NcmlManager {
             log.debug("BES Dataset ID: {}",besDatasetID);
 
             Element request = new Element("request", opendap.namespaces.BES.BES_NS);
-            Element setContainer = getSetContainerElement(besDatasetID, "ncml", (Element) netcdf.clone());
+            Element setContainer = getSetContainerElement(besDatasetID, "ncml", serializedNetcdf);
             //log.debug("bes:setContainer: \n{}",xmlo.outputString(setContainer));
 
             request.addContent(setContainer);
@@ -265,7 +275,8 @@ public class NcmlManager {
             Document besCmd = new Document(request);
 
             Document response  = new Document();
-            log.debug("Sending NcML to BES '{}'. BES command: \n{}",bes.getNickName(),xmlo.outputString(besCmd));
+            if(log.isDebugEnabled())
+                log.debug("Sending NcML to BES '{}'. BES command: \n{}",bes.getNickName(),xmlo.outputString(besCmd));
 
             try {
                 bes.besTransaction(besCmd,response);
@@ -640,6 +651,54 @@ public class NcmlManager {
         return e;
     }
 
+    /**
+     * Makes a setContainer element whose content is XML that has already
+     * been serialized. The content is written out as it is, without
+     * escaping, by any XMLOutputter (it's bracketed by the TrAX
+     * disable/enable output escaping processing instructions) so it need
+     * not be parsed, cloned or serialized again.
+     * @param name The container name.
+     * @param space The container space.
+     * @param serializedSource The serialized content, from serialize().
+     * @return The setContainer element.
+     */
+    public static Element getSetContainerElement(String name,
+                                                 String space,
+                                                 String serializedSource
+    ) {
+
+        Element e = new Element("setContainer",opendap.namespaces.BES.BES_NS);
+        e.setAttribute("name",name);
+        e.setAttribute("space",space);
+        e.addContent(new ProcessingInstruction(Result.PI_DISABLE_OUTPUT_ESCAPING, ""));
+        e.addContent(new SerializedXml(serializedSource));
+        e.addContent(new ProcessingInstruction(Result.PI_ENABLE_OUTPUT_ESCAPING, ""));
+        return e;
+    }
+
+    /**
+     * @return The element serialized the same way that it would be when sent
+     * to the BES as part of a command.
+     */
+    private static String serialize(Element element){
+        XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
+        return xmlo.outputString(element);
+    }
+
+    /**
+     * Text that is already XML. It skips the character check that the Text
+     * constructor makes, since the content came from an XMLOutputter and
+     * it would otherwise be made for every command.
+     */
+    private static class SerializedXml extends Text {
+        private static final long serialVersionUID = 1L;
+
+        SerializedXml(String xml){
+            super();
+            value = xml;
+        }
+    }
+
 
 
 
@@ -361,7 +361,8 @@ public class NewPPTClient {
     public boolean sendXMLRequest(Document req) throws PPTException {
         try {
             XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
-            log.debug("\n"+xmlo.outputString(req));
+            if(log.isDebugEnabled())
+                log.debug("\n"+xmlo.outputString(req));
             xmlo.output(req,_out);
             _out.finish();
             _out.flush();
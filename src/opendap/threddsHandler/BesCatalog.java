@@ -35,20 +35,19 @@ import opendap.bes.BesDapDispatcher;
 import opendap.bes.DatasetUrlResponseAction;
 import opendap.bes.BesApi;
 import opendap.io.HyraxStringEncoding;
+import opendap.io.SpillBuffer;
 import opendap.namespaces.BES;
 import opendap.namespaces.THREDDS;
 import opendap.ppt.PPTException;
 import opendap.services.FileService;
 import opendap.services.ServicesRegistry;
 import opendap.services.WebServiceHandler;
-import opendap.xml.Transformer;
+import org.jdom.Comment;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.JDOMException;
-import org.jdom.filter.ElementFilter;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
-import org.jdom.transform.JDOMSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,10 +58,22 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
+ * The THREDDS catalog of a BES directory, made for a datasetScan.
+ *
+ * The catalog is built from the items of the BES showNode response in a
+ * single pass and written to the client one entry at a time, so that the
+ * size of a directory only costs memory for the sorted list of names. When a
+ * page size is set, only one page of entries is written and the catalog
+ * links to the pages before and after it.
+ *
  * Created by ndp on 4/16/15.
  */
 public class BesCatalog implements Catalog {
 
+    public static final String PAGE_PARAMETER = "page";
+
+    private static final String ENTRIES_MARKER = "BesCatalog entries";
+
     private Logger _log;
     private String _name;
 
@@ -72,7 +83,6 @@ public class BesCatalog implements Catalog {
     private String _catalogKey;
     private BesApi _besApi;
     private String _besCatalogResourceId;
-    private String _ingestTransformer;
     private Vector<Element> _metadata;
     private Filter _catalogFilter;
     private boolean _ascendingOrder;
@@ -83,20 +93,29 @@ public class BesCatalog implements Catalog {
 
     private boolean _useServiceRegistryServices;
 
+    private int _pageSize;
+    private int _page;
 
 
 
     private ReentrantReadWriteLock _catalogLock;
-    private byte[] _rawCatalogBuffer;
 
+    private String _prefix;
+    private String _besPrefix;
+    private String _nodeName;
 
-    private byte[] _clientResponseCatalogBuffer;
+    /**
+     * The BES items that passed the filter, keyed and sorted on their
+     * (possibly renamed) names.
+     */
+    private TreeMap<String, Element> _entries;
+    private TreeMap<String, WebServiceHandler> _accessServices;
+    private Vector<Element> _threddsServices;
 
 
     BesCatalog(BesApi besApi,
                String catalogKey,
                String besCatalogResourceId,
-               String besCatalogToThreddsCatalogTransformFilename,
                Vector<Element> metadata,
                Filter catalogFilter,
                boolean ascendingOrder,
@@ -104,8 +123,9 @@ public class BesCatalog implements Catalog {
                AddTimeCoverage addTimeCoverage,
                Vector<Proxy> proxies,
                Vector<Element> catalogServices,
-               boolean useServiceRegistryServices
-    ) throws JDOMException, BadConfigurationException, PPTException, IOException, SaxonApiException, BESError {
+               boolean useServiceRegistryServices,
+               int pageSize
+    ) throws JDOMException, BadConfigurationException, PPTException, IOException, BESError {
 
         _log = LoggerFactory.getLogger(this.getClass());
 
@@ -122,8 +142,6 @@ public class BesCatalog implements Catalog {
 
         _besCatalogResourceId = besCatalogResourceId;
 
-        _ingestTransformer = besCatalogToThreddsCatalogTransformFilename;
-
         _metadata = metadata;
 
         _catalogFilter = catalogFilter;
@@ -138,11 +156,31 @@ public class BesCatalog implements Catalog {
 
         _catalogServices = catalogServices;
 
+        _pageSize = pageSize;
+
+        _page = 0;
+
         loadCatalog();
 
     }
 
 
+    /**
+     * Selects the page of entries that the catalog will contain. Ignored
+     * when no page size is configured.
+     * @param page The zero based page number.
+     */
+    public void setPage(int page){
+        _page = page<0 ? 0 : page;
+    }
+
+    public int getPageCount(){
+        if(_pageSize<=0 || _entries.isEmpty())
+            return 1;
+        return (_entries.size() + _pageSize - 1) / _pageSize;
+    }
+
+
     private Vector<Element> getThreddsCatalogServiceElements(Map<String, WebServiceHandler> catalogServices){
 
         Element serviceElement;
@@ -186,236 +224,359 @@ public class BesCatalog implements Catalog {
     }
 
 
-    private void loadCatalog() throws JDOMException, BadConfigurationException, PPTException, IOException, SaxonApiException, BESError {
+    /**
+     * Applies the datasetScan filter and namer to the items of the BES
+     * directory listing. Nothing is copied; the catalog elements are made
+     * when the catalog is written.
+     */
+    private void loadCatalog() throws JDOMException, BadConfigurationException, PPTException, IOException, BESError {
 
 
         ReentrantReadWriteLock.WriteLock lock = _catalogLock.writeLock();
         try {
             lock.lock();
 
-            XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
-
             Document nodeDoc = loadNodeCatalog();
 
-            Transformer showCatalogToThreddsCatalog = new Transformer(_ingestTransformer);
-
-
-            JDOMSource besCatalog = new JDOMSource(nodeDoc);
+            Element showNode = nodeDoc.getRootElement().getChild("showNode", BES.BES_NS);
+            if(showNode==null)
+                throw new IOException("BES Catalog response is lacking the expected 'showNode' element.");
 
-            Document catalog = showCatalogToThreddsCatalog.getTransformedDocument(besCatalog);
+            Element node = showNode.getChild("node", BES.BES_NS);
+            if(node==null)
+                throw new IOException("BES Catalog response is lacking the expected top level 'node' element.");
 
-            Element catalogElement = catalog.getRootElement();
+            _prefix = showNode.getAttributeValue("prefix");
+            if(_prefix==null)
+                _prefix = "/";
+            _besPrefix = _prefix.equals("/") ? _prefix : _prefix + "/";
+            _nodeName = node.getAttributeValue(THREDDS.NAME);
 
 
             /**
-             * Add Services to catalog.
+             * Services for the catalog and for the thredds:access elements.
              */
             TreeMap<String, WebServiceHandler> catalogServices =  new TreeMap<>();
-
-
-            // Use ServiceRegistry??
             if(_useServiceRegistryServices){
                 catalogServices.putAll(ServicesRegistry.getWebServiceHandlers());
             }
-
-            // Put those in the catalog...
-            int position = 0;
-            for(Element service : getThreddsCatalogServiceElements(catalogServices)){
-                catalogElement.addContent(position++,service);
-            }
-
-
-            // Get any services defined on the catalog from the catalog file ingest.
-            for(Element service: _catalogServices){
-                Element copy = (Element) service.clone();
-                _log.debug("loadCatalog() - Adding catalog service: \n",xmlo.outputString(copy));
-                catalogElement.addContent(position++, (Element) service.clone());
-            }
-
-
-            Element topDataset =  catalogElement.getChild(THREDDS.DATASET, THREDDS.NS);
-            if(topDataset==null)
-                throw new IOException("BES Catalog response is lacking the expected top level 'Dataset' element.");
-
-
-            topDataset.setAttribute(THREDDS.NAME,getCatalogKey());
-
-
-
-            /**
-             * Add Metadata!!
-             */
-
-            if(_metadata!=null){
-                for(Element mdata : _metadata){
-                    _log.debug("cacheRawCatalogFileContent() - Retrieved  metadata element: \n{}",xmlo.outputString(mdata));
-
-                    topDataset.addContent(0,(Element) mdata.clone());
-                }
-            }
-
+            _threddsServices = getThreddsCatalogServiceElements(catalogServices);
+            catalogServices.putAll(getStaticCatalogServices());
+            _accessServices = catalogServices;
 
 
             /** ############################################################################################
              * Here we groom the client response catalog by applying all of the datasetScan directives
              * (directives is my word, not a THREDDS word)
              */
+            _entries = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            String name, newName;
+            boolean isNode;
+            for(Object o : node.getChildren("item", BES.BES_NS)){
+                Element item = (Element) o;
 
-            Vector<Element> graphElements = new Vector<>();
-
-            // Grab all the dataset elements
-            graphElements.addAll((List<Element>) topDataset.getChildren(THREDDS.DATASET,THREDDS.NS));
-
-
-            // Grab all the catalogRef elements
-            graphElements.addAll((List<Element>) topDataset.getChildren(THREDDS.CATALOG_REF,THREDDS.NS));
+                name = item.getAttributeValue(THREDDS.NAME);
+                isNode = isNode(item);
 
+                if(!_catalogFilter.include(name,isNode)){
+                    _log.debug("loadCatalog(): Filter dropped {}",name);
+                    continue;
+                }
 
-            // Deatach everything!
-            // graphElements.forEach(org.jdom.Element::detach);  // Java 8 too soon....
-            for(Element e :graphElements){
-                e.detach();
+                // Apply the Namer to get news names, if any.
+                newName = _catalogNamer.getName(name);
+                _entries.put(newName!=null ? newName : name, item);
             }
+            _log.debug("loadCatalog() - Catalog {} has {} entries.", _catalogKey, _entries.size());
 
-            Vector<Element> dropList = new Vector<>();
+        } finally {
+            lock.unlock();
+        }
 
 
-            // Apply the filter by determining what to drop...
-            boolean isNode;
-            for(Element e : graphElements){
+    }
 
-                String name = e.getAttributeValue(THREDDS.NAME);
-                isNode = false;
-                if(e.getName().equals(THREDDS.CATALOG_REF)) {
-                    isNode = true;
-                }
 
-                if(!_catalogFilter.include(name,isNode)){
-                    dropList.add(e);
-                    _log.debug("loadCatalog(): Filter dropped {}",name);
-                }
+    private boolean isNode(Element item){
+        String type = item.getAttributeValue(THREDDS.TYPE);
+        return type!=null && type.equalsIgnoreCase("node");
+    }
 
-            }
 
-            // Drop that stuff that didn't pass the filter.
-            for(Element e : dropList)
-                graphElements.remove(e);
+    /**
+     * Makes the thredds:dataset or thredds:catalogRef for a BES item.
+     * @param item The bes:item
+     * @return The catalog element, with the name the BES gave it.
+     */
+    private Element getCatalogElement(Element item){
+
+        String name = item.getAttributeValue(THREDDS.NAME);
+
+        String id;
+        if("/".equals(_nodeName))
+            id = _besPrefix + name;
+        else if(_besPrefix.equals("/"))
+            id = _nodeName + name;
+        else
+            id = _besPrefix + _nodeName + name;
+
+        Element e;
+        if(isNode(item)){
+            e = new Element(THREDDS.CATALOG_REF, THREDDS.NS);
+            e.setAttribute(THREDDS.NAME, name);
+            e.setAttribute(XLINK.HREF, name + "/" + CatalogManager.DEFAULT_CATALOG_NAME, XLINK.NS);
+            e.setAttribute(XLINK.TITLE, name, XLINK.NS);
+            e.setAttribute(THREDDS.TYPE, "simple", XLINK.NS);
+            e.setAttribute(THREDDS.ID, id + "/");
+        }
+        else {
+            // It's a leaf, aka a file or a granule or whatnot
+            e = new Element(THREDDS.DATASET, THREDDS.NS);
+            e.setAttribute(THREDDS.NAME, name);
+            e.setAttribute(THREDDS.ID, id);
+
+            Element size = new Element(THREDDS.DATASIZE, THREDDS.NS);
+            size.setAttribute("units", "bytes");
+            size.setText(item.getAttributeValue("size"));
+            e.addContent(size);
+
+            Element date = new Element(THREDDS.DATE, THREDDS.NS);
+            date.setAttribute(THREDDS.TYPE, THREDDS.MODIFIED);
+            date.setText(item.getAttributeValue("lastModified"));
+            e.addContent(date);
+        }
+        return e;
+    }
 
 
-            TreeMap<String, Element> notRenamed = new TreeMap<>();
-            for(Element e: graphElements)
-                notRenamed.put(e.getAttributeValue(THREDDS.NAME),(Element)e.clone());
+    /**
+     * Makes the complete catalog entry for a BES item: access, time
+     * coverage and the name from the Namer.
+     */
+    private Element getCatalogEntry(String name, Element item){
 
+        Element e = getCatalogElement(item);
+        String besName = e.getAttributeValue(THREDDS.NAME);
 
-            /**
-             * Make thredds:access for each service on bes datasets, and file access otherwise.
-             *
-             *
-             *
-             */
+        // The datasetScan catalogs have always given their datasets only
+        // the file service access, whatever bes:serviceRef the BES sent.
+        addServiceAccessToDataset(e, false, _accessServices);
 
-            catalogServices.putAll(getStaticCatalogServices());
+        // Add time coverage if needed.
+        if(e.getName().equals(THREDDS.DATASET)) {
+            Element timeCoverage = _addTimeCoverage.getTimeCoverage(besName);
+            if (timeCoverage != null)
+                e.addContent(1,timeCoverage);
+        }
 
-            addServiceAccessToDatasets(graphElements,catalogServices);
+        e.setAttribute(THREDDS.NAME, name);
+        return e;
+    }
 
 
-            String name, newName, elementType;
-            for(Element e : graphElements){
+    /**
+     * Builds everything in the catalog except the entries, in whose place
+     * the top dataset holds a marker comment.
+     */
+    private Document getCatalogSkeleton() {
 
-                elementType = e.getName();
-                name = e.getAttributeValue(THREDDS.NAME);
+        XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
 
+        Element catalogElement = new Element(THREDDS.CATALOG, THREDDS.NS);
+        catalogElement.addNamespaceDeclaration(XLINK.NS);
+        Document catalog = new Document(catalogElement);
 
-                // Add time coverage if needed.
-                // Is this an atomic dataset and not a collection?
-                if(elementType==THREDDS.DATASET  && !e.getDescendants(new ElementFilter(THREDDS.DATASET,THREDDS.NS)).hasNext() ) {
-                    Element timeCoverage = _addTimeCoverage.getTimeCoverage(name);
-                    if (timeCoverage != null)
-                        e.addContent(1,timeCoverage);
-                }
+        for(Element service : _threddsServices){
+            catalogElement.addContent((Element) service.clone());
+        }
 
-                // Apply the Namer to get news names, if any.
-                newName = _catalogNamer.getName(name);
-                if(newName!=null){
-                    e.setAttribute(THREDDS.NAME,newName);
-                }
+        // Get any services defined on the catalog from the catalog file ingest.
+        for(Element service: _catalogServices){
+            _log.debug("getCatalogSkeleton() - Adding catalog service: \n{}",xmlo.outputString(service));
+            catalogElement.addContent((Element) service.clone());
+        }
 
+        String id;
+        if("/".equals(_nodeName))
+            id = _prefix;
+        else if(_besPrefix.equals("/"))
+            id = _nodeName;
+        else
+            id = _besPrefix + _nodeName;
+
+        Element topDataset = new Element(THREDDS.DATASET, THREDDS.NS);
+        topDataset.setAttribute(THREDDS.NAME,getCatalogKey());
+        topDataset.setAttribute(THREDDS.ID, id);
+        catalogElement.addContent(topDataset);
+
+        /**
+         * Add Metadata!!
+         */
+        if(_metadata!=null){
+            for(Element mdata : _metadata){
+                _log.debug("getCatalogSkeleton() - Retrieved  metadata element: \n{}",xmlo.outputString(mdata));
+                topDataset.addContent(0,(Element) mdata.clone());
             }
+        }
 
+        topDataset.addContent(new Comment(ENTRIES_MARKER));
 
-            // Pack (possibly) newly named elements into a sorted thing.
-            TreeMap<String, Element> elementsByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if(_catalogProxies!=null && !_catalogProxies.isEmpty() && !_entries.isEmpty()){
 
-            for(Element e : graphElements){
-                name = e.getAttributeValue(THREDDS.NAME);
-                elementsByName.put(name,e);
+            // The proxies choose from all of the entries, not just the ones on this page.
+            TreeMap<String, Element> notRenamed = new CatalogElements();
+            for(Element item : _entries.values()) {
+                notRenamed.put(item.getAttributeValue(THREDDS.NAME), item);
             }
 
+            for(Proxy proxy: _catalogProxies){
+
+                Element proxyDataset = proxy.getProxyDataset(notRenamed);
+                if(proxyDataset!=null){
 
+                    addServiceAccessToDataset(proxyDataset,false,_accessServices);
 
-            // Rebuild document in the correct order.
-            if(_ascendingOrder) {
-                for (Element e : elementsByName.values()) {
-                    topDataset.addContent(e);
+                    if(proxy.isTop()){
+                        int position = 1;
+                        if(_metadata==null || _metadata.isEmpty())
+                            position = 0;
+                        topDataset.addContent(position,proxyDataset);
+                    }
+                    else {
+                        topDataset.addContent(proxyDataset);
+                    }
                 }
             }
-            else {
-                for (Element e : elementsByName.descendingMap().values()) {
-                    topDataset.addContent(e);
-                }
+        }
 
-            }
+        return catalog;
+    }
 
 
+    /**
+     * Holds bes:items, keyed on their BES names, and hands out the catalog
+     * element for an item when it is asked for by name. The proxies only
+     * look at a few of the newest datasets, so only those are made.
+     */
+    private class CatalogElements extends TreeMap<String, Element> {
+        private static final long serialVersionUID = 1L;
 
-            if(_catalogProxies!=null){
-                for(Proxy proxy: _catalogProxies){
+        @Override
+        public Element get(Object name) {
+            Element item = super.get(name);
+            return item==null ? null : getCatalogElement(item);
+        }
+    }
 
-                    Element proxyDataset = proxy.getProxyDataset(notRenamed);
-                    if(proxyDataset!=null){
 
-                        addServiceAccessToDataset(proxyDataset,catalogServices);
+    /**
+     * @return The catalogRef that leads to another page of this catalog.
+     */
+    private Element getPageRef(int page, String label){
+        String title = label + " (page " + (page + 1) + " of " + getPageCount() + ")";
+        Element e = new Element(THREDDS.CATALOG_REF, THREDDS.NS);
+        e.setAttribute(THREDDS.NAME, title);
+        e.setAttribute(XLINK.HREF, CatalogManager.DEFAULT_CATALOG_NAME + "?" + PAGE_PARAMETER + "=" + page, XLINK.NS);
+        e.setAttribute(XLINK.TITLE, title, XLINK.NS);
+        e.setAttribute(THREDDS.TYPE, "simple", XLINK.NS);
+        return e;
+    }
 
 
-                        if(proxy.isTop()){
-                            position = 1;
-                            if(_metadata.isEmpty())
-                                position = 0;
-                            topDataset.addContent(position,proxyDataset);
-                        }
-                        else {
-                            topDataset.addContent(proxyDataset);
-                        }
-                    }
+    /**
+     * Writes the catalog. The entries are made and written one at a time,
+     * in order, so that none of them is held longer than it takes to write
+     * it.
+     */
+    private void writeCatalog(OutputStream os) throws IOException {
 
+        Lock lock = _catalogLock.readLock();
+        try {
+            lock.lock();
 
+            EntryOutputter xmlo = new EntryOutputter();
+            String skeleton = xmlo.outputString(getCatalogSkeleton());
+
+            String marker = "<!--" + ENTRIES_MARKER + "-->";
+            int markerStart = skeleton.indexOf(marker);
+            int lineStart = skeleton.lastIndexOf('\n', markerStart) + 1;
+            String indent = skeleton.substring(lineStart, markerStart);
+            int level = indent.length() / Format.getPrettyFormat().getIndent().length();
+
+            Writer w = new BufferedWriter(new OutputStreamWriter(os, HyraxStringEncoding.getCharset()));
+            w.write(skeleton, 0, lineStart);
+
+            Collection<Map.Entry<String, Element>> entries =
+                    _ascendingOrder ? _entries.entrySet() : _entries.descendingMap().entrySet();
+
+            int first = 0;
+            int last = entries.size();
+            if(_pageSize>0){
+                first = Math.min(_page * _pageSize, last);
+                last = Math.min(first + _pageSize, last);
+                if(_page>0) {
+                    w.write(indent);
+                    xmlo.output(getPageRef(_page - 1, "Previous"), w, level);
+                    w.write(xmlo.getFormat().getLineSeparator());
                 }
-
             }
 
+            int i = 0;
+            for(Map.Entry<String, Element> entry : entries){
+                if(i >= last)
+                    break;
+                if(i++ < first)
+                    continue;
+                w.write(indent);
+                xmlo.output(getCatalogEntry(entry.getKey(), entry.getValue()), w, level);
+                w.write(xmlo.getFormat().getLineSeparator());
+            }
 
+            if(last < entries.size()) {
+                w.write(indent);
+                xmlo.output(getPageRef(_page + 1, "Next"), w, level);
+                w.write(xmlo.getFormat().getLineSeparator());
+            }
 
-            String catalogString  = xmlo.outputString(catalog);
-            _clientResponseCatalogBuffer = catalogString.getBytes(HyraxStringEncoding.getCharset());
-            _log.debug("getCatalog() - Built THREDDS catalog from BES catalog response: \n{}",catalogString);
-
+            // Skip the marker and its line break.
+            int tailStart = skeleton.indexOf('\n', markerStart) + 1;
+            w.write(skeleton, tailStart, skeleton.length() - tailStart);
+            w.flush();
 
         } finally {
             lock.unlock();
         }
+    }
 
 
+    /**
+     * An XMLOutputter that writes a single element as part of an enclosing
+     * document in which the THREDDS and XLINK namespaces are already
+     * declared.
+     */
+    private static class EntryOutputter extends XMLOutputter {
+
+        EntryOutputter(){
+            super(Format.getPrettyFormat().setEncoding(HyraxStringEncoding.getCharset().name()));
+        }
+
+        void output(Element e, Writer w, int level) throws IOException {
+            NamespaceStack declared = new NamespaceStack(){};
+            declared.push(THREDDS.NS);
+            declared.push(XLINK.NS);
+            printElement(w, e, level, declared);
+        }
     }
 
 
 
-    public void addServiceAccessToDataset(Element e ,TreeMap<String, WebServiceHandler> catalogServices) {
+    public void addServiceAccessToDataset(Element e ,boolean isBesDataset, TreeMap<String, WebServiceHandler> catalogServices) {
         if (e.getName().equals(THREDDS.DATASET)) {
 
             String datasetID = e.getAttributeValue(THREDDS.ID);
             Element access;
 
-            if (isBesDataset(e)) {
+            if (isBesDataset) {
 
 
                 for (WebServiceHandler wsh : catalogServices.values()) {
@@ -451,67 +612,24 @@ public class BesCatalog implements Catalog {
 
     }
 
-    public void addServiceAccessToDatasets(Vector<Element> graphElements,TreeMap<String, WebServiceHandler> catalogServices) {
 
-        for (Element e : graphElements) {
-
-            addServiceAccessToDataset(e,catalogServices);
-
-        }
-    }
-
-
-
-
-
-    private boolean isBesDataset(Element e){
-
-
-        List<Element> list = e.getChildren(BES.SERVICE_REF,BES.BES_NS);
-        Vector<Element> besServiceRefs = new Vector<>(list);
-
-        boolean isBesDataset = false;
-        for(Element besServiceRef: besServiceRefs) {
-
-            if(besServiceRef.getTextTrim().equals(BES.DAP_SERVICE_ID)){
-                isBesDataset = true;
-            }
-            else {
-                XMLOutputter xmlo =  new XMLOutputter(Format.getCompactFormat());
-                _log.warn("loadCatalog() - Unexpected content! BES returned: '{}'",xmlo.outputString(besServiceRef));
-            }
-            besServiceRef.detach();
-        }
-        return isBesDataset;
-
-    }
 
 
 
     private Document loadNodeCatalog() throws JDOMException, BadConfigurationException, PPTException, IOException, BESError {
-        ReentrantReadWriteLock.WriteLock lock = _catalogLock.writeLock();
-        try {
-            lock.lock();
+        Document node = new Document();
+        _besApi.getBesNode(_besCatalogResourceId, node);
+        if(_log.isDebugEnabled()) {
             XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
-            Document node = new Document();
-            _besApi.getBesNode(_besCatalogResourceId, node);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            xmlo.output(node, baos);
-            _rawCatalogBuffer = baos.toByteArray();
-            _log.debug("loadNodeCatalog() - Loaded BES catalog response: \n{}", baos.toString(HyraxStringEncoding.getCharset().name()));
-            return node;
-
-        } finally {
-            lock.unlock();
+            _log.debug("loadNodeCatalog() - Loaded BES catalog response: \n{}", xmlo.outputString(node));
         }
+        return node;
     }
 
 
     @Override
     public void destroy() {
-        _clientResponseCatalogBuffer = null;
-        _rawCatalogBuffer = null;
-
+        _entries = null;
     }
 
     @Override
@@ -527,7 +645,7 @@ public class BesCatalog implements Catalog {
     @Override
     public void writeCatalogXML(OutputStream os) throws Exception {
 
-        os.write(_clientResponseCatalogBuffer);
+        writeCatalog(os);
 
     }
 
@@ -549,39 +667,26 @@ public class BesCatalog implements Catalog {
     @Override
     public XdmNode getCatalogAsXdmNode(Processor proc) throws IOException, SaxonApiException {
         XdmNode catalog;
-        InputStream is = null;
-
-        Lock lock = _catalogLock.readLock();
-        try {
-            lock.lock();
-            if (_clientResponseCatalogBuffer != null) {
-                is = new ByteArrayInputStream(_clientResponseCatalogBuffer);
-                _log.debug("getCatalogAsXdmNode(): Reading ingestTransform processed catalog from memory cache. \n{}",
-                        new String(_clientResponseCatalogBuffer, HyraxStringEncoding.getCharset()));
-            } else {
-                throw new IOException("getCatalogAsXdmNode() - Catalog file was not previously ingested.");
-            }
 
+        try (SpillBuffer catalogBuffer = new SpillBuffer();
+             InputStream is = getCatalogInputStream(catalogBuffer)) {
 
             DocumentBuilder builder = proc.newDocumentBuilder();
             builder.setLineNumbering(true);
             //builder.setWhitespaceStrippingPolicy(WhitespaceStrippingPolicy.ALL);
 
             catalog = builder.build(new StreamSource(is));
-        } finally {
-            if (is != null) {
-                try {
-                    is.close();
-                } catch (IOException e) {
-                    _log.error("Failed to close InputStream. Error Message: " + e.getMessage());
-                }
-
-            }
-            lock.unlock();
         }
         return catalog;
     }
 
+    private InputStream getCatalogInputStream(SpillBuffer catalogBuffer) throws IOException {
+        if (_entries == null)
+            throw new IOException("getCatalogAsXdmNode() - Catalog was not previously ingested.");
+        writeCatalog(catalogBuffer);
+        return catalogBuffer.getInputStream();
+    }
+
     @Override
     public XdmNode getRawCatalogAsXdmNode(Processor proc) throws IOException, SaxonApiException {
         return null;
@@ -66,6 +66,8 @@ public class CatalogManager {
 
     private static BesApi _besApi;
 
+    private static int _datasetScanPageSize = 0;
+
 
     private static ConcurrentHashMap<String, DatasetScan>   _datasetScans = new ConcurrentHashMap<>();
     private static ConcurrentHashMap<String, Catalog>       _catalogs     = new ConcurrentHashMap<>();
@@ -101,6 +103,19 @@ public class CatalogManager {
         _isInitialized = true;
     }
 
+    /**
+     * @param pageSize The largest number of entries in one page of a
+     *                 datasetScan catalog. Zero, or less, sends the whole
+     *                 directory in one catalog.
+     */
+    public static void setDatasetScanPageSize(int pageSize) {
+        _datasetScanPageSize = pageSize;
+    }
+
+    public static int getDatasetScanPageSize() {
+        return _datasetScanPageSize;
+    }
+
     public static void addCatalog(String pathPrefix,
                                   String urlPrefix,
                                   String fname,
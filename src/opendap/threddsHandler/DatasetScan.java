@@ -339,7 +339,6 @@ public class DatasetScan  extends Dataset {
                         _besApi,
                         catalogPath,
                         besCatalogResourceId,
-                        _besCatalogToThreddsCatalogTransformFilename,
                         metadata,
                         _filter,
                         increasingSort(),
@@ -347,7 +346,8 @@ public class DatasetScan  extends Dataset {
                         addTimeCoverage,
                         _proxies,
                         services,
-                        _useServiceRegistryServices
+                        _useServiceRegistryServices,
+                        CatalogManager.getDatasetScanPageSize()
                 );
 
 
@@ -177,20 +177,24 @@ public class StaticCatalogDispatch implements DispatchHandler {
             // Is the request for a presentation view (HTML version) of the catalog?
             else if (requestSuffix != null && requestSuffix.equals("html")) {
 
+                int page = getPage(request);
                 if (query != null) {
-                    if (query.startsWith("dataset=")) {
-                        sendDatasetHtmlPage(request, response, catalogKey, query);
+                    String targetDataset = request.getParameter("dataset");
+                    if (targetDataset != null) {
+                        sendDatasetHtmlPage(request, response, catalogKey, targetDataset, page);
+                    } else if (request.getParameter(BesCatalog.PAGE_PARAMETER) != null) {
+                        sendCatalogHTML(request, response, catalogKey, page);
                     } else {
                         response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED, "Cannot process query: " + Scrub.urlContent(query));
                     }
 
 
                 } else {
-                    sendCatalogHTML(request, response, catalogKey);
+                    sendCatalogHTML(request, response, catalogKey, page);
                 }
 
             } else { // Send the the raw catalog XML.
-                sendCatalogXML(orq, response, catalogKey);
+                sendCatalogXML(orq, response, catalogKey, getPage(request));
             }
         }
         finally {
@@ -199,6 +203,37 @@ public class StaticCatalogDispatch implements DispatchHandler {
 
     }
 
+    /**
+     * @return The page of a datasetScan catalog asked for by the request,
+     * zero if none was.
+     */
+    private int getPage(HttpServletRequest request) throws BadRequest {
+        String s = request.getParameter(BesCatalog.PAGE_PARAMETER);
+        if (s == null)
+            return 0;
+        try {
+            int page = Integer.parseInt(s);
+            if (page >= 0)
+                return page;
+        }
+        catch (NumberFormatException e) {
+            log.debug("getPage() - Unable to parse page parameter: {}", Scrub.urlContent(s));
+        }
+        throw new BadRequest("The " + BesCatalog.PAGE_PARAMETER + " parameter must be a non-negative integer.");
+    }
+
+    /**
+     * Locates the catalog and, if it is made from a BES directory, selects
+     * the page of it that is to be sent.
+     */
+    private Catalog getCatalog(String catalogKey, int page)
+            throws JDOMException, BadConfigurationException, PPTException, IOException, SaxonApiException, BESError {
+        Catalog cat = CatalogManager.getCatalog(catalogKey);
+        if (cat instanceof BesCatalog)
+            ((BesCatalog) cat).setPage(page);
+        return cat;
+    }
+
     private boolean redirectRequest(HttpServletRequest req,
                                     HttpServletResponse res)
             throws IOException {
@@ -461,7 +496,8 @@ public class StaticCatalogDispatch implements DispatchHandler {
     private void sendDatasetHtmlPage(HttpServletRequest request,
                                      HttpServletResponse response,
                                      String catalogKey,
-                                     String query) throws IOException, JDOMException, SaxonApiException, BESError {
+                                     String targetDataset,
+                                     int page) throws IOException, JDOMException, SaxonApiException, BESError {
 
 
         XdmNode catDoc;
@@ -474,7 +510,7 @@ public class StaticCatalogDispatch implements DispatchHandler {
                 Request orq = new Request(null, request);
 
 
-                Catalog cat = CatalogManager.getCatalog(catalogKey);
+                Catalog cat = getCatalog(catalogKey, page);
 
                 if (cat != null) {
                     log.debug("\nFound catalog: " + catalogKey + "   " +
@@ -497,10 +533,6 @@ public class StaticCatalogDispatch implements DispatchHandler {
                 }
 
 
-                String targetDataset = query.substring("dataset=".length(), query.length());
-
-                //query = "//*";
-
                 log.debug("targetDataset: " + targetDataset);
 
                 // Pass the docsService  parameter to the transform
@@ -540,7 +572,7 @@ public class StaticCatalogDispatch implements DispatchHandler {
 
     }
 
-    private void sendCatalogHTML(HttpServletRequest request, HttpServletResponse response, String catalogKey)
+    private void sendCatalogHTML(HttpServletRequest request, HttpServletResponse response, String catalogKey, int page)
             throws SaxonApiException, IOException, JDOMException, BadConfigurationException, PPTException, BESError {
 
         _catalogToHtmlTransformLock.lock();
@@ -554,7 +586,7 @@ public class StaticCatalogDispatch implements DispatchHandler {
 
                 XdmNode catDoc;
 
-                Catalog cat = CatalogManager.getCatalog(catalogKey);
+                Catalog cat = getCatalog(catalogKey, page);
 
                 if (cat != null) {
                     log.debug("\nFound catalog: " + catalogKey + "   " +
@@ -587,6 +619,8 @@ public class StaticCatalogDispatch implements DispatchHandler {
                 _catalogToHtmlTransform.setParameter("serviceContext", _dispatchServlet.getServletContext().getContextPath());
                 _catalogToHtmlTransform.setParameter("dapService", orq.getServiceLocalId());
                 _catalogToHtmlTransform.setParameter("docsService", orq.getDocsServiceLocalID());
+                if (page > 0)
+                    _catalogToHtmlTransform.setParameter(BesCatalog.PAGE_PARAMETER, Integer.toString(page));
 
                 AuthenticationControls.setLoginParameters(_catalogToHtmlTransform, request);
 
@@ -606,10 +640,10 @@ public class StaticCatalogDispatch implements DispatchHandler {
     }
 
 
-    private void sendCatalogXML(Request oRequest, HttpServletResponse response, String catalogKey) throws Exception {
+    private void sendCatalogXML(Request oRequest, HttpServletResponse response, String catalogKey, int page) throws Exception {
 
 
-        Catalog cat = CatalogManager.getCatalog(catalogKey);
+        Catalog cat = getCatalog(catalogKey, page);
 
         if (cat != null) {
             log.debug("\nFound catalog: " + catalogKey + "   " +
@@ -658,6 +692,7 @@ public class StaticCatalogDispatch implements DispatchHandler {
         _useMemoryCache = true;
 
         String ingestTransformFile = ServletUtil.getSystemPath(servlet, _staticCatalogIngestTransformFile);
+        int datasetScanPageSize = 0;
 
         Element threddsService = _config.getChild("ThreddsService");
         if (threddsService != null) {
@@ -698,6 +733,17 @@ public class StaticCatalogDispatch implements DispatchHandler {
                 }
             }
 
+            s = threddsService.getAttributeValue("datasetScanPageSize");
+            if (s != null){
+                try {
+                    datasetScanPageSize = Integer.parseInt(s);
+                }
+                catch (NumberFormatException nfe) {
+                    throw new BadConfigurationException("The datasetScanPageSize attribute of the " +
+                            "<ThreddsService> element must be an integer. Found: " + s);
+                }
+            }
+
             Element e;
             e = threddsService.getChild("ingestTransformFile");
             if (e != null) {
@@ -708,6 +754,7 @@ public class StaticCatalogDispatch implements DispatchHandler {
         log.debug("init() - prefix: {}", _prefix);
         log.debug("init() - useMemoryCache: {}", _useMemoryCache);
         log.debug("init() - allowRemoteCatalogTraversal: {}", _allowRemoteCatalogTraversal);
+        log.debug("init() - datasetScanPageSize: {}", datasetScanPageSize);
         log.debug("init() - Using ingest transform file: " + ingestTransformFile);
 
 
@@ -724,6 +771,7 @@ public class StaticCatalogDispatch implements DispatchHandler {
 
         String configPath = ServletUtil.getConfigPath(servlet);
         CatalogManager.init(configPath, ingestTransformFile, besNodeToDatasetScanCatalogTransformFile, _besApi);
+        CatalogManager.setDatasetScanPageSize(datasetScanPageSize);
 
 
         String fileName, pathPrefix, thisUrlPrefix;
@@ -48,8 +48,16 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is a thredds catalog utility. 
@@ -124,8 +132,13 @@ public class ThreddsCatalogUtil {
 		// This holds catalogs not yet seen by the user of the Enumeration
 		private Stack<String> childURLs;
 
+		// And this every catalog that has been put on the stack.
+		private HashSet<String> visited;
+
 		threddsCrawlerEnumeration(String catalogURL) {
 			childURLs = new Stack<String>();
+			visited = new HashSet<String>();
+			visited.add(getCatalogKey(catalogURL));
 	    	childURLs.push(catalogURL);
 		}
 		
@@ -134,7 +147,8 @@ public class ThreddsCatalogUtil {
 			    Vector<String> URLs = getCatalogRefURLs(catalogURL, false);
                 if (URLs != null) {
                     for (String URL : URLs) {
-                        childURLs.push(URL);
+                        if (visited.add(getCatalogKey(URL)))
+                            childURLs.push(URL);
                     }
                 }
             } catch (InterruptedException e) {
@@ -162,6 +176,181 @@ public class ThreddsCatalogUtil {
         }
 	}
 
+	/**
+	 * Crawls a THREDDS catalog tree with a pool of worker threads. Each
+	 * catalog URL is returned by nextElement() as soon as it is found, while
+	 * the workers fetch the catalogs to find their children. Every catalog is
+	 * fetched once, no matter how many catalogRefs point to it, and no more
+	 * than maxPerHost catalogs are fetched from one server at a time; the
+	 * rest wait in a queue for that server and do not hold a worker.
+	 *
+	 * The workers stop when the whole tree has been crawled, or when close()
+	 * is called.
+	 */
+	public class ParallelCrawlerEnumeration implements Enumeration<String>, AutoCloseable {
+
+		// Marks the end of the crawl in the queue of found catalogs.
+		private final String DONE = new String("DONE");
+
+		private final ExecutorService workers;
+		private final int maxPerHost;
+		private final Set<String> visited;
+		private final HashMap<String, HostQueue> hosts;
+		private final LinkedBlockingQueue<String> found;
+		private final AtomicInteger pending;
+		private String next;
+
+		private class HostQueue {
+			int active = 0;
+			ArrayDeque<String> waiting = new ArrayDeque<>();
+		}
+
+		ParallelCrawlerEnumeration(String catalogURL, int threads, int maxPerHost) {
+			this.maxPerHost = maxPerHost < 1 ? 1 : maxPerHost;
+			visited = ConcurrentHashMap.newKeySet();
+			hosts = new HashMap<>();
+			found = new LinkedBlockingQueue<>();
+			pending = new AtomicInteger(0);
+			next = null;
+
+			final AtomicInteger threadCount = new AtomicInteger(0);
+			workers = Executors.newFixedThreadPool(threads < 1 ? 1 : threads, r -> {
+				Thread t = new Thread(r, "ThreddsCrawler-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+
+			add(catalogURL);
+		}
+
+		/**
+		 * Makes a newly found catalog available to the reader of the
+		 * Enumeration and schedules it to be crawled.
+		 */
+		private void add(String catalogURL) {
+			if (!visited.add(getCatalogKey(catalogURL)))
+				return;
+			pending.incrementAndGet();
+			found.add(catalogURL);
+
+			HostQueue hq;
+			String host = getHostKey(catalogURL);
+			synchronized (hosts) {
+				hq = hosts.computeIfAbsent(host, k -> new HostQueue());
+				if (hq.active >= maxPerHost) {
+					hq.waiting.add(catalogURL);
+					return;
+				}
+				hq.active++;
+			}
+			submit(catalogURL, hq);
+		}
+
+		private void submit(String catalogURL, HostQueue hq) {
+			try {
+				workers.execute(() -> crawl(catalogURL, hq));
+			}
+			catch (RejectedExecutionException e) {
+				log.debug("ParallelCrawlerEnumeration - Crawl was closed. Not crawling {}", catalogURL);
+			}
+		}
+
+		private void crawl(String catalogURL, HostQueue hq) {
+			try {
+				Vector<String> URLs = getCatalogRefURLs(catalogURL, false);
+				if (URLs != null) {
+					for (String URL : URLs)
+						add(URL);
+				}
+			}
+			catch (InterruptedException e) {
+				log.debug("ParallelCrawlerEnumeration - Interrupted while crawling {}", catalogURL);
+				Thread.currentThread().interrupt();
+			}
+			catch (Exception e) {
+				log.error("ParallelCrawlerEnumeration - Failed to crawl {} msg: {}", catalogURL, e.getMessage());
+			}
+			finally {
+				String waiting;
+				synchronized (hosts) {
+					waiting = hq.waiting.poll();
+					if (waiting == null)
+						hq.active--;
+				}
+				if (waiting != null)
+					submit(waiting, hq);
+
+				if (pending.decrementAndGet() == 0) {
+					found.add(DONE);
+					workers.shutdown();
+				}
+			}
+		}
+
+		@Override
+		public boolean hasMoreElements() {
+			if (next != null)
+				return true;
+			try {
+				String url = found.take();
+				if (url == DONE) {
+					found.add(DONE);
+					return false;
+				}
+				next = url;
+				return true;
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		@Override
+		public String nextElement() {
+			if (!hasMoreElements())
+				throw new NoSuchElementException();
+			String url = next;
+			next = null;
+			return url;
+		}
+
+		/**
+		 * Stops the crawl. Catalogs that have already been found can still
+		 * be read from the Enumeration.
+		 */
+		@Override
+		public void close() {
+			workers.shutdownNow();
+			found.add(DONE);
+		}
+	}
+
+	/**
+	 * @return The key under which a catalog is recorded as visited.
+	 */
+	private String getCatalogKey(String catalogURL) {
+		try {
+			return new URI(catalogURL).normalize().toString();
+		}
+		catch (URISyntaxException e) {
+			return catalogURL;
+		}
+	}
+
+	/**
+	 * @return The server from which a catalog is fetched.
+	 */
+	private String getHostKey(String catalogURL) {
+		try {
+			String server = getServerUrlString(catalogURL);
+			return server == null ? "" : server;
+		}
+		catch (MalformedURLException | InterruptedException e) {
+			return "";
+		}
+	}
+
 	public static enum SERVICE {
 
 		ALL,
@@ -655,6 +844,27 @@ public class ThreddsCatalogUtil {
 	public Enumeration<String> getCatalogURLs(String topCatalog)  throws InterruptedException {
 		return new threddsCrawlerEnumeration(topCatalog);
 	}
+
+	/**
+	 * Crawl a collection of thredds catalogs with a pool of worker threads.
+	 * The Enumeration returns the catalog URLs as the workers find them, so
+	 * the time a crawl takes depends on the width of the tree and not on the
+	 * number of catalogs in it. Close the returned Enumeration to stop the
+	 * crawl early.
+	 *
+	 * @param topCatalog
+	 *            The THREDDS Catalog to serve as the root node
+	 * @param threads
+	 *            The number of catalogs that may be fetched at once.
+	 * @param maxPerHost
+	 *            The number of catalogs that may be fetched at once from
+	 *            any one server.
+	 * @return An Enumeration of Strings that will visit all of the catalogs in
+	 *         that tree, each of them once.
+	 */
+	public ParallelCrawlerEnumeration getCatalogEnumeration(String topCatalog, int threads, int maxPerHost) {
+		return new ParallelCrawlerEnumeration(topCatalog, threads, maxPerHost);
+	}
 	
 	public static String getUrlInfo(URL url)  throws InterruptedException{
 		String info = "URL:\n";
@@ -26,7 +26,7 @@
 package opendap.w10n;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import net.sf.saxon.s9api.SaxonApiException;
 import opendap.PathBuilder;
 import opendap.bes.BESError;
@@ -40,6 +40,7 @@ import opendap.dap.Request;
 import opendap.dap.User;
 import opendap.http.error.*;
 import opendap.http.mediaTypes.*;
+import opendap.io.HyraxStringEncoding;
 import opendap.logging.ServletLogUtil;
 import opendap.namespaces.BES;
 import opendap.ppt.PPTException;
@@ -56,8 +57,11 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.*;
 import java.util.regex.Pattern;
 import org.owasp.encoder.Encode;
@@ -103,12 +107,15 @@ public class W10nResponder {
 
     private String systemPath;
 
+    private boolean prettyPrint;
+
     public W10nResponder() {
         super();
 
         log = LoggerFactory.getLogger(this.getClass());
 
         this.systemPath = null;
+        prettyPrint = false;
 
         besApi = new BesApi();
 
@@ -141,6 +148,14 @@ public class W10nResponder {
         systemPath = path;
     }
 
+    /**
+     * @param pretty If true the w10n JSON catalog responses are indented,
+     *               otherwise (the default) they are sent in compact form.
+     */
+    public void setPrettyPrint(boolean pretty){
+        prettyPrint = pretty;
+    }
+
 
     /**
      * Sets the response headers based on the passed media type and incoming request. The request is need to
@@ -398,69 +413,70 @@ public class W10nResponder {
             isNode = true;
         }
         String type = getW10nTypeStringForBesNode(topElement);
-        HashMap<String,Object> jsonBesCatalogResponse = getJsonForBesItemOrNodeElement(topElement);
-        if(isNode) {
-            if(topElement.getName().equals("node")) {
-                ArrayList<Object> nodes = new ArrayList<>();
-                ArrayList<Object> leaves = new ArrayList<>();
 
-                @SuppressWarnings("unchecked")
-                List<Element> items = (List<Element>) topElement.getChildren("item", BES.BES_NS);
-
-                for (Element item : items) {
-                    HashMap<String, Object> jsonDataset = getJsonForBesItemOrNodeElement(item);
-
-                    if (isItemW10nNode(item)) {
-                        nodes.add(jsonDataset);
-                    } else {
-                        leaves.add(jsonDataset);
-                    }
-                }
+        // The response is written as the BES items are read, nothing is
+        // built up in memory for the listing.
+        Writer w = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), HyraxStringEncoding.getCharset()));
+        if(w10nRequest.callback()!=null){
+            w.write(w10nRequest.callback()+"(");
+        }
+        JsonWriter jsonWriter = new JsonWriter(w);
+        jsonWriter.setHtmlSafe(true);
+        jsonWriter.setSerializeNulls(false);
+        if(prettyPrint)
+            jsonWriter.setIndent("  ");
 
-                jsonBesCatalogResponse.put("nodes", nodes);
-                jsonBesCatalogResponse.put("leaves", leaves);
-                jsonBesCatalogResponse.put("w10n",
-                        getW10nMetaObject(
-                                type,
-                                w10nRequest.getW10nResourcePath(),
-                                w10nRequest.getW10nId(),
-                                defaultMetaMediaType,
-                                supportedMetaMediaTypes)
-                );
-            }
-            else {
-                jsonBesCatalogResponse.put("w10n",
-                        getW10nMetaObject(
-                                type,
-                                w10nRequest.getW10nResourcePath(),
-                                w10nRequest.getW10nId(),
-                                defaultMetaMediaType,
-                                supportedMetaMediaTypes));
+        jsonWriter.beginObject();
+        writeJsonForBesItemOrNodeElement(jsonWriter, topElement);
+        if(isNode && topElement.getName().equals("node")) {
 
-            }
+            @SuppressWarnings("unchecked")
+            List<Element> items = (List<Element>) topElement.getChildren("item", BES.BES_NS);
 
-        }
-        else {
-            jsonBesCatalogResponse.put("w10n",
-                    getW10nMetaObject(
-                            type,
-                            w10nRequest.getW10nResourcePath(),
-                            w10nRequest.getW10nId(),
-                            defaultMetaMediaType,
-                            supportedMetaMediaTypes));
+            jsonWriter.name("nodes");
+            writeJsonForBesItems(jsonWriter, items, true);
 
+            jsonWriter.name("leaves");
+            writeJsonForBesItems(jsonWriter, items, false);
         }
+        jsonWriter.name("w10n");
+        new Gson().toJson(
+                getW10nMetaObject(
+                        type,
+                        w10nRequest.getW10nResourcePath(),
+                        w10nRequest.getW10nId(),
+                        defaultMetaMediaType,
+                        supportedMetaMediaTypes),
+                ArrayList.class,
+                jsonWriter);
+        jsonWriter.endObject();
+        jsonWriter.flush();
 
-        ServletOutputStream sos =  response.getOutputStream();
         if(w10nRequest.callback()!=null){
-            sos.print(w10nRequest.callback()+"(");
+            w.write(")");
         }
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        sos.print(gson.toJson(jsonBesCatalogResponse));
-        if(w10nRequest.callback()!=null){
-            sos.print(")");
+        w.write("\n");
+        w.flush();
+    }
+
+    /**
+     * Writes a JSON array with the w10n representation of either the node
+     * or the leaf items of a bes:node.
+     * @param jsonWriter The writer to which the array is written.
+     * @param items The bes:item elements.
+     * @param nodes If true the nodes are written, if false the leaves are.
+     * @throws IOException
+     */
+    private void writeJsonForBesItems(JsonWriter jsonWriter, List<Element> items, boolean nodes) throws IOException {
+        jsonWriter.beginArray();
+        for (Element item : items) {
+            if (isItemW10nNode(item) == nodes) {
+                jsonWriter.beginObject();
+                writeJsonForBesItemOrNodeElement(jsonWriter, item);
+                jsonWriter.endObject();
+            }
         }
-        sos.println();
+        jsonWriter.endArray();
     }
 
     /**
@@ -490,56 +506,37 @@ public class W10nResponder {
 
 
     /**
-     * Returns a w10n JSON object representation of a bes:item element.
-     * @param item The bes:item element
-     * @return  The JSON representation (as a HashMap<String,Object>)
+     * Writes the members of the w10n JSON object representation of a bes:item
+     * or bes:node element.
+     * @param jsonWriter The writer, positioned inside the JSON object.
+     * @param item The bes:item or bes:node element
+     * @throws IOException
      */
-    private HashMap<String,Object> getJsonForBesItemOrNodeElement(Element item){
-
-        ArrayList<Object> attributes = new ArrayList<>();
-        HashMap<String,Object> jsonObject = new HashMap<>();
+    private void writeJsonForBesItemOrNodeElement(JsonWriter jsonWriter, Element item) throws IOException {
 
+        String sizeAttribute;
         if(item.getName().equals(NODE_ITEM)){
-
-            String itemName = item.getAttributeValue(KEY_NAME);
-
-            String name = PathBuilder.basename(itemName);
-            jsonObject.put(KEY_NAME,name);
-
-            long size = -1;
-            String s = item.getAttributeValue(KEY_SIZE);
-            if(s!=null) {
-                size = Long.parseLong(s);
-            }
-            attributes.add(getW10nAttribute(KEY_SIZE, size));
-
-            String  lmt = item.getAttributeValue(NODE_LAST_MODIFIED);
-            attributes.add(getW10nAttribute(KEY_LAST_MODIFIED,lmt));
-
-            jsonObject.put(KEY_ATTRIBUTES,attributes);
-
+            sizeAttribute = KEY_SIZE;
         }
         else {
             // It must be a node.
-            Element node = item;
-            String nodeName = node.getAttributeValue(KEY_NAME);
-
-            String name = PathBuilder.basename(nodeName);
-            jsonObject.put(KEY_NAME,name);
-
-            long size = -1;
-            String s = node.getAttributeValue(NODE_COUNT);
-            if(s!=null) {
-                size = Long.parseLong(s);
-            }
-            attributes.add(getW10nAttribute(KEY_SIZE, size));
+            sizeAttribute = NODE_COUNT;
+        }
 
-            String  lmt = item.getAttributeValue(NODE_LAST_MODIFIED);
-            attributes.add(getW10nAttribute(KEY_LAST_MODIFIED,lmt));
+        String itemName = item.getAttributeValue(KEY_NAME);
+        jsonWriter.name(KEY_NAME).value(PathBuilder.basename(itemName));
 
-            jsonObject.put(KEY_ATTRIBUTES,attributes);
+        long size = -1;
+        String s = item.getAttributeValue(sizeAttribute);
+        if(s!=null) {
+            size = Long.parseLong(s);
         }
-        return jsonObject;
+        String  lmt = item.getAttributeValue(NODE_LAST_MODIFIED);
+
+        jsonWriter.name(KEY_ATTRIBUTES).beginArray();
+        jsonWriter.beginObject().name("name").value(KEY_SIZE).name("value").value(size).endObject();
+        jsonWriter.beginObject().name("name").value(KEY_LAST_MODIFIED).name("value").value(lmt).endObject();
+        jsonWriter.endArray();
     }
 
 
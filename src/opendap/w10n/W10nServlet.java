@@ -73,11 +73,25 @@ public class W10nServlet extends HttpServlet   {
     public void init() throws ServletException {
         super.init();
         W10N_RESPONDER.setSystemPath(ServletUtil.getSystemPath(this,""));
+        W10N_RESPONDER.setPrettyPrint(Boolean.parseBoolean(getInitParameter("PrettyPrintJson")));
         W10nService w10nService = new W10nService();
         w10nService.init(this,null);
         ServicesRegistry.addService(w10nService);
     }
 
+    /**
+     * Closes the RequestCache, see opendap.coreServlet.DispatchServlet.service()
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        try {
+            super.service(req, resp);
+        } finally {
+            RequestCache.close();
+        }
+    }
+
+
     /**
      * Gets the last modified date of the requested resource. Because the data handler is really
      * the only entity capable of determining the last modified date the job is passed  through to it.
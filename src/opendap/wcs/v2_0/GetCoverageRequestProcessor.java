@@ -167,26 +167,8 @@ public class GetCoverageRequestProcessor {
             }
         }
 
-        Coverage coverage = coverageDescription.getCoverage(req.getRequestUrl()); // new Coverage(coverageDescription, req.getRequestUrl());
-
-        Element coverageElement = coverage.getCoverageElement(rangePartId, getReturnMimeType(user,req));
-
-        XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
-        _log.debug(xmlo.outputString(coverageElement));
-
-
-        Document doc = new Document(coverageElement);
-
-        if (useSoapEnvelope)
-            doc = SoapHandler.wrapDocumentInSoapEnvelope(doc);
-
-
-        MultipartResponse mpr = new MultipartResponse();
-
-        Attachment gmlPart = new Attachment("application/gml+xml; charset=UTF-8", "gml-part", doc);
-        mpr.addAttachment(gmlPart);
-
-
+        // Start the range part first, the BES (or remote server) works on
+        // it while we build the gml:Coverage part.
         Attachment rangePart;
         String dapDataAccessUrl = wcsCatalog.getDapDatsetUrl(coverageId);
         if (dapDataAccessUrl.toLowerCase().startsWith(opendap.http.Util.BES_PROTOCOL)) {
@@ -197,20 +179,44 @@ public class GetCoverageRequestProcessor {
             rangePart = new Attachment(getReturnMimeType(user, req), rangePartId, getDap2DataAccessUrl(user,req), WcsServiceManager.getCredentialsProvider());
 
         }
+        rangePart.setHeader("Content-Disposition", getContentDisposition(user,req));
+        rangePart.prefetch();
+
+        try {
+            Coverage coverage = coverageDescription.getCoverage(req.getRequestUrl()); // new Coverage(coverageDescription, req.getRequestUrl());
 
+            Element coverageElement = coverage.getCoverageElement(rangePartId, getReturnMimeType(user, req));
 
-        rangePart.setHeader("Content-Disposition", getContentDisposition(user,req));
+            if (_log.isDebugEnabled()) {
+                XMLOutputter xmlo = new XMLOutputter(Format.getPrettyFormat());
+                _log.debug(xmlo.outputString(coverageElement));
+            }
 
-        mpr.addAttachment(rangePart);
+            Document doc = new Document(coverageElement);
 
+            if (useSoapEnvelope)
+                doc = SoapHandler.wrapDocumentInSoapEnvelope(doc);
 
-        try {
-            mpr.send(response);
-        } catch (Exception e) {
-            StringBuilder msg = new StringBuilder("sendMultipartGmlResponse() - ");
-            msg.append("Failed to transmit WCS coverage response.");
-            msg.append(" Message: ").append(e.getMessage());
-            throw new WcsException(msg.toString(), WcsException.NO_APPLICABLE_CODE);
+
+            MultipartResponse mpr = new MultipartResponse();
+
+            Attachment gmlPart = new Attachment("application/gml+xml; charset=UTF-8", "gml-part", doc);
+            mpr.addAttachment(gmlPart);
+
+            mpr.addAttachment(rangePart);
+
+
+            try {
+                mpr.send(response);
+            } catch (Exception e) {
+                StringBuilder msg = new StringBuilder("sendMultipartGmlResponse() - ");
+                msg.append("Failed to transmit WCS coverage response.");
+                msg.append(" Message: ").append(e.getMessage());
+                throw new WcsException(msg.toString(), WcsException.NO_APPLICABLE_CODE);
+            }
+        }
+        finally {
+            rangePart.release();
         }
 
     }
@@ -29,6 +29,7 @@ import opendap.bes.BESError;
 import opendap.bes.BESManager;
 import opendap.bes.BadConfigurationException;
 import opendap.bes.BesApi;
+import opendap.coreServlet.RequestCache;
 import opendap.coreServlet.TransmitCoordinator;
 import opendap.ppt.PPTException;
 import org.apache.http.client.CredentialsProvider;
@@ -36,6 +37,7 @@ import org.jdom.Document;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 import org.slf4j.Logger;
+import org.slf4j.MDC;
 
 import javax.servlet.ServletOutputStream;
 import java.io.IOException;
@@ -43,6 +45,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -76,6 +82,19 @@ public class Attachment {
 
     private HashMap<String, String> mimeHeaders;
 
+    // Set by prefetch(), the content as it is being retrieved.
+    private ContentPipe _prefetched;
+
+    private static final AtomicInteger prefetchThreadCount = new AtomicInteger(0);
+
+    // There is at most one of these per request thread, so the request
+    // threads bound the pool.
+    private static final ExecutorService prefetchPool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "WcsAttachment-" + prefetchThreadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
 
 
 
@@ -96,6 +115,7 @@ public class Attachment {
         _doc = null;
         _myContentModel = null;
         _besCmd = null;
+        _prefetched = null;
 
         setHeader(contentType,ctype);
         setHeader(contentId,"<"+cid+">");
@@ -162,6 +182,48 @@ public class Attachment {
     }
 
 
+    /**
+     * Starts retrieving the content of a BES or URL attachment on another
+     * thread, so that the BES (or the remote server) is working on it while
+     * the parts ahead of this one are being built and sent. The content is
+     * handed to write() as it arrives. Every attachment that has been
+     * prefetched must be written or released.
+     */
+    public void prefetch() {
+        if (_prefetched != null || (_myContentModel != ContentModel.bes && _myContentModel != ContentModel.url))
+            return;
+
+        final ContentPipe pipe = new ContentPipe();
+        final String requestId = RequestCache.getRequestId();
+        final Map<String, String> logContext = MDC.getCopyOfContextMap();
+        prefetchPool.execute(() -> {
+            if (logContext != null)
+                MDC.setContextMap(logContext);
+            RequestCache.open(requestId);
+            Throwable failure = null;
+            try {
+                writeContent(pipe.getOutputStream(), pipe.getTransmitCoordinator());
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                pipe.finish(failure);
+                RequestCache.close();
+                MDC.clear();
+            }
+        });
+        _prefetched = pipe;
+    }
+
+    /**
+     * Stops retrieving the prefetched content, if it's still being
+     * retrieved. Does nothing if the attachment was not prefetched.
+     */
+    public void release() {
+        if (_prefetched != null)
+            _prefetched.close();
+    }
+
+
     /**
      * Write the attchment to the indicated stream
      *
@@ -181,7 +243,46 @@ public class Attachment {
         }
         sos.println();
 
+        if (_prefetched != null) {
+            writePrefetched(sos);
+        }
+        else {
+            writeContent(sos, tc);
+        }
 
+        //MIME Attachments need to end with a newline!
+        sos.println();
+
+
+    }
+
+    private void writePrefetched(OutputStream os) throws IOException, URISyntaxException, PPTException, BadConfigurationException, BESError {
+        Throwable failure;
+        try {
+            failure = _prefetched.drainTo(os);
+        } finally {
+            _prefetched.close();
+        }
+        if (failure == null)
+            return;
+        if (failure instanceof IOException)
+            throw (IOException) failure;
+        if (failure instanceof URISyntaxException)
+            throw (URISyntaxException) failure;
+        if (failure instanceof PPTException)
+            throw (PPTException) failure;
+        if (failure instanceof BadConfigurationException)
+            throw (BadConfigurationException) failure;
+        if (failure instanceof BESError)
+            throw (BESError) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        throw new IOException(failure);
+    }
+
+    private void writeContent(OutputStream sos, TransmitCoordinator tc) throws IOException, URISyntaxException, PPTException, BadConfigurationException, BESError {
         switch (_myContentModel) {
             case stream:
                 try {
@@ -220,11 +321,6 @@ public class Attachment {
                 break;
 
         }
-
-        //MIME Attachments need to end with a newline!
-        sos.println();
-
-
     }
 
     public static final int DEFAULT_BUFFER_SIZE = 10240; // 10k read buffer
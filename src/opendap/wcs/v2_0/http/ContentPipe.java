@@ -0,0 +1,203 @@
+/*
+ * /////////////////////////////////////////////////////////////////////////////
+ * // This file is part of the "Hyrax Data Server" project.
+ * //
+ * //
+ * // Copyright (c) 2026 OPeNDAP, Inc.
+ * //
+ * // This library is free software; you can redistribute it and/or
+ * // modify it under the terms of the GNU Lesser General Public
+ * // License as published by the Free Software Foundation; either
+ * // version 2.1 of the License, or (at your option) any later version.
+ * //
+ * // This library is distributed in the hope that it will be useful,
+ * // but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * // MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * // Lesser General Public License for more details.
+ * //
+ * // You should have received a copy of the GNU Lesser General Public
+ * // License along with this library; if not, write to the Free Software
+ * // Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ * //
+ * // You can contact OPeNDAP, Inc. at PO Box 112, Saunderstown, RI. 02874-0112.
+ * /////////////////////////////////////////////////////////////////////////////
+ */
+
+package opendap.wcs.v2_0.http;
+
+import opendap.coreServlet.TransmitCoordinator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the content of an Attachment from the thread that retrieves it to
+ * the thread that writes the response. The content is passed along in
+ * chunks and at most MAX_CHUNKS of them are held, after that the writer
+ * waits for the reader. If the reader gives up (close()) the writer's next
+ * write fails.
+ */
+class ContentPipe {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNKS = 32;
+    private static final long OFFER_WAIT = 100; // ms
+
+    // Marks the end of the content.
+    private static final byte[] EOF = new byte[0];
+
+    private final ArrayBlockingQueue<byte[]> chunks;
+    private final Sink sink;
+
+    private volatile boolean closed;
+    private volatile boolean committed;
+    private volatile Throwable failure;
+
+    ContentPipe() {
+        chunks = new ArrayBlockingQueue<>(MAX_CHUNKS);
+        sink = new Sink();
+        closed = false;
+        committed = false;
+        failure = null;
+    }
+
+    /**
+     * @return The stream the content is written to.
+     */
+    OutputStream getOutputStream() {
+        return sink;
+    }
+
+    /**
+     * Once a chunk has been passed to the reader the content can't be taken
+     * back, so a failed BES transaction must not be retried.
+     * @return The TransmitCoordinator for getOutputStream().
+     */
+    TransmitCoordinator getTransmitCoordinator() {
+        return new TransmitCoordinator() {
+            @Override
+            public boolean isCommitted() {
+                return committed;
+            }
+
+            @Override
+            public void reset() throws IllegalStateException {
+                if (committed)
+                    throw new IllegalStateException("Unable to reset the content, it has already been passed along.");
+                sink.count = 0;
+            }
+        };
+    }
+
+    /**
+     * Called by the writer when it is done.
+     * @param t What went wrong, null if nothing did.
+     */
+    void finish(Throwable t) {
+        failure = t;
+        try {
+            if (t == null && sink.count > 0)
+                sink.flushBuffer();
+            put(EOF);
+        } catch (IOException e) {
+            // The reader has gone away, no one is left to tell.
+        }
+    }
+
+    /**
+     * Writes the content to os as it arrives.
+     * @param os The stream to which the content is written.
+     * @return What went wrong with retrieving the content, null if nothing
+     * did.
+     * @throws IOException When the content can't be written to os.
+     */
+    Throwable drainTo(OutputStream os) throws IOException {
+        try {
+            while (true) {
+                byte[] chunk = chunks.take();
+                if (chunk == EOF)
+                    return failure;
+                os.write(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the attachment content.");
+        }
+    }
+
+    /**
+     * Called by the reader when it no longer wants the content.
+     */
+    void close() {
+        closed = true;
+        chunks.clear();
+    }
+
+    private void put(byte[] chunk) throws IOException {
+        try {
+            while (!chunks.offer(chunk, OFFER_WAIT, TimeUnit.MILLISECONDS)) {
+                if (closed)
+                    throw new IOException("The attachment content is no longer wanted.");
+            }
+            if (closed) {
+                chunks.clear();
+                throw new IOException("The attachment content is no longer wanted.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while passing along the attachment content.");
+        }
+    }
+
+
+    private class Sink extends OutputStream {
+        private byte[] buf = new byte[CHUNK_SIZE];
+        private int count = 0;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buf.length)
+                flushBuffer();
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buf.length)
+                    flushBuffer();
+                int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Does nothing. The BES client flushes often and passing along each
+         * bit of content on its own would make for a lot of small chunks, a
+         * chunk is passed along when it is full or the content is done.
+         */
+        @Override
+        public void flush() {
+        }
+
+        private void flushBuffer() throws IOException {
+            byte[] chunk = buf;
+            if (count < chunk.length) {
+                chunk = new byte[count];
+                System.arraycopy(buf, 0, chunk, 0, count);
+            } else {
+                buf = new byte[CHUNK_SIZE];
+            }
+            count = 0;
+            committed = true;
+            put(chunk);
+        }
+    }
+
+}